@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.XMLConfigCreator;
+import config.raptor.xml.XMLConfigIO;
+import config.raptor.xml.XMLConfigOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Node;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting next to an element in the middle of a long sibling list, one config at a time and as a batch, and
+ * creating the configs from strings one at a time and in bulk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AddConfigBenchmark {
+    private static final String ANCHOR_PATH = "/APIManager/Environments/Anchor";
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"10", "1000", "10000"})
+    public int siblings;
+
+    private Path configFile;
+    private XMLConfigOperator configOperator;
+    private List<Node> configs;
+    private XMLConfigCreator configCreator;
+    private List<String> xmlStrings;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = Files.createTempFile("config-raptor-siblings-", ".xml");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(configFile, StandardCharsets.UTF_8)) {
+            writer.write("<APIManager><Environments>");
+
+            for (int i = 0; i < siblings; ++i) {
+                if (i == siblings / 2) {
+                    writer.write("<Anchor/>");
+                }
+
+                writer.write("<Environment><Name>env" + i + "</Name></Environment>");
+            }
+
+            writer.write("</Environments></APIManager>");
+        }
+
+        XMLConfigIO configIO = new XMLConfigIO(configFile.toString());
+        configOperator = configIO.getConfigOperator();
+        configs = new ArrayList<>(BATCH_SIZE);
+        configCreator = configIO.getConfigCreator();
+        xmlStrings = new ArrayList<>(BATCH_SIZE);
+
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            xmlStrings.add("<Environment><Name>new" + i + "</Name></Environment>");
+            configs.add(configCreator.createConfig(xmlStrings.get(i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    public boolean addConfigBefore() throws Exception {
+        return addAndUndo(XMLConfigOperator.Position.BEFORE);
+    }
+
+    @Benchmark
+    public boolean addConfigAfter() throws Exception {
+        return addAndUndo(XMLConfigOperator.Position.AFTER);
+    }
+
+    @Benchmark
+    public int addConfigsOneByOne() throws Exception {
+        int added = 0;
+
+        for (Node config : configs) {
+            if (configOperator.addConfig(ANCHOR_PATH, config, XMLConfigOperator.Position.AFTER)) {
+                ++added;
+            }
+        }
+
+        removeAll();
+        return added;
+    }
+
+    @Benchmark
+    public boolean addConfigsBatch() throws Exception {
+        boolean isAdded = configOperator.addConfigs(ANCHOR_PATH, configs, XMLConfigOperator.Position.AFTER);
+        removeAll();
+
+        return isAdded;
+    }
+
+    @Benchmark
+    public int createAndAddConfigsOneByOne() throws Exception {
+        List<Node> created = new ArrayList<>(BATCH_SIZE);
+
+        for (String xmlString : xmlStrings) {
+            Node config = configCreator.createConfig(xmlString);
+
+            if (configOperator.addConfig(ANCHOR_PATH, config, XMLConfigOperator.Position.AFTER)) {
+                created.add(config);
+            }
+        }
+
+        removeAll(created);
+        return created.size();
+    }
+
+    @Benchmark
+    public int createAndAddConfigsInBulk() throws Exception {
+        DocumentFragment fragment = configCreator.createConfigs(xmlStrings.iterator());
+        List<Node> created = new ArrayList<>(BATCH_SIZE);
+
+        for (Node config = fragment.getFirstChild(); config != null; config = config.getNextSibling()) {
+            created.add(config);
+        }
+
+        configOperator.addConfig(ANCHOR_PATH, fragment, XMLConfigOperator.Position.AFTER);
+        removeAll(created);
+
+        return created.size();
+    }
+
+    private boolean addAndUndo(XMLConfigOperator.Position position) throws Exception {
+        Node config = configs.get(0);
+        boolean isAdded = configOperator.addConfig(ANCHOR_PATH, config, position);
+        config.getParentNode().removeChild(config);
+
+        return isAdded;
+    }
+
+    private void removeAll() {
+        removeAll(configs);
+    }
+
+    private void removeAll(List<Node> added) {
+        for (Node config : added) {
+            config.getParentNode().removeChild(config);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.XMLConfigIO;
+import config.raptor.xml.XMLConfigOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of lookups shared between threads, comparing a plain operator behind one global lock with the
+ * concurrent operator. Run with {@code -t} set to each thread count of interest. The mixed benchmarks make every
+ * hundredth call an update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrentAccessBenchmark {
+    private static final int UPDATE_INTERVAL = 100;
+
+    @Param({"10KB", "1MB"})
+    public String size;
+
+    private Path configFile;
+    private XMLConfigOperator plainOperator;
+    private XMLConfigOperator concurrentOperator;
+    private final Object globalLock = new Object();
+    private Node newPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = ConfigDocuments.generate(size);
+
+        XMLConfigIO plainConfigIO = new XMLConfigIO(configFile.toString());
+        plainOperator = plainConfigIO.getConfigOperator();
+
+        XMLConfigIO concurrentConfigIO = new XMLConfigIO(configFile.toString());
+        concurrentConfigIO.setConcurrentAccessEnabled(true);
+        concurrentOperator = concurrentConfigIO.getConfigOperator();
+
+        newPassword = concurrentConfigIO.getConfigCreator().createConfig("<Password>wso2carbon</Password>");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    public Node getConfigGlobalLock() throws Exception {
+        synchronized (globalLock) {
+            return plainOperator.getConfig(XMLConfigOperatorBenchmark.DESCENDANT_PATH);
+        }
+    }
+
+    @Benchmark
+    public Node getConfigConcurrent() throws Exception {
+        return concurrentOperator.getConfig(XMLConfigOperatorBenchmark.DESCENDANT_PATH);
+    }
+
+    @Benchmark
+    public Object mixedGlobalLock(CallCounter counter) throws Exception {
+        synchronized (globalLock) {
+            if (counter.isUpdateDue()) {
+                return plainOperator.updateConfig(XMLConfigOperatorBenchmark.DESCENDANT_PATH, newPassword);
+            }
+
+            return plainOperator.getConfig(XMLConfigOperatorBenchmark.DESCENDANT_PATH);
+        }
+    }
+
+    @Benchmark
+    public Object mixedConcurrent(CallCounter counter) throws Exception {
+        if (counter.isUpdateDue()) {
+            return concurrentOperator.updateConfig(XMLConfigOperatorBenchmark.DESCENDANT_PATH, newPassword);
+        }
+
+        return concurrentOperator.getConfig(XMLConfigOperatorBenchmark.DESCENDANT_PATH);
+    }
+
+    @State(Scope.Thread)
+    public static class CallCounter {
+        private int count;
+
+        boolean isUpdateDue() {
+            return ++count % UPDATE_INTERVAL == 0;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import org.json.XML;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates benchmark documents of a given size by repeating the top level sections of the api-manager.xml seed
+ * under a single APIManager root. The output only depends on the requested size so results are comparable across
+ * runs and releases.
+ */
+public final class ConfigDocuments {
+    public static final String SEED = "api-manager.xml";
+
+    private static List<String> seedSections;
+
+    private ConfigDocuments() {
+    }
+
+    /**
+     * @param size size such as "10KB", "1MB" or "100MB"
+     * @return a temporary file which the caller is responsible for deleting
+     */
+    public static Path generate(String size) throws Exception {
+        long targetBytes = parseSize(size);
+        Path file = Files.createTempFile("config-raptor-" + size + "-", ".xml");
+
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            writeDocument(writer, targetBytes);
+        }
+
+        return file;
+    }
+
+    /**
+     * Generates the document of the given size as {@link #generate(String)} does and converts it to JSON, with
+     * repeated elements turned into arrays and attributes into members. The JSON file is smaller than the size given,
+     * as it has no end tags or comments.
+     *
+     * @return a temporary file which the caller is responsible for deleting
+     */
+    public static Path generateJson(String size) throws Exception {
+        Path file = Files.createTempFile("config-raptor-" + size + "-", ".json");
+
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            XML.toJSONObject(generateString(size)).write(writer, 4, 0);
+        }
+
+        return file;
+    }
+
+    public static String generateString(String size) throws Exception {
+        StringWriter writer = new StringWriter();
+        writeDocument(writer, parseSize(size));
+
+        return writer.toString();
+    }
+
+    /**
+     * Copies the seed file as is, for benchmarks that should run against the realistic document.
+     */
+    public static Path copySeed() throws IOException {
+        Path file = Files.createTempFile("config-raptor-seed-", ".xml");
+
+        try (InputStream in = openSeed()) {
+            Files.copy(in, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return file;
+    }
+
+    static long parseSize(String size) {
+        String upper = size.trim().toUpperCase();
+        long multiplier = 1;
+
+        if (upper.endsWith("KB")) {
+            multiplier = 1024;
+        }
+        else if (upper.endsWith("MB")) {
+            multiplier = 1024 * 1024;
+        }
+
+        String digits = multiplier == 1 ? upper : upper.substring(0, upper.length() - 2);
+        return Long.parseLong(digits.trim()) * multiplier;
+    }
+
+    private static void writeDocument(Writer writer, long targetBytes) throws Exception {
+        List<String> sections = getSeedSections();
+        long written = 0;
+
+        writer.write("<APIManager>\n");
+
+        for (int i = 0; written < targetBytes; ++i) {
+            String section = sections.get(i % sections.size());
+            writer.write("    ");
+            writer.write(section);
+            writer.write('\n');
+            written += section.length() + 5;
+        }
+
+        writer.write("</APIManager>\n");
+    }
+
+    private static synchronized List<String> getSeedSections() throws Exception {
+        if (seedSections == null) {
+            Document seed;
+
+            try (InputStream in = openSeed()) {
+                seed = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            }
+
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+            List<String> sections = new ArrayList<>();
+
+            for (Node child = seed.getDocumentElement().getFirstChild(); child != null;
+                 child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE || child.getNodeType() == Node.COMMENT_NODE) {
+                    StringWriter section = new StringWriter();
+                    transformer.transform(new DOMSource(child), new StreamResult(section));
+                    sections.add(section.toString());
+                }
+            }
+
+            seedSections = sections;
+        }
+
+        return seedSections;
+    }
+
+    private static InputStream openSeed() throws IOException {
+        InputStream in = ConfigDocuments.class.getClassLoader().getResourceAsStream(SEED);
+
+        if (in == null) {
+            throw new IOException("Benchmark seed " + SEED + " not found on the class path");
+        }
+
+        return in;
+    }
+}
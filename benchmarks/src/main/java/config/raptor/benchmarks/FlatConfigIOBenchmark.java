@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.flat.FlatConfigIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads and saves a generated properties file with {@link FlatConfigIO}, against {@link Properties}, which drops
+ * comments and order when storing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FlatConfigIOBenchmark {
+    private static final String UPDATED_KEY = "apim.section100.password";
+
+    @Param({"1MB", "10MB"})
+    public String size;
+
+    private Path configFile;
+    private Path storeFile;
+    private FlatConfigIO configIO;
+    private Properties properties;
+    private int saveCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = Files.createTempFile("config-raptor-" + size + "-", ".properties");
+        storeFile = Files.createTempFile("config-raptor-" + size + "-store-", ".properties");
+        long targetBytes = ConfigDocuments.parseSize(size);
+
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(configFile, StandardCharsets.ISO_8859_1))) {
+            long written = 0;
+
+            for (int section = 0; written < targetBytes; ++section) {
+                String lines = "# Section " + section + "\n" +
+                        "apim.section" + section + ".url = https://${carbon.local.ip}:${mgt.transport.https.port}/\n" +
+                        "apim.section" + section + ".username = ${admin.username}\n" +
+                        "apim.section" + section + ".password = ${admin.password}\n\n";
+                writer.write(lines);
+                written += lines.length();
+            }
+        }
+
+        configIO = new FlatConfigIO(configFile.toString(), FlatConfigIO.Format.PROPERTIES);
+        properties = loadProperties();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+        Files.deleteIfExists(storeFile);
+    }
+
+    private Properties loadProperties() throws Exception {
+        Properties loaded = new Properties();
+
+        try (InputStream in = Files.newInputStream(configFile)) {
+            loaded.load(in);
+        }
+
+        return loaded;
+    }
+
+    @Benchmark
+    public FlatConfigIO load() throws Exception {
+        return new FlatConfigIO(configFile.toString(), FlatConfigIO.Format.PROPERTIES);
+    }
+
+    @Benchmark
+    public Properties loadWithProperties() throws Exception {
+        return loadProperties();
+    }
+
+    // A value is changed each time to have every save write the file
+    @Benchmark
+    public boolean save() throws Exception {
+        configIO.getConfigOperator().updateConfig(UPDATED_KEY, "password" + (++saveCount % 2));
+        return configIO.saveIfChanged();
+    }
+
+    @Benchmark
+    public boolean saveUnchanged() throws Exception {
+        return configIO.saveIfChanged();
+    }
+
+    @Benchmark
+    public Properties saveWithProperties() throws Exception {
+        properties.setProperty(UPDATED_KEY, "password" + (++saveCount % 2));
+
+        try (OutputStream out = Files.newOutputStream(storeFile)) {
+            properties.store(out, null);
+        }
+
+        return properties;
+    }
+}
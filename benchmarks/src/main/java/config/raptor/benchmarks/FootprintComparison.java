@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.CompactXMLConfigIO;
+import config.raptor.xml.XMLConfigIO;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap retained by configs loaded through {@link XMLConfigIO} and {@link CompactXMLConfigIO}. Loads
+ * the same document many times with each, keeps every copy reachable and reports the used heap after a full
+ * collection, divided by the number of copies.
+ *
+ * Run with {@code java -cp target/benchmarks.jar config.raptor.benchmarks.FootprintComparison [size] [copies]}.
+ */
+public final class FootprintComparison {
+    private static final String DEFAULT_SIZE = "10KB";
+    private static final int DEFAULT_COPIES = 1000;
+
+    private FootprintComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String size = args.length > 0 ? args[0] : DEFAULT_SIZE;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COPIES;
+        Path configFile = ConfigDocuments.generate(size);
+
+        try {
+            // Each model is loaded once before measuring so that class loading and pools are not counted
+            measure(new DOMLoader(configFile), 1);
+            measure(new CompactLoader(configFile), 1);
+
+            report("DOM", measure(new DOMLoader(configFile), copies), copies);
+            report("Compact", measure(new CompactLoader(configFile), copies), copies);
+        } finally {
+            Files.deleteIfExists(configFile);
+        }
+    }
+
+    private static long measure(Loader loader, int copies) throws Exception {
+        List<Object> retained = new ArrayList<>(copies);
+        long before = usedHeap();
+
+        for (int i = 0; i < copies; ++i) {
+            retained.add(loader.load());
+        }
+
+        long after = usedHeap();
+
+        if (retained.size() != copies) { // Keeps the copies reachable until the heap has been measured
+            throw new IllegalStateException();
+        }
+
+        return (after - before) / copies;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+
+        // Collections are repeated until the used heap stops shrinking
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            Thread.sleep(50);
+
+            long current = runtime.totalMemory() - runtime.freeMemory();
+
+            if (current >= used) {
+                break;
+            }
+
+            used = current;
+        }
+
+        return used;
+    }
+
+    private static void report(String model, long bytesPerCopy, int copies) {
+        System.out.printf("%-8s %8d copies %,12d bytes per document%n", model, copies, bytesPerCopy);
+    }
+
+    private interface Loader {
+        Object load() throws Exception;
+    }
+
+    private static final class DOMLoader implements Loader {
+        private final Path configFile;
+
+        private DOMLoader(Path configFile) {
+            this.configFile = configFile;
+        }
+
+        @Override
+        public Object load() throws Exception {
+            return new XMLConfigIO(configFile.toString());
+        }
+    }
+
+    private static final class CompactLoader implements Loader {
+        private final Path configFile;
+
+        private CompactLoader(Path configFile) {
+            this.configFile = configFile;
+        }
+
+        @Override
+        public Object load() throws Exception {
+            return new CompactXMLConfigIO(configFile.toString());
+        }
+    }
+}
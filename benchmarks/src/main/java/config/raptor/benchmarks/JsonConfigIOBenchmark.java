@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.json.JsonConfigIO;
+import config.raptor.xml.XMLConfigIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads, queries and saves the same generated config as JSON and as XML
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonConfigIOBenchmark {
+    private static final String JSON_PATH = "$.APIManager.AuthManager[0].Password";
+    private static final String XML_PATH = "/APIManager/AuthManager/Password";
+
+    // Sections repeat from 1MB on, which makes the repeated elements arrays in JSON
+    @Param({"1MB", "10MB"})
+    public String size;
+
+    private Path jsonFile;
+    private Path xmlFile;
+    private JsonConfigIO jsonConfigIO;
+    private XMLConfigIO xmlConfigIO;
+    private int saveCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jsonFile = ConfigDocuments.generateJson(size);
+        xmlFile = ConfigDocuments.generate(size);
+        jsonConfigIO = new JsonConfigIO(jsonFile.toString());
+        xmlConfigIO = new XMLConfigIO(xmlFile.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(jsonFile);
+        Files.deleteIfExists(xmlFile);
+    }
+
+    @Benchmark
+    public JsonConfigIO loadJson() throws Exception {
+        return new JsonConfigIO(jsonFile.toString());
+    }
+
+    @Benchmark
+    public XMLConfigIO loadXml() throws Exception {
+        return new XMLConfigIO(xmlFile.toString());
+    }
+
+    @Benchmark
+    public Object getJson() throws Exception {
+        return jsonConfigIO.getConfigOperator().getConfig(JSON_PATH);
+    }
+
+    @Benchmark
+    public Object getXml() throws Exception {
+        return xmlConfigIO.getConfigOperator().getConfig(XML_PATH);
+    }
+
+    // A value is changed each time to have every save write the file
+    @Benchmark
+    public boolean saveJson() throws Exception {
+        jsonConfigIO.getConfigOperator().updateConfig(JSON_PATH, "password" + (++saveCount % 2));
+        return jsonConfigIO.saveIfChanged();
+    }
+
+    @Benchmark
+    public boolean saveXml() throws Exception {
+        xmlConfigIO.getConfigOperator().updateAllConfigValues(XML_PATH, "password" + (++saveCount % 2));
+        return xmlConfigIO.saveIfChanged();
+    }
+}
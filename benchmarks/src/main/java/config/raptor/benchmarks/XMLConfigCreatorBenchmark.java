@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.XMLConfigCreator;
+import config.raptor.xml.XMLConfigIO;
+import config.raptor.xml.XMLConfigTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class XMLConfigCreatorBenchmark {
+    static final String SIMPLE_CONFIG = "<Password>wso2carbon</Password>";
+    static final String ENVIRONMENT_CONFIG =
+            "<Environment type=\"hybrid\" api-console=\"true\">" +
+                "<Name>Production and Sandbox</Name>" +
+                "<Description>Description of environment</Description>" +
+                "<ServerURL>https://localhost:9443/services/</ServerURL>" +
+                "<Username>admin</Username>" +
+                "<Password>admin</Password>" +
+                "<GatewayEndpoint>http://localhost:8280,https://localhost:8243</GatewayEndpoint>" +
+            "</Environment>";
+    static final String ENVIRONMENT_TEMPLATE =
+            "<Environment type=\"{{type}}\" api-console=\"true\">" +
+                "<Name>{{name}}</Name>" +
+                "<Description>Description of environment</Description>" +
+                "<ServerURL>https://localhost:9443/services/</ServerURL>" +
+                "<Username>admin</Username>" +
+                "<Password>{{password}}</Password>" +
+                "<GatewayEndpoint>http://localhost:8280,https://localhost:8243</GatewayEndpoint>" +
+            "</Environment>";
+
+    private Path configFile;
+    private XMLConfigCreator configCreator;
+    private XMLConfigCreator uncachedConfigCreator;
+    private XMLConfigTemplate environmentTemplate;
+    private Map<String, String> environmentValues;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = ConfigDocuments.copySeed();
+        configCreator = new XMLConfigIO(configFile.toString()).getConfigCreator();
+        configCreator.setFragmentCacheEnabled(true);
+        uncachedConfigCreator = new XMLConfigIO(configFile.toString()).getConfigCreator();
+        environmentTemplate = configCreator.createTemplate(ENVIRONMENT_TEMPLATE);
+
+        environmentValues = new HashMap<>();
+        environmentValues.put("type", "hybrid");
+        environmentValues.put("name", "Production and Sandbox");
+        environmentValues.put("password", "admin");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    public Node createSimpleConfig() throws Exception {
+        return configCreator.createConfig(SIMPLE_CONFIG);
+    }
+
+    @Benchmark
+    public Node createEnvironmentConfig() throws Exception {
+        return configCreator.createConfig(ENVIRONMENT_CONFIG);
+    }
+
+    @Benchmark
+    public Node createEnvironmentConfigUncached() throws Exception {
+        return uncachedConfigCreator.createConfig(ENVIRONMENT_CONFIG);
+    }
+
+    @Benchmark
+    public Node createEnvironmentFromTemplate() throws Exception {
+        return environmentTemplate.create(environmentValues);
+    }
+
+    @Benchmark
+    public Node buildEnvironmentConfig() throws Exception {
+        return configCreator.buildConfig("Environment")
+                .attribute("type", "hybrid")
+                .attribute("api-console", "true")
+                .child("Name", "Production and Sandbox")
+                .child("Description", "Description of environment")
+                .child("ServerURL", "https://localhost:9443/services/")
+                .child("Username", "admin")
+                .child("Password", "admin")
+                .child("GatewayEndpoint", "http://localhost:8280,https://localhost:8243")
+                .build();
+    }
+}
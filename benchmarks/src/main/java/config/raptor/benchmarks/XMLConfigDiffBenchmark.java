@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.XMLConfigDiff;
+import config.raptor.xml.XMLConfigIO;
+import config.raptor.xml.XMLConfigOperation;
+import config.raptor.xml.XMLConfigOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs a generated config against a copy with a few changes, as when carrying local edits over to a new version of
+ * a config, and against an unchanged copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class XMLConfigDiffBenchmark {
+    @Param({"1MB", "10MB"})
+    public String size;
+
+    private Path configFile;
+    private XMLConfigIO base;
+    private XMLConfigIO unchanged;
+    private XMLConfigIO changed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = ConfigDocuments.generate(size);
+        base = new XMLConfigIO(configFile.toString());
+        unchanged = new XMLConfigIO(configFile.toString());
+        changed = new XMLConfigIO(configFile.toString());
+
+        XMLConfigOperator configOperator = changed.getConfigOperator();
+        configOperator.updateAllConfigValues("/APIManager/AuthManager/Password", "secret");
+        configOperator.setAllConfigAttributes("//Environments/Environment", "api-console", "false");
+        configOperator.removeConfig("//Environments/Environment/Description");
+        configOperator.addConfig("/APIManager/AuthManager", configOperator.getConfig("/APIManager/AuthManager"),
+                                 XMLConfigOperator.Position.BEFORE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    public List<XMLConfigOperation> diffChanged() throws Exception {
+        return XMLConfigDiff.diff(base, changed);
+    }
+
+    @Benchmark
+    public List<XMLConfigOperation> diffUnchanged() throws Exception {
+        return XMLConfigDiff.diff(base, unchanged);
+    }
+}
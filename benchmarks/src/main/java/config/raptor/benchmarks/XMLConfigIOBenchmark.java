@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.XMLConfigIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class XMLConfigIOBenchmark {
+    private static final String UPDATED_PATH = "/APIManager/AuthManager/Password";
+
+    @Param({"10KB", "1MB", "10MB", "100MB"})
+    public String size;
+
+    private Path configFile;
+    private XMLConfigIO configIO;
+    private int saveCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = ConfigDocuments.generate(size);
+        configIO = new XMLConfigIO(configFile.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    public XMLConfigIO load() throws Exception {
+        return new XMLConfigIO(configFile.toString());
+    }
+
+    // Saving skips files that would not change, so a value is changed each time to have every save write the file
+    @Benchmark
+    public boolean save() throws Exception {
+        configIO.getConfigOperator().updateAllConfigValues(UPDATED_PATH, "password" + (++saveCount % 2));
+        return configIO.saveIfChanged();
+    }
+
+    @Benchmark
+    public boolean saveUnchanged() throws Exception {
+        return configIO.saveIfChanged();
+    }
+}
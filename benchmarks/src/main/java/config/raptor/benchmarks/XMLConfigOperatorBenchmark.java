@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.benchmarks;
+
+import config.raptor.xml.XMLConfigIO;
+import config.raptor.xml.XMLConfigOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Node;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each XMLConfigOperator operation against generated documents. Mutating benchmarks undo their change through the
+ * DOM so every invocation sees the same document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class XMLConfigOperatorBenchmark {
+    static final String CHILD_PATH = "/APIManager/AuthManager/ServerURL";
+    static final String DESCENDANT_PATH = "//APIGateway/Environments/Environment/Password";
+    static final String MISSING_PATH = "//NonExistingConfig";
+    static final String PREDICATE_PATH = "//Environment[@type='hybrid']/Password";
+    // The explicit axis is outside what the operator walks itself, so this goes through the XPath engine
+    static final String XPATH_ENGINE_PATH = "//Environment[@type='hybrid']/child::Password";
+
+    @Param({"10KB", "1MB", "10MB", "100MB"})
+    public String size;
+
+    private Path configFile;
+    XMLConfigOperator configOperator;
+    private Node newPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        configFile = ConfigDocuments.generate(size);
+        XMLConfigIO configIO = new XMLConfigIO(configFile.toString());
+        configOperator = configIO.getConfigOperator();
+        newPassword = configIO.getConfigCreator().createConfig("<Password>wso2carbon</Password>");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(configFile);
+    }
+
+    @Benchmark
+    public boolean isConfigExists() throws Exception {
+        return configOperator.isConfigExists(DESCENDANT_PATH);
+    }
+
+    @Benchmark
+    public boolean isConfigExistsMissing() throws Exception {
+        return configOperator.isConfigExists(MISSING_PATH);
+    }
+
+    @Benchmark
+    public Node getConfigChildPath() throws Exception {
+        return configOperator.getConfig(CHILD_PATH);
+    }
+
+    @Benchmark
+    public Node getConfigDescendantPath() throws Exception {
+        return configOperator.getConfig(DESCENDANT_PATH);
+    }
+
+    @Benchmark
+    public List<Node> getAllConfigsDescendantPath() throws Exception {
+        return configOperator.getAllConfigs(DESCENDANT_PATH);
+    }
+
+    @Benchmark
+    public Node getConfigPredicatePath() throws Exception {
+        return configOperator.getConfig(PREDICATE_PATH);
+    }
+
+    @Benchmark
+    public Node getConfigXPathEngine() throws Exception {
+        return configOperator.getConfig(XPATH_ENGINE_PATH);
+    }
+
+    @Benchmark
+    public boolean updateConfig() throws Exception {
+        return configOperator.updateConfig(DESCENDANT_PATH, newPassword);
+    }
+
+    @Benchmark
+    public boolean addConfigBefore() throws Exception {
+        return addAndUndo(XMLConfigOperator.Position.BEFORE);
+    }
+
+    @Benchmark
+    public boolean addConfigAt() throws Exception {
+        return addAndUndo(XMLConfigOperator.Position.AT);
+    }
+
+    @Benchmark
+    public boolean addConfigAfter() throws Exception {
+        return addAndUndo(XMLConfigOperator.Position.AFTER);
+    }
+
+    @Benchmark
+    public boolean removeConfig(RemovedConfig removedConfig) throws Exception {
+        return configOperator.removeConfig(DESCENDANT_PATH);
+    }
+
+    private boolean addAndUndo(XMLConfigOperator.Position position) throws Exception {
+        Node config = newPassword.cloneNode(true);
+        boolean isAdded = configOperator.addConfig(DESCENDANT_PATH, config, position);
+        config.getParentNode().removeChild(config);
+
+        return isAdded;
+    }
+
+    /**
+     * Puts back the node removed by each removeConfig invocation.
+     */
+    @State(Scope.Thread)
+    public static class RemovedConfig {
+        private Node parent;
+        private Node nextSibling;
+        private Node removed;
+
+        @Setup(Level.Invocation)
+        public void capture(XMLConfigOperatorBenchmark benchmark) throws Exception {
+            removed = benchmark.configOperator.getConfig(DESCENDANT_PATH);
+            parent = removed.getParentNode();
+            nextSibling = removed.getNextSibling();
+        }
+
+        @TearDown(Level.Invocation)
+        public void restore() {
+            parent.insertBefore(removed, nextSibling);
+        }
+    }
+}
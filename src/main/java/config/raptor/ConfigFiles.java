@@ -0,0 +1,298 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reads and writes whole config files.
+ *
+ * Large files are read by mapping them into memory, so parsers read straight from the page cache without copying
+ * the file into the heap first. Files are written to a temporary file next to them which is flushed to disk and
+ * then renamed over the original, so a crash while saving leaves either the old or the new file, never a mix.
+ */
+public final class ConfigFiles {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // Mapping has a fixed cost, so smaller files are cheaper to read into the heap
+    static final long MAPPING_THRESHOLD = 256 * 1024;
+
+    // Windows cannot replace a file that is still mapped, which saving would need to do
+    private static final boolean isMappingSupported = File.separatorChar == '/';
+
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException, ConfigException;
+    }
+
+    private ConfigFiles() {
+    }
+
+    /**
+     * @return the content of the file, positioned at its start
+     */
+    public static ByteBuffer read(Path file) throws IOException {
+        return read(file, isMappingSupported);
+    }
+
+    /**
+     * Reads the file into the heap, for content that is kept after it is loaded. A mapping shows changes other
+     * processes make to the file in place, and fails when read after the file was truncated.
+     *
+     * @return the content of the file, positioned at its start
+     */
+    public static ByteBuffer readCopy(Path file) throws IOException {
+        return read(file, false);
+    }
+
+    private static ByteBuffer read(Path file, boolean isMappingAllowed) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("The file " + file + " is too large to be loaded, its size is " + size);
+            }
+
+            if (isMappingAllowed && size >= MAPPING_THRESHOLD) {
+                // The mapping stays valid after the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer content = ByteBuffer.allocate((int) size);
+
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // Keep reading until the buffer is full
+            }
+
+            content.flip();
+
+            return content;
+        }
+    }
+
+    /**
+     * @return a stream reading the remaining content of the buffer, leaving the position of the buffer unchanged
+     */
+    public static InputStream newInputStream(ByteBuffer content) {
+        final ByteBuffer buffer = content.duplicate();
+
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+
+                length = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, length);
+
+                return length;
+            }
+
+            @Override
+            public long skip(long count) {
+                int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+                buffer.position(buffer.position() + skipped);
+
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /**
+     * @return a digest for hashing file content, so that content can be compared with what was loaded or saved
+     * before without keeping it
+     */
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) { // Every Java platform has to support SHA-256
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * @return the hash of the remaining content of the buffer, leaving the position of the buffer unchanged
+     */
+    public static byte[] hash(ByteBuffer content) {
+        MessageDigest digest = newContentDigest();
+        digest.update(content.duplicate());
+
+        return digest.digest();
+    }
+
+    /**
+     * Replaces the file with the remaining content of the buffer, leaving the position of the buffer unchanged
+     */
+    public static void write(Path file, ByteBuffer content) throws ConfigException {
+        final ByteBuffer buffer = content.duplicate();
+
+        write(file, new ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                if (buffer.hasArray()) {
+                    out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                }
+                else {
+                    byte[] chunk = new byte[Math.min(DEFAULT_BUFFER_SIZE, buffer.remaining())];
+
+                    while (buffer.hasRemaining()) {
+                        int length = Math.min(chunk.length, buffer.remaining());
+                        buffer.get(chunk, 0, length);
+                        out.write(chunk, 0, length);
+                    }
+                }
+            }
+        }, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Replaces the file with what the writer writes. The file is left unchanged if the writer fails.
+     *
+     * @param bufferSize number of bytes buffered before each write to the file
+     */
+    public static void write(Path file, ContentWriter writer, int bufferSize) throws ConfigException {
+        write(file, writer, bufferSize, false, null);
+    }
+
+    /**
+     * Replaces the file with the remaining content of the buffer, unless that is the content the file already has.
+     *
+     * @param fileHash hash of the content the file has, see {@link #hash(ByteBuffer)}, null if not known
+     * @return hash of the content, which equals the given hash when the file was left as it was
+     */
+    public static byte[] writeIfChanged(Path file, ByteBuffer content, byte[] fileHash) throws ConfigException {
+        byte[] contentHash = hash(content);
+
+        if (!MessageDigest.isEqual(contentHash, fileHash)) {
+            write(file, content);
+        }
+
+        return contentHash;
+    }
+
+    /**
+     * Replaces the file with what the writer writes, unless that is the content the file already has. The content
+     * is written to a temporary file while it is hashed, which is then dropped instead of replacing the file, so the
+     * file is not touched at all.
+     *
+     * @param fileHash hash of the content the file has, see {@link #hash(ByteBuffer)}, null if not known
+     * @return hash of the content, which equals the given hash when the file was left as it was
+     */
+    public static byte[] writeIfChanged(Path file, ContentWriter writer, int bufferSize, byte[] fileHash)
+                                                                                            throws ConfigException {
+        return write(file, writer, bufferSize, true, fileHash);
+    }
+
+    // Returns the hash of the content if it is hashed, null otherwise
+    private static byte[] write(Path file, ContentWriter writer, int bufferSize, boolean isHashed,
+                                byte[] fileHash) throws ConfigException {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+        }
+
+        Path target = file.toAbsolutePath();
+        Path temp;
+
+        try {
+            temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        } catch (IOException e) {
+            throw new ConfigException("Error creating temporary file for " + file, e);
+        }
+
+        try {
+            byte[] contentHash = null;
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize);
+                MessageDigest digest = isHashed ? newContentDigest() : null;
+
+                writer.write(digest != null ? new DigestOutputStream(out, digest) : out);
+                out.flush();
+
+                if (digest != null) {
+                    contentHash = digest.digest();
+
+                    if (MessageDigest.isEqual(contentHash, fileHash)) {
+                        return contentHash;
+                    }
+                }
+
+                channel.force(false);
+            }
+
+            copyPermissions(target, temp);
+
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return contentHash;
+        } catch (IOException e) {
+            throw new ConfigException("Error writing file " + file, e);
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // Nothing more can be done about a stray temporary file
+            }
+        }
+    }
+
+    // Temporary files are only readable by their owner, the replaced file keeps the permissions it had
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if (!Files.exists(from)) {
+            return;
+        }
+
+        try {
+            Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system, the default permissions of new files apply
+        }
+    }
+}
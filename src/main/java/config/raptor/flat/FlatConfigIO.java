@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+import config.raptor.ConfigFiles;
+import config.raptor.ConfigIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Loads a config file of key and value lines, such as a {@code .properties} file, and saves the changes made through
+ * its {@link FlatConfigOperator} by rewriting only the lines that changed. Saves that would not change the file are
+ * skipped.
+ */
+public class FlatConfigIO implements ConfigIO {
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    public enum Format {
+        /**
+         * The syntax of {@link java.util.Properties}, in ISO-8859-1 unless another charset is given. Characters the
+         * charset cannot encode are written as {@code \}{@code uxxxx} escapes.
+         */
+        PROPERTIES(new PropertiesSyntax(), StandardCharsets.ISO_8859_1),
+
+        /**
+         * The flat subset of YAML, {@code key: value} lines without nesting or lists, in UTF-8 unless another charset
+         * is given
+         */
+        YAML(new YamlSyntax(), StandardCharsets.UTF_8);
+
+        private final FlatSyntax syntax;
+        private final Charset defaultCharset;
+
+        Format(FlatSyntax syntax, Charset defaultCharset) {
+            this.syntax = syntax;
+            this.defaultCharset = defaultCharset;
+        }
+
+        public Charset getDefaultCharset() {
+            return defaultCharset;
+        }
+    }
+
+    private final File file;
+    private final Charset charset;
+    private final boolean hasByteOrderMark;
+    private final FlatConfigOperator configOperator;
+    // Hash of the file content last loaded or saved, to tell whether the file was changed by someone else
+    private byte[] contentHash;
+
+    public FlatConfigIO(String filePath, Format format) throws IOException, ConfigException {
+        this(filePath, format, format.getDefaultCharset());
+    }
+
+    public FlatConfigIO(String filePath, Format format, Charset charset) throws IOException, ConfigException {
+        file = new File(filePath);
+
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("The file path " + filePath + " provided is not a valid file");
+        }
+
+        this.charset = charset;
+
+        ByteBuffer source = ConfigFiles.read(file.toPath());
+        contentHash = ConfigFiles.hash(source);
+
+        String text;
+
+        try {
+            text = charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).
+                    onUnmappableCharacter(CodingErrorAction.REPORT).decode(source.duplicate()).toString();
+        } catch (CharacterCodingException e) {
+            throw new ConfigException("The file " + file + " is not encoded in " + charset.name(), e);
+        }
+
+        // The mark is not part of the first key, it is written back when saving
+        hasByteOrderMark = !text.isEmpty() && text.charAt(0) == BYTE_ORDER_MARK;
+
+        configOperator = new FlatConfigOperator(format.syntax, hasByteOrderMark ? text.substring(1) : text);
+    }
+
+    public FlatConfigOperator getConfigOperator() {
+        return configOperator;
+    }
+
+    @Override
+    public void save() throws ConfigException {
+        saveIfChanged();
+    }
+
+    /**
+     * Saves the config unless neither the config nor the file changed since it was loaded or last saved
+     *
+     * @return true if the file was written
+     */
+    public synchronized boolean saveIfChanged() throws ConfigException {
+        byte[] fileHash;
+
+        try {
+            fileHash = ConfigFiles.hash(ConfigFiles.read(file.toPath()));
+        } catch (IOException e) { // Such as when the file was deleted, it is written again
+            fileHash = null;
+        }
+
+        if (!configOperator.isModified() && Arrays.equals(fileHash, contentHash)) {
+            return false;
+        }
+
+        CharsetEncoder encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPORT).
+                onUnmappableCharacter(CodingErrorAction.REPORT);
+        String text = configOperator.getContent(encoder);
+        ByteBuffer content;
+
+        try {
+            content = encoder.reset().encode(CharBuffer.wrap(hasByteOrderMark ? BYTE_ORDER_MARK + text : text));
+        } catch (CharacterCodingException e) {
+            throw new ConfigException("The config cannot be encoded in " + charset.name(), e);
+        }
+
+        contentHash = ConfigFiles.writeIfChanged(file.toPath(), content, fileHash);
+
+        // Offsets of the entries are taken from the saved text, so later saves rewrite only what changes after this
+        configOperator.load(text);
+
+        return !Arrays.equals(contentHash, fileHash);
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads and changes the entries of a flat config file by key.
+ *
+ * The text of the file is kept as it was loaded, with the offsets of each entry in it, and the entries are indexed by
+ * key in an open addressing hash table of entry numbers, so lookups and changes take constant time and the index
+ * holds no objects of its own. Saving copies the text as it is except for the values that were changed, the entries
+ * that were removed and the entries added at the end, so comments, blank lines and the layout of untouched lines are
+ * kept byte for byte.
+ *
+ * A key written more than once has the value of its last entry, as {@link java.util.Properties} reads it. Updating
+ * the key changes that entry, while removing it removes every entry with the key.
+ */
+public class FlatConfigOperator {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_ENTRY = -1;
+
+    private final FlatSyntax syntax;
+    private String text;
+    private String lineSeparator;
+    // What goes between key and value of added entries, copied from the last entry of the file
+    private String separator;
+
+    // The entries in the order they are written, those read from the text followed by those added since
+    private int entryCount;
+    private int loadedEntryCount;
+    private String[] keys;
+    private String[] values;
+    private int[] lineStarts;
+    // Where the line ends after its line terminator, the text removing the entry removes
+    private int[] lineEnds;
+    private int[] valueStarts;
+    private int[] valueEnds;
+    // The entry before with the same key, or NO_ENTRY
+    private int[] previousEntries;
+    private final BitSet updatedEntries = new BitSet();
+    private final BitSet removedEntries = new BitSet();
+
+    // Entry number plus one of each key, zero for free slots, probed linearly from the hash of the key
+    private int[] slots;
+    private int keyCount;
+    private boolean isModified;
+
+    // No external construction allowed, the operator works on the text its config IO read
+    FlatConfigOperator(FlatSyntax syntax, String text) throws ConfigException {
+        this.syntax = syntax;
+        load(text);
+    }
+
+    public boolean isConfigExists(String key) {
+        return find(key) != NO_ENTRY;
+    }
+
+    /**
+     * @return the value of the key, null if the key has no entry
+     */
+    public String getConfig(String key) {
+        int entry = find(key);
+
+        return entry != NO_ENTRY ? values[entry] : null;
+    }
+
+    /**
+     * @return the keys in the order their entries are written, each key once
+     */
+    public List<String> getKeys() {
+        List<String> entryKeys = new ArrayList<>(keyCount);
+
+        for (int entry = 0; entry < entryCount; ++entry) {
+            if (!removedEntries.get(entry) && find(keys[entry]) == entry) {
+                entryKeys.add(keys[entry]);
+            }
+        }
+
+        return Collections.unmodifiableList(entryKeys);
+    }
+
+    /**
+     * @return number of keys
+     */
+    public int size() {
+        return keyCount;
+    }
+
+    /**
+     * Replaces the value of the key. Only the value is rewritten when saving, the key, separator and any comment after
+     * the value are kept as written.
+     *
+     * @return false if the key has no entry
+     */
+    public boolean updateConfig(String key, String value) {
+        int entry = find(key);
+
+        if (entry == NO_ENTRY) {
+            return false;
+        }
+
+        if (!values[entry].equals(value)) {
+            values[entry] = value;
+            updatedEntries.set(entry);
+            isModified = true;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds an entry for the key at the end of the file
+     *
+     * @return false if the key already has an entry
+     */
+    public boolean addConfig(String key, String value) throws ConfigException {
+        if (!syntax.isValidKey(key)) {
+            throw new ConfigException("The key '" + key + "' cannot be written in this format");
+        }
+
+        if (find(key) != NO_ENTRY) {
+            return false;
+        }
+
+        int entry = appendEntry(key, value, -1, -1, -1, -1);
+        insert(entry);
+        isModified = true;
+
+        return true;
+    }
+
+    /**
+     * Removes every entry of the key, along with the lines they are written on
+     *
+     * @return false if the key has no entry
+     */
+    public boolean removeConfig(String key) {
+        int entry = find(key);
+
+        if (entry == NO_ENTRY) {
+            return false;
+        }
+
+        remove(key);
+
+        for (; entry != NO_ENTRY; entry = previousEntries[entry]) {
+            removedEntries.set(entry);
+        }
+
+        isModified = true;
+
+        return true;
+    }
+
+    /**
+     * Reads the entries of the text, dropping every change made so far
+     */
+    void load(String newText) throws ConfigException {
+        text = newText;
+        lineSeparator = null;
+        separator = null;
+        entryCount = 0;
+        keyCount = 0;
+        keys = new String[INITIAL_CAPACITY];
+        values = new String[INITIAL_CAPACITY];
+        lineStarts = new int[INITIAL_CAPACITY];
+        lineEnds = new int[INITIAL_CAPACITY];
+        valueStarts = new int[INITIAL_CAPACITY];
+        valueEnds = new int[INITIAL_CAPACITY];
+        previousEntries = new int[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY * 2];
+        updatedEntries.clear();
+        removedEntries.clear();
+
+        FlatSyntax.Line line = new FlatSyntax.Line();
+        int lineNumber = 1;
+        int offset = 0;
+
+        while (offset < text.length()) {
+            int end = syntax.readLine(text, offset, lineNumber, line);
+            int next = end;
+
+            if (next < text.length()) {
+                if (lineSeparator == null) {
+                    lineSeparator = text.startsWith("\r\n", next) ? "\r\n" : text.substring(next, next + 1);
+                }
+
+                next += text.startsWith("\r\n", next) ? 2 : 1;
+            }
+
+            if (line.key != null) {
+                int entry = appendEntry(line.key, line.value, offset, next, line.valueStart, line.valueEnd);
+                String entrySeparator = text.substring(line.keyEnd, line.valueStart);
+
+                if (!entrySeparator.isEmpty() && entrySeparator.indexOf('\n') < 0 && entrySeparator.indexOf('\r') < 0) {
+                    separator = entrySeparator;
+                }
+
+                previousEntries[entry] = find(line.key);
+
+                if (previousEntries[entry] != NO_ENTRY) {
+                    remove(line.key);
+                }
+
+                insert(entry);
+            }
+
+            // Lines going on over the next are counted as one line and those after them
+            for (int i = offset; i < end; ++i) {
+                if (text.charAt(i) == '\n' || (text.charAt(i) == '\r' && !text.startsWith("\r\n", i))) {
+                    ++lineNumber;
+                }
+            }
+
+            ++lineNumber;
+            offset = next;
+        }
+
+        loadedEntryCount = entryCount;
+        isModified = false;
+    }
+
+    /**
+     * @param encoder encoder of the file, characters it cannot encode are escaped
+     * @return the text with the changes made to it
+     */
+    String getContent(CharsetEncoder encoder) {
+        if (updatedEntries.isEmpty() && removedEntries.isEmpty() && entryCount == loadedEntryCount) {
+            return text;
+        }
+
+        StringBuilder content = new StringBuilder(text.length() + 256);
+        int copiedTo = 0;
+
+        for (int entry = 0; entry < loadedEntryCount; ++entry) {
+            if (removedEntries.get(entry)) {
+                content.append(text, copiedTo, lineStarts[entry]);
+                copiedTo = lineEnds[entry];
+            }
+            else if (updatedEntries.get(entry)) {
+                content.append(text, copiedTo, valueStarts[entry]);
+                content.append(syntax.formatValue(values[entry], encoder));
+                copiedTo = valueEnds[entry];
+            }
+        }
+
+        content.append(text, copiedTo, text.length());
+
+        String newLine = lineSeparator != null ? lineSeparator : System.lineSeparator();
+
+        for (int entry = loadedEntryCount; entry < entryCount; ++entry) {
+            if (removedEntries.get(entry)) {
+                continue;
+            }
+
+            char last = content.length() > 0 ? content.charAt(content.length() - 1) : '\n';
+
+            if (last != '\n' && last != '\r') {
+                content.append(newLine);
+            }
+
+            content.append(syntax.formatKey(keys[entry], encoder));
+            content.append(separator != null ? separator : syntax.getDefaultSeparator());
+            content.append(syntax.formatValue(values[entry], encoder));
+            content.append(newLine);
+        }
+
+        return content.toString();
+    }
+
+    /**
+     * @return whether the config was changed through the operator since it was loaded or last saved
+     */
+    boolean isModified() {
+        return isModified;
+    }
+
+    private int appendEntry(String key, String value, int lineStart, int lineEnd, int valueStart, int valueEnd) {
+        if (entryCount == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            lineEnds = Arrays.copyOf(lineEnds, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueEnds = Arrays.copyOf(valueEnds, capacity);
+            previousEntries = Arrays.copyOf(previousEntries, capacity);
+        }
+
+        int entry = entryCount++;
+        keys[entry] = key;
+        values[entry] = value;
+        lineStarts[entry] = lineStart;
+        lineEnds[entry] = lineEnd;
+        valueStarts[entry] = valueStart;
+        valueEnds[entry] = valueEnd;
+        previousEntries[entry] = NO_ENTRY;
+
+        return entry;
+    }
+
+    private int find(String key) {
+        int mask = slots.length - 1;
+
+        for (int slot = hash(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slots[slot] - 1].equals(key)) {
+                return slots[slot] - 1;
+            }
+        }
+
+        return NO_ENTRY;
+    }
+
+    // The table is kept at most half full, so probe runs stay short
+    private void insert(int entry) {
+        if ((keyCount + 1) * 2 > slots.length) {
+            int[] oldSlots = slots;
+            slots = new int[oldSlots.length * 2];
+
+            for (int oldSlot : oldSlots) {
+                if (oldSlot != 0) {
+                    place(oldSlot - 1);
+                }
+            }
+        }
+
+        place(entry);
+        ++keyCount;
+    }
+
+    private void place(int entry) {
+        int mask = slots.length - 1;
+        int slot = hash(keys[entry]) & mask;
+
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        slots[slot] = entry + 1;
+    }
+
+    // Entries after the removed one that were pushed past their slot are moved back, so no probe run is broken
+    private void remove(String key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+
+        while (!keys[slots[slot] - 1].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+
+        slots[slot] = 0;
+        --keyCount;
+
+        for (int next = (slot + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int home = hash(keys[slots[next] - 1]) & mask;
+
+            // The entry can fill the gap unless its home slot lies cyclically between the gap and where it is
+            if (slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                slots[slot] = slots[next];
+                slots[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        int hash = key.hashCode();
+
+        return hash ^ (hash >>> 16);
+    }
+}
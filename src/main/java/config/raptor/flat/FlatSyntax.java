@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * How the entries of a flat config file are written, one key and value to a line
+ */
+abstract class FlatSyntax {
+    /**
+     * An entry read from the text, with the offsets saving needs to write a new value in place of the old one
+     */
+    static final class Line {
+        // Null when the line is not an entry, such as a comment or a blank line
+        String key;
+        String value;
+        int keyEnd;
+        int valueStart;
+        int valueEnd;
+
+        void clear() {
+            key = null;
+            value = null;
+            keyEnd = -1;
+            valueStart = -1;
+            valueEnd = -1;
+        }
+    }
+
+    /**
+     * Reads the line starting at the offset, which may go on over the lines after it
+     *
+     * @param lineNumber number of the line, for error messages
+     * @return offset of the end of the line, before its line terminator
+     */
+    abstract int readLine(String text, int start, int lineNumber, Line line) throws ConfigException;
+
+    /**
+     * @param encoder encoder of the file, characters it cannot encode have to be escaped
+     */
+    abstract String formatKey(String key, CharsetEncoder encoder);
+
+    abstract String formatValue(String value, CharsetEncoder encoder);
+
+    boolean isValidKey(String key) {
+        return true;
+    }
+
+    /**
+     * @return what goes between the key and value of added entries when the file has no entry to copy it from
+     */
+    abstract String getDefaultSeparator();
+
+    /**
+     * @return offset of the next line terminator, or the end of the text
+     */
+    static int lineEnd(String text, int from) {
+        for (int i = from; i < text.length(); ++i) {
+            char c = text.charAt(i);
+
+            if (c == '\n' || c == '\r') {
+                return i;
+            }
+        }
+
+        return text.length();
+    }
+
+    static void appendUnicodeEscape(StringBuilder out, char c) {
+        out.append("\\u");
+
+        String hex = Integer.toHexString(c).toUpperCase();
+
+        for (int i = hex.length(); i < 4; ++i) {
+            out.append('0');
+        }
+
+        out.append(hex);
+    }
+
+    // Surrogates only come in pairs, which every Unicode encoding can encode
+    static boolean isEncodable(char c, CharsetEncoder encoder) {
+        if (encoder == null || c < 0x7F) {
+            return true;
+        }
+
+        return Character.isSurrogate(c) ? encoder.charset().name().startsWith("UTF") : encoder.canEncode(c);
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * The syntax {@link java.util.Properties} reads: {@code key=value}, {@code key: value} or {@code key value}, comments
+ * starting with '#' or '!', backslash escapes, and values going on over the next line after a backslash ending a
+ * line.
+ */
+final class PropertiesSyntax extends FlatSyntax {
+    @Override
+    int readLine(String text, int start, int lineNumber, Line line) throws ConfigException {
+        line.clear();
+
+        int end = lineEnd(text, start);
+        int i = skipWhitespace(text, start, end);
+
+        if (i == end || text.charAt(i) == '#' || text.charAt(i) == '!') {
+            return end;
+        }
+
+        // Find the end of the logical line, each line ending with an odd number of backslashes goes on to the next
+        while (isContinued(text, start, end) && end < text.length()) {
+            int next = end + (text.startsWith("\r\n", end) ? 2 : 1);
+            end = lineEnd(text, next);
+        }
+
+        // Continued lines are joined without their leading whitespace before the key is split from the value
+        i = skipSpace(text, i, end);
+        int keyEnd = i;
+
+        while (keyEnd < end) {
+            char c = text.charAt(keyEnd);
+
+            if (c == '\\') {
+                keyEnd = isLineBreak(text, keyEnd + 1, end) ?
+                         skipWhitespace(text, skipLineBreak(text, keyEnd + 1), end) : keyEnd + 2;
+                continue;
+            }
+
+            if (c == '=' || c == ':' || isWhitespace(c)) {
+                break;
+            }
+
+            ++keyEnd;
+        }
+
+        keyEnd = Math.min(keyEnd, end);
+
+        int valueStart = skipSpace(text, keyEnd, end);
+
+        if (valueStart < end && (text.charAt(valueStart) == '=' || text.charAt(valueStart) == ':')) {
+            valueStart = skipSpace(text, valueStart + 1, end);
+        }
+
+        line.key = unescape(text, i, keyEnd, lineNumber);
+        line.value = unescape(text, valueStart, end, lineNumber);
+        line.keyEnd = keyEnd;
+        line.valueStart = valueStart;
+        line.valueEnd = end;
+
+        return end;
+    }
+
+    @Override
+    String formatKey(String key, CharsetEncoder encoder) {
+        return escape(key, true, encoder);
+    }
+
+    @Override
+    String formatValue(String value, CharsetEncoder encoder) {
+        return escape(value, false, encoder);
+    }
+
+    @Override
+    String getDefaultSeparator() {
+        return "=";
+    }
+
+    // Keys have every space escaped as a space ends the key, values only leading spaces which would be skipped
+    private static String escape(String text, boolean isKey, CharsetEncoder encoder) {
+        StringBuilder out = new StringBuilder(text.length() + 8);
+
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case ' ':
+                    out.append(isKey || i == 0 ? "\\ " : " ");
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    if (isKey || i == 0) {
+                        out.append('\\');
+                    }
+
+                    out.append(c);
+                    break;
+                default:
+                    if (c < 0x20 || !isEncodable(c, encoder)) {
+                        appendUnicodeEscape(out, c);
+                    }
+                    else {
+                        out.append(c);
+                    }
+            }
+        }
+
+        return out.toString();
+    }
+
+    private static String unescape(String text, int start, int end, int lineNumber) throws ConfigException {
+        int firstEscape = start;
+
+        while (firstEscape < end && text.charAt(firstEscape) != '\\') {
+            ++firstEscape;
+        }
+
+        if (firstEscape == end) {
+            return text.substring(start, end);
+        }
+
+        StringBuilder out = new StringBuilder(end - start);
+        out.append(text, start, firstEscape);
+
+        for (int i = firstEscape; i < end; ++i) {
+            char c = text.charAt(i);
+
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+
+            if (++i == end) {
+                break;
+            }
+
+            c = text.charAt(i);
+
+            switch (c) {
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'u':
+                    if (i + 5 > end) {
+                        throw new ConfigException("Malformed \\uxxxx escape on line " + lineNumber);
+                    }
+
+                    try {
+                        out.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        throw new ConfigException("Malformed \\uxxxx escape on line " + lineNumber, e);
+                    }
+
+                    i += 4;
+                    break;
+                case '\r':
+                case '\n':
+                    // A line going on over the next, whose leading whitespace is not part of the value
+                    i = skipWhitespace(text, skipLineBreak(text, i), end) - 1;
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+
+        return out.toString();
+    }
+
+    private static boolean isContinued(String text, int start, int end) {
+        int backslashes = 0;
+
+        for (int i = end - 1; i >= start && text.charAt(i) == '\\'; --i) {
+            ++backslashes;
+        }
+
+        return backslashes % 2 == 1;
+    }
+
+    // Skips whitespace, going on over the next line after a backslash ending a line
+    private static int skipSpace(String text, int from, int end) {
+        int i = skipWhitespace(text, from, end);
+
+        while (i < end && text.charAt(i) == '\\' && isLineBreak(text, i + 1, end)) {
+            i = skipWhitespace(text, skipLineBreak(text, i + 1), end);
+        }
+
+        return i;
+    }
+
+    private static boolean isLineBreak(String text, int i, int end) {
+        return i < end && (text.charAt(i) == '\r' || text.charAt(i) == '\n');
+    }
+
+    // Returns the index after the line break at the index
+    private static int skipLineBreak(String text, int i) {
+        return text.startsWith("\r\n", i) ? i + 2 : i + 1;
+    }
+
+    private static int skipWhitespace(String text, int from, int end) {
+        int i = from;
+
+        while (i < end && isWhitespace(text.charAt(i))) {
+            ++i;
+        }
+
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+}
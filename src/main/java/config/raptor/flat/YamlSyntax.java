@@ -0,0 +1,302 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+
+import java.nio.charset.CharsetEncoder;
+
+/**
+ * The flat subset of YAML: {@code key: value} lines with plain, single quoted or double quoted values, comments
+ * starting with '#' on lines of their own or after values, and document markers. Nested mappings, lists and block
+ * values are not flat and are rejected.
+ *
+ * Values are read as strings, so {@code port: 8080} has the value {@code "8080"}, and an empty value is an empty
+ * string.
+ */
+final class YamlSyntax extends FlatSyntax {
+    private static final String INDICATORS = "-?:,[]{}#&*!|>'\"%@`";
+
+    @Override
+    int readLine(String text, int start, int lineNumber, Line line) throws ConfigException {
+        line.clear();
+
+        int end = lineEnd(text, start);
+        int i = skipSpaces(text, start, end);
+
+        if (i == end || text.charAt(i) == '#' || isDocumentMarker(text, start, end)) {
+            return end;
+        }
+
+        if (i > start) {
+            throw new ConfigException("Line " + lineNumber + " is indented, nested values are not supported");
+        }
+
+        if (text.charAt(i) == '-' && (i + 1 == end || text.charAt(i + 1) == ' ')) {
+            throw new ConfigException("Line " + lineNumber + " is a list item, lists are not supported");
+        }
+
+        int keyEnd = findKeyEnd(text, start, end);
+
+        if (keyEnd < 0 || INDICATORS.indexOf(text.charAt(start)) >= 0) {
+            throw new ConfigException("Line " + lineNumber + " is not a 'key: value' pair");
+        }
+
+        int valueStart = skipSpaces(text, keyEnd + 1, end);
+        int valueEnd;
+        String value;
+
+        if (valueStart < end && (text.charAt(valueStart) == '"' || text.charAt(valueStart) == '\'')) {
+            StringBuilder quoted = new StringBuilder();
+            valueEnd = text.charAt(valueStart) == '"' ? readDoubleQuoted(text, valueStart, end, quoted, lineNumber) :
+                                                        readSingleQuoted(text, valueStart, end, quoted, lineNumber);
+            value = quoted.toString();
+
+            int rest = skipSpaces(text, valueEnd, end);
+
+            if (rest < end && (text.charAt(rest) != '#' || rest == valueEnd)) {
+                throw new ConfigException("Unexpected text after the quoted value on line " + lineNumber);
+            }
+        }
+        else {
+            valueEnd = findCommentStart(text, valueStart, end);
+
+            while (valueEnd > valueStart && (text.charAt(valueEnd - 1) == ' ' || text.charAt(valueEnd - 1) == '\t')) {
+                --valueEnd;
+            }
+
+            value = text.substring(valueStart, valueEnd);
+
+            if (value.startsWith("|") || value.startsWith(">")) {
+                throw new ConfigException("Line " + lineNumber + " starts a block value, which is not supported");
+            }
+        }
+
+        line.key = text.substring(start, keyEnd).trim();
+        line.value = value;
+        line.keyEnd = keyEnd;
+        line.valueStart = valueStart;
+        line.valueEnd = valueEnd;
+
+        return end;
+    }
+
+    @Override
+    String formatKey(String key, CharsetEncoder encoder) {
+        return key;
+    }
+
+    @Override
+    String formatValue(String value, CharsetEncoder encoder) {
+        if (isPlain(value, encoder)) {
+            return value;
+        }
+
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        out.append('"');
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || !isEncodable(c, encoder)) {
+                        appendUnicodeEscape(out, c);
+                    }
+                    else {
+                        out.append(c);
+                    }
+            }
+        }
+
+        return out.append('"').toString();
+    }
+
+    @Override
+    String getDefaultSeparator() {
+        return ": ";
+    }
+
+    // Keys are not read quoted, so only keys that can be written plain are valid
+    @Override
+    boolean isValidKey(String key) {
+        if (key.isEmpty() || INDICATORS.indexOf(key.charAt(0)) >= 0 || !key.equals(key.trim())) {
+            return false;
+        }
+
+        for (int i = 0; i < key.length(); ++i) {
+            char c = key.charAt(i);
+
+            if (c < 0x20 || (c == ':' && (i + 1 == key.length() || key.charAt(i + 1) == ' ')) ||
+                (c == '#' && key.charAt(i - 1) == ' ')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Plain values read back as they are written, without quotes
+    private static boolean isPlain(String value, CharsetEncoder encoder) {
+        if (value.isEmpty() || INDICATORS.indexOf(value.charAt(0)) >= 0 || !value.equals(value.trim())) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+
+            if (c < 0x20 || !isEncodable(c, encoder) || (c == '#' && value.charAt(i - 1) == ' ') ||
+                (c == ':' && (i + 1 == value.length() || value.charAt(i + 1) == ' '))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // The key ends at the first ':' followed by a space or the end of the line
+    private static int findKeyEnd(String text, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (text.charAt(i) == ':' && (i + 1 == end || text.charAt(i + 1) == ' ' || text.charAt(i + 1) == '\t')) {
+                return i;
+            }
+
+            if (text.charAt(i) == '#' && i > start && text.charAt(i - 1) == ' ') {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    // A comment after a plain value starts with '#' after whitespace
+    private static int findCommentStart(String text, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (text.charAt(i) == '#' && (i == start || text.charAt(i - 1) == ' ' || text.charAt(i - 1) == '\t')) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    // Returns the offset just past the closing quote
+    private static int readDoubleQuoted(String text, int start, int end, StringBuilder value, int lineNumber)
+                                                                                            throws ConfigException {
+        for (int i = start + 1; i < end; ++i) {
+            char c = text.charAt(i);
+
+            if (c == '"') {
+                return i + 1;
+            }
+
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+
+            if (++i == end) {
+                break;
+            }
+
+            c = text.charAt(i);
+
+            switch (c) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case '0':
+                    value.append('\0');
+                    break;
+                case 'u':
+                    if (i + 5 > end) {
+                        throw new ConfigException("Malformed \\uxxxx escape on line " + lineNumber);
+                    }
+
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        throw new ConfigException("Malformed \\uxxxx escape on line " + lineNumber, e);
+                    }
+
+                    i += 4;
+                    break;
+                default: // '"', '\\', '/' and ' ' stand for themselves
+                    value.append(c);
+            }
+        }
+
+        throw new ConfigException("The quoted value on line " + lineNumber + " is not closed");
+    }
+
+    private static int readSingleQuoted(String text, int start, int end, StringBuilder value, int lineNumber)
+                                                                                            throws ConfigException {
+        for (int i = start + 1; i < end; ++i) {
+            char c = text.charAt(i);
+
+            if (c == '\'') {
+                if (i + 1 < end && text.charAt(i + 1) == '\'') {
+                    value.append('\'');
+                    ++i;
+                    continue;
+                }
+
+                return i + 1;
+            }
+
+            value.append(c);
+        }
+
+        throw new ConfigException("The quoted value on line " + lineNumber + " is not closed");
+    }
+
+    private static boolean isDocumentMarker(String text, int start, int end) {
+        return (text.startsWith("---", start) || text.startsWith("...", start)) &&
+               (start + 3 == end || text.charAt(start + 3) == ' ');
+    }
+
+    private static int skipSpaces(String text, int from, int end) {
+        int i = from;
+
+        while (i < end && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            ++i;
+        }
+
+        return i;
+    }
+}
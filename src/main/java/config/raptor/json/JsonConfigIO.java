@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+import config.raptor.ConfigFiles;
+import config.raptor.ConfigIO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Loads a JSON config file, which has to be encoded in UTF-8 as JSON files exchanged between systems are, and saves
+ * the changes made through its {@link JsonConfigOperator}.
+ *
+ * Saving writes the whole file again with the members of objects in the order they were read and added in, indented
+ * the way the first indented line of the loaded file was. Files written on a single line, such as minified ones, are
+ * written on a single line again without whitespace. A byte order mark starting the file is kept, and so is a line
+ * break ending it. Saves that would not change the file are skipped.
+ */
+public class JsonConfigIO implements ConfigIO {
+    private static final String DEFAULT_INDENT = "  ";
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    // Only the start of the file is looked at to find how it is indented
+    private static final int INDENT_SCAN_LIMIT = 4096;
+
+    private final File file;
+    private final int bufferSize;
+    // Null when the file is written on a single line
+    private final String indent;
+    private final boolean hasByteOrderMark;
+    private final boolean hasFinalLineBreak;
+    private final JsonConfigOperator configOperator;
+    // Hash of the file content last loaded or saved, to tell whether the file was changed by someone else
+    private byte[] contentHash;
+
+    public JsonConfigIO(String filePath) throws IOException, ConfigException {
+        this(filePath, ConfigFiles.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize number of bytes buffered before each write to the file when saving
+     */
+    public JsonConfigIO(String filePath, int bufferSize) throws IOException, ConfigException {
+        file = new File(filePath);
+
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("The file path " + filePath + " provided is not a valid file");
+        }
+
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
+
+        ByteBuffer source = ConfigFiles.read(file.toPath());
+        contentHash = ConfigFiles.hash(source);
+        hasByteOrderMark = hasByteOrderMark(source);
+        hasFinalLineBreak = source.hasRemaining() && source.get(source.limit() - 1) == '\n';
+
+        ByteBuffer content = source.duplicate();
+
+        if (hasByteOrderMark) {
+            content.position(content.position() + BYTE_ORDER_MARK.length);
+        }
+
+        indent = findIndent(content);
+
+        // The file is decoded as it is tokenized rather than into one string up front
+        Object root = JsonReader.read(new BufferedReader(new InputStreamReader(ConfigFiles.newInputStream(content),
+                                                                               StandardCharsets.UTF_8), bufferSize));
+        configOperator = new JsonConfigOperator(root);
+    }
+
+    public JsonConfigOperator getConfigOperator() {
+        return configOperator;
+    }
+
+    @Override
+    public void save() throws ConfigException {
+        saveIfChanged();
+    }
+
+    /**
+     * Saves the config unless neither the config nor the file changed since it was loaded or last saved
+     *
+     * @return true if the file was written
+     */
+    public synchronized boolean saveIfChanged() throws ConfigException {
+        byte[] fileHash;
+
+        try {
+            fileHash = ConfigFiles.hash(ConfigFiles.read(file.toPath()));
+        } catch (IOException e) { // Such as when the file was deleted, it is written again
+            fileHash = null;
+        }
+
+        if (!configOperator.isModified() && Arrays.equals(fileHash, contentHash)) {
+            return false;
+        }
+
+        contentHash = ConfigFiles.writeIfChanged(file.toPath(), new ConfigFiles.ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                if (hasByteOrderMark) {
+                    out.write(BYTE_ORDER_MARK);
+                }
+
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                new JsonWriter(writer, indent).write(configOperator.getRoot());
+
+                if (indent != null || hasFinalLineBreak) {
+                    writer.write('\n');
+                }
+
+                writer.flush();
+            }
+        }, bufferSize, fileHash);
+
+        configOperator.setModified(false);
+
+        return !Arrays.equals(contentHash, fileHash);
+    }
+
+    // The whitespace starting the first indented line, which is at the first level of nesting in files written one
+    // member per line, null for files with no line break before the line break ending them
+    private static String findIndent(ByteBuffer source) {
+        int limit = Math.min(source.limit(), source.position() + INDENT_SCAN_LIMIT);
+        int firstLineBreak = source.position();
+
+        while (firstLineBreak < limit && source.get(firstLineBreak) != '\n') {
+            ++firstLineBreak;
+        }
+
+        // A minified file longer than the scanned part has no line break in it either
+        if (firstLineBreak == limit || isBlank(source, firstLineBreak + 1)) {
+            return null;
+        }
+
+        for (int i = firstLineBreak; i < limit; ++i) {
+            if (source.get(i) != '\n') {
+                continue;
+            }
+
+            int end = i + 1;
+
+            while (end < limit && (source.get(end) == ' ' || source.get(end) == '\t')) {
+                ++end;
+            }
+
+            if (end > i + 1 && end < limit && source.get(end) != '\r' && source.get(end) != '\n') {
+                byte[] whitespace = new byte[end - i - 1];
+
+                for (int j = 0; j < whitespace.length; ++j) {
+                    whitespace[j] = source.get(i + 1 + j);
+                }
+
+                return new String(whitespace, StandardCharsets.US_ASCII);
+            }
+        }
+
+        return DEFAULT_INDENT;
+    }
+
+    private static boolean isBlank(ByteBuffer source, int from) {
+        for (int i = from; i < source.limit(); ++i) {
+            byte b = source.get(i);
+
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean hasByteOrderMark(ByteBuffer source) {
+        int start = source.position();
+
+        return source.remaining() >= BYTE_ORDER_MARK.length && source.get(start) == BYTE_ORDER_MARK[0] &&
+               source.get(start + 1) == BYTE_ORDER_MARK[1] && source.get(start + 2) == BYTE_ORDER_MARK[2];
+    }
+}
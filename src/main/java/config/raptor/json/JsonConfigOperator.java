@@ -0,0 +1,438 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and changes a JSON config through paths such as {@code $.APIManager.AuthManager.Password}, see
+ * {@link JsonPath} for the syntax.
+ *
+ * Objects are returned as maps, arrays as lists, and null as {@link JSONObject#NULL}, while methods returning a
+ * single config return null when nothing matches. Numbers are returned as Integer, Long, BigInteger or Double, or as
+ * {@link JsonNumber} where those would not be saved with the text the number was read with. Returned objects and
+ * arrays are the ones in the config, so changes have to be made through the operator. Values passed in may be maps
+ * with string keys, collections, strings, numbers, booleans, null or {@link JSONObject#NULL}, and org.json objects
+ * and arrays. They are copied in, so changing them later does not change the config.
+ */
+public class JsonConfigOperator {
+
+    public enum Position {
+        BEFORE,
+        AT,
+        AFTER
+    }
+
+    private Object root;
+    private boolean isModified;
+
+    // No external construction allowed, the operator works on the values its config IO read
+    JsonConfigOperator(Object root) {
+        this.root = root;
+    }
+
+    public boolean isConfigExists(String pathString) throws ConfigException {
+        return !find(pathString, true).isEmpty();
+    }
+
+    public Object getConfig(String pathString) throws ConfigException {
+        List<Location> locations = find(pathString, true);
+
+        return locations.isEmpty() ? null : locations.get(0).value;
+    }
+
+    /**
+     * @return every value matching the path, where {@link #getConfig(String)} returns only the first
+     */
+    public List<Object> getAllConfigs(String pathString) throws ConfigException {
+        List<Location> locations = find(pathString, false);
+        List<Object> configs = new ArrayList<>(locations.size());
+
+        for (Location location : locations) {
+            configs.add(location.value);
+        }
+
+        return configs;
+    }
+
+    /**
+     * Replaces the first value matching the path, which may be the root value
+     */
+    public boolean updateConfig(String pathString, Object value) throws ConfigException {
+        List<Location> locations = find(pathString, true);
+
+        if (locations.isEmpty()) {
+            return false;
+        }
+
+        replace(locations.get(0), toJsonValue(value));
+
+        return true;
+    }
+
+    /**
+     * @return number of values replaced
+     */
+    public int updateAllConfigs(String pathString, Object value) throws ConfigException {
+        Object jsonValue = toJsonValue(value);
+        List<Location> locations = find(pathString, false);
+
+        for (int i = 0; i < locations.size(); ++i) {
+            // Each location gets a copy of its own, so that changing one later does not change the others
+            replace(locations.get(i), i == 0 ? jsonValue : toJsonValue(jsonValue));
+        }
+
+        return locations.size();
+    }
+
+    /**
+     * Adds a member to the first object matching the path
+     *
+     * @return false if no object matches or the object already has a member with the name
+     */
+    @SuppressWarnings("unchecked")
+    public boolean addConfigMember(String pathString, String name, Object value) throws ConfigException {
+        List<Location> locations = find(pathString, true);
+
+        if (locations.isEmpty() || !(locations.get(0).value instanceof Map)) {
+            return false;
+        }
+
+        Map<String, Object> object = (Map<String, Object>) locations.get(0).value;
+
+        if (object.containsKey(name)) {
+            return false;
+        }
+
+        object.put(name, toJsonValue(value));
+        isModified = true;
+
+        return true;
+    }
+
+    /**
+     * Adds an element to an array, at the end of the first array matching the path, or before or after the first
+     * array element matching the path
+     */
+    @SuppressWarnings("unchecked")
+    public boolean addConfig(String pathString, Object value, Position position) throws ConfigException {
+        List<Location> locations = find(pathString, true);
+
+        if (locations.isEmpty()) {
+            return false;
+        }
+
+        Location location = locations.get(0);
+
+        if (position == Position.AT) {
+            if (!(location.value instanceof List)) {
+                return false;
+            }
+
+            ((List<Object>) location.value).add(toJsonValue(value));
+        }
+        else {
+            if (!(location.parent instanceof List)) {
+                return false;
+            }
+
+            int index = (Integer) location.key;
+            ((List<Object>) location.parent).add(position == Position.BEFORE ? index : index + 1, toJsonValue(value));
+        }
+
+        isModified = true;
+
+        return true;
+    }
+
+    /**
+     * Removes the first value matching the path. The root value cannot be removed.
+     */
+    public boolean removeConfig(String pathString) throws ConfigException {
+        List<Location> locations = find(pathString, true);
+
+        if (locations.isEmpty() || locations.get(0).parent == null) {
+            return false;
+        }
+
+        remove(locations.get(0));
+
+        return true;
+    }
+
+    /**
+     * @return number of values removed
+     */
+    public int removeAllConfigs(String pathString) throws ConfigException {
+        List<Location> locations = find(pathString, false);
+
+        // Later elements of an array go first, so that the indexes of the earlier ones still hold
+        Collections.sort(locations, new Comparator<Location>() {
+            @Override
+            public int compare(Location location1, Location location2) {
+                boolean isIndexed1 = location1.key instanceof Integer;
+                boolean isIndexed2 = location2.key instanceof Integer;
+
+                if (isIndexed1 && isIndexed2) {
+                    return Integer.compare((Integer) location2.key, (Integer) location1.key);
+                }
+
+                return Boolean.compare(isIndexed1, isIndexed2);
+            }
+        });
+
+        int removed = 0;
+
+        for (Location location : locations) {
+            if (location.parent != null) {
+                remove(location);
+                ++removed;
+            }
+        }
+
+        return removed;
+    }
+
+    Object getRoot() {
+        return root;
+    }
+
+    /**
+     * @return whether the config was changed through the operator since it was loaded or last saved
+     */
+    boolean isModified() {
+        return isModified;
+    }
+
+    void setModified(boolean isModified) {
+        this.isModified = isModified;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replace(Location location, Object value) {
+        if (location.parent == null) {
+            root = value;
+        }
+        else if (location.parent instanceof Map) {
+            ((Map<String, Object>) location.parent).put((String) location.key, value);
+        }
+        else {
+            ((List<Object>) location.parent).set((Integer) location.key, value);
+        }
+
+        isModified = true;
+    }
+
+    private void remove(Location location) {
+        if (location.parent instanceof Map) {
+            ((Map<?, ?>) location.parent).remove(location.key);
+        }
+        else {
+            ((List<?>) location.parent).remove((int) (Integer) location.key);
+        }
+
+        isModified = true;
+    }
+
+    private List<Location> find(String pathString, boolean isFirstOnly) throws ConfigException {
+        List<JsonPath.Step> steps = JsonPath.parse(pathString).getSteps();
+        List<Location> locations = new ArrayList<>();
+
+        find(new Location(null, null, root), steps, 0, isFirstOnly, locations);
+
+        return isFirstOnly ? locations : distinct(locations);
+    }
+
+    // Chained descendant steps can reach the same value along several routes
+    private static List<Location> distinct(List<Location> locations) {
+        Map<Object, Set<Object>> keysByParent = new IdentityHashMap<>();
+        List<Location> distinctLocations = new ArrayList<>(locations.size());
+
+        for (Location location : locations) {
+            Set<Object> keys = keysByParent.get(location.parent);
+
+            if (keys == null) {
+                keys = new HashSet<>();
+                keysByParent.put(location.parent, keys);
+            }
+
+            if (keys.add(location.key)) {
+                distinctLocations.add(location);
+            }
+        }
+
+        return distinctLocations;
+    }
+
+    // A descendant step is tried on the children of the value and then again on the values below each of them
+    private static void find(Location location, List<JsonPath.Step> steps, int depth, boolean isFirstOnly,
+                             List<Location> locations) {
+        if (isFirstOnly && !locations.isEmpty()) {
+            return;
+        }
+
+        if (depth == steps.size()) {
+            locations.add(location);
+            return;
+        }
+
+        JsonPath.Step step = steps.get(depth);
+        Object value = location.value;
+
+        if (value instanceof Map) {
+            Map<?, ?> object = (Map<?, ?>) value;
+
+            if (step.getName() != null && object.containsKey(step.getName())) {
+                find(new Location(object, step.getName(), object.get(step.getName())), steps, depth + 1,
+                     isFirstOnly, locations);
+            }
+
+            if (step.isWildcard() || step.isDescendant()) {
+                for (Map.Entry<?, ?> member : object.entrySet()) {
+                    Location child = new Location(object, member.getKey(), member.getValue());
+
+                    if (step.isWildcard()) {
+                        find(child, steps, depth + 1, isFirstOnly, locations);
+                    }
+
+                    if (step.isDescendant()) {
+                        find(child, steps, depth, isFirstOnly, locations);
+                    }
+                }
+            }
+        }
+        else if (value instanceof List) {
+            List<?> array = (List<?>) value;
+
+            if (step.getIndex() >= 0 && step.getIndex() < array.size()) {
+                find(new Location(array, step.getIndex(), array.get(step.getIndex())), steps, depth + 1,
+                     isFirstOnly, locations);
+            }
+
+            if (step.isWildcard() || step.isDescendant()) {
+                for (int i = 0; i < array.size(); ++i) {
+                    Location child = new Location(array, i, array.get(i));
+
+                    if (step.isWildcard()) {
+                        find(child, steps, depth + 1, isFirstOnly, locations);
+                    }
+
+                    if (step.isDescendant()) {
+                        find(child, steps, depth, isFirstOnly, locations);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the value made of the types the config is made of
+     */
+    static Object toJsonValue(Object value) throws ConfigException {
+        if (value == null || value == JSONObject.NULL) {
+            return JSONObject.NULL;
+        }
+
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+
+        if (value instanceof Number) {
+            if ((value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())) ||
+                (value instanceof Float && (((Float) value).isNaN() || ((Float) value).isInfinite()))) {
+                throw new ConfigException("JSON numbers cannot be " + value);
+            }
+
+            return value;
+        }
+
+        if (value instanceof Map) {
+            Map<String, Object> object = new LinkedHashMap<>();
+
+            for (Map.Entry<?, ?> member : ((Map<?, ?>) value).entrySet()) {
+                if (!(member.getKey() instanceof String)) {
+                    throw new ConfigException("JSON member names have to be strings, got " + member.getKey());
+                }
+
+                object.put((String) member.getKey(), toJsonValue(member.getValue()));
+            }
+
+            return object;
+        }
+
+        if (value instanceof Collection) {
+            List<Object> array = new ArrayList<>(((Collection<?>) value).size());
+
+            for (Object element : (Collection<?>) value) {
+                array.add(toJsonValue(element));
+            }
+
+            return array;
+        }
+
+        if (value instanceof JSONObject) {
+            JSONObject jsonObject = (JSONObject) value;
+            Map<String, Object> object = new LinkedHashMap<>();
+
+            for (String name : jsonObject.keySet()) {
+                object.put(name, toJsonValue(jsonObject.get(name)));
+            }
+
+            return object;
+        }
+
+        if (value instanceof JSONArray) {
+            JSONArray jsonArray = (JSONArray) value;
+            List<Object> array = new ArrayList<>(jsonArray.length());
+
+            for (int i = 0; i < jsonArray.length(); ++i) {
+                array.add(toJsonValue(jsonArray.get(i)));
+            }
+
+            return array;
+        }
+
+        throw new ConfigException("Values of type " + value.getClass().getName() + " cannot be stored in JSON");
+    }
+
+    private static final class Location {
+        // The object or array holding the value, null for the root value
+        private final Object parent;
+        // The member name or array index of the value
+        private final Object key;
+        private final Object value;
+
+        private Location(Object parent, Object key, Object value) {
+            this.parent = parent;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
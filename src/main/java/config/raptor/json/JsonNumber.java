@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package config.raptor.json;
+
+import java.math.BigDecimal;
+
+/**
+ * A number read from a JSON config whose text the usual number types would not write back as it was, such as
+ * {@code 1.10}, {@code 1E3} or {@code -0}. Saving writes the number with the text it was read with.
+ */
+public final class JsonNumber extends Number {
+    private final String text;
+    private transient BigDecimal value;
+
+    // No external construction allowed, the text is checked to be a JSON number when it is read
+    JsonNumber(String text) {
+        this.text = text;
+    }
+
+    public BigDecimal bigDecimalValue() {
+        if (value == null) {
+            value = new BigDecimal(text);
+        }
+
+        return value;
+    }
+
+    @Override
+    public int intValue() {
+        return bigDecimalValue().intValue();
+    }
+
+    @Override
+    public long longValue() {
+        return bigDecimalValue().longValue();
+    }
+
+    @Override
+    public float floatValue() {
+        return Float.parseFloat(text);
+    }
+
+    @Override
+    public double doubleValue() {
+        return Double.parseDouble(text);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof JsonNumber && text.equals(((JsonNumber) other).text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    /**
+     * @return the text the number was read with
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
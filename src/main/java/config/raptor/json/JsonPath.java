@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path into a JSON config, starting at the root value {@code $} and followed by steps selecting members of objects
+ * by name, {@code .name} or {@code ['name']}, elements of arrays by index, {@code [0]}, or every member or element,
+ * {@code .*} or {@code [*]}. A step written with {@code ..} instead of {@code .} selects from the value and every
+ * value below it, such as {@code $..Password}.
+ */
+final class JsonPath {
+    static final class Step {
+        private final String name;
+        private final int index;
+        private final boolean descendant;
+
+        private Step(String name, int index, boolean descendant) {
+            this.name = name;
+            this.index = index;
+            this.descendant = descendant;
+        }
+
+        /**
+         * @return the member name the step selects, null if it selects by index or selects everything
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the array index the step selects, -1 if it selects by name or selects everything
+         */
+        int getIndex() {
+            return index;
+        }
+
+        boolean isWildcard() {
+            return name == null && index < 0;
+        }
+
+        boolean isDescendant() {
+            return descendant;
+        }
+    }
+
+    private final List<Step> steps;
+
+    private JsonPath(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    List<Step> getSteps() {
+        return steps;
+    }
+
+    static JsonPath parse(String pathString) throws ConfigException {
+        if (!pathString.startsWith("$")) {
+            throw invalid(pathString, "it does not start with '$'");
+        }
+
+        List<Step> steps = new ArrayList<>();
+        int i = 1;
+
+        while (i < pathString.length()) {
+            char c = pathString.charAt(i);
+            boolean isDescendant = false;
+
+            if (c == '.') {
+                if (pathString.startsWith("..", i)) {
+                    isDescendant = true;
+                    ++i;
+                }
+
+                ++i;
+
+                if (i < pathString.length() && pathString.charAt(i) == '[') {
+                    if (!isDescendant) {
+                        throw invalid(pathString, "'.' is followed by '['");
+                    }
+
+                    continue;
+                }
+
+                int end = i;
+
+                while (end < pathString.length() && pathString.charAt(end) != '.' && pathString.charAt(end) != '[') {
+                    ++end;
+                }
+
+                String name = pathString.substring(i, end);
+
+                if (name.isEmpty()) {
+                    throw invalid(pathString, "a name is missing at offset " + i);
+                }
+
+                steps.add(name.equals("*") ? new Step(null, -1, isDescendant) : new Step(name, -1, isDescendant));
+                i = end;
+            }
+            else if (c == '[') {
+                // A bracket right after '..' belongs to the descendant step
+                isDescendant = i >= 2 && pathString.startsWith("..", i - 2);
+                i = parseBracket(pathString, i + 1, isDescendant, steps);
+            }
+            else {
+                throw invalid(pathString, "unexpected '" + c + "' at offset " + i);
+            }
+        }
+
+        return new JsonPath(Collections.unmodifiableList(steps));
+    }
+
+    // Returns the offset just past the closing bracket
+    private static int parseBracket(String pathString, int from, boolean isDescendant, List<Step> steps)
+                                                                                            throws ConfigException {
+        if (from >= pathString.length()) {
+            throw invalid(pathString, "'[' is not closed");
+        }
+
+        char c = pathString.charAt(from);
+
+        if (c == '\'' || c == '"') {
+            StringBuilder name = new StringBuilder();
+            int i = from + 1;
+
+            for (; i < pathString.length() && pathString.charAt(i) != c; ++i) {
+                if (pathString.charAt(i) == '\\' && i + 1 < pathString.length()) {
+                    ++i;
+                }
+
+                name.append(pathString.charAt(i));
+            }
+
+            if (i + 1 >= pathString.length() || pathString.charAt(i + 1) != ']') {
+                throw invalid(pathString, "quoted name at offset " + from + " is not closed");
+            }
+
+            steps.add(new Step(name.toString(), -1, isDescendant));
+
+            return i + 2;
+        }
+
+        int end = pathString.indexOf(']', from);
+
+        if (end < 0) {
+            throw invalid(pathString, "'[' is not closed");
+        }
+
+        String selector = pathString.substring(from, end).trim();
+
+        if (selector.equals("*")) {
+            steps.add(new Step(null, -1, isDescendant));
+        }
+        else {
+            int index;
+
+            try {
+                index = Integer.parseInt(selector);
+            } catch (NumberFormatException e) {
+                index = -1;
+            }
+
+            if (index < 0) {
+                throw invalid(pathString, "'" + selector + "' is not an array index");
+            }
+
+            steps.add(new Step(null, index, isDescendant));
+        }
+
+        return end + 1;
+    }
+
+    private static ConfigException invalid(String pathString, String reason) {
+        return new ConfigException("Invalid JSON path '" + pathString + "', " + reason);
+    }
+}
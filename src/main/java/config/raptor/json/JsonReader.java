@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.Reader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a JSON value from a stream of characters with the org.json tokenizer, which reads ahead only a buffer at a
+ * time, so large files are not held as one string while they are parsed.
+ *
+ * The values are read into the types {@link JsonConfigOperator} works with. Objects are read into maps keeping the
+ * order their members were written in, which the org.json object model does not do, so that saving leaves the
+ * members where they were. Numbers are read into Integer, Long, BigInteger or Double when that type writes back the
+ * text the number was read with, and into {@link JsonNumber} otherwise, so that saving leaves numbers as they were
+ * written. Null is read as {@link JSONObject#NULL}.
+ */
+final class JsonReader {
+    private JsonReader() {
+    }
+
+    static Object read(Reader reader) throws ConfigException {
+        JSONTokener tokener = new JSONTokener(reader);
+
+        try {
+            Object value = readValue(tokener);
+
+            if (tokener.nextClean() != 0) {
+                throw tokener.syntaxError("Unexpected content after the JSON value");
+            }
+
+            return value;
+        } catch (JSONException e) {
+            throw new ConfigException("JSON parsing error", e);
+        }
+    }
+
+    private static Object readValue(JSONTokener tokener) {
+        char c = tokener.nextClean();
+
+        switch (c) {
+            case '"':
+                return tokener.nextString('"');
+            case '{':
+                return readObject(tokener);
+            case '[':
+                return readArray(tokener);
+            default:
+                // Read as the text they were written with, as the tokenizer would change numbers such as 1.10
+                String text = readWord(tokener, c);
+
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    if (!isNumber(text)) {
+                        throw tokener.syntaxError("Invalid number '" + text + "'");
+                    }
+
+                    return toNumber(text);
+                }
+
+                switch (text) {
+                    case "true":
+                        return Boolean.TRUE;
+                    case "false":
+                        return Boolean.FALSE;
+                    case "null":
+                        return JSONObject.NULL;
+                    case "":
+                        throw tokener.syntaxError("Missing value");
+                    default:
+                        throw tokener.syntaxError("Unexpected text '" + text + "'");
+                }
+        }
+    }
+
+    // Reads up to the next character that can follow a value, starting with the given character
+    private static String readWord(JSONTokener tokener, char first) {
+        StringBuilder word = new StringBuilder();
+
+        for (char c = first; ; c = tokener.next()) {
+            if (c <= ' ' || ",:]}/\\\"[{;=#'".indexOf(c) >= 0) {
+                tokener.back();
+                return word.toString();
+            }
+
+            word.append(c);
+        }
+    }
+
+    private static boolean isNumber(String text) {
+        int length = text.length();
+        int i = text.startsWith("-") ? 1 : 0;
+
+        if (i < length && text.charAt(i) == '0') {
+            ++i;
+        }
+        else {
+            int start = i;
+            i = skipDigits(text, i);
+
+            if (i == start) {
+                return false;
+            }
+        }
+
+        if (i < length && text.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(text, i);
+
+            if (i == start) {
+                return false;
+            }
+        }
+
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            ++i;
+
+            if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                ++i;
+            }
+
+            int start = i;
+            i = skipDigits(text, i);
+
+            if (i == start) {
+                return false;
+            }
+        }
+
+        return i == length;
+    }
+
+    private static int skipDigits(String text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            ++i;
+        }
+
+        return i;
+    }
+
+    private static Number toNumber(String text) {
+        boolean isInteger = text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0;
+
+        if (isInteger && !text.equals("-0")) {
+            // Nine digits always fit, longer integers are narrowed to the smallest type holding them
+            if (text.length() <= 9) {
+                return Integer.valueOf(text);
+            }
+
+            BigInteger value = new BigInteger(text);
+
+            if (value.bitLength() < Integer.SIZE) {
+                return value.intValue();
+            }
+
+            return value.bitLength() < Long.SIZE ? (Number) value.longValue() : value;
+        }
+
+        if (!isInteger) {
+            double value = Double.parseDouble(text);
+
+            if (!Double.isInfinite(value) && JSONObject.numberToString(value).equals(text)) {
+                return value;
+            }
+        }
+
+        return new JsonNumber(text);
+    }
+
+    private static Map<String, Object> readObject(JSONTokener tokener) {
+        Map<String, Object> object = new LinkedHashMap<>();
+
+        if (tokener.nextClean() == '}') {
+            return object;
+        }
+
+        tokener.back();
+
+        while (true) {
+            if (tokener.nextClean() != '"') {
+                throw tokener.syntaxError("Expected a quoted member name");
+            }
+
+            String name = tokener.nextString('"');
+
+            if (tokener.nextClean() != ':') {
+                throw tokener.syntaxError("Expected ':' after member name '" + name + "'");
+            }
+
+            if (object.containsKey(name)) {
+                throw tokener.syntaxError("Duplicate member name '" + name + "'");
+            }
+
+            object.put(name, readValue(tokener));
+
+            char c = tokener.nextClean();
+
+            if (c == '}') {
+                return object;
+            }
+
+            if (c != ',') {
+                throw tokener.syntaxError("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private static List<Object> readArray(JSONTokener tokener) {
+        List<Object> array = new ArrayList<>();
+
+        if (tokener.nextClean() == ']') {
+            return array;
+        }
+
+        tokener.back();
+
+        while (true) {
+            array.add(readValue(tokener));
+
+            char c = tokener.nextClean();
+
+            if (c == ']') {
+                return array;
+            }
+
+            if (c != ',') {
+                throw tokener.syntaxError("Expected ',' or ']'");
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the values {@link JsonReader} reads, with each member and element on a line of its own, or all on one line
+ * without whitespace when there is no indent
+ */
+final class JsonWriter {
+    private final Writer out;
+    private final String indent;
+
+    /**
+     * @param indent what each level of nesting is indented with, null to write everything on one line
+     */
+    JsonWriter(Writer out, String indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    void write(Object value) throws IOException {
+        write(value, 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Object value, int depth) throws IOException {
+        if (value instanceof Map) {
+            Map<String, Object> object = (Map<String, Object>) value;
+
+            if (object.isEmpty()) {
+                out.write("{}");
+                return;
+            }
+
+            out.write('{');
+
+            for (Iterator<Map.Entry<String, Object>> it = object.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Object> member = it.next();
+
+                newLine(depth + 1);
+                writeString(member.getKey());
+                out.write(indent != null ? ": " : ":");
+                write(member.getValue(), depth + 1);
+
+                if (it.hasNext()) {
+                    out.write(',');
+                }
+            }
+
+            newLine(depth);
+            out.write('}');
+        }
+        else if (value instanceof List) {
+            List<Object> array = (List<Object>) value;
+
+            if (array.isEmpty()) {
+                out.write("[]");
+                return;
+            }
+
+            out.write('[');
+
+            for (int i = 0; i < array.size(); ++i) {
+                newLine(depth + 1);
+                write(array.get(i), depth + 1);
+
+                if (i < array.size() - 1) {
+                    out.write(',');
+                }
+            }
+
+            newLine(depth);
+            out.write(']');
+        }
+        else if (value instanceof String) {
+            writeString((String) value);
+        }
+        else if (value instanceof JsonNumber) {
+            out.write(value.toString());
+        }
+        else if (value instanceof Number) {
+            out.write(JSONObject.numberToString((Number) value));
+        }
+        else { // Boolean or JSONObject.NULL
+            out.write(value.toString());
+        }
+    }
+
+    // Escapes only what JSON requires, unlike the org.json quoting which also escapes '/' after '<'
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        int copiedTo = 0;
+
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            String escape;
+
+            switch (c) {
+                case '"':
+                    escape = "\\\"";
+                    break;
+                case '\\':
+                    escape = "\\\\";
+                    break;
+                case '\b':
+                    escape = "\\b";
+                    break;
+                case '\f':
+                    escape = "\\f";
+                    break;
+                case '\n':
+                    escape = "\\n";
+                    break;
+                case '\r':
+                    escape = "\\r";
+                    break;
+                case '\t':
+                    escape = "\\t";
+                    break;
+                default:
+                    escape = c < ' ' ? String.format("\\u%04x", (int) c) : null;
+            }
+
+            if (escape != null) {
+                out.write(value, copiedTo, i - copiedTo);
+                out.write(escape);
+                copiedTo = i + 1;
+            }
+        }
+
+        out.write(value, copiedTo, value.length() - copiedTo);
+        out.write('"');
+    }
+
+    private void newLine(int depth) throws IOException {
+        if (indent == null) {
+            return;
+        }
+
+        out.write('\n');
+
+        for (int i = 0; i < depth; ++i) {
+            out.write(indent);
+        }
+    }
+}
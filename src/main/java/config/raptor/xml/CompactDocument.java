@@ -0,0 +1,582 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A document held in a handful of primitive arrays instead of one object per node. Nodes are int ids indexing
+ * arrays of parent, child and sibling ids, names are stored once in a name table and all text shares one char
+ * buffer, which costs a fraction of the heap of a W3C DOM.
+ *
+ * Nodes are only ever appended. Removing a node unlinks it from the tree and replacing text appends the new text,
+ * so space given up by changes is not reclaimed until the document is loaded again.
+ */
+final class CompactDocument {
+    static final byte DOCUMENT = 0;
+    static final byte ELEMENT = 1;
+    static final byte TEXT = 2;
+    static final byte CDATA = 3;
+    static final byte COMMENT = 4;
+    static final byte PROCESSING_INSTRUCTION = 5;
+    static final byte DOCUMENT_TYPE = 6;
+
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    static final String REPORT_CDATA_PROPERTY = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    // Nodes
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] names = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] firstChildren = new int[INITIAL_CAPACITY];
+    private int[] lastChildren = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    private int[] previousSiblings = new int[INITIAL_CAPACITY];
+    private int[] firstAttributes = new int[INITIAL_CAPACITY];
+    private int[] valueStarts = new int[INITIAL_CAPACITY];
+    private int[] valueLengths = new int[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    // Attributes, each element's attributes are linked in order
+    private int[] attributeNames = new int[INITIAL_CAPACITY];
+    private int[] attributeValueStarts = new int[INITIAL_CAPACITY];
+    private int[] attributeValueLengths = new int[INITIAL_CAPACITY];
+    private int[] nextAttributes = new int[INITIAL_CAPACITY];
+    private int attributeCount;
+
+    private char[] text = new char[INITIAL_CAPACITY * 16];
+    private int textLength;
+
+    // Element names that an unprefixed XPath name test cannot match, because they are in a namespace, are negated
+    private final List<String> nameTable = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+
+    private String version;
+    private String encoding;
+    private String standalone;
+
+    CompactDocument() {
+        createNode(DOCUMENT, NONE, null);
+    }
+
+    /**
+     * Reads a document, keeping its text, comments, processing instructions and document type declaration so that
+     * it can be written back as it was.
+     */
+    static CompactDocument parse(InputStream in) throws XMLStreamException {
+        CompactDocument document = new CompactDocument();
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+
+        try {
+            int current = 0;
+
+            document.version = reader.getVersion();
+            document.encoding = reader.getCharacterEncodingScheme();
+            document.standalone = reader.standaloneSet() ? (reader.isStandalone() ? "yes" : "no") : null;
+
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        current = document.addElement(current, reader);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        current = document.parents[current];
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        document.addText(current, TEXT, reader.getTextCharacters(), reader.getTextStart(),
+                                         reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        document.addText(current, CDATA, reader.getTextCharacters(), reader.getTextStart(),
+                                         reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        document.appendChild(current, document.createNode(COMMENT, NONE, reader.getText()));
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        document.appendChild(current, document.createProcessingInstruction(reader.getPITarget(),
+                                reader.getPIData()));
+                        break;
+                    case XMLStreamConstants.DTD:
+                        document.appendChild(current, document.createNode(DOCUMENT_TYPE, NONE, reader.getText()));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        document.trimToSize();
+
+        return document;
+    }
+
+    private int addElement(int parent, XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+        String namespaceURI = reader.getNamespaceURI();
+        int name = getNameId(prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName);
+
+        int element = createNode(ELEMENT, namespaceURI == null || namespaceURI.isEmpty() ? name : ~name, null);
+        appendChild(parent, element);
+
+        for (int i = 0; i < reader.getNamespaceCount(); ++i) {
+            String namespacePrefix = reader.getNamespacePrefix(i);
+            addAttribute(element, namespacePrefix == null || namespacePrefix.isEmpty() ?
+                    XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ':' + namespacePrefix,
+                    reader.getNamespaceURI(i));
+        }
+
+        for (int i = 0; i < reader.getAttributeCount(); ++i) {
+            if (!reader.isAttributeSpecified(i)) { // Defaulted from the document type declaration
+                continue;
+            }
+
+            String attributePrefix = reader.getAttributePrefix(i);
+            String attributeName = reader.getAttributeLocalName(i);
+            addAttribute(element, attributePrefix == null || attributePrefix.isEmpty() ? attributeName :
+                    attributePrefix + ':' + attributeName, reader.getAttributeValue(i));
+        }
+
+        return element;
+    }
+
+    // Parsers may report a run of text in several parts, which are joined into one node
+    private void addText(int parent, byte kind, char[] characters, int start, int length) {
+        int last = lastChildren[parent];
+
+        if (kind == TEXT && last != NONE && kinds[last] == TEXT &&
+            valueStarts[last] + valueLengths[last] == textLength) {
+            appendText(characters, start, length);
+            valueLengths[last] += length;
+            return;
+        }
+
+        int node = createNode(kind, NONE, null);
+        valueStarts[node] = textLength;
+        valueLengths[node] = length;
+        appendText(characters, start, length);
+        appendChild(parent, node);
+    }
+
+    int createNode(byte kind, int name, String value) {
+        if (nodeCount == kinds.length) {
+            int capacity = nodeCount * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            previousSiblings = Arrays.copyOf(previousSiblings, capacity);
+            firstAttributes = Arrays.copyOf(firstAttributes, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+        }
+
+        int node = nodeCount++;
+        kinds[node] = kind;
+        names[node] = name;
+        parents[node] = NONE;
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        previousSiblings[node] = NONE;
+        firstAttributes[node] = NONE;
+        valueStarts[node] = textLength;
+        valueLengths[node] = 0;
+
+        if (value != null) {
+            valueLengths[node] = value.length();
+            appendText(value);
+        }
+
+        return node;
+    }
+
+    int createElement(String name) {
+        return createNode(ELEMENT, getNameId(name), null);
+    }
+
+    int createProcessingInstruction(String target, String data) {
+        return createNode(PROCESSING_INSTRUCTION, getNameId(target), data);
+    }
+
+    void appendChild(int parent, int child) {
+        insertBefore(parent, child, NONE);
+    }
+
+    /**
+     * Inserts an unattached node before the reference child, or at the end when the reference is {@link #NONE}
+     */
+    void insertBefore(int parent, int child, int reference) {
+        int previous = reference == NONE ? lastChildren[parent] : previousSiblings[reference];
+
+        parents[child] = parent;
+        previousSiblings[child] = previous;
+        nextSiblings[child] = reference;
+
+        if (previous == NONE) {
+            firstChildren[parent] = child;
+        }
+        else {
+            nextSiblings[previous] = child;
+        }
+
+        if (reference == NONE) {
+            lastChildren[parent] = child;
+        }
+        else {
+            previousSiblings[reference] = child;
+        }
+    }
+
+    void remove(int node) {
+        int parent = parents[node];
+
+        if (parent == NONE) {
+            return;
+        }
+
+        if (previousSiblings[node] == NONE) {
+            firstChildren[parent] = nextSiblings[node];
+        }
+        else {
+            nextSiblings[previousSiblings[node]] = nextSiblings[node];
+        }
+
+        if (nextSiblings[node] == NONE) {
+            lastChildren[parent] = previousSiblings[node];
+        }
+        else {
+            previousSiblings[nextSiblings[node]] = previousSiblings[node];
+        }
+
+        parents[node] = NONE;
+        previousSiblings[node] = NONE;
+        nextSiblings[node] = NONE;
+    }
+
+    /**
+     * Replaces the children of the element with a single text node, or with nothing if the text is empty
+     */
+    void setText(int element, String value) {
+        while (firstChildren[element] != NONE) {
+            remove(firstChildren[element]);
+        }
+
+        if (!value.isEmpty()) {
+            appendChild(element, createNode(TEXT, NONE, value));
+        }
+    }
+
+    void addAttribute(int element, String name, String value) {
+        if (attributeCount == attributeNames.length) {
+            int capacity = attributeCount * 2;
+            attributeNames = Arrays.copyOf(attributeNames, capacity);
+            attributeValueStarts = Arrays.copyOf(attributeValueStarts, capacity);
+            attributeValueLengths = Arrays.copyOf(attributeValueLengths, capacity);
+            nextAttributes = Arrays.copyOf(nextAttributes, capacity);
+        }
+
+        int attribute = attributeCount++;
+        attributeNames[attribute] = getNameId(name);
+        attributeValueStarts[attribute] = textLength;
+        attributeValueLengths[attribute] = value.length();
+        nextAttributes[attribute] = NONE;
+        appendText(value);
+
+        if (firstAttributes[element] == NONE) {
+            firstAttributes[element] = attribute;
+        }
+        else {
+            int last = firstAttributes[element];
+
+            while (nextAttributes[last] != NONE) {
+                last = nextAttributes[last];
+            }
+
+            nextAttributes[last] = attribute;
+        }
+    }
+
+    void removeAttributes(int element) {
+        firstAttributes[element] = NONE;
+    }
+
+    byte getKind(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * @return the qualified name of an element or the target of a processing instruction
+     */
+    String getName(int node) {
+        int name = names[node];
+        return nameTable.get(name < 0 ? ~name : name);
+    }
+
+    /**
+     * @return the name an unprefixed XPath name test would match this node by, or null if no such test can select it
+     */
+    String getMatchName(int node) {
+        int name = names[node];
+
+        if (kinds[node] != ELEMENT || name < 0) {
+            return null;
+        }
+
+        String qualifiedName = nameTable.get(name);
+        return qualifiedName.indexOf(':') < 0 ? qualifiedName : null;
+    }
+
+    String getValue(int node) {
+        return new String(text, valueStarts[node], valueLengths[node]);
+    }
+
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    int getDocumentElement() {
+        for (int child = firstChildren[0]; child != NONE; child = nextSiblings[child]) {
+            if (kinds[child] == ELEMENT) {
+                return child;
+            }
+        }
+
+        return NONE;
+    }
+
+    int getFirstAttribute(int element) {
+        return firstAttributes[element];
+    }
+
+    int getNextAttribute(int attribute) {
+        return nextAttributes[attribute];
+    }
+
+    String getAttributeName(int attribute) {
+        return nameTable.get(attributeNames[attribute]);
+    }
+
+    String getAttributeValue(int attribute) {
+        return new String(text, attributeValueStarts[attribute], attributeValueLengths[attribute]);
+    }
+
+    /**
+     * @return the text of all text and CDATA nodes below the node, in document order
+     */
+    String getTextContent(int node) {
+        if (kinds[node] != ELEMENT && kinds[node] != DOCUMENT) {
+            return getValue(node);
+        }
+
+        StringBuilder content = new StringBuilder();
+        appendTextContent(node, content);
+
+        return content.toString();
+    }
+
+    private void appendTextContent(int node, StringBuilder content) {
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (kinds[child] == TEXT || kinds[child] == CDATA) {
+                content.append(text, valueStarts[child], valueLengths[child]);
+            }
+            else if (kinds[child] == ELEMENT) {
+                appendTextContent(child, content);
+            }
+        }
+    }
+
+    /**
+     * @return the encoding given in the XML declaration, null if there was no declaration or it gave none
+     */
+    String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Writes the document as XML text. Characters the encoder cannot encode are written as character references, a
+     * null encoder is taken to encode every character.
+     */
+    void write(Writer out, String outputEncoding, CharsetEncoder encoder) throws IOException {
+        StringBuilder buffer = new StringBuilder(8192);
+
+        if (version != null) {
+            buffer.append("<?xml version=\"").append(version).append("\" encoding=\"").append(outputEncoding)
+                    .append('"');
+
+            if (standalone != null) {
+                buffer.append(" standalone=\"").append(standalone).append('"');
+            }
+
+            buffer.append("?>\n");
+        }
+
+        for (int child = firstChildren[0]; child != NONE; child = nextSiblings[child]) {
+            write(child, buffer, out, encoder);
+            // Line breaks between top level nodes are not reported by the parser
+            buffer.append('\n');
+        }
+
+        out.write(buffer.toString());
+    }
+
+    private void write(int node, StringBuilder buffer, Writer out, CharsetEncoder encoder) throws IOException {
+        switch (kinds[node]) {
+            case ELEMENT:
+                buffer.append('<').append(getName(node));
+
+                for (int attribute = firstAttributes[node]; attribute != NONE; attribute = nextAttributes[attribute]) {
+                    buffer.append(' ').append(getAttributeName(attribute)).append("=\"");
+                    XMLUtil.appendEscaped(getAttributeValue(attribute), true, buffer, encoder);
+                    buffer.append('"');
+                }
+
+                if (firstChildren[node] == NONE) {
+                    buffer.append("/>");
+                    break;
+                }
+
+                buffer.append('>');
+
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    write(child, buffer, out, encoder);
+                }
+
+                buffer.append("</").append(getName(node)).append('>');
+                break;
+            case TEXT:
+                XMLUtil.appendEscaped(getValue(node), false, buffer, encoder);
+                break;
+            case CDATA:
+                buffer.append("<![CDATA[").append(getValue(node).replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+                break;
+            case COMMENT:
+                buffer.append("<!--").append(getValue(node)).append("-->");
+                break;
+            case PROCESSING_INSTRUCTION:
+                buffer.append("<?").append(getName(node));
+
+                if (valueLengths[node] > 0) {
+                    buffer.append(' ').append(getValue(node));
+                }
+
+                buffer.append("?>");
+                break;
+            default: // DOCUMENT_TYPE
+                buffer.append(getValue(node));
+        }
+
+        if (buffer.length() >= 8192) {
+            out.write(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    private int getNameId(String name) {
+        Integer id = nameIds.get(name);
+
+        if (id == null) {
+            id = nameTable.size();
+            nameTable.add(name);
+            nameIds.put(name, id);
+        }
+
+        return id;
+    }
+
+    private void appendText(String value) {
+        ensureTextCapacity(value.length());
+        value.getChars(0, value.length(), text, textLength);
+        textLength += value.length();
+    }
+
+    private void appendText(char[] characters, int start, int length) {
+        ensureTextCapacity(length);
+        System.arraycopy(characters, start, text, textLength, length);
+        textLength += length;
+    }
+
+    private void ensureTextCapacity(int length) {
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+        }
+    }
+
+    private void trimToSize() {
+        kinds = Arrays.copyOf(kinds, nodeCount);
+        names = Arrays.copyOf(names, nodeCount);
+        parents = Arrays.copyOf(parents, nodeCount);
+        firstChildren = Arrays.copyOf(firstChildren, nodeCount);
+        lastChildren = Arrays.copyOf(lastChildren, nodeCount);
+        nextSiblings = Arrays.copyOf(nextSiblings, nodeCount);
+        previousSiblings = Arrays.copyOf(previousSiblings, nodeCount);
+        firstAttributes = Arrays.copyOf(firstAttributes, nodeCount);
+        valueStarts = Arrays.copyOf(valueStarts, nodeCount);
+        valueLengths = Arrays.copyOf(valueLengths, nodeCount);
+
+        attributeNames = Arrays.copyOf(attributeNames, Math.max(1, attributeCount));
+        attributeValueStarts = Arrays.copyOf(attributeValueStarts, Math.max(1, attributeCount));
+        attributeValueLengths = Arrays.copyOf(attributeValueLengths, Math.max(1, attributeCount));
+        nextAttributes = Arrays.copyOf(nextAttributes, Math.max(1, attributeCount));
+
+        text = Arrays.copyOf(text, Math.max(1, textLength));
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+        // The JDK parser only reports CDATA sections as such when asked to
+        if (factory.isPropertySupported(REPORT_CDATA_PROPERTY)) {
+            factory.setProperty(REPORT_CDATA_PROPERTY, true);
+        }
+
+        return factory;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import config.raptor.ConfigFiles;
+import config.raptor.ConfigIO;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * Loads a config into a {@link CompactDocument} instead of a W3C DOM, for applications keeping many configs in
+ * memory at once. Saving writes the document back with its declaration, comments and the whitespace inside the root
+ * element as they were read, apart from elements without content, which are written as empty-element tags such as
+ * {@code <a/>}. Each node outside the root element, including the root element itself, is followed by a line break.
+ */
+public class CompactXMLConfigIO implements ConfigIO {
+    private File file;
+    private CompactDocument doc;
+    private CompactXMLConfigOperator configOperator;
+    private XMLConfigCreator configCreator;
+
+    public CompactXMLConfigIO(String filePath) throws ParserConfigurationException, IOException, XMLStreamException {
+        file = new File(filePath);
+
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("The file path " + filePath + " provided is not a valid file");
+        }
+
+        doc = CompactDocument.parse(ConfigFiles.newInputStream(ConfigFiles.read(file.toPath())));
+
+        configOperator = new CompactXMLConfigOperator(doc);
+        // Created nodes are copied into the compact document, so they only need a document of their own. The scratch
+        // document of the loading thread is not used, as other threads would then create nodes in it concurrently.
+        configCreator = new XMLConfigCreator(XMLParserPool.getDocumentBuilder().newDocument());
+    }
+
+    @Override
+    public void save() throws ConfigException {
+        final Charset charset = getCharset(doc.getEncoding());
+
+        ConfigFiles.write(file.toPath(), new ConfigFiles.ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                Writer writer = new OutputStreamWriter(out, charset);
+                // Only Unicode encodings can write every character, others need character references
+                CharsetEncoder encoder = charset.name().startsWith("UTF") ? null : charset.newEncoder();
+
+                doc.write(writer, charset.name(), encoder);
+                writer.flush();
+            }
+        }, ConfigFiles.DEFAULT_BUFFER_SIZE);
+    }
+
+    public CompactXMLConfigOperator getConfigOperator() {
+        return configOperator;
+    }
+
+    public XMLConfigCreator getConfigCreator() {
+        return configCreator;
+    }
+
+    private static Charset getCharset(String encoding) {
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The operations of {@link XMLConfigOperator} on a {@link CompactDocument}. Nodes passed in may belong to any
+ * document and are copied in, while {@link #getConfig(String)} returns a copy of the matched node, so changing a
+ * returned node does not change the config.
+ *
+ * Paths are limited to element name steps joined by '/' or '//', such as
+ * {@code //APIGateway/Environments/Environment/Password}.
+ */
+public class CompactXMLConfigOperator {
+    private final CompactDocument doc;
+
+    // No external construction allowed to prevent issues related to the wrong document being used
+    CompactXMLConfigOperator(CompactDocument doc) {
+        this.doc = doc;
+    }
+
+    public boolean isConfigExists(String pathString) throws ConfigException {
+        return findFirst(pathString) != CompactDocument.NONE;
+    }
+
+    public Node getConfig(String pathString) throws ConfigException {
+        int element = findFirst(pathString);
+
+        if (element == CompactDocument.NONE) {
+            return null;
+        }
+
+        try {
+            return toNode(element, XMLParserPool.getScratchDocument());
+        } catch (ParserConfigurationException e) {
+            throw new ConfigException("Parser configuration error", e);
+        }
+    }
+
+    public boolean updateConfig(String pathString, Node newNode) throws ConfigException {
+        int element = findFirst(pathString);
+
+        if (element == CompactDocument.NONE) {
+            return false;
+        }
+
+        doc.setText(element, newNode.getTextContent());
+        doc.removeAttributes(element);
+
+        NamedNodeMap newAttributes = newNode.getAttributes();
+        if (newAttributes != null) {
+            for (int i = 0; i < newAttributes.getLength(); ++i) {
+                doc.addAttribute(element, newAttributes.item(i).getNodeName(), newAttributes.item(i).getNodeValue());
+            }
+        }
+
+        return true;
+    }
+
+    public boolean addConfig(String pathString, Node config, XMLConfigOperator.Position position)
+                                                                                            throws ConfigException {
+        return addConfigs(pathString, Collections.singletonList(config), position);
+    }
+
+    /**
+     * Adds several configs next to or under the first element matching the path, keeping them in the given order.
+     * Nothing can be added next to the root element.
+     */
+    public boolean addConfigs(String pathString, List<Node> configs, XMLConfigOperator.Position position)
+                                                                                            throws ConfigException {
+        int element = findFirst(pathString);
+
+        if (element == CompactDocument.NONE || configs.isEmpty()) {
+            return false;
+        }
+
+        int parent = doc.getParent(element);
+
+        if (position != XMLConfigOperator.Position.AT && doc.getKind(parent) == CompactDocument.DOCUMENT) {
+            return false;
+        }
+
+        List<Integer> addedNodes = new ArrayList<>(configs.size());
+
+        for (Node config : configs) {
+            if (config.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE) {
+                for (Node child = config.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    addNode(child, addedNodes);
+                }
+            }
+            else {
+                addNode(config, addedNodes);
+            }
+        }
+
+        for (int addedNode : addedNodes) {
+            if (position == XMLConfigOperator.Position.BEFORE) {
+                doc.insertBefore(parent, addedNode, element);
+            }
+            else if (position == XMLConfigOperator.Position.AT) {
+                doc.appendChild(element, addedNode);
+            }
+            else { // Position.AFTER, each node goes after the one added before it
+                doc.insertBefore(parent, addedNode, doc.getNextSibling(element));
+                element = addedNode;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean removeConfig(String pathString) throws ConfigException {
+        int element = findFirst(pathString);
+
+        if (element == CompactDocument.NONE) {
+            return false;
+        }
+
+        doc.remove(element);
+
+        return true;
+    }
+
+    private int findFirst(String pathString) throws ConfigException {
+        XMLPath path = XMLPath.parse(pathString);
+
+        if (path == null) {
+            throw new ConfigException("XPath expression '" + pathString +
+                                                            "' is not supported by the compact document model");
+        }
+
+        int root = doc.getDocumentElement();
+
+        return root == CompactDocument.NONE ? CompactDocument.NONE : findFirst(root, path.getSteps(), 0);
+    }
+
+    // Walks the elements in document order. Below the descendant steps every element has to be checked, while
+    // leading child steps only lead into elements with the right name.
+    private int findFirst(int element, List<XMLPath.Step> steps, int depth) {
+        boolean isOnPath = depth < steps.size() && !steps.get(depth).isDescendant();
+
+        if (isOnPath && !steps.get(depth).getName().equals(doc.getMatchName(element))) {
+            return CompactDocument.NONE;
+        }
+
+        if (isOnPath ? depth == steps.size() - 1 : matches(element, steps, steps.size() - 1)) {
+            return element;
+        }
+
+        for (int child = doc.getFirstChild(element); child != CompactDocument.NONE; child = doc.getNextSibling(child)) {
+            if (doc.getKind(child) == CompactDocument.ELEMENT) {
+                int found = findFirst(child, steps, isOnPath ? depth + 1 : steps.size());
+
+                if (found != CompactDocument.NONE) {
+                    return found;
+                }
+            }
+        }
+
+        return CompactDocument.NONE;
+    }
+
+    // Steps are matched right to left against the ancestors of the element, as XMLPath does for DOM nodes
+    private boolean matches(int element, List<XMLPath.Step> steps, int stepIndex) {
+        XMLPath.Step step = steps.get(stepIndex);
+
+        if (!step.getName().equals(doc.getMatchName(element))) {
+            return false;
+        }
+
+        int parent = doc.getParent(element);
+        boolean isParentDocument = doc.getKind(parent) == CompactDocument.DOCUMENT;
+
+        if (stepIndex == 0) {
+            return step.isDescendant() || isParentDocument;
+        }
+
+        if (step.isDescendant()) {
+            for (int ancestor = parent; doc.getKind(ancestor) == CompactDocument.ELEMENT;
+                 ancestor = doc.getParent(ancestor)) {
+                if (matches(ancestor, steps, stepIndex - 1)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        return !isParentDocument && matches(parent, steps, stepIndex - 1);
+    }
+
+    private void addNode(Node node, List<Integer> addedNodes) {
+        int added = fromNode(node);
+
+        if (added != CompactDocument.NONE) {
+            addedNodes.add(added);
+        }
+    }
+
+    private int fromNode(Node node) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                int element = doc.createElement(node.getNodeName());
+
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); ++i) {
+                    doc.addAttribute(element, attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+                }
+
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    int added = fromNode(child);
+
+                    if (added != CompactDocument.NONE) {
+                        doc.appendChild(element, added);
+                    }
+                }
+
+                return element;
+            case Node.TEXT_NODE:
+                return doc.createNode(CompactDocument.TEXT, CompactDocument.NONE, node.getNodeValue());
+            case Node.CDATA_SECTION_NODE:
+                return doc.createNode(CompactDocument.CDATA, CompactDocument.NONE, node.getNodeValue());
+            case Node.COMMENT_NODE:
+                return doc.createNode(CompactDocument.COMMENT, CompactDocument.NONE, node.getNodeValue());
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                return doc.createProcessingInstruction(node.getNodeName(), node.getNodeValue());
+            default:
+                return CompactDocument.NONE;
+        }
+    }
+
+    private Node toNode(int node, Document nodeDoc) {
+        switch (doc.getKind(node)) {
+            case CompactDocument.ELEMENT:
+                Element element = nodeDoc.createElement(doc.getName(node));
+
+                for (int attribute = doc.getFirstAttribute(node); attribute != CompactDocument.NONE;
+                     attribute = doc.getNextAttribute(attribute)) {
+                    element.setAttribute(doc.getAttributeName(attribute), doc.getAttributeValue(attribute));
+                }
+
+                for (int child = doc.getFirstChild(node); child != CompactDocument.NONE;
+                     child = doc.getNextSibling(child)) {
+                    element.appendChild(toNode(child, nodeDoc));
+                }
+
+                return element;
+            case CompactDocument.TEXT:
+                return nodeDoc.createTextNode(doc.getValue(node));
+            case CompactDocument.CDATA:
+                return nodeDoc.createCDATASection(doc.getValue(node));
+            case CompactDocument.COMMENT:
+                return nodeDoc.createComment(doc.getValue(node));
+            default: // PROCESSING_INSTRUCTION, the only other kind found inside elements
+                return nodeDoc.createProcessingInstruction(doc.getName(node), doc.getValue(node));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * An {@link XMLConfigOperator} that can be shared between threads. Lookups run in parallel under a read lock while
+ * changes are made one at a time under the write lock.
+ *
+ * The DOM is not safe to read while it is being changed, so {@link #getConfig(String)} and
+ * {@link #getAllConfigs(String)} return copies of the matched nodes that the caller can read at any time. Changes
+ * have to be made through the operator, not on returned nodes.
+ */
+public class ConcurrentXMLConfigOperator extends XMLConfigOperator {
+    private final ReadWriteLock lock;
+
+    ConcurrentXMLConfigOperator(Document doc, ReadWriteLock lock) {
+        super(doc);
+        this.lock = lock;
+
+        // Parsers may leave parts of the document to be built on first access, which is not safe from many threads
+        XMLUtil.expandDeferredNodes(doc);
+    }
+
+    @Override
+    public boolean isConfigExists(String pathString) throws ConfigException {
+        lock.readLock().lock();
+
+        try {
+            return super.isConfigExists(pathString);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Node getConfig(String pathString) throws ConfigException {
+        lock.readLock().lock();
+
+        try {
+            Node config = super.getConfig(pathString);
+
+            // Copies are owned by a document of their own so that making them does not touch the shared one
+            return config != null ? XMLParserPool.getScratchDocument().importNode(config, true) : null;
+        } catch (ParserConfigurationException e) {
+            throw new ConfigException("Parser configuration error", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Node> getAllConfigs(String pathString) throws ConfigException {
+        lock.readLock().lock();
+
+        try {
+            List<Node> configs = super.getAllConfigs(pathString);
+            Document scratchDocument = XMLParserPool.getScratchDocument();
+
+            for (int i = 0; i < configs.size(); ++i) {
+                if (configs.get(i) != null) {
+                    configs.set(i, scratchDocument.importNode(configs.get(i), true));
+                }
+            }
+
+            return configs;
+        } catch (ParserConfigurationException e) {
+            throw new ConfigException("Parser configuration error", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateConfig(String pathString, Node newNode) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.updateConfig(pathString, newNode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateAllConfigs(String pathString, Node newNode) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.updateAllConfigs(pathString, newNode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateAllConfigValues(String pathString, String value) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.updateAllConfigValues(pathString, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int setAllConfigAttributes(String pathString, String attributeName, String value) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.setAllConfigAttributes(pathString, attributeName, value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addConfig(String pathString, Node config, Position position) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.addConfig(pathString, config, position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addConfigs(String pathString, List<Node> configs, Position position) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.addConfigs(pathString, configs, position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeConfig(String pathString) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.removeConfig(pathString);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeAllConfigs(String pathString) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.removeAllConfigs(pathString);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public XMLBatchResult applyBatch(List<XMLConfigOperation> operations) throws ConfigException {
+        lock.writeLock().lock();
+
+        try {
+            return super.applyBatch(operations);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void setPathIndexEnabled(boolean isEnabled) {
+        lock.writeLock().lock();
+
+        try {
+            super.setPathIndexEnabled(isEnabled);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
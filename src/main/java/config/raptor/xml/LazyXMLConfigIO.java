@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import config.raptor.ConfigFiles;
+import config.raptor.ConfigIO;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+
+/**
+ * Loads a config without parsing the sections below its root element up front. A section is parsed the first time
+ * a path given to the operator can reach into it, so editing one or two sections of a large config only pays for
+ * those. The file is kept as the bytes read, which sections are only decoded from once parsed. Sections that were
+ * never reached, or were reached but not changed through the operator, are saved byte for byte as they were read.
+ *
+ * Changes made directly on nodes returned by the operator are not seen, so such sections are saved as they were read.
+ */
+public class LazyXMLConfigIO implements ConfigIO {
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private File file;
+    private Charset charset;
+    private XMLLazyLoader lazyLoader;
+    private XMLConfigOperator configOperator;
+    private XMLConfigCreator configCreator;
+    private final int bufferSize;
+    // Hash of the content last read or saved, which a save that would write the same content is skipped against
+    private byte[] contentHash;
+
+    public LazyXMLConfigIO(String filePath) throws ParserConfigurationException, IOException, SAXException {
+        this(filePath, ConfigFiles.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize number of bytes buffered before each write to the file when saving
+     */
+    public LazyXMLConfigIO(String filePath, int bufferSize) throws ParserConfigurationException, IOException,
+                                                                                                    SAXException {
+        file = new File(filePath);
+
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("The file path " + filePath + " provided is not a valid file");
+        }
+
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
+
+        // The loader keeps the source, which must not change with the file as a mapping would
+        ByteBuffer source = ConfigFiles.readCopy(file.toPath());
+        contentHash = ConfigFiles.hash(source);
+        charset = detectCharset(source);
+
+        lazyLoader = new XMLLazyLoader(source, charset, file.toURI().toString());
+        Document doc = lazyLoader.getDocument();
+
+        configOperator = new XMLConfigOperator(doc);
+        configOperator.setLazyLoader(lazyLoader);
+        configCreator = new XMLConfigCreator(doc);
+    }
+
+    /**
+     * Writes the document back to the file in the encoding it was read in. The file is replaced in a single step, so
+     * it is never left partly written. Nothing is written when the file already holds the content.
+     */
+    @Override
+    public void save() throws ConfigException {
+        saveIfChanged();
+    }
+
+    /**
+     * @return true if the file was written, false if it already held the content
+     */
+    public synchronized boolean saveIfChanged() throws ConfigException {
+        byte[] fileHash;
+
+        try {
+            fileHash = ConfigFiles.hash(ConfigFiles.read(file.toPath()));
+        } catch (IOException e) { // Such as when the file was deleted, it is written again
+            fileHash = null;
+        }
+
+        // Nothing changed through the operator and the file still holds what was last read or saved
+        if (!configOperator.isModified() && Arrays.equals(fileHash, contentHash)) {
+            return false;
+        }
+
+        contentHash = ConfigFiles.writeIfChanged(file.toPath(), new ConfigFiles.ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                // Only Unicode encodings can write every character, others need character references
+                CharsetEncoder encoder = charset.name().startsWith("UTF") ? null : charset.newEncoder();
+
+                lazyLoader.write(out, encoder);
+            }
+        }, bufferSize, fileHash);
+
+        configOperator.setModified(false);
+
+        return !Arrays.equals(contentHash, fileHash);
+    }
+
+    /**
+     * @return number of sections below the root element that have not been parsed yet
+     */
+    public int getUnloadedSectionCount() {
+        return lazyLoader.getUnloadedCount();
+    }
+
+    public XMLConfigOperator getConfigOperator() {
+        return configOperator;
+    }
+
+    public XMLConfigCreator getConfigCreator() {
+        return configCreator;
+    }
+
+    // The parser reads no further than the XML declaration to tell the encoding
+    private static Charset detectCharset(ByteBuffer source) throws IOException {
+        String encoding;
+
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(ConfigFiles.newInputStream(source.duplicate()));
+
+            try {
+                encoding = reader.getEncoding() != null ? reader.getEncoding() : reader.getCharacterEncodingScheme();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not read the XML declaration", e);
+        }
+
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IOException("Unsupported encoding " + encoding, e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        return factory;
+    }
+}
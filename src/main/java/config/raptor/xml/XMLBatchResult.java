@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link XMLConfigOperator#applyBatch(List)}, with the status of each operation in the order given.
+ */
+public final class XMLBatchResult {
+
+    public enum Status {
+        APPLIED,
+        // Applied, then undone because a later operation failed
+        ROLLED_BACK,
+        // The path matched nothing, or only nodes removed by an earlier operation of the batch
+        NOT_FOUND,
+        // The path matched a node the operation cannot be applied to, such as the document node
+        REJECTED,
+        // Not attempted because an earlier operation failed
+        SKIPPED
+    }
+
+    private final List<Status> statuses;
+    private final int failedIndex;
+
+    XMLBatchResult(List<Status> statuses, int failedIndex) {
+        this.statuses = Collections.unmodifiableList(statuses);
+        this.failedIndex = failedIndex;
+    }
+
+    /**
+     * @return true if every operation was applied and the changes were kept
+     */
+    public boolean isCommitted() {
+        return failedIndex < 0;
+    }
+
+    /**
+     * @return index of the operation that caused the batch to be rolled back, -1 if the batch was committed
+     */
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+
+    public Status getStatus(int index) {
+        return statuses.get(index);
+    }
+
+    public List<Status> getStatuses() {
+        return statuses;
+    }
+
+    @Override
+    public String toString() {
+        return (isCommitted() ? "Committed " : "Rolled back ") + statuses;
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the changes {@link XMLConfigOperator} makes to a document so that saving can rewrite only the elements that
+ * were updated, leaving the rest of the file byte for byte as it was.
+ *
+ * The source offsets of the elements are found on the first update, while the document still matches the source,
+ * by scanning the source text for tags and pairing them with the elements of the document in document order.
+ * Adding or removing nodes changes the structure of the document, after which the whole document has to be
+ * serialized again. Changes made directly to nodes instead of through the operator are not seen.
+ */
+final class XMLChangeTracker {
+    private final Document doc;
+    private ByteBuffer source;
+    private Charset charset;
+    private String sourceText;
+    private Map<Node, int[]> regions;
+    private final Set<Node> updatedNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+    private boolean isStructureChanged;
+
+    /**
+     * @param source the bytes the document was parsed from, null if unknown
+     */
+    XMLChangeTracker(Document doc, ByteBuffer source, Charset charset) {
+        this.doc = doc;
+        reset(source, charset);
+    }
+
+    /**
+     * Called before the text or attributes of an element are replaced
+     */
+    void nodeUpdating(Node node) {
+        if (isStructureChanged || source == null) {
+            return;
+        }
+
+        if (regions == null) {
+            sourceText = charset.decode(source.duplicate()).toString();
+            regions = mapRegions(doc, sourceText);
+
+            if (regions == null) { // Source and document do not line up, such as when entities add elements
+                isStructureChanged = true;
+                return;
+            }
+        }
+
+        if (regions.containsKey(node)) {
+            updatedNodes.add(node);
+        }
+        else {
+            isStructureChanged = true;
+        }
+    }
+
+    void structureChanged() {
+        isStructureChanged = true;
+    }
+
+    /**
+     * @return the source with the updated elements written over their original text, or null if the whole document
+     * has to be serialized
+     */
+    ByteBuffer getIncrementalContent() {
+        if (isStructureChanged || source == null) {
+            return null;
+        }
+
+        if (updatedNodes.isEmpty()) {
+            return source;
+        }
+
+        List<int[]> changedRegions = new ArrayList<>(updatedNodes.size());
+        Map<int[], Node> regionNodes = new IdentityHashMap<>();
+
+        for (Node node : updatedNodes) {
+            int[] region = regions.get(node);
+            changedRegions.add(region);
+            regionNodes.put(region, node);
+        }
+
+        Collections.sort(changedRegions, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] region1, int[] region2) {
+                return Integer.compare(region1[0], region2[0]);
+            }
+        });
+
+        // Only Unicode encodings can write every character, others need character references
+        CharsetEncoder encoder = charset.name().startsWith("UTF") ? null : charset.newEncoder();
+        StringBuilder content = new StringBuilder(sourceText.length() + 256);
+        int copiedTo = 0;
+
+        for (int[] region : changedRegions) {
+            if (region[0] < copiedTo) { // Inside an element that was updated as a whole
+                continue;
+            }
+
+            content.append(sourceText, copiedTo, region[0]);
+            XMLUtil.serialize(regionNodes.get(region), content, encoder);
+            copiedTo = region[1];
+        }
+
+        content.append(sourceText, copiedTo, sourceText.length());
+
+        return ByteBuffer.wrap(content.toString().getBytes(charset));
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Starts tracking again from a source matching the current document, such as what was just saved
+     */
+    void reset(ByteBuffer source, Charset charset) {
+        this.source = source;
+        this.charset = charset;
+        sourceText = null;
+        regions = null;
+        updatedNodes.clear();
+        isStructureChanged = false;
+    }
+
+    /**
+     * @return the start and end offset of each element in the source text, null if the elements found in the text
+     * are not the elements of the document
+     */
+    static Map<Node, int[]> mapRegions(Document doc, String text) {
+        List<int[]> tags = scanElements(text);
+
+        if (tags == null) {
+            return null;
+        }
+
+        Map<Node, int[]> regions = new IdentityHashMap<>(tags.size() * 2);
+        Deque<Node> pending = new ArrayDeque<>();
+        int index = 0;
+
+        pending.push(doc.getDocumentElement());
+
+        while (!pending.isEmpty()) {
+            Node element = pending.pop();
+
+            if (index == tags.size()) {
+                return null;
+            }
+
+            int[] tag = tags.get(index++);
+            String name = element.getNodeName();
+
+            if (tag[3] - tag[2] != name.length() || !text.regionMatches(tag[2], name, 0, name.length())) {
+                return null;
+            }
+
+            regions.put(element, Arrays.copyOf(tag, 2));
+
+            for (Node child = element.getLastChild(); child != null; child = child.getPreviousSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    pending.push(child);
+                }
+                else if (child.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
+                    return null;
+                }
+            }
+        }
+
+        return index == tags.size() ? regions : null;
+    }
+
+    static List<int[]> scanElements(CharSequence text) {
+        return scanElements(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the elements of the text in document order, each as its start offset, end offset, the offsets of its
+     * name and the offset just past its start tag. Comments, CDATA sections, processing instructions and the
+     * document type declaration are skipped.
+     *
+     * @param maxDepth depth of the deepest elements returned, the root element being at depth 0
+     * @return the elements found, null if the text is not well formed enough to find them
+     */
+    static List<int[]> scanElements(CharSequence text, int maxDepth) {
+        List<int[]> elements = new ArrayList<>();
+        Deque<int[]> openElements = new ArrayDeque<>();
+        int i = 0;
+
+        while ((i = indexOf(text, '<', i)) >= 0) {
+            if (startsWith(text, "<!--", i)) {
+                i = skipPast(text, "-->", i + 4);
+            }
+            else if (startsWith(text, "<![CDATA[", i)) {
+                i = skipPast(text, "]]>", i + 9);
+            }
+            else if (startsWith(text, "<?", i)) {
+                i = skipPast(text, "?>", i + 2);
+            }
+            else if (startsWith(text, "<!", i)) {
+                i = skipDeclaration(text, i + 2);
+            }
+            else if (startsWith(text, "</", i)) {
+                int end = indexOf(text, '>', i);
+
+                if (end < 0 || openElements.isEmpty()) {
+                    return null;
+                }
+
+                openElements.pop()[1] = end + 1;
+                i = end + 1;
+            }
+            else {
+                int nameEnd = i + 1;
+
+                while (nameEnd < text.length() && !isTagDelimiter(text.charAt(nameEnd))) {
+                    ++nameEnd;
+                }
+
+                int end = skipTag(text, nameEnd);
+
+                if (end < 0) {
+                    return null;
+                }
+
+                int[] element = {i, -1, i + 1, nameEnd, end + 1};
+
+                if (openElements.size() <= maxDepth) {
+                    elements.add(element);
+                }
+
+                if (text.charAt(end - 1) == '/') {
+                    element[1] = end + 1;
+                }
+                else {
+                    openElements.push(element);
+                }
+
+                i = end + 1;
+            }
+
+            if (i < 0) {
+                return null;
+            }
+        }
+
+        return openElements.isEmpty() ? elements : null;
+    }
+
+    private static int skipPast(CharSequence text, String terminator, int from) {
+        int end = indexOf(text, terminator, from);
+
+        return end < 0 ? -1 : end + terminator.length();
+    }
+
+    // Attribute values may contain '>', so quotes are followed to find the end of the tag
+    private static int skipTag(CharSequence text, int from) {
+        char quote = 0;
+
+        for (int i = from; i < text.length(); ++i) {
+            char c = text.charAt(i);
+
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+            else if (c == '>') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // A document type declaration can hold an internal subset with its own markup and quoted strings
+    private static int skipDeclaration(CharSequence text, int from) {
+        int depth = 0;
+        char quote = 0;
+
+        for (int i = from; i < text.length(); ++i) {
+            char c = text.charAt(i);
+
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+            }
+            else if (c == '[') {
+                ++depth;
+            }
+            else if (c == ']') {
+                --depth;
+            }
+            else if (c == '>' && depth == 0) {
+                return i + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    // Strings are searched with their own methods, other character sequences such as bytes read as characters one
+    // at a time
+    private static int indexOf(CharSequence text, char c, int from) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(c, from);
+        }
+
+        for (int i = from; i < text.length(); ++i) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int indexOf(CharSequence text, String target, int from) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(target, from);
+        }
+
+        for (int i = indexOf(text, target.charAt(0), from); i >= 0; i = indexOf(text, target.charAt(0), i + 1)) {
+            if (startsWith(text, target, i)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence text, String prefix, int offset) {
+        if (text instanceof String) {
+            return ((String) text).startsWith(prefix, offset);
+        }
+
+        if (offset + prefix.length() > text.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); ++i) {
+            if (text.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isTagDelimiter(char c) {
+        return c == '>' || c == '/' || Character.isWhitespace(c);
+    }
+}
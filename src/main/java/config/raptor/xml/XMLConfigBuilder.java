@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Builds an element and its content directly in the document of an {@link XMLConfigCreator}, for configs made in
+ * code rather than from an XML string. Nothing is parsed or imported, and the element built can be added with
+ * {@link XMLConfigOperator#addConfig(String, org.w3c.dom.Node, XMLConfigOperator.Position)}.
+ *
+ * The builder starts inside the element it was created for. {@link #element(String)} starts a child element that
+ * the following calls add to, up to the matching {@link #end()}. For example
+ * <pre>{@code
+ * Element environment = configCreator.buildConfig("Environment")
+ *         .attribute("type", "hybrid")
+ *         .child("Name", "Production")
+ *         .element("Credentials")
+ *             .child("Username", "admin")
+ *             .child("Password", "admin")
+ *         .end()
+ *         .build();
+ * }</pre>
+ */
+public final class XMLConfigBuilder {
+    private final Document document;
+    private final Element root;
+    private Element current;
+
+    // Built through XMLConfigCreator so that nodes are made by the document they will be added to
+    XMLConfigBuilder(Document document, String elementName) throws ConfigException {
+        this.document = document;
+        this.root = createElement(elementName);
+        this.current = root;
+    }
+
+    /**
+     * Starts a child element of the current element, which the following calls add to until {@link #end()}
+     */
+    public XMLConfigBuilder element(String elementName) throws ConfigException {
+        current = (Element) current.appendChild(createElement(elementName));
+
+        return this;
+    }
+
+    /**
+     * Adds a child element holding only the given text, without starting it
+     */
+    public XMLConfigBuilder child(String elementName, String text) throws ConfigException {
+        Element child = createElement(elementName);
+
+        if (text != null && !text.isEmpty()) {
+            child.appendChild(document.createTextNode(text));
+        }
+
+        current.appendChild(child);
+
+        return this;
+    }
+
+    /**
+     * Ends the element started by the last open {@link #element(String)} call, so that the following calls add to
+     * its parent again
+     */
+    public XMLConfigBuilder end() throws ConfigException {
+        if (current == root) {
+            throw new ConfigException("No element started by element() is open");
+        }
+
+        current = (Element) current.getParentNode();
+
+        return this;
+    }
+
+    public XMLConfigBuilder attribute(String attributeName, String value) throws ConfigException {
+        try {
+            current.setAttributeNS(null, attributeName, value);
+        } catch (DOMException e) {
+            throw new ConfigException("Invalid attribute name '" + attributeName + "'", e);
+        }
+
+        return this;
+    }
+
+    public XMLConfigBuilder text(String text) {
+        current.appendChild(document.createTextNode(text));
+
+        return this;
+    }
+
+    public XMLConfigBuilder cdata(String text) {
+        current.appendChild(document.createCDATASection(text));
+
+        return this;
+    }
+
+    public XMLConfigBuilder comment(String comment) {
+        current.appendChild(document.createComment(comment));
+
+        return this;
+    }
+
+    /**
+     * @return the element the builder was created for, whether or not every started element was ended. Calls made
+     * on the builder afterwards change the returned element.
+     */
+    public Element build() {
+        return root;
+    }
+
+    // Elements and attributes are made without a namespace, as the namespace aware parser makes unprefixed ones, so
+    // that built and parsed configs are matched by paths alike
+    private Element createElement(String elementName) throws ConfigException {
+        try {
+            return document.createElementNS(null, elementName);
+        } catch (DOMException e) {
+            throw new ConfigException("Invalid element name '" + elementName + "'", e);
+        }
+    }
+}
@@ -18,18 +18,37 @@ package config.raptor.xml;
 
 import config.raptor.ConfigException;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.Text;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class XMLConfigCreator {
-    private Document document;
+    public static final int DEFAULT_FRAGMENT_CACHE_CAPACITY = 128;
+
+    private static final String FRAGMENTS_ELEMENT = "config-raptor-fragments";
+    private static final int CONFIGS_PER_CHUNK = 64;
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private volatile Document document;
+    private Map<String, Node> fragmentCache;
 
     // No external construction allowed to prevent issues related to the wrong Document object being used
     XMLConfigCreator(Document document) {
@@ -37,15 +56,312 @@ public class XMLConfigCreator {
     }
 
     public Node createConfig(String xmlString) throws ConfigException {
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-        docFactory.setNamespaceAware(true);
+        if (fragmentCache == null) {
+            return parse(xmlString);
+        }
+
+        Node fragment;
+
+        synchronized (fragmentCache) {
+            fragment = fragmentCache.get(xmlString);
+        }
+
+        if (fragment == null) {
+            fragment = parse(xmlString);
+
+            synchronized (fragmentCache) {
+                fragmentCache.put(xmlString, fragment);
+            }
+        }
+
+        return fragment.cloneNode(true);
+    }
+
+    /**
+     * Reads a sequence of configs, such as a file of generated entries, in a single pass. Nodes are created
+     * directly in the document as they are read, without parsing into a document of their own and importing, and
+     * the content is not held in memory as a whole. Whitespace between the configs is dropped.
+     *
+     * @param xmlContent what could be the content of an element, without an XML declaration. It is not closed.
+     * @return the configs in order, which can be added in one operation with
+     * {@link XMLConfigOperator#addConfig(String, Node, XMLConfigOperator.Position)}
+     */
+    public DocumentFragment createConfigs(Reader xmlContent) throws ConfigException {
+        DocumentFragment fragment = document.createDocumentFragment();
+
+        try {
+            readConfigs(new SequenceReader(new StringReader("<" + FRAGMENTS_ELEMENT + ">"), xmlContent,
+                                           new StringReader("</" + FRAGMENTS_ELEMENT + ">")), fragment);
+        } catch (XMLStreamException e) {
+            throw new ConfigException("XML parsing error when parsing xml content", e);
+        }
+
+        return fragment;
+    }
+
+    /**
+     * Creates a config from each of the strings, as {@link #createConfig(String)} does, into one fragment. Nodes are
+     * created directly in the document instead of parsing each string into a document of its own and importing.
+     *
+     * @return the configs in order, which can be added in one operation with
+     * {@link XMLConfigOperator#addConfig(String, Node, XMLConfigOperator.Position)}
+     */
+    public DocumentFragment createConfigs(Iterator<String> xmlStrings) throws ConfigException {
+        DocumentFragment fragment = document.createDocumentFragment();
+        List<String> chunk = new ArrayList<>(CONFIGS_PER_CHUNK);
+
+        while (xmlStrings.hasNext()) {
+            chunk.clear();
+
+            while (chunk.size() < CONFIGS_PER_CHUNK && xmlStrings.hasNext()) {
+                chunk.add(xmlStrings.next());
+            }
+
+            if (!readChunk(chunk, fragment)) {
+                for (String xmlString : chunk) {
+                    fragment.appendChild(readConfig(xmlString));
+                }
+            }
+        }
+
+        return fragment;
+    }
+
+    /**
+     * Parses a fragment with {@code {{name}}} placeholders in its text and attribute values, which is then copied
+     * with values for the placeholders by {@link XMLConfigTemplate#create(Map)} instead of being parsed again.
+     */
+    public XMLConfigTemplate createTemplate(String xmlTemplate) throws ConfigException {
+        return new XMLConfigTemplate(createConfig(xmlTemplate));
+    }
+
+    /**
+     * Starts building an element in code, which creates the nodes directly instead of parsing an XML string
+     */
+    public XMLConfigBuilder buildConfig(String elementName) throws ConfigException {
+        return new XMLConfigBuilder(document, elementName);
+    }
+
+    /**
+     * Enables keeping the most recently parsed fragments, so that creating the same fragment again copies the parsed
+     * one instead of parsing the string. Up to {@link #DEFAULT_FRAGMENT_CACHE_CAPACITY} fragments are kept, however
+     * large they are, so this is disabled by default and suits applications creating the same small configs often.
+     */
+    public void setFragmentCacheEnabled(boolean isEnabled) {
+        if (!isEnabled) {
+            fragmentCache = null;
+        }
+        else if (fragmentCache == null) {
+            fragmentCache = new LinkedHashMap<String, Node>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+                    return size() > DEFAULT_FRAGMENT_CACHE_CAPACITY;
+                }
+            };
+        }
+    }
+
+    public boolean isFragmentCacheEnabled() {
+        return fragmentCache != null;
+    }
+
+    /**
+     * Switches to a document loaded again from the file. Cached fragments belong to the old document, so they are
+     * dropped.
+     */
+    void setDocument(Document document) {
+        this.document = document;
+
+        if (fragmentCache != null) {
+            synchronized (fragmentCache) {
+                fragmentCache.clear();
+            }
+        }
+    }
+
+    // Setting up a reader costs far more than reading a small config, so strings that each hold a single element are
+    // read together in one pass. Anything else is left to be read string by string, which also finds the string
+    // that is in error.
+    private boolean readChunk(List<String> chunk, DocumentFragment fragment) {
+        StringBuilder content = new StringBuilder("<" + FRAGMENTS_ELEMENT + ">");
+
+        for (String xmlString : chunk) {
+            if (!isSingleElement(xmlString)) {
+                return false;
+            }
+
+            content.append(xmlString);
+        }
+
+        content.append("</" + FRAGMENTS_ELEMENT + ">");
+
+        DocumentFragment chunkFragment = document.createDocumentFragment();
+
+        try {
+            readConfigs(new StringReader(content.toString()), chunkFragment);
+        } catch (XMLStreamException e) {
+            return false;
+        }
+
+        fragment.appendChild(chunkFragment);
+
+        return true;
+    }
+
+    private static boolean isSingleElement(String xmlString) {
+        List<int[]> elements = XMLChangeTracker.scanElements(xmlString, 0);
+
+        if (elements == null || elements.size() != 1) {
+            return false;
+        }
 
+        for (int i = 0; i < xmlString.length(); ++i) {
+            if (i == elements.get(0)[0]) {
+                i = elements.get(0)[1] - 1;
+            }
+            else if (!Character.isWhitespace(xmlString.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Reads the content of the wrapping element into the fragment
+    private void readConfigs(Reader wrappedContent, DocumentFragment fragment) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(wrappedContent);
+
+        try {
+            reader.nextTag();
+            readContent(reader, fragment);
+
+            while (reader.hasNext()) { // Fails on anything that closed the wrapping element early
+                reader.next();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Element readConfig(String xmlString) throws ConfigException {
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(xmlString));
+
+            try {
+                reader.nextTag();
+
+                Element element = createElement(reader);
+                readContent(reader, element);
+
+                while (reader.hasNext()) { // Checks that nothing but comments follows the element
+                    reader.next();
+                }
+
+                return element;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new ConfigException("XML parsing error when parsing xml string '" + xmlString + "'", e);
+        }
+    }
+
+    // Reads up to the end of the element the reader is in, adding what it holds to the parent
+    private void readContent(XMLStreamReader reader, Node parent) throws XMLStreamException {
+        Node current = parent;
+
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    current = current.appendChild(createElement(reader));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (current == parent) {
+                        return;
+                    }
+
+                    current = current.getParentNode();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (current.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE && reader.isWhiteSpace()) {
+                        break;
+                    }
+
+                    // Parsers may report a run of text in several parts, which are joined into one node
+                    Node last = current.getLastChild();
+
+                    if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+                        ((Text) last).appendData(reader.getText());
+                    }
+                    else {
+                        current.appendChild(document.createTextNode(reader.getText()));
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    current.appendChild(document.createCDATASection(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(document.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(document.createProcessingInstruction(reader.getPITarget(),
+                                                                             reader.getPIData()));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Names are made as the namespace aware parser would make them, so that created configs match paths alike
+    private Element createElement(XMLStreamReader reader) {
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()),
+                                                   qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+        for (int i = 0; i < reader.getNamespaceCount(); ++i) {
+            String prefix = reader.getNamespacePrefix(i);
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix == null || prefix.isEmpty() ?
+                    XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ':' + prefix,
+                    reader.getNamespaceURI(i));
+        }
+
+        for (int i = 0; i < reader.getAttributeCount(); ++i) {
+            element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+                    qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                    reader.getAttributeValue(i));
+        }
+
+        return element;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+    }
+
+    private static String emptyToNull(String namespaceURI) {
+        return namespaceURI == null || namespaceURI.isEmpty() ? null : namespaceURI;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+        if (factory.isPropertySupported(CompactDocument.REPORT_CDATA_PROPERTY)) {
+            factory.setProperty(CompactDocument.REPORT_CDATA_PROPERTY, true);
+        }
+
+        return factory;
+    }
+
+    private Node parse(String xmlString) throws ConfigException {
         Node node;
         try {
-            docFactory.setFeature(javax.xml.XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-            Document doc = docBuilder.parse(new InputSource(
-                                        new ByteArrayInputStream(xmlString.getBytes(StandardCharsets.UTF_8))));
+            DocumentBuilder docBuilder = XMLParserPool.getDocumentBuilder();
+            Document doc = docBuilder.parse(new InputSource(new StringReader(xmlString)));
 
             node = this.document.importNode(doc.getDocumentElement(), true);
         } catch (SAXException e) {
@@ -58,4 +374,37 @@ public class XMLConfigCreator {
 
         return node;
     }
+
+    /**
+     * Reads the given readers one after the other, without closing them
+     */
+    private static final class SequenceReader extends Reader {
+        private final Reader[] readers;
+        private int current;
+
+        private SequenceReader(Reader... readers) {
+            this.readers = readers;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            for (; current < readers.length; ++current) {
+                int read = readers[current].read(buffer, offset, length);
+
+                if (read > 0) {
+                    return read;
+                }
+            }
+
+            return -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
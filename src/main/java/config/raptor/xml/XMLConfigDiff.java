@@ -0,0 +1,576 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Finds the changes that turn one config into another, as operations that
+ * {@link XMLConfigOperator#applyBatch(List)} replays on the first config or on another version of it, such as a
+ * newer shipped file the same local changes have to be made to.
+ *
+ * Paths of the operations select elements of the base config. A batch resolves every path before making any
+ * change, so the operations do not affect each other's paths. Where several child elements share a name, paths tell
+ * them apart by an attribute whose values differ between them, such as {@code Environment[@type='hybrid']}, and
+ * otherwise by position. The same attribute is used to pair up elements of the two configs, so that adding or
+ * removing one of them does not show up as changes to the others.
+ *
+ * Elements are compared by name, attributes and text. Comments, processing instructions and whitespace between
+ * elements are not compared. Each subtree is hashed once and subtrees with equal hashes are confirmed to be equal
+ * and then not walked any further, so the time taken grows with the size of the configs rather than with the number
+ * of elements compared to each other.
+ *
+ * The root element cannot be replaced, so configs whose root elements differ in name, attributes or text between
+ * their child elements cannot be compared.
+ *
+ * An element without child elements whose text or attributes changed is updated. Otherwise the child elements are
+ * compared in turn when the attributes and the text between the child elements are unchanged, and the element is
+ * replaced when they are not, as an update would replace its content. Elements that moved relative to the others are
+ * removed and added again.
+ */
+public final class XMLConfigDiff {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<Node, Long> hashes = new IdentityHashMap<>();
+    private final List<XMLConfigOperation> operations = new ArrayList<>();
+
+    private XMLConfigDiff() {
+    }
+
+    /**
+     * @return the operations that turn the base config into the target config, none if they are equal. Configs and
+     * updates refer to copies of nodes of the target config.
+     */
+    public static List<XMLConfigOperation> diff(XMLConfigIO base, XMLConfigIO target) throws ConfigException {
+        ReadWriteLock baseLock = base.getAccessLock();
+        ReadWriteLock targetLock = target.getAccessLock();
+
+        if (baseLock != null) {
+            baseLock.readLock().lock();
+        }
+
+        try {
+            if (targetLock != null) {
+                targetLock.readLock().lock();
+            }
+
+            try {
+                return diff(base.getDocument(), target.getDocument());
+            } finally {
+                if (targetLock != null) {
+                    targetLock.readLock().unlock();
+                }
+            }
+        } finally {
+            if (baseLock != null) {
+                baseLock.readLock().unlock();
+            }
+        }
+    }
+
+    static List<XMLConfigOperation> diff(Document base, Document target) throws ConfigException {
+        Element baseRoot = base.getDocumentElement();
+        Element targetRoot = target.getDocumentElement();
+        XMLConfigDiff diff = new XMLConfigDiff();
+
+        // Nothing can be added next to the root element, so it cannot be replaced
+        if (!nameKey(baseRoot).equals(nameKey(targetRoot))) {
+            throw new ConfigException("Root element '" + baseRoot.getNodeName() + "' cannot be changed into '" +
+                                      targetRoot.getNodeName() + "' with config operations");
+        }
+
+        if (!diff.isComparable(baseRoot, targetRoot)) {
+            throw new ConfigException("Attributes and text of root element '" + baseRoot.getNodeName() +
+                                      "' cannot be changed with config operations, only its child elements can");
+        }
+
+        diff.compare(baseRoot, targetRoot, "/" + step(baseRoot, null, 0, true));
+
+        return diff.operations;
+    }
+
+    private void compare(Element base, Element target, String path) {
+        if (isEqual(base, target)) {
+            return;
+        }
+
+        if (!hasChildElements(base) && !hasChildElements(target)) {
+            operations.add(XMLConfigOperation.update(path, target.cloneNode(true)));
+        }
+        else {
+            compareChildren(base, target, path);
+        }
+    }
+
+    private void compareChildren(Element base, Element target, String path) {
+        List<Element> baseChildren = childElements(base);
+        List<Element> targetChildren = childElements(target);
+        Map<String, String> keyAttributes = chooseKeyAttributes(baseChildren, targetChildren);
+        String[] baseKeys = keys(baseChildren, keyAttributes);
+        String[] targetKeys = keys(targetChildren, keyAttributes);
+
+        Map<String, Integer> baseIndexes = new HashMap<>(baseKeys.length * 2);
+        for (int i = 0; i < baseKeys.length; ++i) {
+            baseIndexes.put(baseKeys[i], i);
+        }
+
+        int[] matches = new int[targetKeys.length];
+        for (int j = 0; j < targetKeys.length; ++j) {
+            Integer i = baseIndexes.get(targetKeys[j]);
+            matches[j] = i != null && isComparable(baseChildren.get(i), targetChildren.get(j)) ? i : -1;
+        }
+
+        boolean[] isKept = keepInOrder(matches);
+        boolean[] isBaseKept = new boolean[baseChildren.size()];
+        for (int j = 0; j < matches.length; ++j) {
+            if (isKept[j]) {
+                isBaseKept[matches[j]] = true;
+            }
+        }
+
+        String[] basePaths = new String[baseChildren.size()];
+        Map<String, Integer> nameCounts = countNames(baseChildren);
+        Map<String, Integer> occurrences = new HashMap<>();
+
+        for (int i = 0; i < basePaths.length; ++i) {
+            Element child = baseChildren.get(i);
+            String name = nameKey(child);
+            Integer occurrence = occurrences.get(name);
+            occurrence = occurrence == null ? 1 : occurrence + 1;
+            occurrences.put(name, occurrence);
+
+            basePaths[i] = path + "/" + step(child, keyAttributes.get(name), occurrence, nameCounts.get(name) == 1);
+
+            if (!isBaseKept[i]) {
+                operations.add(XMLConfigOperation.remove(basePaths[i]));
+            }
+        }
+
+        List<Element> added = new ArrayList<>();
+        String previousPath = null;
+
+        for (int j = 0; j < targetChildren.size(); ++j) {
+            if (!isKept[j]) {
+                added.add(targetChildren.get(j));
+                continue;
+            }
+
+            String keptPath = basePaths[matches[j]];
+
+            if (!added.isEmpty()) {
+                addAll(added, previousPath != null ? previousPath : keptPath,
+                       previousPath != null ? XMLConfigOperator.Position.AFTER : XMLConfigOperator.Position.BEFORE);
+            }
+
+            compare(baseChildren.get(matches[j]), targetChildren.get(j), keptPath);
+            previousPath = keptPath;
+        }
+
+        if (!added.isEmpty()) {
+            addAll(added, previousPath != null ? previousPath : path,
+                   previousPath != null ? XMLConfigOperator.Position.AFTER : XMLConfigOperator.Position.AT);
+        }
+    }
+
+    // Elements added next to the same node go in as one fragment, as adding them one by one after the same node
+    // would reverse their order
+    private void addAll(List<Element> added, String pathString, XMLConfigOperator.Position position) {
+        Node config;
+
+        if (added.size() == 1) {
+            config = added.get(0).cloneNode(true);
+        }
+        else {
+            config = added.get(0).getOwnerDocument().createDocumentFragment();
+
+            for (Element element : added) {
+                config.appendChild(element.cloneNode(true));
+            }
+        }
+
+        operations.add(XMLConfigOperation.add(pathString, config, position));
+        added.clear();
+    }
+
+    /**
+     * Subtrees with different hashes differ. Equal hashes are confirmed by comparing the subtrees, as different
+     * subtrees can have the same hash, which is only done once for each subtree as equal subtrees are not walked.
+     */
+    private boolean isEqual(Element base, Element target) {
+        if (hash(base) != hash(target) || !nameKey(base).equals(nameKey(target)) ||
+            !hasEqualAttributes(base, target)) {
+            return false;
+        }
+
+        if (!hasChildElements(base) && !hasChildElements(target)) {
+            return text(base).equals(text(target));
+        }
+
+        if (!ownText(base).equals(ownText(target))) {
+            return false;
+        }
+
+        List<Element> baseChildren = childElements(base);
+        List<Element> targetChildren = childElements(target);
+
+        if (baseChildren.size() != targetChildren.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < baseChildren.size(); ++i) {
+            if (!isEqual(baseChildren.get(i), targetChildren.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Elements are compared in place when an update can make one into the other, or when only their child elements
+     * differ, which are then compared in turn. Others are replaced.
+     */
+    private boolean isComparable(Element base, Element target) {
+        if (!nameKey(base).equals(nameKey(target))) {
+            return false;
+        }
+
+        if (!hasChildElements(base) && !hasChildElements(target)) {
+            return true;
+        }
+
+        return attributes(base).equals(attributes(target)) && ownText(base).equals(ownText(target));
+    }
+
+    /**
+     * Finds the largest set of matched elements that are in the same order in both configs, the longest increasing
+     * subsequence of their base indexes. The other matched elements moved and are added again.
+     */
+    private static boolean[] keepInOrder(int[] matches) {
+        int[] tails = new int[matches.length];
+        int[] previous = new int[matches.length];
+        int length = 0;
+
+        for (int j = 0; j < matches.length; ++j) {
+            if (matches[j] < 0) {
+                continue;
+            }
+
+            int low = 0;
+            int high = length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (matches[tails[middle]] < matches[j]) {
+                    low = middle + 1;
+                }
+                else {
+                    high = middle;
+                }
+            }
+
+            previous[j] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = j;
+
+            if (low == length) {
+                ++length;
+            }
+        }
+
+        boolean[] isKept = new boolean[matches.length];
+
+        for (int j = length > 0 ? tails[length - 1] : -1; j >= 0; j = previous[j]) {
+            isKept[j] = true;
+        }
+
+        return isKept;
+    }
+
+    /**
+     * Chooses, for each name shared by several child elements, an attribute all of them have on both sides with
+     * values that differ between them on each side
+     */
+    private static Map<String, String> chooseKeyAttributes(List<Element> baseChildren, List<Element> targetChildren) {
+        Map<String, List<Element>> baseGroups = groupByName(baseChildren);
+        Map<String, List<Element>> targetGroups = groupByName(targetChildren);
+        Map<String, String> keyAttributes = new HashMap<>();
+
+        for (Map.Entry<String, List<Element>> entry : baseGroups.entrySet()) {
+            List<Element> baseGroup = entry.getValue();
+            List<Element> targetGroup = targetGroups.get(entry.getKey());
+
+            if (baseGroup.size() < 2 && (targetGroup == null || targetGroup.size() < 2)) {
+                continue;
+            }
+
+            NamedNodeMap candidates = baseGroup.get(0).getAttributes();
+
+            for (int i = 0; i < candidates.getLength(); ++i) {
+                Node candidate = candidates.item(i);
+
+                if (candidate.getNamespaceURI() == null && isKey(candidate.getNodeName(), baseGroup) &&
+                    (targetGroup == null || isKey(candidate.getNodeName(), targetGroup))) {
+                    keyAttributes.put(entry.getKey(), candidate.getNodeName());
+                    break;
+                }
+            }
+        }
+
+        return keyAttributes;
+    }
+
+    private static boolean isKey(String attributeName, List<Element> group) {
+        Map<String, Boolean> values = new HashMap<>(group.size() * 2);
+
+        for (Element element : group) {
+            if (!element.hasAttribute(attributeName) || values.put(element.getAttribute(attributeName), true) != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String[] keys(List<Element> children, Map<String, String> keyAttributes) {
+        String[] keys = new String[children.size()];
+        Map<String, Integer> occurrences = new HashMap<>();
+
+        for (int i = 0; i < keys.length; ++i) {
+            Element child = children.get(i);
+            String name = nameKey(child);
+            String keyAttribute = keyAttributes.get(name);
+
+            if (keyAttribute != null) {
+                keys[i] = name + "\u0000@" + child.getAttribute(keyAttribute);
+            }
+            else {
+                Integer occurrence = occurrences.get(name);
+                occurrence = occurrence == null ? 1 : occurrence + 1;
+                occurrences.put(name, occurrence);
+
+                keys[i] = name + "\u0000#" + occurrence;
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * @return a location step selecting the element among its siblings
+     */
+    private static String step(Element element, String keyAttribute, int occurrence, boolean isOnlyWithName) {
+        String name = XMLPath.nameOf(element);
+        String nameTest = name != null ? name : "*[local-name()=" + quote(element.getLocalName()) +
+                                                " and namespace-uri()=" + quote(element.getNamespaceURI()) + "]";
+
+        if (isOnlyWithName) {
+            return nameTest;
+        }
+
+        if (keyAttribute != null) {
+            String value = element.getAttribute(keyAttribute);
+
+            // XPath has no escapes, so a value with both kinds of quotes cannot be written
+            if (value.indexOf('\'') < 0 || value.indexOf('"') < 0) {
+                return nameTest + "[@" + keyAttribute + "=" + quote(value) + "]";
+            }
+        }
+
+        return nameTest + "[" + occurrence + "]";
+    }
+
+    private static String quote(String value) {
+        return value.indexOf('\'') < 0 ? "'" + value + "'" : "\"" + value + "\"";
+    }
+
+    // Elements without a namespace go by their name as written, which is what paths match
+    private static String nameKey(Element element) {
+        String namespaceURI = element.getNamespaceURI();
+        String localName = element.getLocalName();
+
+        return namespaceURI == null ? element.getNodeName() : "{" + namespaceURI + "}" + localName;
+    }
+
+    private long hash(Element element) {
+        Long cached = hashes.get(element);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        long hash = hash(FNV_OFFSET_BASIS, nameKey(element));
+
+        for (Map.Entry<String, String> attribute : attributes(element).entrySet()) {
+            hash = hash(hash(hash, attribute.getKey()), attribute.getValue());
+        }
+
+        if (!hasChildElements(element)) {
+            hash = hash(hash, text(element));
+        }
+        else {
+            hash = hash(hash, ownText(element));
+
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    long childHash = hash((Element) child);
+
+                    for (int shift = 0; shift < 64; shift += 16) {
+                        hash = (hash ^ ((childHash >>> shift) & 0xFFFF)) * FNV_PRIME;
+                    }
+                }
+            }
+        }
+
+        hashes.put(element, hash);
+
+        return hash;
+    }
+
+    // FNV-1a over the characters, ended with a value no character has so that adjoining strings cannot run together
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+
+        return (hash ^ 0x10000) * FNV_PRIME;
+    }
+
+    private static boolean hasEqualAttributes(Element base, Element target) {
+        NamedNodeMap baseAttributes = base.getAttributes();
+        NamedNodeMap targetAttributes = target.getAttributes();
+
+        if (baseAttributes.getLength() != targetAttributes.getLength()) {
+            return false;
+        }
+
+        for (int i = 0; i < baseAttributes.getLength(); ++i) {
+            Node attribute = baseAttributes.item(i);
+            Node targetAttribute = targetAttributes.getNamedItem(attribute.getNodeName());
+
+            if (targetAttribute == null || !attribute.getNodeValue().equals(targetAttribute.getNodeValue())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static Map<String, String> attributes(Element element) {
+        NamedNodeMap attributeMap = element.getAttributes();
+        Map<String, String> attributes = new TreeMap<>();
+
+        for (int i = 0; i < attributeMap.getLength(); ++i) {
+            attributes.put(attributeMap.item(i).getNodeName(), attributeMap.item(i).getNodeValue());
+        }
+
+        return attributes;
+    }
+
+    // The text of an element without child elements, which is its value
+    private static String text(Element element) {
+        StringBuilder text = new StringBuilder();
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                text.append(child.getNodeValue());
+            }
+        }
+
+        return text.toString();
+    }
+
+    // The text between the child elements of an element, leaving out the whitespace that only lays them out
+    private static String ownText(Element element) {
+        StringBuilder text = new StringBuilder();
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                String value = child.getNodeValue().trim();
+
+                if (!value.isEmpty()) {
+                    text.append(value).append('\u0000');
+                }
+            }
+        }
+
+        return text.toString();
+    }
+
+    private static boolean hasChildElements(Element element) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static List<Element> childElements(Element element) {
+        List<Element> children = new ArrayList<>();
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                children.add((Element) child);
+            }
+        }
+
+        return children;
+    }
+
+    private static Map<String, List<Element>> groupByName(List<Element> elements) {
+        Map<String, List<Element>> groups = new HashMap<>();
+
+        for (Element element : elements) {
+            List<Element> group = groups.get(nameKey(element));
+
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(nameKey(element), group);
+            }
+
+            group.add(element);
+        }
+
+        return groups;
+    }
+
+    private static Map<String, Integer> countNames(List<Element> elements) {
+        Map<String, Integer> counts = new HashMap<>();
+
+        for (Element element : elements) {
+            Integer count = counts.get(nameKey(element));
+            counts.put(nameKey(element), count == null ? 1 : count + 1);
+        }
+
+        return counts;
+    }
+}
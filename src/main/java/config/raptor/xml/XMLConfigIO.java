@@ -17,64 +17,328 @@
 package config.raptor.xml;
 
 import config.raptor.ConfigException;
+import config.raptor.ConfigFiles;
 import config.raptor.ConfigIO;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class XMLConfigIO implements ConfigIO {
     private File file;
     private Document doc;
     private XMLConfigOperator configOperator;
     private XMLConfigCreator configCreator;
+    private XMLChangeTracker changeTracker;
+    private final int bufferSize;
+    private ReadWriteLock accessLock;
+    private volatile XMLConfigSnapshot snapshot;
+    private boolean isSnapshotEnabled;
+    // Hash of the file content last loaded or saved, to tell whether the file was changed by someone else
+    private byte[] contentHash;
 
     public XMLConfigIO(String filePath) throws ParserConfigurationException, IOException, SAXException {
+        this(filePath, ConfigFiles.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize number of bytes buffered before each write to the file when saving
+     */
+    public XMLConfigIO(String filePath, int bufferSize) throws ParserConfigurationException, IOException,
+                                                                                                    SAXException {
         file = new File(filePath);
 
         if (!file.isFile()) {
             throw new IllegalArgumentException("The file path " + filePath + " provided is not a valid file");
         }
 
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-        docFactory.setNamespaceAware(true);
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive, got " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
 
-        docFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-        docFactory.setIgnoringComments(false);
-        DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-        doc = docBuilder.parse(file);
-        doc.getDocumentElement().normalize();
+        // The source is kept so that saving can rewrite only the changed parts of it, which a mapping of the file
+        // cannot be trusted with once other processes edit the file in place
+        ByteBuffer source = ConfigFiles.readCopy(file.toPath());
+
+        doc = parse(source);
+        contentHash = ConfigFiles.hash(source);
 
         configOperator = new XMLConfigOperator(doc);
         configCreator = new XMLConfigCreator(doc);
+
+        changeTracker = createChangeTracker(doc, source);
+        configOperator.setChangeTracker(changeTracker);
     }
 
+    /**
+     * Loads the file again if its content is not what was last loaded or saved, such as when another process edited
+     * it. The new document is parsed before it replaces the current one behind the operator and creator, which
+     * carry on being used, so with concurrent access enabled lookups are only held up while it is swapped in.
+     *
+     * Changes made since the last save are discarded. Nodes created or looked up before reloading belong to the old
+     * document and can no longer be added.
+     *
+     * @return true if the file had changed and was loaded again
+     */
+    public synchronized boolean reload() throws ConfigException {
+        ByteBuffer source;
+
+        try {
+            // Most calls find the file unchanged, which hashing it where it is mapped tells without copying it
+            if (Arrays.equals(ConfigFiles.hash(ConfigFiles.read(file.toPath())), contentHash)) {
+                return false;
+            }
+
+            // The source is kept by the change tracker, so it is copied and hashed again as it may have changed since
+            source = ConfigFiles.readCopy(file.toPath());
+        } catch (IOException e) {
+            throw new ConfigException("Error reading file " + file, e);
+        }
+
+        byte[] sourceHash = ConfigFiles.hash(source);
+
+        if (Arrays.equals(sourceHash, contentHash)) {
+            return false;
+        }
+
+        Document newDoc;
+
+        try {
+            newDoc = parse(source);
+        } catch (SAXException e) {
+            throw new ConfigException("XML parsing error when reloading file " + file, e);
+        } catch (ParserConfigurationException e) {
+            throw new ConfigException("Parser configuration error", e);
+        } catch (IOException e) {
+            throw new ConfigException("Error reading file " + file, e);
+        }
+
+        if (accessLock == null) {
+            setDocument(newDoc, source, sourceHash);
+            return true;
+        }
+
+        // The operator requires a fully built document, which is done before holding up lookups
+        XMLUtil.expandDeferredNodes(newDoc);
+        accessLock.writeLock().lock();
+
+        try {
+            setDocument(newDoc, source, sourceHash);
+        } finally {
+            accessLock.writeLock().unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the document back to the file. When the only changes made through the operator were updates, just the
+     * updated elements are rewritten and the rest of the file keeps its formatting, comments and encoding. Otherwise
+     * the whole document is serialized again.
+     *
+     * The file is replaced in a single step, so it is never left partly written. It is not touched at all when it
+     * already holds what would be written, see {@link #saveIfChanged()}.
+     */
     @Override
     public void save() throws ConfigException {
+        saveIfChanged();
+    }
+
+    /**
+     * Saves the document as {@link #save()} does, unless the file already holds what would be written. Nothing is
+     * serialized when no change was made through the operator since the document was loaded or saved and the file
+     * still has the content it had then. Otherwise the content is hashed as it is serialized and compared with the
+     * file, so changes that were undone or set values to what they were do not rewrite it either.
+     *
+     * @return true if the file was written, false if the save was skipped
+     */
+    public synchronized boolean saveIfChanged() throws ConfigException {
+        if (accessLock == null) {
+            return saveDocument();
+        }
+
+        // Saving only reads the document, so lookups carry on while it is written out
+        accessLock.readLock().lock();
+
         try {
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.ENCODING, Charset.defaultCharset().toString());
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-            transformer.transform(new DOMSource(doc), new StreamResult(file));
-        } catch (TransformerException e) {
-            throw new ConfigException("XML Transformation error when saving file", e);
+            return saveDocument();
+        } finally {
+            accessLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Enables snapshots, publishing the first one right away. A new snapshot is then published on every
+     * {@link #save()}, every committed {@link XMLConfigOperator#applyBatch(List)} and every call to
+     * {@link #publishSnapshot()}, while other changes made through the operator stay private to the document until
+     * then.
+     */
+    public void setSnapshotEnabled(boolean isEnabled) {
+        isSnapshotEnabled = isEnabled;
+        configOperator.setBatchCommitListener(isEnabled ? createBatchCommitListener() : null);
+        snapshot = null;
+
+        if (isEnabled) {
+            publishSnapshot();
+        }
+    }
+
+    public boolean isSnapshotEnabled() {
+        return isSnapshotEnabled;
+    }
+
+    /**
+     * @return the latest published snapshot, null if snapshots are not enabled. Reading it needs no locking.
+     */
+    public XMLConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Takes a snapshot of the document as it is now and makes it the one returned by {@link #getSnapshot()}.
+     */
+    public XMLConfigSnapshot publishSnapshot() {
+        if (!isSnapshotEnabled) {
+            throw new IllegalStateException("Snapshots are not enabled");
+        }
+
+        if (accessLock == null) {
+            snapshot = XMLConfigSnapshot.of(doc);
+            return snapshot;
+        }
+
+        accessLock.readLock().lock();
+
+        try {
+            snapshot = XMLConfigSnapshot.of(doc);
+            return snapshot;
+        } finally {
+            accessLock.readLock().unlock();
         }
     }
 
+    private boolean saveDocument() throws ConfigException {
+        byte[] fileHash;
+
+        try {
+            fileHash = ConfigFiles.hash(ConfigFiles.read(file.toPath()));
+        } catch (IOException e) { // Such as when the file was deleted, it is written again
+            fileHash = null;
+        }
+
+        boolean isModified = configOperator.isModified();
+
+        if (!isModified && Arrays.equals(fileHash, contentHash)) {
+            return false;
+        }
+
+        ByteBuffer content = changeTracker != null ? changeTracker.getIncrementalContent() : null;
+
+        if (content != null) {
+            contentHash = ConfigFiles.writeIfChanged(file.toPath(), content, fileHash);
+            changeTracker.reset(content, changeTracker.getCharset());
+        }
+        else {
+            final Charset charset = Charset.defaultCharset();
+
+            contentHash = ConfigFiles.writeIfChanged(file.toPath(), new ConfigFiles.ContentWriter() {
+                @Override
+                public void write(OutputStream out) throws ConfigException {
+                    serialize(charset, out);
+                }
+            }, bufferSize, fileHash);
+
+            if (changeTracker != null) {
+                try {
+                    // Whether or not the file was written it now holds the serialized document, which is kept
+                    changeTracker.reset(ConfigFiles.readCopy(file.toPath()), charset);
+                } catch (IOException e) { // Only the next save is affected, it serializes everything again
+                    changeTracker.reset(null, null);
+                }
+            }
+        }
+
+        configOperator.setModified(false);
+
+        if (isSnapshotEnabled) {
+            snapshot = XMLConfigSnapshot.of(doc);
+        }
+
+        return !Arrays.equals(contentHash, fileHash);
+    }
+
+    /**
+     * Enables saving only the changed parts of the file, which is the default. When disabled every save serializes
+     * the whole document.
+     */
+    public void setIncrementalSaveEnabled(boolean isEnabled) {
+        if (isEnabled && changeTracker == null) {
+            // Changes made so far were not tracked, so the next save serializes everything
+            changeTracker = new XMLChangeTracker(doc, null, null);
+            configOperator.setChangeTracker(changeTracker);
+        }
+        else if (!isEnabled) {
+            changeTracker = null;
+            configOperator.setChangeTracker(null);
+        }
+    }
+
+    public boolean isIncrementalSaveEnabled() {
+        return changeTracker != null;
+    }
+
+    /**
+     * Replaces the operator with a {@link ConcurrentXMLConfigOperator}, so that the operator and {@link #save()} can
+     * be called from many threads. Operators returned by {@link #getConfigOperator()} before enabling or disabling
+     * concurrent access must no longer be used.
+     */
+    public void setConcurrentAccessEnabled(boolean isEnabled) {
+        if (isEnabled == isConcurrentAccessEnabled()) {
+            return;
+        }
+
+        boolean isPathIndexEnabled = configOperator.isPathIndexEnabled();
+        boolean isModified = configOperator.isModified();
+
+        if (isEnabled) {
+            accessLock = new ReentrantReadWriteLock();
+            configOperator = new ConcurrentXMLConfigOperator(doc, accessLock);
+        }
+        else {
+            accessLock = null;
+            configOperator = new XMLConfigOperator(doc);
+        }
+
+        configOperator.setChangeTracker(changeTracker);
+        configOperator.setPathIndexEnabled(isPathIndexEnabled);
+        configOperator.setModified(isModified);
+        configOperator.setBatchCommitListener(isSnapshotEnabled ? createBatchCommitListener() : null);
+    }
+
+    public boolean isConcurrentAccessEnabled() {
+        return accessLock != null;
+    }
+
     public XMLConfigOperator getConfigOperator() {
         return configOperator;
     }
@@ -82,4 +346,84 @@ public class XMLConfigIO implements ConfigIO {
     public XMLConfigCreator getConfigCreator() {
         return configCreator;
     }
+
+    Path getPath() {
+        return file.toPath();
+    }
+
+    Document getDocument() {
+        return doc;
+    }
+
+    /**
+     * @return the lock guarding the document when concurrent access is enabled, null otherwise
+     */
+    ReadWriteLock getAccessLock() {
+        return accessLock;
+    }
+
+    private void setDocument(Document newDoc, ByteBuffer source, byte[] sourceHash) {
+        doc = newDoc;
+        contentHash = sourceHash;
+        configOperator.setDocument(newDoc);
+        configOperator.setModified(false);
+        configCreator.setDocument(newDoc);
+
+        if (changeTracker != null) {
+            changeTracker = createChangeTracker(newDoc, source);
+            configOperator.setChangeTracker(changeTracker);
+        }
+
+        if (isSnapshotEnabled) {
+            snapshot = XMLConfigSnapshot.of(newDoc);
+        }
+    }
+
+    private Document parse(ByteBuffer source) throws ParserConfigurationException, IOException, SAXException {
+        DocumentBuilder docBuilder = XMLParserPool.getDocumentBuilder();
+        Document parsedDoc = docBuilder.parse(ConfigFiles.newInputStream(source), file.toURI().toString());
+        parsedDoc.getDocumentElement().normalize();
+
+        return parsedDoc;
+    }
+
+    private static XMLChangeTracker createChangeTracker(Document doc, ByteBuffer source) {
+        Charset sourceCharset = getCharset(doc.getInputEncoding());
+        return new XMLChangeTracker(doc, sourceCharset != null ? source : null, sourceCharset);
+    }
+
+    // Batches run under the write lock of a concurrent operator, so the document can be read without taking a lock
+    private Runnable createBatchCommitListener() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                snapshot = XMLConfigSnapshot.of(doc);
+            }
+        };
+    }
+
+    private void serialize(Charset charset, OutputStream out) throws ConfigException {
+        try {
+            Transformer transformer = XMLParserPool.getTransformer();
+            transformer.setOutputProperty(OutputKeys.ENCODING, charset.toString());
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.transform(new DOMSource(doc), new StreamResult(out));
+        } catch (TransformerException e) {
+            throw new ConfigException("XML Transformation error when saving file", e);
+        }
+    }
+
+    private static Charset getCharset(String encoding) {
+        if (encoding == null) {
+            return null;
+        }
+
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.w3c.dom.Node;
+
+/**
+ * A path based change, with the same meaning as the matching {@link XMLConfigOperator} method.
+ */
+public final class XMLConfigOperation {
+
+    public enum Type {
+        UPDATE,
+        ADD,
+        REMOVE
+    }
+
+    private final Type type;
+    private final String pathString;
+    private final Node config;
+    private final XMLConfigOperator.Position position;
+
+    private XMLConfigOperation(Type type, String pathString, Node config, XMLConfigOperator.Position position) {
+        if (pathString == null) {
+            throw new IllegalArgumentException("Path of a config operation cannot be null");
+        }
+
+        this.type = type;
+        this.pathString = pathString;
+        this.config = config;
+        this.position = position;
+    }
+
+    public static XMLConfigOperation update(String pathString, Node newNode) {
+        if (newNode == null) {
+            throw new IllegalArgumentException("New node of an update operation cannot be null");
+        }
+
+        return new XMLConfigOperation(Type.UPDATE, pathString, newNode, null);
+    }
+
+    public static XMLConfigOperation add(String pathString, Node config, XMLConfigOperator.Position position) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config of an add operation cannot be null");
+        }
+
+        return new XMLConfigOperation(Type.ADD, pathString, config, position);
+    }
+
+    public static XMLConfigOperation remove(String pathString) {
+        return new XMLConfigOperation(Type.REMOVE, pathString, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPathString() {
+        return pathString;
+    }
+
+    /**
+     * @return the new node for an update or the node to be added, null for a remove
+     */
+    public Node getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the position of an add, null for other operations
+     */
+    public XMLConfigOperator.Position getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return position == null ? type + " '" + pathString + "'" : type + " " + position + " '" + pathString + "'";
+    }
+}
@@ -17,14 +17,16 @@
 package config.raptor.xml;
 
 import config.raptor.ConfigException;
-import org.json.JSONObject;
 import org.w3c.dom.*;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.*;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 
 
@@ -35,18 +37,31 @@ public class XMLConfigOperator {
         AT,
         AFTER
     }
+
+    private static final XPathExpressionCache expressionCache =
+                                                new XPathExpressionCache(XPathExpressionCache.DEFAULT_CAPACITY);
     private Document doc;
+    private XMLPathIndex pathIndex;
+    private XMLChangeTracker changeTracker;
+    private XMLLazyLoader lazyLoader;
+    private Runnable batchCommitListener;
+    private boolean isModified;
 
     // No external construction allowed to prevent issues related to the wrong Document object being used
     XMLConfigOperator(Document doc) {
         this.doc = doc;
     }
 
+    // Compiled expressions are shared by all operator instances
+    public static XPathExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
     public boolean isConfigExists(String pathString) throws ConfigException {
         try {
-            NodeList nodeList = getXMLElements(pathString);
+            Node node = getFirstXMLElement(pathString);
 
-            if (nodeList.getLength() != 0) {
+            if (node != null) {
                 return true;
             }
             else {
@@ -62,14 +77,10 @@ public class XMLConfigOperator {
         Node config = null;
 
         try {
-            NodeList nodeList = getXMLElements(pathString);
-
-            if (nodeList.getLength() > 0) {
-                config = nodeList.item(0);
+            config = getFirstXMLElement(pathString);
 
-                if (config.getParentNode() == null) {
-                    config = config.getFirstChild();
-                }
+            if (config != null && config.getParentNode() == null) {
+                config = config.getFirstChild();
             }
         } catch (XPathExpressionException e) {
             throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
@@ -78,18 +89,37 @@ public class XMLConfigOperator {
         return config;
     }
 
-    public boolean updateConfig(String pathString, Node newNode) throws ConfigException {
+    /**
+     * @return every node matching the path in document order, where {@link #getConfig(String)} returns only the
+     * first
+     */
+    public List<Node> getAllConfigs(String pathString) throws ConfigException {
         try {
-            NodeList nodeList = getXMLElements(pathString);
+            List<Node> configs = getXMLElements(pathString);
 
-            if (nodeList.getLength() > 0) {
-                Node node = nodeList.item(0);
+            for (int i = 0; i < configs.size(); ++i) {
+                if (configs.get(i).getParentNode() == null) {
+                    configs.set(i, configs.get(i).getFirstChild());
+                }
+            }
 
-                if (node.getNodeType() == Node.ELEMENT_NODE) {
-                    XMLUtil.updateNode(node, newNode);
+            return configs;
+        } catch (XPathExpressionException e) {
+            throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
+        }
+    }
 
-                    return true;
+    public boolean updateConfig(String pathString, Node newNode) throws ConfigException {
+        try {
+            Node node = getFirstXMLElement(pathString);
+
+            if (node != null && node.getNodeType() == Node.ELEMENT_NODE) {
+                if (XMLUtil.isUpdateNeeded(node, newNode)) {
+                    onConfigUpdating(node);
+                    XMLUtil.updateNode(node, newNode);
                 }
+
+                return true;
             }
         } catch (XPathExpressionException e) {
             throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
@@ -98,23 +128,120 @@ public class XMLConfigOperator {
         return false;
     }
 
-    public boolean addConfig(String pathString, Node config, Position position) throws ConfigException {
+    /**
+     * Updates every element matching the path the way {@link #updateConfig(String, Node)} updates the first. An
+     * element inside another matched element is replaced along with the content of the outer one, so it is not
+     * counted.
+     * Elements that already match the new node are counted but left untouched, so saving does not rewrite them.
+     *
+     * @return number of elements updated
+     */
+    public int updateAllConfigs(String pathString, Node newNode) throws ConfigException {
         try {
-            NodeList nodeList = getXMLElements(pathString);
+            int updatedCount = 0;
 
-            if (nodeList.getLength() > 0) {
-                Node currentNode = nodeList.item(0);
+            for (Node node : getXMLElements(pathString)) {
+                if (node.getNodeType() == Node.ELEMENT_NODE && isAttached(node)) {
+                    if (XMLUtil.isUpdateNeeded(node, newNode)) {
+                        onConfigUpdating(node);
+                        XMLUtil.updateNode(node, newNode);
+                    }
 
-                if (position == Position.BEFORE) {
-                    return addConfigBefore(currentNode, config);
+                    ++updatedCount;
                 }
-                else if (position == Position.AT) {
-                    return addConfigAt(currentNode, config);
+            }
+
+            return updatedCount;
+        } catch (XPathExpressionException e) {
+            throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
+        }
+    }
+
+    /**
+     * Replaces the text of every element matching the path with the given value, keeping their attributes. An
+     * element inside another matched element is replaced along with the content of the outer one, so it is not
+     * counted.
+     * Elements that already hold only the value are counted but left untouched.
+     *
+     * @return number of elements updated
+     */
+    public int updateAllConfigValues(String pathString, String value) throws ConfigException {
+        try {
+            int updatedCount = 0;
+
+            for (Node node : getXMLElements(pathString)) {
+                if (node.getNodeType() == Node.ELEMENT_NODE && isAttached(node)) {
+                    if (!XMLUtil.hasOnlyText(node, value)) {
+                        onConfigUpdating(node);
+                        node.setTextContent(value);
+                    }
+
+                    ++updatedCount;
+                }
+            }
+
+            return updatedCount;
+        } catch (XPathExpressionException e) {
+            throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
+        }
+    }
+
+    /**
+     * Sets an attribute on every element matching the path, leaving their other attributes and content as they are.
+     * Elements that already have the value are counted but left untouched.
+     *
+     * @param value the new attribute value, or null to remove the attribute
+     * @return number of elements updated, not counting those that did not have an attribute to remove
+     */
+    public int setAllConfigAttributes(String pathString, String attributeName, String value) throws ConfigException {
+        try {
+            int updatedCount = 0;
+
+            for (Node node : getXMLElements(pathString)) {
+                if (node.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
                 }
-                else { // Position.AFTER
-                    return addConfigAfter(currentNode, config);
+
+                Element element = (Element) node;
+
+                if (value != null) {
+                    if (!element.hasAttribute(attributeName) || !value.equals(element.getAttribute(attributeName))) {
+                        onConfigAttributesUpdating(element);
+                        element.setAttribute(attributeName, value);
+                    }
+
+                    ++updatedCount;
+                }
+                else if (element.hasAttribute(attributeName)) {
+                    onConfigAttributesUpdating(element);
+                    element.removeAttribute(attributeName);
+                    ++updatedCount;
                 }
             }
+
+            return updatedCount;
+        } catch (XPathExpressionException e) {
+            throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
+        } catch (DOMException e) {
+            throw new ConfigException("Invalid attribute name '" + attributeName + "'", e);
+        }
+    }
+
+    public boolean addConfig(String pathString, Node config, Position position) throws ConfigException {
+        return addConfigs(pathString, Collections.singletonList(config), position);
+    }
+
+    /**
+     * Adds several configs next to or under the first node matching the path in a single insertion, keeping them in
+     * the given order.
+     */
+    public boolean addConfigs(String pathString, List<Node> configs, Position position) throws ConfigException {
+        try {
+            Node node = getFirstXMLElement(pathString);
+
+            if (node != null && !configs.isEmpty()) {
+                return addConfigs(node, configs, position);
+            }
         } catch (XPathExpressionException e) {
             throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
         }
@@ -124,10 +251,13 @@ public class XMLConfigOperator {
 
     public boolean removeConfig(String pathString) throws ConfigException {
         try {
-            NodeList nodeList = getXMLElements(pathString);
+            Node currentNode = getFirstXMLElement(pathString);
+
+            if (currentNode != null) {
+                if (currentNode.getParentNode() != null) {
+                    onConfigRemoving(currentNode);
+                }
 
-            if (nodeList.getLength() > 0) {
-                Node currentNode = nodeList.item(0);
                 return XMLUtil.removeNode(currentNode);
             }
         } catch (XPathExpressionException e) {
@@ -137,90 +267,477 @@ public class XMLConfigOperator {
         return false;
     }
 
+    /**
+     * Removes every node matching the path. A node inside another matched node goes along with the outer one, so it
+     * is not counted.
+     *
+     * @return number of nodes removed
+     */
+    public int removeAllConfigs(String pathString) throws ConfigException {
+        try {
+            int removedCount = 0;
 
-    private NodeList getXMLElements(String searchString) throws XPathExpressionException {
-        XPathFactory xPathfactory = XPathFactory.newInstance();
-        XPath xpath = xPathfactory.newXPath();
-        XPathExpression expr = xpath.compile(searchString);
+            for (Node node : getXMLElements(pathString)) {
+                if (node.getParentNode() != null && isAttached(node)) {
+                    onConfigRemoving(node);
+                    XMLUtil.removeNode(node);
+                    ++removedCount;
+                }
+            }
 
-        return (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
+            return removedCount;
+        } catch (XPathExpressionException e) {
+            throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
+        }
     }
 
+    /**
+     * Applies a list of operations as a single transaction. The target of every operation is resolved against the
+     * document as it is before the batch, sharing the traversal of paths with common prefixes. Operations are then
+     * applied in order, and if any of them fails, because its path matches nothing or it cannot be applied to the
+     * matched node, the changes already made are undone and the document is left as it was.
+     *
+     * Nodes owned by another document are imported before being added or used for an update, so the same operations
+     * can be applied to several documents.
+     */
+    public XMLBatchResult applyBatch(List<XMLConfigOperation> operations) throws ConfigException {
+        List<Node> targets = resolveTargets(operations);
+        List<XMLBatchResult.Status> statuses = new ArrayList<>(operations.size());
+        Deque<Runnable> undoLog = new ArrayDeque<>();
+        int failedIndex = -1;
+
+        for (int i = 0; i < operations.size(); ++i) {
+            XMLBatchResult.Status status;
+
+            try {
+                status = applyOperation(operations.get(i), targets.get(i), undoLog);
+            } catch (DOMException e) {
+                status = XMLBatchResult.Status.REJECTED;
+            }
 
-    private boolean addConfigBefore(Node currentNode, Node newNode)
-    {
-        Node parentNode = currentNode.getParentNode();
+            statuses.add(status);
+
+            if (status != XMLBatchResult.Status.APPLIED) {
+                failedIndex = i;
+                break;
+            }
+        }
+
+        if (failedIndex < 0 && batchCommitListener != null) {
+            batchCommitListener.run();
+        }
+
+        if (failedIndex >= 0) {
+            while (!undoLog.isEmpty()) {
+                undoLog.pop().run();
+            }
+
+            for (int i = 0; i < failedIndex; ++i) {
+                statuses.set(i, XMLBatchResult.Status.ROLLED_BACK);
+            }
+
+            while (statuses.size() < operations.size()) {
+                statuses.add(XMLBatchResult.Status.SKIPPED);
+            }
+        }
+
+        return new XMLBatchResult(statuses, failedIndex);
+    }
+
+    /**
+     * Enables answering plain element name paths such as {@code //APIGateway/Environments/Environment/Password}
+     * from an index instead of walking the whole document. Paths with predicates are still walked, and paths with
+     * functions or other axes still go through XPath.
+     *
+     * The index is kept up to date with changes made through this operator. Changes made directly on nodes returned
+     * by {@link #getConfig(String)} are not seen by it, so disable and re-enable the index after making them.
+     */
+    public void setPathIndexEnabled(boolean isEnabled) {
+        pathIndex = isEnabled ? new XMLPathIndex(doc) : null;
+    }
+
+    public boolean isPathIndexEnabled() {
+        return pathIndex != null;
+    }
+
+
+    // Stops at the first match instead of collecting them all
+    private Node getFirstXMLElement(String searchString) throws XPathExpressionException, ConfigException {
+        loadSections(searchString);
+
+        XMLPath path = XMLPath.parseWithPredicates(searchString);
+
+        if (path != null) {
+            return pathIndex != null && !path.hasPredicates() ? pathIndex.lookupFirst(path) :
+                                                                XMLPathEvaluator.selectFirst(doc, path);
+        }
+
+        XPathExpression expr = expressionCache.getExpression(searchString);
+
+        return (Node) expr.evaluate(doc, XPathConstants.NODE);
+    }
+
+    private List<Node> getXMLElements(String searchString) throws XPathExpressionException, ConfigException {
+        loadSections(searchString);
+
+        // Paths of plain steps and simple predicates are walked directly, leaving the rest to the XPath engine
+        XMLPath path = XMLPath.parseWithPredicates(searchString);
+
+        if (path != null) {
+            return pathIndex != null && !path.hasPredicates() ? pathIndex.lookup(path) :
+                                                                XMLPathEvaluator.select(doc, path);
+        }
+
+        XPathExpression expr = expressionCache.getExpression(searchString);
+        NodeList nodeList = (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
+
+        List<Node> nodes = new ArrayList<>(nodeList.getLength());
+        for (int i = 0; i < nodeList.getLength(); ++i) {
+            nodes.add(nodeList.item(i));
+        }
+
+        return nodes;
+    }
+
+    private List<Node> resolveTargets(List<XMLConfigOperation> operations) throws ConfigException {
+        XMLPathEvaluator evaluator = new XMLPathEvaluator(doc);
+        List<Node> targets = new ArrayList<>(operations.size());
+
+        for (XMLConfigOperation operation : operations) {
+            String pathString = operation.getPathString();
+            XMLPath path = XMLPath.parseWithPredicates(pathString);
+            List<Node> nodeList;
+
+            loadSections(pathString);
+
+            try {
+                if (path != null && (pathIndex == null || path.hasPredicates())) {
+                    nodeList = evaluator.evaluate(path);
+                }
+                else {
+                    nodeList = getXMLElements(pathString);
+                }
+            } catch (XPathExpressionException e) {
+                throw new ConfigException("XPath expression '" + pathString + "' evaluation error", e);
+            }
+
+            targets.add(nodeList.isEmpty() ? null : nodeList.get(0));
+        }
+
+        return targets;
+    }
+
+    private XMLBatchResult.Status applyOperation(XMLConfigOperation operation, final Node target,
+                                                 Deque<Runnable> undoLog) {
+        if (target == null || !isAttached(target)) {
+            return XMLBatchResult.Status.NOT_FOUND;
+        }
+
+        if (operation.getType() == XMLConfigOperation.Type.UPDATE) {
+            if (target.getNodeType() != Node.ELEMENT_NODE) {
+                return XMLBatchResult.Status.REJECTED;
+            }
+
+            // Keep the original children and attributes themselves so that undoing restores the same nodes
+            final List<Node> children = new ArrayList<>();
+            for (Node child = target.getFirstChild(); child != null; child = child.getNextSibling()) {
+                children.add(child);
+            }
+
+            final List<Attr> attributes = new ArrayList<>();
+            NamedNodeMap attributeMap = target.getAttributes();
+            for (int i = 0; i < attributeMap.getLength(); ++i) {
+                attributes.add((Attr) attributeMap.item(i));
+            }
 
-        if (parentNode != null) {
-            NodeList childNodes = parentNode.getChildNodes();
-            List<Node> childList = new ArrayList<>(childNodes.getLength() + 1);
+            onConfigUpdating(target);
+            XMLUtil.updateNode(target, operation.getConfig());
 
-            for (int i = 0; i < childNodes.getLength(); ++i) {
-                Node child = childNodes.item(i);
+            undoLog.push(new Runnable() {
+                @Override
+                public void run() {
+                    onConfigUpdating(target);
 
-                if (child.equals(currentNode)) {
-                    childList.add(newNode);
+                    while (target.hasChildNodes()) {
+                        target.removeChild(target.getFirstChild());
+                    }
+
+                    NamedNodeMap attributeMap = target.getAttributes();
+                    while (attributeMap.getLength() > 0) {
+                        ((Element) target).removeAttributeNode((Attr) attributeMap.item(0));
+                    }
+
+                    for (Attr attribute : attributes) {
+                        ((Element) target).setAttributeNode(attribute);
+                    }
+
+                    for (Node child : children) {
+                        target.appendChild(child);
+                        onConfigAdded(child);
+                    }
                 }
+            });
+        }
+        else if (operation.getType() == XMLConfigOperation.Type.ADD) {
+            Node config = operation.getConfig();
 
-                childList.add(child);
+            if (config.getOwnerDocument() != doc) {
+                config = doc.importNode(config, true);
             }
 
-            while (parentNode.hasChildNodes()) {
-                parentNode.removeChild(parentNode.getFirstChild());
+            final List<Node> addedNodes = new ArrayList<>();
+            if (config.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE) {
+                for (Node child = config.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    addedNodes.add(child);
+                }
+            }
+            else {
+                addedNodes.add(config);
             }
 
-            for (Node node : childList) {
-                parentNode.appendChild(node);
+            final Node movedNode = config.getParentNode() != null ? config : null;
+            final Node originalParent = config.getParentNode();
+            final Node originalNextSibling = config.getNextSibling();
+            // Inserting a fragment empties it, so the caller's fragment gets its children back on undo
+            final Node fragment = config == operation.getConfig() &&
+                                  config.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE ? config : null;
+
+            if (!addConfigs(target, Collections.singletonList(config), operation.getPosition())) {
+                return XMLBatchResult.Status.REJECTED;
             }
 
-            return true;
+            undoLog.push(new Runnable() {
+                @Override
+                public void run() {
+                    for (Node addedNode : addedNodes) {
+                        onConfigRemoving(addedNode);
+                        addedNode.getParentNode().removeChild(addedNode);
+
+                        if (fragment != null) {
+                            fragment.appendChild(addedNode);
+                        }
+                    }
+
+                    if (movedNode != null) {
+                        originalParent.insertBefore(movedNode, originalNextSibling);
+                        onConfigAdded(movedNode);
+                    }
+                }
+            });
         }
+        else { // XMLConfigOperation.Type.REMOVE
+            final Node parent = target.getParentNode();
 
-        return false;
+            if (parent == null) {
+                return XMLBatchResult.Status.REJECTED;
+            }
+
+            final Node nextSibling = target.getNextSibling();
+
+            onConfigRemoving(target);
+            XMLUtil.removeNode(target);
+
+            undoLog.push(new Runnable() {
+                @Override
+                public void run() {
+                    parent.insertBefore(target, nextSibling);
+                    onConfigAdded(target);
+                }
+            });
+        }
+
+        return XMLBatchResult.Status.APPLIED;
     }
 
+    private boolean isAttached(Node node) {
+        while (node.getParentNode() != null) {
+            node = node.getParentNode();
+        }
 
-    private boolean addConfigAt(Node currentNode, Node newNode)
-    {
-        if (currentNode.getParentNode() != null) { // if not the root node
-            currentNode.appendChild(newNode);
+        return node == doc;
+    }
 
-            return true;
+    /**
+     * Switches to a document loaded again from the file, rebuilding the path index if it is enabled
+     */
+    void setDocument(Document doc) {
+        this.doc = doc;
+
+        if (pathIndex != null) {
+            pathIndex = new XMLPathIndex(doc);
         }
+    }
 
-        return false;
+    /**
+     * @return whether a change was made through the operator since the flag was last cleared, changes that left a
+     * node as it was are not counted
+     */
+    boolean isModified() {
+        return isModified;
     }
 
+    // Used by XMLConfigIO to clear the flag once the document is saved or loaded again
+    void setModified(boolean isModified) {
+        this.isModified = isModified;
+    }
 
-    private boolean addConfigAfter(Node currentNode, Node newNode)
-    {
-        Node parentNode = currentNode.getParentNode();
+    // Used by XMLConfigIO to save only what changed
+    void setChangeTracker(XMLChangeTracker changeTracker) {
+        this.changeTracker = changeTracker;
+    }
+
+    // Used by LazyXMLConfigIO to parse the parts of the document a path reaches before evaluating it
+    void setLazyLoader(XMLLazyLoader lazyLoader) {
+        this.lazyLoader = lazyLoader;
+    }
+
+    // Used by XMLConfigIO to publish a snapshot whenever a batch is committed
+    void setBatchCommitListener(Runnable batchCommitListener) {
+        this.batchCommitListener = batchCommitListener;
+    }
+
+    private void onConfigAdded(Node node) {
+        isModified = true;
+
+        if (pathIndex != null) {
+            pathIndex.nodeAdded(node);
+        }
+
+        if (changeTracker != null) {
+            changeTracker.structureChanged();
+        }
+
+        if (lazyLoader != null) {
+            lazyLoader.structureChanged(node);
+        }
+    }
 
-        if (parentNode != null) {
-            NodeList childNodes = parentNode.getChildNodes();
-            List<Node> childList = new ArrayList<>(childNodes.getLength() + 1);
+    private void onConfigRemoving(Node node) {
+        isModified = true;
 
-            for (int i = 0; i < childNodes.getLength(); ++i) {
-                Node child = childNodes.item(i);
+        if (pathIndex != null) {
+            pathIndex.nodeRemoving(node);
+        }
+
+        if (changeTracker != null) {
+            changeTracker.structureChanged();
+        }
+
+        if (lazyLoader != null) {
+            lazyLoader.structureChanged(node);
+        }
+    }
+
+    private void onConfigUpdating(Node node) {
+        isModified = true;
+
+        if (pathIndex != null) { // Updating replaces all children of the node with its new text
+            pathIndex.childrenRemoving(node);
+        }
+
+        if (changeTracker != null) {
+            changeTracker.nodeUpdating(node);
+        }
+
+        if (lazyLoader != null) {
+            lazyLoader.nodeUpdating(node);
+        }
+    }
 
-                childList.add(child);
+    // Attributes are not indexed, so only what is written out needs to know
+    private void onConfigAttributesUpdating(Node node) {
+        isModified = true;
 
-                if (child.equals(currentNode)) {
-                    childList.add(newNode);
+        if (changeTracker != null) {
+            changeTracker.nodeUpdating(node);
+        }
+
+        if (lazyLoader != null) {
+            lazyLoader.nodeUpdating(node);
+        }
+    }
+
+    private void loadSections(String pathString) throws ConfigException {
+        if (lazyLoader == null) {
+            return;
+        }
+
+        for (Node loadedNode : lazyLoader.load(pathString)) {
+            if (pathIndex != null) {
+                pathIndex.nodeAdded(loadedNode);
+            }
+        }
+    }
+
+
+    private boolean addConfigs(Node currentNode, List<Node> configs, Position position) {
+        if (currentNode.getParentNode() == null) { // if the document node, nothing can be added next to or under it
+            return false;
+        }
+
+        List<Node> addedNodes = new ArrayList<>(configs.size());
+
+        for (Node config : configs) {
+            if (config.getNodeType() == Node.DOCUMENT_FRAGMENT_NODE) {
+                for (Node child = config.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    addedNodes.add(child);
                 }
             }
+            else {
+                if (config.getParentNode() != null) { // Moving a node that is already in the tree
+                    onConfigRemoving(config);
+                }
 
-            while (parentNode.hasChildNodes()) {
-                parentNode.removeChild(parentNode.getFirstChild());
+                addedNodes.add(config);
             }
+        }
+
+        Node newNode;
 
-            for (Node node : childList) {
-                parentNode.appendChild(node);
+        if (configs.size() == 1) {
+            newNode = configs.get(0);
+        }
+        else {
+            newNode = doc.createDocumentFragment();
+
+            for (Node config : configs) {
+                newNode.appendChild(config);
             }
+        }
 
-            return true;
+        if (position == Position.BEFORE) {
+            addConfigBefore(currentNode, newNode);
+        }
+        else if (position == Position.AT) {
+            addConfigAt(currentNode, newNode);
+        }
+        else { // Position.AFTER
+            addConfigAfter(currentNode, newNode);
         }
 
-        return false;
+        for (Node addedNode : addedNodes) {
+            onConfigAdded(addedNode);
+        }
+
+        return true;
+    }
+
+
+    private void addConfigBefore(Node currentNode, Node newNode)
+    {
+        currentNode.getParentNode().insertBefore(newNode, currentNode);
+    }
+
+
+    private void addConfigAt(Node currentNode, Node newNode)
+    {
+        currentNode.appendChild(newNode);
+    }
+
+
+    private void addConfigAfter(Node currentNode, Node newNode)
+    {
+        // A null next sibling appends to the end
+        currentNode.getParentNode().insertBefore(newNode, currentNode.getNextSibling());
     }
 }
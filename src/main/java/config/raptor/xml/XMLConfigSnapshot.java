@@ -0,0 +1,311 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, read-only copy of the elements of a document, taken with {@link XMLConfigIO#publishSnapshot()}.
+ * A snapshot holds no reference to the DOM and never changes, so any number of threads can query it without locking
+ * while the document itself is being edited.
+ *
+ * Elements are flattened into arrays in document order, each with its name, parent, text and attributes, and
+ * indexed by name. Paths are limited to element name steps joined by '/' or '//', such as
+ * {@code //APIGateway/Environments/Environment/Password}.
+ */
+public final class XMLConfigSnapshot {
+    private static final int[] NO_ELEMENTS = new int[0];
+
+    private final String[] names;
+    private final int[] parents;
+    private final String[] values;
+    private final int[] attributeStarts;
+    private final String[] attributeNames;
+    private final String[] attributeValues;
+    private final Map<String, int[]> nameIndex;
+
+    private XMLConfigSnapshot(String[] names, int[] parents, String[] values, int[] attributeStarts,
+                              String[] attributeNames, String[] attributeValues, Map<String, int[]> nameIndex) {
+        this.names = names;
+        this.parents = parents;
+        this.values = values;
+        this.attributeStarts = attributeStarts;
+        this.attributeNames = attributeNames;
+        this.attributeValues = attributeValues;
+        this.nameIndex = nameIndex;
+    }
+
+    /**
+     * Copies the current content of the document. The document must not be changed while this runs.
+     */
+    static XMLConfigSnapshot of(Document doc) {
+        Builder builder = new Builder();
+        Node root = doc.getDocumentElement();
+
+        if (root != null) {
+            builder.addElement(root, -1);
+        }
+
+        return builder.build();
+    }
+
+    public boolean isConfigExists(String pathString) throws ConfigException {
+        return firstMatch(pathString) >= 0;
+    }
+
+    /**
+     * @return the text directly inside the first element matching the path, not including the text of its child
+     * elements, or null if no element matches
+     */
+    public String getValue(String pathString) throws ConfigException {
+        int element = firstMatch(pathString);
+
+        return element >= 0 ? values[element] : null;
+    }
+
+    /**
+     * @return the text directly inside each element matching the path, in document order
+     */
+    public List<String> getValues(String pathString) throws ConfigException {
+        int[] elements = match(pathString, false);
+        List<String> matchedValues = new ArrayList<>(elements.length);
+
+        for (int element : elements) {
+            matchedValues.add(values[element]);
+        }
+
+        return Collections.unmodifiableList(matchedValues);
+    }
+
+    /**
+     * @return the value of the attribute of the first element matching the path, or null if no element matches or
+     * the element does not have the attribute
+     */
+    public String getAttribute(String pathString, String attributeName) throws ConfigException {
+        int element = firstMatch(pathString);
+
+        if (element < 0) {
+            return null;
+        }
+
+        for (int i = attributeStarts[element]; i < attributeStarts[element + 1]; ++i) {
+            if (attributeNames[i].equals(attributeName)) {
+                return attributeValues[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the attributes of the first element matching the path in document order, or null if no element matches
+     */
+    public Map<String, String> getAttributes(String pathString) throws ConfigException {
+        int element = firstMatch(pathString);
+
+        if (element < 0) {
+            return null;
+        }
+
+        Map<String, String> attributes = new LinkedHashMap<>();
+
+        for (int i = attributeStarts[element]; i < attributeStarts[element + 1]; ++i) {
+            attributes.put(attributeNames[i], attributeValues[i]);
+        }
+
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * @return number of elements in the snapshot
+     */
+    public int size() {
+        return names.length;
+    }
+
+    private int firstMatch(String pathString) throws ConfigException {
+        int[] elements = match(pathString, true);
+
+        return elements.length > 0 ? elements[0] : -1;
+    }
+
+    private int[] match(String pathString, boolean isFirstOnly) throws ConfigException {
+        XMLPath path = XMLPath.parse(pathString);
+
+        if (path == null) {
+            throw new ConfigException("XPath expression '" + pathString + "' is not supported by snapshots");
+        }
+
+        int[] candidates = nameIndex.get(path.getLastStep().getName());
+
+        if (candidates == null) {
+            return NO_ELEMENTS;
+        }
+
+        List<XMLPath.Step> steps = path.getSteps();
+        int[] matched = new int[isFirstOnly ? 1 : candidates.length];
+        int matchCount = 0;
+
+        for (int candidate : candidates) {
+            if (matches(candidate, steps, steps.size() - 1)) {
+                matched[matchCount++] = candidate;
+
+                if (isFirstOnly) {
+                    break;
+                }
+            }
+        }
+
+        return matchCount == matched.length ? matched : Arrays.copyOf(matched, matchCount);
+    }
+
+    // Steps are matched right to left against the ancestors of the element, as XMLPath does for DOM nodes
+    private boolean matches(int element, List<XMLPath.Step> steps, int stepIndex) {
+        XMLPath.Step step = steps.get(stepIndex);
+
+        if (!step.getName().equals(names[element])) {
+            return false;
+        }
+
+        int parent = parents[element];
+
+        if (stepIndex == 0) {
+            return step.isDescendant() || parent < 0;
+        }
+
+        if (step.isDescendant()) {
+            for (int ancestor = parent; ancestor >= 0; ancestor = parents[ancestor]) {
+                if (matches(ancestor, steps, stepIndex - 1)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        return parent >= 0 && matches(parent, steps, stepIndex - 1);
+    }
+
+    private static final class Builder {
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> parents = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<Integer> attributeStarts = new ArrayList<>();
+        private final List<String> attributeNames = new ArrayList<>();
+        private final List<String> attributeValues = new ArrayList<>();
+        // Names repeat throughout a document, so each distinct name is kept once
+        private final Map<String, String> distinctNames = new HashMap<>();
+        private final Map<String, List<Integer>> nameIndex = new HashMap<>();
+
+        private void addElement(Node element, int parent) {
+            int index = names.size();
+            String name = XMLPath.nameOf(element);
+
+            if (name != null) {
+                String distinctName = distinctNames.get(name);
+
+                if (distinctName == null) {
+                    distinctNames.put(name, name);
+                    distinctName = name;
+                }
+
+                name = distinctName;
+
+                List<Integer> named = nameIndex.get(name);
+
+                if (named == null) {
+                    named = new ArrayList<>();
+                    nameIndex.put(name, named);
+                }
+
+                named.add(index);
+            }
+
+            names.add(name);
+            parents.add(parent);
+            attributeStarts.add(attributeNames.size());
+            values.add(null);
+
+            NamedNodeMap attributes = element.getAttributes();
+
+            for (int i = 0; i < attributes.getLength(); ++i) {
+                Node attribute = attributes.item(i);
+
+                if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                    attributeNames.add(attribute.getNodeName());
+                    attributeValues.add(attribute.getNodeValue());
+                }
+            }
+
+            StringBuilder value = new StringBuilder();
+
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    addElement(child, index);
+                }
+                else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                    value.append(child.getNodeValue());
+                }
+            }
+
+            values.set(index, value.toString());
+        }
+
+        private XMLConfigSnapshot build() {
+            int elementCount = names.size();
+            int[] parentArray = new int[elementCount];
+            int[] attributeStartArray = new int[elementCount + 1];
+
+            for (int i = 0; i < elementCount; ++i) {
+                parentArray[i] = parents.get(i);
+                attributeStartArray[i] = attributeStarts.get(i);
+            }
+
+            attributeStartArray[elementCount] = attributeNames.size();
+
+            Map<String, int[]> nameIndexArrays = new HashMap<>(nameIndex.size() * 2);
+
+            for (Map.Entry<String, List<Integer>> entry : nameIndex.entrySet()) {
+                List<Integer> elements = entry.getValue();
+                int[] elementArray = new int[elements.size()];
+
+                for (int i = 0; i < elementArray.length; ++i) {
+                    elementArray[i] = elements.get(i);
+                }
+
+                nameIndexArrays.put(entry.getKey(), elementArray);
+            }
+
+            return new XMLConfigSnapshot(names.toArray(new String[elementCount]), parentArray,
+                    values.toArray(new String[elementCount]), attributeStartArray,
+                    attributeNames.toArray(new String[attributeNames.size()]),
+                    attributeValues.toArray(new String[attributeValues.size()]), nameIndexArrays);
+        }
+    }
+}
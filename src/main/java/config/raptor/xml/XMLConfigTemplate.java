@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A config fragment parsed once, with {@code {{name}}} placeholders in its text and attribute values, such as
+ * {@code <Environment type="{{type}}"><Name>{{name}}</Name></Environment>}. Each {@link #create(Map)} copies the
+ * parsed fragment and writes the values into the places holding placeholders, so values never need escaping.
+ *
+ * The {@code ${...}} variables used in config files are left alone. Templates are made by
+ * {@link XMLConfigCreator#createTemplate(String)} and create nodes of the same document as that creator.
+ */
+public class XMLConfigTemplate {
+    private static final String PLACEHOLDER_START = "{{";
+    private static final String PLACEHOLDER_END = "}}";
+
+    // A text node or attribute holding placeholders, found by child positions from the root of the fragment
+    private static final class Slot {
+        private final int[] childPositions;
+        private final String attributeName;
+        // Literal text and placeholder names alternating, starting and ending with literal text
+        private final String[] parts;
+
+        private Slot(int[] childPositions, String attributeName, String[] parts) {
+            this.childPositions = childPositions;
+            this.attributeName = attributeName;
+            this.parts = parts;
+        }
+    }
+
+    private final Node fragment;
+    private final List<Slot> slots = new ArrayList<>();
+
+    XMLConfigTemplate(Node fragment) {
+        this.fragment = fragment;
+
+        fragment.normalize();
+        findSlots(fragment, new int[0]);
+    }
+
+    /**
+     * @param values the value of each placeholder by name, placeholders without a value being an error
+     * @return a new node with the placeholders replaced by their values
+     */
+    public Node create(Map<String, String> values) throws ConfigException {
+        Node config = fragment.cloneNode(true);
+
+        for (Slot slot : slots) {
+            Node node = config;
+
+            for (int position : slot.childPositions) {
+                node = node.getChildNodes().item(position);
+            }
+
+            String value = substitute(slot.parts, values);
+
+            if (slot.attributeName != null) {
+                ((Element) node).getAttributeNode(slot.attributeName).setValue(value);
+            }
+            else {
+                node.setNodeValue(value);
+            }
+        }
+
+        return config;
+    }
+
+    /**
+     * @return names of the placeholders in the order they appear, each once
+     */
+    public List<String> getPlaceholderNames() {
+        List<String> names = new ArrayList<>();
+
+        for (Slot slot : slots) {
+            for (int i = 1; i < slot.parts.length; i += 2) {
+                if (!names.contains(slot.parts[i])) {
+                    names.add(slot.parts[i]);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private void findSlots(Node node, int[] childPositions) {
+        NamedNodeMap attributes = node.getAttributes();
+
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); ++i) {
+                String[] parts = split(attributes.item(i).getNodeValue());
+
+                if (parts != null) {
+                    slots.add(new Slot(childPositions, attributes.item(i).getNodeName(), parts));
+                }
+            }
+        }
+
+        int position = 0;
+
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling(), ++position) {
+            int[] childPath = Arrays.copyOf(childPositions, childPositions.length + 1);
+            childPath[childPositions.length] = position;
+
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                String[] parts = split(child.getNodeValue());
+
+                if (parts != null) {
+                    slots.add(new Slot(childPath, null, parts));
+                }
+            }
+            else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                findSlots(child, childPath);
+            }
+        }
+    }
+
+    // Returns null when the text holds no placeholders
+    private static String[] split(String text) {
+        List<String> parts = new ArrayList<>();
+        int copiedTo = 0;
+        int start;
+
+        while ((start = text.indexOf(PLACEHOLDER_START, copiedTo)) >= 0) {
+            int end = text.indexOf(PLACEHOLDER_END, start + PLACEHOLDER_START.length());
+
+            if (end < 0) {
+                break;
+            }
+
+            parts.add(text.substring(copiedTo, start));
+            parts.add(text.substring(start + PLACEHOLDER_START.length(), end).trim());
+            copiedTo = end + PLACEHOLDER_END.length();
+        }
+
+        if (parts.isEmpty()) {
+            return null;
+        }
+
+        parts.add(text.substring(copiedTo));
+
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    private static String substitute(String[] parts, Map<String, String> values) throws ConfigException {
+        StringBuilder value = new StringBuilder(parts[0]);
+
+        for (int i = 1; i < parts.length; i += 2) {
+            String placeholderValue = values.get(parts[i]);
+
+            if (placeholderValue == null) {
+                throw new ConfigException("No value given for template placeholder '" + parts[i] + "'");
+            }
+
+            value.append(placeholderValue).append(parts[i + 1]);
+        }
+
+        return value.toString();
+    }
+}
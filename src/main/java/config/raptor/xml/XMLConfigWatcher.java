@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads configs on a background thread when their files are changed by another process, see
+ * {@link XMLConfigIO#reload()}.
+ *
+ * Editors and deployment tools often write a file in several steps, so a config is reloaded once its file has not
+ * changed for the debounce delay. Saving a config changes its file too, but reloading skips files whose content is
+ * what was last loaded or saved. Concurrent access has to be enabled on watched configs, as the document is swapped
+ * while other threads may be using the operator.
+ */
+public final class XMLConfigWatcher implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    /**
+     * Told about reloads, on the thread of the watcher
+     */
+    public interface Listener {
+        void reloaded(XMLConfigIO configIO);
+
+        /**
+         * Called when the changed file could not be loaded, such as when it is not well formed. The config keeps the
+         * document it had and is reloaded again on the next change. Unchecked exceptions thrown while reloading are
+         * passed on wrapped in a {@link ConfigException}, and exceptions thrown by the listener go to the uncaught
+         * exception handler of the watcher thread, which carries on watching.
+         */
+        void reloadFailed(XMLConfigIO configIO, ConfigException e);
+    }
+
+    private final WatchService watchService;
+    private final long debounceNanos;
+    private final Listener listener;
+    private final Map<Path, List<XMLConfigIO>> watchedFiles = new HashMap<>();
+    private final Map<Path, WatchKey> directoryKeys = new HashMap<>();
+    // Only used by the watcher thread
+    private final Map<XMLConfigIO, Long> pendingReloads = new IdentityHashMap<>();
+
+    public XMLConfigWatcher() throws IOException {
+        this(DEFAULT_DEBOUNCE_MILLIS, null);
+    }
+
+    /**
+     * @param debounceMillis how long a file has to be left unchanged before it is reloaded
+     * @param listener told about reloads, may be null
+     */
+    public XMLConfigWatcher(long debounceMillis, Listener listener) throws IOException {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Debounce delay must not be negative, got " + debounceMillis);
+        }
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.listener = listener;
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "config-raptor-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void watch(XMLConfigIO configIO) throws IOException {
+        if (!configIO.isConcurrentAccessEnabled()) {
+            throw new IllegalStateException(
+                    "Concurrent access has to be enabled on configs reloaded in the background");
+        }
+
+        Path file = configIO.getPath().toAbsolutePath().normalize();
+        Path directory = file.getParent();
+
+        synchronized (watchedFiles) {
+            if (!directoryKeys.containsKey(directory)) {
+                directoryKeys.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+
+            List<XMLConfigIO> configIOs = watchedFiles.get(file);
+
+            if (configIOs == null) {
+                configIOs = new ArrayList<>(1);
+                watchedFiles.put(file, configIOs);
+            }
+
+            if (!configIOs.contains(configIO)) {
+                configIOs.add(configIO);
+            }
+        }
+    }
+
+    public void unwatch(XMLConfigIO configIO) {
+        Path file = configIO.getPath().toAbsolutePath().normalize();
+        Path directory = file.getParent();
+
+        synchronized (watchedFiles) {
+            List<XMLConfigIO> configIOs = watchedFiles.get(file);
+
+            if (configIOs == null || !configIOs.remove(configIO)) {
+                return;
+            }
+
+            if (configIOs.isEmpty()) {
+                watchedFiles.remove(file);
+            }
+
+            for (Path watchedFile : watchedFiles.keySet()) {
+                if (watchedFile.getParent().equals(directory)) {
+                    return;
+                }
+            }
+
+            directoryKeys.remove(directory).cancel();
+        }
+    }
+
+    /**
+     * Stops watching. Reloads waiting for the debounce delay are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private boolean isWatched(XMLConfigIO configIO) {
+        synchronized (watchedFiles) {
+            List<XMLConfigIO> configIOs = watchedFiles.get(configIO.getPath().toAbsolutePath().normalize());
+            return configIOs != null && configIOs.contains(configIO);
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key;
+
+                if (pendingReloads.isEmpty()) {
+                    key = watchService.take();
+                }
+                else {
+                    long wait = nextReloadTime() - System.nanoTime();
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.NANOSECONDS) : watchService.poll();
+                }
+
+                if (key != null) {
+                    queueReloads(key);
+                }
+
+                reloadDue();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed, the thread ends
+        }
+    }
+
+    private void queueReloads(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        long reloadTime = System.nanoTime() + debounceNanos;
+
+        synchronized (watchedFiles) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) { // Events were lost, any file may have changed
+                    for (Map.Entry<Path, List<XMLConfigIO>> entry : watchedFiles.entrySet()) {
+                        if (entry.getKey().getParent().equals(directory)) {
+                            queueReloads(entry.getValue(), reloadTime);
+                        }
+                    }
+                }
+                else {
+                    List<XMLConfigIO> configIOs = watchedFiles.get(directory.resolve((Path) event.context()));
+
+                    if (configIOs != null) {
+                        queueReloads(configIOs, reloadTime);
+                    }
+                }
+            }
+        }
+
+        key.reset();
+    }
+
+    // A change while a reload is waiting starts the debounce delay again
+    private void queueReloads(List<XMLConfigIO> configIOs, long reloadTime) {
+        for (XMLConfigIO configIO : configIOs) {
+            pendingReloads.put(configIO, reloadTime);
+        }
+    }
+
+    private long nextReloadTime() {
+        long next = Long.MAX_VALUE;
+
+        for (long reloadTime : pendingReloads.values()) {
+            next = Math.min(next, reloadTime);
+        }
+
+        return next;
+    }
+
+    private void reloadDue() {
+        long now = System.nanoTime();
+
+        for (Iterator<Map.Entry<XMLConfigIO, Long>> it = pendingReloads.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<XMLConfigIO, Long> entry = it.next();
+
+            if (entry.getValue() - now > 0) {
+                continue;
+            }
+
+            XMLConfigIO configIO = entry.getKey();
+            it.remove();
+
+            if (!isWatched(configIO)) {
+                continue;
+            }
+
+            boolean isReloaded = false;
+            ConfigException failure = null;
+
+            try {
+                isReloaded = configIO.reload();
+            } catch (ConfigException e) {
+                failure = e;
+            } catch (RuntimeException | Error e) { // Such as the parser running out of stack on deeply nested XML
+                failure = new ConfigException("Error reloading file " + configIO.getPath(), e);
+            }
+
+            if (listener == null) {
+                continue;
+            }
+
+            try {
+                if (failure != null) {
+                    listener.reloadFailed(configIO, failure);
+                }
+                else if (isReloaded) {
+                    listener.reloaded(configIO);
+                }
+            } catch (RuntimeException | Error e) { // A failing listener must not stop other configs being reloaded
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+        }
+    }
+}
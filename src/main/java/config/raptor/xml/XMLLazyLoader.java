@@ -0,0 +1,473 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a document in which each child element of the root, a section, is only parsed once a path can reach into
+ * it. Until then the section is kept as its range of the source bytes and stands in the document as a processing
+ * instruction, which no element path can select. Only the text between sections is decoded up front, and each
+ * section is decoded when it is parsed.
+ *
+ * Markup is found by scanning the bytes, which needs the characters of markup to be written as single bytes no other
+ * character uses, as in UTF-8 and single byte encodings. Documents in other encodings, such as UTF-16, are kept as
+ * UTF-8 instead and encoded again when written.
+ *
+ * Sections are parsed together with the text before them up to the root start tag, so that entities declared in
+ * the document type and namespaces declared on the root resolve as they would in the whole document. Saving copies
+ * sections that were not loaded, or were loaded but not changed through the operator, straight from the source.
+ */
+final class XMLLazyLoader {
+    private static final String PLACEHOLDER_TARGET = "config-raptor-section";
+    private static final String MARKUP_CHARACTERS = "<>/?!-=[]\"' \t\r\n";
+
+    // Bytes read as ISO-8859-1 characters, so that offsets of markup found in them are byte offsets
+    private static final class ByteChars implements CharSequence {
+        private final byte[] bytes;
+        private final int length;
+
+        private ByteChars(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static final class Section {
+        private final int start;
+        private final int end;
+        private final String name;
+        private Node node;
+        private boolean isLoaded;
+        private boolean isChanged;
+
+        private Section(int start, int end, String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+    }
+
+    private final byte[] source;
+    private final int sourceLength;
+    // Encoding of the kept source, in which markup characters are single bytes
+    private final Charset sourceCharset;
+    // Encoding the document is written in
+    private final Charset charset;
+    private final String systemId;
+    private final Document doc;
+    private final List<Section> sections = new ArrayList<>();
+    private final Map<Node, Section> nodeSections = new IdentityHashMap<>();
+    private int contentStart;
+    private int rootStart;
+    private int rootStartTagEnd;
+    private int rootEndTagStart;
+    private int rootEnd;
+    private int unloadedCount;
+    private boolean isRootChanged;
+    private boolean isRootContentChanged;
+
+    /**
+     * @param source the whole source document, which is kept as it is, so it must not be changed afterwards
+     * @param charset encoding of the source document, which it is written in again
+     * @param systemId location of the document, for resolving relative references in its document type
+     */
+    XMLLazyLoader(ByteBuffer source, Charset charset, String systemId) throws ParserConfigurationException,
+                                                                               IOException, SAXException {
+        this.charset = charset;
+        this.systemId = systemId;
+
+        if (isScannable(charset)) {
+            sourceCharset = charset;
+        }
+        else {
+            source = StandardCharsets.UTF_8.encode(charset.decode(source.duplicate()));
+            sourceCharset = StandardCharsets.UTF_8;
+        }
+
+        sourceLength = source.remaining();
+
+        if (source.hasArray() && source.arrayOffset() + source.position() == 0) {
+            this.source = source.array();
+        }
+        else {
+            this.source = new byte[sourceLength];
+            source.duplicate().get(this.source);
+        }
+
+        // A UTF-8 byte order mark is not part of the document
+        contentStart = sourceCharset.equals(StandardCharsets.UTF_8) && sourceLength >= 3 &&
+                       (this.source[0] & 0xFF) == 0xEF && (this.source[1] & 0xFF) == 0xBB &&
+                       (this.source[2] & 0xFF) == 0xBF ? 3 : 0;
+
+        List<int[]> elements = XMLChangeTracker.scanElements(new ByteChars(this.source, sourceLength), 1);
+
+        if (elements == null || elements.isEmpty()) { // The parser reports what is wrong with the text
+            doc = parse(decode(contentStart, sourceLength));
+            return;
+        }
+
+        int[] root = elements.get(0);
+        rootStart = root[0];
+        rootStartTagEnd = root[4];
+        rootEnd = root[1];
+        rootEndTagStart = rootEnd - 1;
+
+        while (this.source[rootEndTagStart] != '<') {
+            --rootEndTagStart;
+        }
+
+        StringBuilder skeleton = new StringBuilder(sourceLength / 16 + 256);
+        int copiedTo = contentStart;
+
+        for (int[] element : elements.subList(1, elements.size())) {
+            skeleton.append(decode(copiedTo, element[0]));
+            skeleton.append("<?").append(PLACEHOLDER_TARGET).append(' ').append(sections.size()).append("?>");
+            sections.add(new Section(element[0], element[1], decode(element[2], element[3])));
+            copiedTo = element[1];
+        }
+
+        skeleton.append(decode(copiedTo, sourceLength));
+        doc = parse(skeleton.toString());
+
+        for (Node child = doc.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.PROCESSING_INSTRUCTION_NODE &&
+                                                            PLACEHOLDER_TARGET.equals(child.getNodeName())) {
+                Section section = sections.get(Integer.parseInt(child.getNodeValue().trim()));
+                section.node = child;
+                nodeSections.put(child, section);
+            }
+        }
+
+        unloadedCount = sections.size();
+    }
+
+    Document getDocument() {
+        return doc;
+    }
+
+    /**
+     * Parses every section the path may select nodes in or below. Paths that are not plain element name paths may
+     * select anything, so they load the whole document.
+     *
+     * @return the elements that were loaded, already in place of their placeholders
+     */
+    List<Node> load(String pathString) throws ConfigException {
+        if (unloadedCount == 0) {
+            return Collections.emptyList();
+        }
+
+        XMLPath path = XMLPath.parseWithPredicates(pathString);
+        List<Node> loadedNodes = new ArrayList<>();
+
+        for (Section section : sections) {
+            if (!section.isLoaded && (path == null || isReachable(section, path))) {
+                loadedNodes.add(load(section));
+            }
+        }
+
+        return loadedNodes;
+    }
+
+    /**
+     * @return number of sections not parsed yet
+     */
+    int getUnloadedCount() {
+        return unloadedCount;
+    }
+
+    /**
+     * Called before the text or attributes of an element are replaced
+     */
+    void nodeUpdating(Node node) {
+        if (node == doc.getDocumentElement()) {
+            isRootChanged = true;
+            return;
+        }
+
+        markChanged(node);
+    }
+
+    /**
+     * Called after a node is added or before it is removed
+     */
+    void structureChanged(Node node) {
+        Node parent = node.getParentNode();
+
+        if (parent == null || parent.getNodeType() == Node.DOCUMENT_NODE) {
+            isRootChanged = true;
+        }
+        else if (parent == doc.getDocumentElement()) {
+            // Content added to an empty root written as <root/> has no start and end tag to go between
+            isRootChanged |= rootStartTagEnd == rootEnd;
+            isRootContentChanged = true;
+            markChanged(node);
+        }
+        else {
+            markChanged(node);
+        }
+    }
+
+    /**
+     * Writes the document in the encoding it was read in, copying whatever was not changed from the source bytes.
+     * Characters the encoder cannot encode are written as character references, a null encoder is taken to encode
+     * every character.
+     */
+    void write(OutputStream out, CharsetEncoder encoder) throws IOException {
+        // Source kept in another encoding than the document is written in is encoded again
+        Writer writer = sourceCharset.equals(charset) ? null : new OutputStreamWriter(out, charset);
+        StringBuilder serialized = new StringBuilder();
+
+        if (sections.isEmpty() && rootEnd == 0) { // Not split into sections
+            XMLUtil.serialize(doc, serialized, encoder);
+            write(out, writer, serialized);
+        }
+        else if (isRootChanged) {
+            copy(out, writer, 0, rootStart);
+
+            if (doc.getDocumentElement() != null) {
+                XMLUtil.serialize(doc.getDocumentElement(), serialized, encoder);
+                write(out, writer, serialized);
+            }
+
+            copy(out, writer, rootEnd, sourceLength);
+        }
+        else if (isRootContentChanged) {
+            copy(out, writer, 0, rootStartTagEnd);
+
+            for (Node child = doc.getDocumentElement().getFirstChild(); child != null;
+                 child = child.getNextSibling()) {
+                Section section = nodeSections.get(child);
+
+                if (section != null && !section.isChanged) {
+                    copy(out, writer, section.start, section.end);
+                }
+                else {
+                    serialized.setLength(0);
+                    XMLUtil.serialize(child, serialized, encoder);
+                    write(out, writer, serialized);
+                }
+            }
+
+            copy(out, writer, rootEndTagStart, sourceLength);
+        }
+        else { // Sections are where they were in the source, so only the changed ones are written over
+            int copiedTo = 0;
+
+            for (Section section : sections) {
+                if (section.isChanged) {
+                    copy(out, writer, copiedTo, section.start);
+
+                    serialized.setLength(0);
+                    XMLUtil.serialize(section.node, serialized, encoder);
+                    write(out, writer, serialized);
+
+                    copiedTo = section.end;
+                }
+            }
+
+            copy(out, writer, copiedTo, sourceLength);
+        }
+
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void copy(OutputStream out, Writer writer, int start, int end) throws IOException {
+        if (writer != null) {
+            writer.write(decode(start, end));
+        }
+        else {
+            out.write(source, start, end - start);
+        }
+    }
+
+    private void write(OutputStream out, Writer writer, CharSequence text) throws IOException {
+        if (writer != null) {
+            writer.append(text);
+        }
+        else {
+            out.write(text.toString().getBytes(charset));
+        }
+    }
+
+    // A section can hold matches when a child step names it, or when a descendant step looks for a name found in
+    // its text. Entities declared in a document type can add names the text does not show.
+    private boolean isReachable(Section section, XMLPath path) {
+        List<XMLPath.Step> steps = path.getSteps();
+        XMLPath.Step firstStep = steps.get(0);
+        String rootName = XMLPath.nameOf(doc.getDocumentElement());
+
+        if (!firstStep.isDescendant()) {
+            if (!firstStep.getName().equals(rootName)) {
+                return false;
+            }
+
+            if (steps.size() == 1) { // The root holds every section
+                return true;
+            }
+
+            if (!steps.get(1).isDescendant()) {
+                return steps.get(1).getName().equals(section.name);
+            }
+        }
+
+        String lastName = path.getLastStep().getName();
+
+        return lastName.equals(rootName) || doc.getDoctype() != null || contains(section, lastName);
+    }
+
+    // UTF-8 and single byte encodings write a name with the same bytes wherever it is
+    private boolean contains(Section section, String name) {
+        byte[] nameBytes = name.getBytes(sourceCharset);
+        int last = section.end - nameBytes.length;
+
+        for (int i = section.start; i <= last; ++i) {
+            int matched = 0;
+
+            while (matched < nameBytes.length && source[i + matched] == nameBytes[matched]) {
+                ++matched;
+            }
+
+            if (matched == nameBytes.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Node load(Section section) throws ConfigException {
+        StringBuilder fragment = new StringBuilder(rootStartTagEnd - contentStart + section.end - section.start + 64);
+        fragment.append(decode(contentStart, rootStartTagEnd));
+        fragment.append(decode(section.start, section.end));
+        fragment.append("</").append(doc.getDocumentElement().getNodeName()).append('>');
+
+        Node element;
+
+        try {
+            Node parsedRoot = parse(fragment.toString()).getDocumentElement();
+            Node parsedElement = parsedRoot.getFirstChild();
+
+            while (parsedElement.getNodeType() != Node.ELEMENT_NODE) {
+                parsedElement = parsedElement.getNextSibling();
+            }
+
+            element = doc.importNode(parsedElement, true);
+        } catch (ParserConfigurationException | IOException | SAXException e) {
+            throw new ConfigException("Error parsing config section " + section.name, e);
+        }
+
+        doc.getDocumentElement().replaceChild(element, section.node);
+
+        nodeSections.remove(section.node);
+        nodeSections.put(element, section);
+        section.node = element;
+        section.isLoaded = true;
+        --unloadedCount;
+
+        return element;
+    }
+
+    private void markChanged(Node node) {
+        Node root = doc.getDocumentElement();
+        Node sectionNode = node;
+
+        while (sectionNode.getParentNode() != root) {
+            sectionNode = sectionNode.getParentNode();
+
+            if (sectionNode == null) {
+                return;
+            }
+        }
+
+        Section section = nodeSections.get(sectionNode);
+
+        if (section != null) {
+            section.isChanged = true;
+        }
+    }
+
+    private String decode(int start, int end) {
+        return new String(source, start, end - start, sourceCharset);
+    }
+
+    // Markup characters have to be single bytes that no other character is written with
+    private static boolean isScannable(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+
+        return charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1 &&
+               Arrays.equals(MARKUP_CHARACTERS.getBytes(charset),
+                             MARKUP_CHARACTERS.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Document parse(String content) throws ParserConfigurationException, IOException, SAXException {
+        DocumentBuilder docBuilder = XMLParserPool.getDocumentBuilder();
+        InputSource source = new InputSource(new StringReader(content));
+        source.setSystemId(systemId);
+
+        Document parsed = docBuilder.parse(source);
+        parsed.getDocumentElement().normalize();
+
+        return parsed;
+    }
+}
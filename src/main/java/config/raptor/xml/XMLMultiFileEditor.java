@@ -0,0 +1,283 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies the same change to many files in parallel. Every file is loaded into its own {@link XMLConfigIO}, changed
+ * and saved independently, so a failure only affects the file it happened in.
+ *
+ * The total size of the files being edited at any one time is kept under a budget, so that memory use stays bounded
+ * however many files are queued. A file larger than the budget is edited on its own.
+ */
+public class XMLMultiFileEditor {
+
+    public interface Change {
+        void apply(XMLConfigIO configIO) throws ConfigException;
+    }
+
+    /**
+     * Called from the worker threads as each file completes, so implementations must be thread safe.
+     */
+    public interface ProgressListener {
+        /**
+         * @param error null if the file was changed successfully
+         */
+        void fileProcessed(Path file, ConfigException error, int processedCount, int fileCount);
+    }
+
+    private static final int BYTES_PER_PERMIT = 1024;
+
+    private final int threadCount;
+    private final ExecutorService executor;
+    private final int budgetPermits;
+    private final Semaphore inFlightBudget;
+    private volatile ProgressListener progressListener;
+
+    /**
+     * @param threadCount number of files edited in parallel
+     * @param maxInFlightBytes total size of the files being edited at one time
+     */
+    public XMLMultiFileEditor(int threadCount, long maxInFlightBytes) {
+        this(threadCount, null, maxInFlightBytes);
+    }
+
+    /**
+     * Uses an executor supplied by the caller, such as one running each task on a virtual thread. The executor is
+     * not shut down by this class.
+     */
+    public XMLMultiFileEditor(ExecutorService executor, long maxInFlightBytes) {
+        this(0, executor, maxInFlightBytes);
+    }
+
+    private XMLMultiFileEditor(int threadCount, ExecutorService executor, long maxInFlightBytes) {
+        if (executor == null && threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive, got " + threadCount);
+        }
+
+        if (maxInFlightBytes < BYTES_PER_PERMIT) {
+            throw new IllegalArgumentException("In flight byte budget must be at least " + BYTES_PER_PERMIT +
+                                                                                    ", got " + maxInFlightBytes);
+        }
+
+        this.threadCount = threadCount;
+        this.executor = executor;
+        this.budgetPermits = (int) Math.min(Integer.MAX_VALUE, maxInFlightBytes / BYTES_PER_PERMIT);
+        this.inFlightBudget = new Semaphore(budgetPermits);
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Applies the operations as a batch to each file, see {@link XMLConfigOperator#applyBatch(List)}. A file whose
+     * batch is rolled back is left unchanged and reported as failed.
+     */
+    public static Change forOperations(final List<XMLConfigOperation> operations) {
+        return new Change() {
+            // Reading the same DOM from several threads is not safe, so each thread works on its own copy
+            private final ThreadLocal<List<XMLConfigOperation>> threadOperations = new ThreadLocal<>();
+
+            @Override
+            public void apply(XMLConfigIO configIO) throws ConfigException {
+                List<XMLConfigOperation> copies = threadOperations.get();
+
+                if (copies == null) {
+                    synchronized (operations) {
+                        copies = copyOperations(operations);
+                    }
+                    threadOperations.set(copies);
+                }
+
+                XMLBatchResult result = configIO.getConfigOperator().applyBatch(copies);
+
+                if (!result.isCommitted()) {
+                    int failedIndex = result.getFailedIndex();
+                    throw new ConfigException("Operation " + copies.get(failedIndex) + " failed with status " +
+                                                        result.getStatus(failedIndex) + ", no changes were made");
+                }
+            }
+        };
+    }
+
+    /**
+     * Applies the change to every regular file under the directory whose path relative to it matches the glob,
+     * such as {@code "*.xml"}. Files in subdirectories are matched by globs starting with {@code **}.
+     */
+    public XMLMultiFileResult apply(Path directory, String glob, Change change)
+                                                                        throws ConfigException, InterruptedException {
+        final Path root = directory;
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        final List<Path> files = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && matcher.matches(root.relativize(file))) {
+                        files.add(file);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new ConfigException("Error listing files under " + directory, e);
+        }
+
+        Collections.sort(files);
+
+        return apply(files, change);
+    }
+
+    public XMLMultiFileResult apply(List<Path> files, final Change change) throws InterruptedException {
+        ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(threadCount);
+        final int fileCount = files.size();
+        final AtomicInteger processedCount = new AtomicInteger();
+        final Map<Path, ConfigException> failures = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>(fileCount);
+
+        try {
+            for (final Path file : files) {
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        ConfigException error = null;
+
+                        try {
+                            processFile(file, change);
+                        } catch (ConfigException e) {
+                            error = e;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            error = new ConfigException("Interrupted before changing " + file, e);
+                        } catch (RuntimeException e) {
+                            error = new ConfigException("Error changing " + file, e);
+                        }
+
+                        if (error != null) {
+                            failures.put(file, error);
+                        }
+
+                        ProgressListener listener = progressListener;
+                        int processed = processedCount.incrementAndGet();
+
+                        if (listener != null) {
+                            listener.fileProcessed(file, error, processed, fileCount);
+                        }
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) { // Only if the progress listener failed
+                    throw new IllegalStateException("Progress listener failed", e.getCause());
+                }
+            }
+        } finally {
+            if (pool != executor) {
+                pool.shutdownNow();
+            }
+        }
+
+        return new XMLMultiFileResult(fileCount, failures);
+    }
+
+    private void processFile(Path file, Change change) throws ConfigException, InterruptedException {
+        int permits;
+
+        try {
+            permits = (int) Math.max(1, Math.min(budgetPermits, Files.size(file) / BYTES_PER_PERMIT));
+        } catch (IOException e) {
+            throw new ConfigException("Error reading size of " + file, e);
+        }
+
+        inFlightBudget.acquire(permits);
+
+        try {
+            XMLConfigIO configIO;
+
+            try {
+                configIO = new XMLConfigIO(file.toString());
+            } catch (ParserConfigurationException | IOException | SAXException e) {
+                throw new ConfigException("Error loading " + file, e);
+            }
+
+            change.apply(configIO);
+            configIO.save();
+        } finally {
+            inFlightBudget.release(permits);
+        }
+    }
+
+    private static List<XMLConfigOperation> copyOperations(List<XMLConfigOperation> operations)
+                                                                                        throws ConfigException {
+        Document scratchDoc;
+
+        try {
+            scratchDoc = XMLParserPool.getDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new ConfigException("Parser configuration error", e);
+        }
+
+        List<XMLConfigOperation> copies = new ArrayList<>(operations.size());
+
+        for (XMLConfigOperation operation : operations) {
+            Node config = operation.getConfig() == null ? null : scratchDoc.importNode(operation.getConfig(), true);
+
+            if (operation.getType() == XMLConfigOperation.Type.UPDATE) {
+                copies.add(XMLConfigOperation.update(operation.getPathString(), config));
+            }
+            else if (operation.getType() == XMLConfigOperation.Type.ADD) {
+                copies.add(XMLConfigOperation.add(operation.getPathString(), config, operation.getPosition()));
+            }
+            else {
+                copies.add(operation);
+            }
+        }
+
+        return copies;
+    }
+}
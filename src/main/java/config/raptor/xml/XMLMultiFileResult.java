@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of applying a change to many files with {@link XMLMultiFileEditor}.
+ */
+public final class XMLMultiFileResult {
+    private final int fileCount;
+    private final Map<Path, ConfigException> failures;
+
+    XMLMultiFileResult(int fileCount, Map<Path, ConfigException> failures) {
+        this.fileCount = fileCount;
+        this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getSuccessCount() {
+        return fileCount - failures.size();
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the error of each file that could not be changed, sorted by path
+     */
+    public Map<Path, ConfigException> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Throws a single exception for all failed files, with the error of each file attached as a suppressed exception.
+     */
+    public void throwIfFailed() throws ConfigException {
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        ConfigException exception = new ConfigException(failures.size() + " of " + fileCount +
+                                                        " files could not be changed, first failure was " +
+                                                        failures.keySet().iterator().next());
+
+        for (ConfigException failure : failures.values()) {
+            exception.addSuppressed(failure);
+        }
+
+        throw exception;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.w3c.dom.Document;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * Shares parser and transformer instances between {@link XMLConfigIO} and {@link XMLConfigCreator}.
+ *
+ * The factories are looked up once. Builders and transformers are not thread safe, so each thread gets its own
+ * instance which is {@code reset()} before being handed out again.
+ */
+final class XMLParserPool {
+    private static final DocumentBuilderFactory docFactory = createDocumentBuilderFactory();
+    private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+
+    private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<>();
+    private static final ThreadLocal<Transformer> transformers = new ThreadLocal<>();
+    private static final ThreadLocal<Document> scratchDocuments = new ThreadLocal<>();
+
+    private XMLParserPool() {
+    }
+
+    static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilder docBuilder = documentBuilders.get();
+
+        if (docBuilder == null) {
+            synchronized (docFactory) {
+                docBuilder = docFactory.newDocumentBuilder();
+            }
+            documentBuilders.set(docBuilder);
+        }
+        else {
+            docBuilder.reset();
+        }
+
+        return docBuilder;
+    }
+
+    static Transformer getTransformer() throws TransformerConfigurationException {
+        Transformer transformer = transformers.get();
+
+        if (transformer == null) {
+            synchronized (transformerFactory) {
+                transformer = transformerFactory.newTransformer();
+            }
+            transformers.set(transformer);
+        }
+        else {
+            transformer.reset();
+        }
+
+        return transformer;
+    }
+
+    /**
+     * @return an empty document of the calling thread, for owning nodes that are not part of any loaded document
+     * such as copies handed out to callers
+     */
+    static Document getScratchDocument() throws ParserConfigurationException {
+        Document scratchDocument = scratchDocuments.get();
+
+        if (scratchDocument == null) {
+            scratchDocument = getDocumentBuilder().newDocument();
+            scratchDocuments.set(scratchDocument);
+        }
+
+        return scratchDocument;
+    }
+
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setIgnoringComments(false);
+
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser does not support secure processing", e);
+        }
+
+        return factory;
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A location path made up only of element name steps joined by '/' (child) or '//' (descendant), such as
+ * {@code //APIGateway/Environments/Environment/Password}. Paths like these can be answered without the XPath engine.
+ * Steps may also carry position predicates such as {@code [2]} and attribute value predicates such as
+ * {@code [@type='hybrid']}, when parsed with {@link #parseWithPredicates(String)}.
+ *
+ * Relative paths are evaluated against the document node, the same way {@link XMLConfigOperator} evaluates XPath.
+ */
+final class XMLPath {
+    static final class Step {
+        private final String name;
+        private final boolean descendant;
+        private final String text;
+        // For each predicate either an attribute name and value, or a position with a null attribute name
+        private final String[] attributeNames;
+        private final String[] attributeValues;
+        private final int[] positions;
+
+        private Step(String name, boolean descendant, String text, String[] attributeNames,
+                     String[] attributeValues, int[] positions) {
+            this.name = name;
+            this.descendant = descendant;
+            this.text = text;
+            this.attributeNames = attributeNames;
+            this.attributeValues = attributeValues;
+            this.positions = positions;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isDescendant() {
+            return descendant;
+        }
+
+        int getPredicateCount() {
+            return positions.length;
+        }
+
+        /**
+         * Checks whether a child is selected by this step. The children of a parent have to be checked in document
+         * order with the same counters, at least {@link #getPredicateCount()} of them starting at zero, which keep
+         * count of the siblings each position predicate has seen.
+         */
+        boolean selects(Node child, int[] counters) {
+            if (!name.equals(nameOf(child))) {
+                return false;
+            }
+
+            for (int i = 0; i < positions.length; ++i) {
+                if (attributeNames[i] != null) {
+                    Attr attribute = ((Element) child).getAttributeNode(attributeNames[i]);
+
+                    if (attribute == null || !attributeValues[i].equals(attribute.getValue())) {
+                        return false;
+                    }
+                }
+                else if (++counters[i] != positions[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @return the step as written in the path, without the leading '/' or '//'
+         */
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static final String[] NO_NAMES = new String[0];
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final List<Step> steps;
+
+    private XMLPath(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return the parsed path or null if the path string uses anything beyond plain element name steps, in which
+     * case it has to be handed to the XPath engine
+     */
+    static XMLPath parse(String pathString) {
+        return parse(pathString, false);
+    }
+
+    /**
+     * @return the parsed path or null if the path string uses anything beyond element name steps with position and
+     * attribute value predicates, in which case it has to be handed to the XPath engine
+     */
+    static XMLPath parseWithPredicates(String pathString) {
+        return parse(pathString, true);
+    }
+
+    private static XMLPath parse(String pathString, boolean isPredicateAllowed) {
+        int length = pathString.length();
+        int i = 0;
+        boolean descendant = false;
+
+        if (length > 0 && pathString.charAt(0) == '/') {
+            if (length > 1 && pathString.charAt(1) == '/') {
+                descendant = true;
+                i = 2;
+            }
+            else {
+                i = 1;
+            }
+        }
+
+        List<Step> steps = new ArrayList<>();
+
+        while (true) {
+            int start = i;
+
+            while (i < length && isNameChar(pathString.charAt(i), i == start)) {
+                ++i;
+            }
+
+            if (i == start) {
+                return null;
+            }
+
+            String name = pathString.substring(start, i);
+
+            if (i < length && pathString.charAt(i) == '[') {
+                if (!isPredicateAllowed) {
+                    return null;
+                }
+
+                List<String> attributeNames = new ArrayList<>();
+                List<String> attributeValues = new ArrayList<>();
+                List<Integer> positions = new ArrayList<>();
+
+                while (i < length && pathString.charAt(i) == '[') {
+                    i = parsePredicate(pathString, i + 1, attributeNames, attributeValues, positions);
+
+                    if (i < 0) {
+                        return null;
+                    }
+                }
+
+                int[] positionArray = new int[positions.size()];
+                for (int j = 0; j < positionArray.length; ++j) {
+                    positionArray[j] = positions.get(j);
+                }
+
+                steps.add(new Step(name, descendant, pathString.substring(start, i),
+                        attributeNames.toArray(new String[attributeNames.size()]),
+                        attributeValues.toArray(new String[attributeValues.size()]), positionArray));
+            }
+            else {
+                steps.add(new Step(name, descendant, name, NO_NAMES, NO_NAMES, NO_POSITIONS));
+            }
+
+            if (i == length) {
+                return new XMLPath(steps);
+            }
+
+            if (pathString.charAt(i) != '/') {
+                return null;
+            }
+
+            ++i;
+            descendant = false;
+
+            if (i < length && pathString.charAt(i) == '/') {
+                descendant = true;
+                ++i;
+            }
+        }
+    }
+
+    List<Step> getSteps() {
+        return steps;
+    }
+
+    Step getLastStep() {
+        return steps.get(steps.size() - 1);
+    }
+
+    boolean hasDescendantSteps() {
+        for (Step step : steps) {
+            if (step.descendant) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    boolean hasPredicates() {
+        for (Step step : steps) {
+            if (step.getPredicateCount() > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether an attached node is selected by this path, matching steps right to left against its ancestors.
+     * Predicates are not checked.
+     */
+    boolean matches(Node node) {
+        return matches(node, steps.size() - 1);
+    }
+
+    private boolean matches(Node node, int stepIndex) {
+        Step step = steps.get(stepIndex);
+
+        if (!step.name.equals(nameOf(node))) {
+            return false;
+        }
+
+        Node parent = node.getParentNode();
+
+        if (stepIndex == 0) {
+            return step.descendant || (parent != null && parent.getNodeType() == Node.DOCUMENT_NODE);
+        }
+
+        if (step.descendant) {
+            for (Node ancestor = parent; ancestor != null; ancestor = ancestor.getParentNode()) {
+                if (matches(ancestor, stepIndex - 1)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        return parent != null && matches(parent, stepIndex - 1);
+    }
+
+    /**
+     * Checks whether the innermost of a chain of open elements is selected by this path, for use while streaming.
+     * Predicates are not checked.
+     *
+     * @param elementNames names of the open elements from the root down, as given by {@link #nameOf(QName)}
+     */
+    boolean matches(List<String> elementNames) {
+        return matches(elementNames, elementNames.size() - 1, steps.size() - 1);
+    }
+
+    private boolean matches(List<String> elementNames, int nameIndex, int stepIndex) {
+        Step step = steps.get(stepIndex);
+
+        if (!step.name.equals(elementNames.get(nameIndex))) {
+            return false;
+        }
+
+        if (stepIndex == 0) {
+            return step.descendant || nameIndex == 0;
+        }
+
+        if (step.descendant) {
+            for (int i = nameIndex - 1; i >= 0; --i) {
+                if (matches(elementNames, i, stepIndex - 1)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        return nameIndex > 0 && matches(elementNames, nameIndex - 1, stepIndex - 1);
+    }
+
+    /**
+     * @return the name an unprefixed XPath name test would match this node by, or null if no such test can select it
+     */
+    static String nameOf(Node node) {
+        if (node.getNodeType() != Node.ELEMENT_NODE || node.getNamespaceURI() != null) {
+            return null;
+        }
+
+        String name = node.getLocalName();
+
+        if (name == null) { // Parsed without namespace awareness
+            name = node.getNodeName();
+
+            if (name.indexOf(':') >= 0) {
+                return null;
+            }
+        }
+
+        return name;
+    }
+
+    /**
+     * @return the name an unprefixed XPath name test would match a streamed element by, or null if no such test can
+     * select it
+     */
+    static String nameOf(QName name) {
+        String namespaceURI = name.getNamespaceURI();
+        return namespaceURI == null || namespaceURI.isEmpty() ? name.getLocalPart() : null;
+    }
+
+    // Parses the predicate starting after its '[' and returns the index after its ']', or -1 if it is not a position
+    // or an attribute value comparison. Positions are whole numbers from 1, as a position of 0 selects nothing.
+    private static int parsePredicate(String pathString, int i, List<String> attributeNames,
+                                      List<String> attributeValues, List<Integer> positions) {
+        int length = pathString.length();
+
+        if (i < length && pathString.charAt(i) == '@') {
+            int start = ++i;
+
+            while (i < length && isNameChar(pathString.charAt(i), i == start)) {
+                ++i;
+            }
+
+            String attributeName = pathString.substring(start, i);
+            i = skipSpaces(pathString, i);
+
+            // Namespace declarations are not attributes to XPath
+            if (i == start || attributeName.equals("xmlns") || i == length || pathString.charAt(i) != '=') {
+                return -1;
+            }
+
+            i = skipSpaces(pathString, i + 1);
+
+            if (i == length || (pathString.charAt(i) != '\'' && pathString.charAt(i) != '"')) {
+                return -1;
+            }
+
+            int valueEnd = pathString.indexOf(pathString.charAt(i), i + 1);
+
+            if (valueEnd < 0) {
+                return -1;
+            }
+
+            attributeNames.add(attributeName);
+            attributeValues.add(pathString.substring(i + 1, valueEnd));
+            positions.add(0);
+            i = valueEnd + 1;
+        }
+        else {
+            i = skipSpaces(pathString, i);
+            int start = i;
+
+            while (i < length && i - start < 9 && pathString.charAt(i) >= '0' && pathString.charAt(i) <= '9') {
+                ++i;
+            }
+
+            if (i == start || pathString.charAt(start) == '0') {
+                return -1;
+            }
+
+            attributeNames.add(null);
+            attributeValues.add(null);
+            positions.add(Integer.parseInt(pathString.substring(start, i)));
+        }
+
+        i = skipSpaces(pathString, i);
+
+        return i < length && pathString.charAt(i) == ']' ? i + 1 : -1;
+    }
+
+    private static int skipSpaces(String pathString, int i) {
+        while (i < pathString.length() && pathString.charAt(i) == ' ') {
+            ++i;
+        }
+
+        return i;
+    }
+
+    private static boolean isNameChar(char c, boolean isFirst) {
+        if (Character.isLetter(c) || c == '_') {
+            return true;
+        }
+
+        return !isFirst && (Character.isDigit(c) || c == '-' || c == '.');
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates {@link XMLPath}s, including their predicates, by walking the DOM. {@link #select(Node, XMLPath)} walks
+ * a path once, depth first, collecting only the selected nodes. An evaluator instance instead remembers the nodes
+ * selected by each path prefix, so paths sharing a prefix such as {@code //APIGateway/Environments/Environment}
+ * only walk it once.
+ *
+ * Remembered results are only valid while the document is unchanged.
+ */
+final class XMLPathEvaluator {
+    private static final Comparator<Node> documentOrder = new Comparator<Node>() {
+        @Override
+        public int compare(Node node1, Node node2) {
+            if (node1 == node2) {
+                return 0;
+            }
+
+            return (node1.compareDocumentPosition(node2) & Node.DOCUMENT_POSITION_FOLLOWING) != 0 ? -1 : 1;
+        }
+    };
+    private static final int[] NO_COUNTERS = new int[0];
+
+    private final Document doc;
+    private final Map<String, List<Node>> prefixResults = new HashMap<>();
+
+    XMLPathEvaluator(Document doc) {
+        this.doc = doc;
+    }
+
+    /**
+     * @return the nodes the path selects from the given node, in document order
+     */
+    static List<Node> select(Node context, XMLPath path) {
+        List<Node> nodes = new ArrayList<>();
+        select(context, path.getSteps(), 0, nodes);
+
+        if (path.hasDescendantSteps()) { // Nested matches of a descendant step can select nodes twice or out of order
+            sortInDocumentOrder(nodes);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * @return the first node in document order the path selects from the given node, or null if it selects none. The
+     * walk stops as soon as no later node can come before the one found.
+     */
+    static Node selectFirst(Node context, XMLPath path) {
+        return selectFirst(context, path.getSteps(), 0);
+    }
+
+    /**
+     * @return the selected nodes in document order
+     */
+    List<Node> evaluate(XMLPath path) {
+        List<Node> contexts = Collections.<Node>singletonList(doc);
+        StringBuilder prefix = new StringBuilder();
+
+        for (XMLPath.Step step : path.getSteps()) {
+            prefix.append(step.isDescendant() ? "//" : "/").append(step);
+            String prefixKey = prefix.toString();
+            List<Node> nodes = prefixResults.get(prefixKey);
+
+            if (nodes == null) {
+                nodes = evaluateStep(contexts, step);
+                prefixResults.put(prefixKey, nodes);
+            }
+
+            contexts = nodes;
+
+            if (contexts.isEmpty()) {
+                break;
+            }
+        }
+
+        return Collections.unmodifiableList(contexts);
+    }
+
+    private static List<Node> evaluateStep(List<Node> contexts, XMLPath.Step step) {
+        List<Node> nodes = new ArrayList<>();
+        List<XMLPath.Step> steps = Collections.singletonList(step);
+
+        for (Node context : contexts) {
+            select(context, steps, 0, nodes);
+        }
+
+        if (contexts.size() > 1) { // Nested contexts can select nodes twice or out of order
+            sortInDocumentOrder(nodes);
+        }
+
+        return nodes;
+    }
+
+    // Nodes selected by a step are taken on to the next step as soon as they are found, so no list is built between
+    // steps
+    private static void select(Node context, List<XMLPath.Step> steps, int stepIndex, List<Node> nodes) {
+        XMLPath.Step step = steps.get(stepIndex);
+        int[] counters = step.getPredicateCount() > 0 ? new int[step.getPredicateCount()] : NO_COUNTERS;
+
+        for (Node child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            if (step.selects(child, counters)) {
+                if (stepIndex == steps.size() - 1) {
+                    nodes.add(child);
+                }
+                else {
+                    select(child, steps, stepIndex + 1, nodes);
+                }
+            }
+
+            // A descendant step applies to the children of every element below the context as well
+            if (step.isDescendant()) {
+                select(child, steps, stepIndex, nodes);
+            }
+        }
+    }
+
+    // Whatever is found at or below a child comes before anything at or below its later siblings, so the first child
+    // that leads to a match ends the walk. Below a node matched by a descendant step, matches can also be reached
+    // through deeper nodes matched by the same step, and the earlier of the two is taken.
+    private static Node selectFirst(Node context, List<XMLPath.Step> steps, int stepIndex) {
+        XMLPath.Step step = steps.get(stepIndex);
+        int[] counters = step.getPredicateCount() > 0 ? new int[step.getPredicateCount()] : NO_COUNTERS;
+
+        for (Node child = context.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+
+            Node found = null;
+
+            if (step.selects(child, counters)) {
+                if (stepIndex == steps.size() - 1) {
+                    return child;
+                }
+
+                found = selectFirst(child, steps, stepIndex + 1);
+            }
+
+            if (step.isDescendant()) {
+                Node nestedFound = selectFirst(child, steps, stepIndex);
+
+                if (found == null || (nestedFound != null && documentOrder.compare(nestedFound, found) < 0)) {
+                    found = nestedFound;
+                }
+            }
+
+            if (found != null) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    static void sortInDocumentOrder(List<Node> nodes) {
+        boolean isOrdered = true;
+
+        for (int i = 1; i < nodes.size() && isOrdered; ++i) {
+            isOrdered = documentOrder.compare(nodes.get(i - 1), nodes.get(i)) < 0;
+        }
+
+        if (isOrdered) {
+            return;
+        }
+
+        Set<Node> unique = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        List<Node> uniqueNodes = new ArrayList<>(nodes.size());
+
+        for (Node node : nodes) {
+            if (unique.add(node)) {
+                uniqueNodes.add(node);
+            }
+        }
+
+        Collections.sort(uniqueNodes, documentOrder);
+        nodes.clear();
+        nodes.addAll(uniqueNodes);
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the elements of a document by name and by the chain of names leading to them from the root, each list
+ * being kept in document order.
+ *
+ * Child-only paths such as {@code /APIManager/AuthManager/Username} are a single chain lookup. Paths with descendant
+ * steps only check the ancestors of the elements carrying the last step's name, instead of scanning the document.
+ *
+ * The index is only aware of changes it is told about, so nodes must be reported before they are removed and after
+ * they are added.
+ */
+final class XMLPathIndex {
+    private static final String CHAIN_SEPARATOR = "/";
+
+    private final Map<String, List<Node>> nameIndex = new HashMap<>();
+    private final Map<String, List<Node>> chainIndex = new HashMap<>();
+
+    XMLPathIndex(Document doc) {
+        indexChildren(doc, "");
+    }
+
+    List<Node> lookup(XMLPath path) {
+        if (!path.hasDescendantSteps()) {
+            List<Node> nodes = chainIndex.get(chainOf(path));
+            return nodes == null ? Collections.<Node>emptyList() : new ArrayList<>(nodes);
+        }
+
+        List<Node> candidates = nameIndex.get(path.getLastStep().getName());
+
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        List<Node> nodes = new ArrayList<>();
+
+        for (Node candidate : candidates) {
+            if (path.matches(candidate)) {
+                nodes.add(candidate);
+            }
+        }
+
+        return nodes;
+    }
+
+    /**
+     * @return the first node in document order selected by the path, or null if none is
+     */
+    Node lookupFirst(XMLPath path) {
+        if (!path.hasDescendantSteps()) {
+            List<Node> nodes = chainIndex.get(chainOf(path));
+            return nodes == null || nodes.isEmpty() ? null : nodes.get(0);
+        }
+
+        List<Node> candidates = nameIndex.get(path.getLastStep().getName());
+
+        if (candidates != null) {
+            for (Node candidate : candidates) {
+                if (path.matches(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Indexes a node and its descendants after it has been attached to the document.
+     */
+    void nodeAdded(Node node) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+
+        String parentChain = chainOf(node.getParentNode());
+        addElement(node, parentChain);
+    }
+
+    /**
+     * Drops a node and its descendants from the index while it is still attached to the document.
+     */
+    void nodeRemoving(Node node) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+
+        removeElement(node, chainOf(node.getParentNode()));
+    }
+
+    /**
+     * Drops the descendants of a node while they are still attached to the document, keeping the node itself.
+     */
+    void childrenRemoving(Node node) {
+        String chain = chainOf(node);
+
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                removeElement(child, chain);
+            }
+        }
+    }
+
+    private void indexChildren(Node parent, String parentChain) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                String chain = chainOf(child, parentChain);
+                append(nameIndex, XMLPath.nameOf(child), child);
+                append(chainIndex, chain, child);
+                indexChildren(child, chain);
+            }
+        }
+    }
+
+    private void addElement(Node element, String parentChain) {
+        String chain = chainOf(element, parentChain);
+        insert(nameIndex, XMLPath.nameOf(element), element);
+        insert(chainIndex, chain, element);
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                addElement(child, chain);
+            }
+        }
+    }
+
+    private void removeElement(Node element, String parentChain) {
+        String chain = chainOf(element, parentChain);
+        remove(nameIndex, XMLPath.nameOf(element), element);
+        remove(chainIndex, chain, element);
+
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                removeElement(child, chain);
+            }
+        }
+    }
+
+    private static void append(Map<String, List<Node>> index, String key, Node node) {
+        if (key == null) {
+            return;
+        }
+
+        List<Node> nodes = index.get(key);
+
+        if (nodes == null) {
+            nodes = new ArrayList<>(1);
+            index.put(key, nodes);
+        }
+
+        nodes.add(node);
+    }
+
+    private static void insert(Map<String, List<Node>> index, String key, Node node) {
+        if (key == null) {
+            return;
+        }
+
+        List<Node> nodes = index.get(key);
+
+        if (nodes == null) {
+            nodes = new ArrayList<>(1);
+            index.put(key, nodes);
+        }
+
+        nodes.add(-(search(nodes, node) + 1), node);
+    }
+
+    private static void remove(Map<String, List<Node>> index, String key, Node node) {
+        if (key == null) {
+            return;
+        }
+
+        List<Node> nodes = index.get(key);
+
+        if (nodes != null) {
+            int position = search(nodes, node);
+
+            if (position >= 0) {
+                nodes.remove(position);
+
+                if (nodes.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Binary search by document order.
+     *
+     * @return the position of the node, or (-(insertion point) - 1) if it is not in the list
+     */
+    private static int search(List<Node> nodes, Node node) {
+        int low = 0;
+        int high = nodes.size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Node midNode = nodes.get(mid);
+
+            if (midNode == node) {
+                return mid;
+            }
+
+            if ((midNode.compareDocumentPosition(node) & Node.DOCUMENT_POSITION_FOLLOWING) != 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * @return the chain of names from the root down to the node, or null if an element on the way cannot be
+     * selected by name
+     */
+    private static String chainOf(XMLPath path) {
+        StringBuilder chain = new StringBuilder();
+
+        for (XMLPath.Step step : path.getSteps()) {
+            chain.append(CHAIN_SEPARATOR).append(step.getName());
+        }
+
+        return chain.toString();
+    }
+
+    private static String chainOf(Node node) {
+        if (node == null || node.getNodeType() != Node.ELEMENT_NODE) {
+            return "";
+        }
+
+        return chainOf(node, chainOf(node.getParentNode()));
+    }
+
+    private static String chainOf(Node element, String parentChain) {
+        String name = XMLPath.nameOf(element);
+
+        if (parentChain == null || name == null) {
+            return null;
+        }
+
+        return parentChain + CHAIN_SEPARATOR + name;
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import config.raptor.ConfigFiles;
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies operations to a file in a single streaming pass, without loading it into a DOM. Memory use only depends
+ * on element depth and the size of the nodes being written, so files of any size can be edited.
+ *
+ * Only paths made of element name steps joined by '/' or '//' can be decided on the fly. As with
+ * {@link XMLConfigOperator}, each operation applies to the first element its path matches, operations are applied
+ * in the given order and add supports the BEFORE, AT and AFTER positions. Nodes written by an operation are not
+ * visible to the paths of the operations that follow it, and the root element cannot be removed or have nodes added
+ * next to it.
+ */
+public class XMLStreamConfigEditor {
+    private static final XMLInputFactory inputFactory = createInputFactory();
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    private File file;
+    private XMLConfigCreator configCreator;
+
+    public XMLStreamConfigEditor(String filePath) throws ParserConfigurationException {
+        file = new File(filePath);
+
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("The file path " + filePath + " provided is not a valid file");
+        }
+
+        configCreator = new XMLConfigCreator(XMLParserPool.getDocumentBuilder().newDocument());
+    }
+
+    /**
+     * @return a creator for the nodes passed to {@link #apply(List)}
+     */
+    public XMLConfigCreator getConfigCreator() {
+        return configCreator;
+    }
+
+    /**
+     * Streams the file through the operations and replaces it with the result.
+     *
+     * @return whether each operation found an element to apply to, in the order of the operations
+     */
+    public List<Boolean> apply(List<XMLConfigOperation> operations) throws ConfigException {
+        final List<StreamedOperation> streamedOperations = new ArrayList<>(operations.size());
+
+        for (XMLConfigOperation operation : operations) {
+            XMLPath path = XMLPath.parse(operation.getPathString());
+
+            if (path == null) {
+                throw new ConfigException("XPath expression '" + operation.getPathString() +
+                                                                            "' is not supported in streaming mode");
+            }
+
+            streamedOperations.add(new StreamedOperation(operation, path));
+        }
+
+        ConfigFiles.write(file.toPath(), new ConfigFiles.ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException, ConfigException {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()))) {
+                    stream(in, out, streamedOperations);
+                } catch (XMLStreamException e) {
+                    throw new ConfigException("XML streaming error when editing file " + file.getPath(), e);
+                }
+            }
+        }, ConfigFiles.DEFAULT_BUFFER_SIZE);
+
+        Boolean[] results = new Boolean[streamedOperations.size()];
+
+        for (int i = 0; i < results.length; ++i) {
+            results[i] = streamedOperations.get(i).isApplied;
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void stream(InputStream in, OutputStream out, List<StreamedOperation> operations)
+                                                                        throws XMLStreamException, IOException {
+        in.mark(16);
+        boolean hasDeclaration = startsWithDeclaration(in);
+        in.reset();
+
+        XMLEventReader reader = inputFactory.createXMLEventReader(in);
+        XMLEventWriter writer = null;
+        List<String> elementNames = new ArrayList<>();
+        List<OpenElement> openElements = new ArrayList<>();
+
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+
+                if (event.isStartDocument()) {
+                    StartDocument startDocument = (StartDocument) event;
+                    String encoding = startDocument.encodingSet() ?
+                                        startDocument.getCharacterEncodingScheme() : StandardCharsets.UTF_8.name();
+                    writer = outputFactory.createXMLEventWriter(out, encoding);
+
+                    if (hasDeclaration) {
+                        writer.add(event);
+                    }
+                }
+                else if (event.isStartElement()) {
+                    StartElement startElement = event.asStartElement();
+                    elementNames.add(XMLPath.nameOf(startElement.getName()));
+                    OpenElement openElement = new OpenElement();
+                    matchOperations(elementNames, openElement, operations, writer);
+
+                    if (openElement.isRemoved || openElement.update != null) {
+                        if (!openElement.isRemoved) {
+                            writeUpdatedElement(startElement, openElement, writer);
+                        }
+
+                        skipElement(reader);
+                        writeNodes(openElement.afterNodes, writer);
+                        elementNames.remove(elementNames.size() - 1);
+                    }
+                    else {
+                        writer.add(startElement);
+                        openElements.add(openElement);
+                    }
+                }
+                else if (event.isEndElement()) {
+                    OpenElement openElement = openElements.remove(openElements.size() - 1);
+                    writeNodes(openElement.atNodes, writer);
+                    writer.add(event);
+                    writeNodes(openElement.afterNodes, writer);
+                    elementNames.remove(elementNames.size() - 1);
+                }
+                else {
+                    writer.add(event);
+                }
+            }
+
+            if (writer != null) {
+                writer.flush();
+            }
+        } finally {
+            reader.close();
+
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private void matchOperations(List<String> elementNames, OpenElement openElement,
+                                 List<StreamedOperation> operations, XMLEventWriter writer) throws XMLStreamException {
+        boolean isRoot = elementNames.size() == 1;
+
+        for (StreamedOperation streamedOperation : operations) {
+            if (streamedOperation.isApplied || !streamedOperation.path.matches(elementNames)) {
+                continue;
+            }
+
+            XMLConfigOperation operation = streamedOperation.operation;
+
+            if (operation.getType() == XMLConfigOperation.Type.UPDATE) {
+                openElement.update = operation.getConfig();
+                openElement.atNodes.clear(); // Updating replaces the content of the element
+            }
+            else if (operation.getType() == XMLConfigOperation.Type.REMOVE) {
+                if (isRoot) {
+                    continue;
+                }
+
+                openElement.isRemoved = true;
+            }
+            else if (operation.getPosition() == XMLConfigOperator.Position.AT) {
+                openElement.atNodes.add(operation.getConfig());
+            }
+            else if (isRoot) {
+                continue;
+            }
+            else if (operation.getPosition() == XMLConfigOperator.Position.BEFORE) {
+                writeNode(operation.getConfig(), writer);
+            }
+            else { // Position.AFTER
+                openElement.afterNodes.add(operation.getConfig());
+            }
+
+            streamedOperation.isApplied = true;
+
+            if (openElement.isRemoved) { // Operations that follow see the next matching element instead
+                return;
+            }
+        }
+    }
+
+    private static void writeUpdatedElement(StartElement startElement, OpenElement openElement, XMLEventWriter writer)
+                                                                                        throws XMLStreamException {
+        List<Attribute> attributes = new ArrayList<>();
+        NamedNodeMap newAttributes = openElement.update.getAttributes();
+
+        if (newAttributes != null) {
+            for (int i = 0; i < newAttributes.getLength(); ++i) {
+                Attr attr = (Attr) newAttributes.item(i);
+
+                if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                    attributes.add(eventFactory.createAttribute(qNameOf(attr), attr.getValue()));
+                }
+            }
+        }
+
+        // Namespace declarations are kept so that the rest of the element stays well formed
+        writer.add(eventFactory.createStartElement(startElement.getName(), attributes.iterator(),
+                                                                                    startElement.getNamespaces()));
+        writer.add(eventFactory.createCharacters(openElement.update.getTextContent()));
+        writeNodes(openElement.atNodes, writer);
+        writer.add(eventFactory.createEndElement(startElement.getName(), startElement.getNamespaces()));
+    }
+
+    private static void skipElement(XMLEventReader reader) throws XMLStreamException {
+        int depth = 1;
+
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+
+            if (event.isStartElement()) {
+                ++depth;
+            }
+            else if (event.isEndElement()) {
+                --depth;
+            }
+        }
+    }
+
+    private static void writeNodes(List<Node> nodes, XMLEventWriter writer) throws XMLStreamException {
+        for (Node node : nodes) {
+            writeNode(node, writer);
+        }
+    }
+
+    static void writeNode(Node node, XMLEventWriter writer) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                QName name = qNameOf(node);
+                List<Attribute> attributes = new ArrayList<>();
+                List<Namespace> namespaces = new ArrayList<>();
+                NamedNodeMap nodeAttributes = node.getAttributes();
+
+                for (int i = 0; i < nodeAttributes.getLength(); ++i) {
+                    Attr attr = (Attr) nodeAttributes.item(i);
+
+                    if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attr.getNamespaceURI())) {
+                        String prefix = XMLConstants.XMLNS_ATTRIBUTE.equals(attr.getLocalName()) ?
+                                                            XMLConstants.DEFAULT_NS_PREFIX : attr.getLocalName();
+                        namespaces.add(eventFactory.createNamespace(prefix, attr.getValue()));
+                    }
+                    else {
+                        attributes.add(eventFactory.createAttribute(qNameOf(attr), attr.getValue()));
+                    }
+                }
+
+                writer.add(eventFactory.createStartElement(name, attributes.iterator(), namespaces.iterator()));
+                writeChildren(node, writer);
+                writer.add(eventFactory.createEndElement(name, namespaces.iterator()));
+                break;
+            case Node.TEXT_NODE:
+                writer.add(eventFactory.createCharacters(node.getNodeValue()));
+                break;
+            case Node.CDATA_SECTION_NODE:
+                writer.add(eventFactory.createCData(node.getNodeValue()));
+                break;
+            case Node.COMMENT_NODE:
+                writer.add(eventFactory.createComment(node.getNodeValue()));
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                writer.add(eventFactory.createProcessingInstruction(node.getNodeName(), node.getNodeValue()));
+                break;
+            case Node.DOCUMENT_FRAGMENT_NODE:
+            case Node.ENTITY_REFERENCE_NODE:
+                writeChildren(node, writer);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void writeChildren(Node node, XMLEventWriter writer) throws XMLStreamException {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeNode(child, writer);
+        }
+    }
+
+    private static QName qNameOf(Node node) {
+        if (node.getLocalName() == null) { // Created without namespace awareness
+            return new QName(node.getNodeName());
+        }
+
+        String namespaceURI = node.getNamespaceURI() == null ? XMLConstants.NULL_NS_URI : node.getNamespaceURI();
+        String prefix = node.getPrefix() == null ? XMLConstants.DEFAULT_NS_PREFIX : node.getPrefix();
+
+        return new QName(namespaceURI, node.getLocalName(), prefix);
+    }
+
+    private static boolean startsWithDeclaration(InputStream in) throws IOException {
+        byte[] start = new byte[8];
+        int length = 0;
+        int read;
+
+        while (length < start.length && (read = in.read(start, length, start.length - length)) > 0) {
+            length += read;
+        }
+
+        String prefix = new String(start, 0, length, StandardCharsets.UTF_8);
+
+        if (prefix.startsWith("\uFEFF")) {
+            prefix = prefix.substring(1);
+        }
+
+        return prefix.startsWith("<?xml");
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+        return factory;
+    }
+
+    private static final class StreamedOperation {
+        private final XMLConfigOperation operation;
+        private final XMLPath path;
+        private boolean isApplied;
+
+        private StreamedOperation(XMLConfigOperation operation, XMLPath path) {
+            this.operation = operation;
+            this.path = path;
+        }
+    }
+
+    private static final class OpenElement {
+        private final List<Node> atNodes = new ArrayList<>(0);
+        private final List<Node> afterNodes = new ArrayList<>(0);
+        private Node update;
+        private boolean isRemoved;
+    }
+}
@@ -18,26 +18,74 @@ package config.raptor.xml;
 
 
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
+import java.nio.charset.CharsetEncoder;
+
 
 public class XMLUtil {
     static void updateNode(Node currentNode, final Node newNode) {
         currentNode.setTextContent(newNode.getTextContent());
 
         NamedNodeMap currentAttributes = currentNode.getAttributes();
-        for (int i = 0; i < currentAttributes.getLength(); ++i) {
-            ((Element)currentNode).removeAttributeNode((Attr) currentAttributes.item(i));
+        while (currentAttributes.getLength() > 0) {
+            ((Element)currentNode).removeAttributeNode((Attr) currentAttributes.item(0));
         }
 
         NamedNodeMap newAttributes = newNode.getAttributes();
-        for (int i = 0; i < newAttributes.getLength(); ++i) {
-            ((Element)currentNode).setAttributeNode((Attr) newAttributes.item(i));
+        if (newAttributes != null) {
+            Document doc = currentNode.getOwnerDocument();
+
+            for (int i = 0; i < newAttributes.getLength(); ++i) {
+                // Attributes still belong to the new node, so copies are set
+                ((Element)currentNode).setAttributeNode((Attr) doc.importNode(newAttributes.item(i), true));
+            }
         }
     }
 
+    /**
+     * @return whether {@link #updateNode(Node, Node)} would change the current node
+     */
+    static boolean isUpdateNeeded(Node currentNode, Node newNode) {
+        if (!hasOnlyText(currentNode, newNode.getTextContent())) {
+            return true;
+        }
+
+        NamedNodeMap currentAttributes = currentNode.getAttributes();
+        NamedNodeMap newAttributes = newNode.getAttributes();
+
+        if (currentAttributes.getLength() != (newAttributes != null ? newAttributes.getLength() : 0)) {
+            return true;
+        }
+
+        for (int i = 0; i < currentAttributes.getLength(); ++i) {
+            Node newAttribute = newAttributes.getNamedItem(currentAttributes.item(i).getNodeName());
+
+            if (newAttribute == null || !newAttribute.getNodeValue().equals(currentAttributes.item(i).getNodeValue())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the text is all the node holds, as setting it as the text content of the node would leave it
+     */
+    static boolean hasOnlyText(Node node, String text) {
+        Node child = node.getFirstChild();
+
+        if (child == null) {
+            return text == null || text.isEmpty();
+        }
+
+        return child.getNextSibling() == null && child.getNodeType() == Node.TEXT_NODE &&
+                child.getNodeValue().equals(text);
+    }
+
     static boolean removeNode(Node node) {
         Node parent = node.getParentNode();
 
@@ -49,4 +97,103 @@ public class XMLUtil {
 
         return false;
     }
+
+    /**
+     * Visits every node below the given one, which makes parsers that build nodes on first access build all of them.
+     */
+    static void expandDeferredNodes(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            child.getNodeValue();
+
+            NamedNodeMap attributes = child.getAttributes();
+            if (attributes != null) {
+                for (int i = 0; i < attributes.getLength(); ++i) {
+                    attributes.item(i).getNodeValue();
+                }
+            }
+
+            expandDeferredNodes(child);
+        }
+    }
+
+    /**
+     * Writes the node as XML text. Characters the encoder cannot encode are written as character references, a
+     * null encoder is taken to encode every character.
+     */
+    static void serialize(Node node, StringBuilder out, CharsetEncoder encoder) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                out.append('<').append(node.getNodeName());
+
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); ++i) {
+                    Node attribute = attributes.item(i);
+                    out.append(' ').append(attribute.getNodeName()).append("=\"");
+                    appendEscaped(attribute.getNodeValue(), true, out, encoder);
+                    out.append('"');
+                }
+
+                if (node.getFirstChild() == null) {
+                    out.append("/>");
+                    break;
+                }
+
+                out.append('>');
+
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    serialize(child, out, encoder);
+                }
+
+                out.append("</").append(node.getNodeName()).append('>');
+                break;
+            case Node.TEXT_NODE:
+                appendEscaped(node.getNodeValue(), false, out, encoder);
+                break;
+            case Node.CDATA_SECTION_NODE:
+                out.append("<![CDATA[").append(node.getNodeValue().replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+                break;
+            case Node.COMMENT_NODE:
+                out.append("<!--").append(node.getNodeValue()).append("-->");
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                out.append("<?").append(node.getNodeName()).append(' ').append(node.getNodeValue()).append("?>");
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                out.append('&').append(node.getNodeName()).append(';');
+                break;
+            default:
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    serialize(child, out, encoder);
+                }
+        }
+    }
+
+    static void appendEscaped(String value, boolean isAttribute, StringBuilder out, CharsetEncoder encoder) {
+        for (int i = 0; i < value.length(); ) {
+            int c = value.codePointAt(i);
+            i += Character.charCount(c);
+
+            if (c == '&') {
+                out.append("&amp;");
+            }
+            else if (c == '<') {
+                out.append("&lt;");
+            }
+            else if (c == '>' && !isAttribute) {
+                out.append("&gt;");
+            }
+            else if (isAttribute && (c == '"' || c == '\n' || c == '\r' || c == '\t')) {
+                out.append("&#").append(c).append(';');
+            }
+            else if (c == '\r') { // Would be read back as a line feed
+                out.append("&#13;");
+            }
+            else if (encoder != null && !encoder.canEncode(new String(Character.toChars(c)))) {
+                out.append("&#").append(c).append(';');
+            }
+            else {
+                out.appendCodePoint(c);
+            }
+        }
+    }
 }
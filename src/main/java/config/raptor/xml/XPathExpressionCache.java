@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of compiled XPath expressions keyed by path string.
+ *
+ * Compiled {@link XPathExpression} and {@link XPath} objects are not thread safe, so each thread keeps its own
+ * LRU map of at most {@code capacity} entries. Hit and miss counters are shared across all threads.
+ */
+public class XPathExpressionCache {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private volatile int generation;
+
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    public XPathExpressionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("XPath expression cache capacity must be positive, got " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    public XPathExpression getExpression(String pathString) throws XPathExpressionException {
+        ThreadCache cache = threadCache.get();
+
+        if (cache.generation != generation) {
+            cache.expressions.clear();
+            cache.generation = generation;
+        }
+
+        XPathExpression expr = cache.expressions.get(pathString);
+
+        if (expr != null) {
+            hitCount.incrementAndGet();
+            return expr;
+        }
+
+        missCount.incrementAndGet();
+        expr = cache.xpath.compile(pathString);
+        cache.expressions.put(pathString, expr);
+
+        return expr;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Drops the compiled expressions of every thread and resets the counters. Other threads discard their entries
+     * the next time they use the cache.
+     */
+    public synchronized void clear() {
+        ++generation;
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    private class ThreadCache {
+        private final XPath xpath = XPathFactory.newInstance().newXPath();
+        private int generation = XPathExpressionCache.this.generation;
+
+        private final Map<String, XPathExpression> expressions =
+                new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
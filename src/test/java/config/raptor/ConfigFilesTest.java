@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+
+public class ConfigFilesTest {
+    private Path directory;
+    private Path file;
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        byte[] buffer = new byte[(int) ConfigFiles.MAPPING_THRESHOLD * 2];
+        int length = 0;
+        int read;
+
+        while ((read = in.read(buffer, length, Math.min(1000, buffer.length - length))) > 0) {
+            length += read;
+        }
+
+        return Arrays.copyOf(buffer, length);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("config-files");
+        file = directory.resolve("conf.xml");
+        Files.write(file, "<root/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                Files.delete(path);
+            }
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        ByteBuffer small = ConfigFiles.read(file);
+        Assert.assertEquals(readAll(ConfigFiles.newInputStream(small)), "<root/>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(small.position(), 0);
+
+        byte[] content = new byte[(int) ConfigFiles.MAPPING_THRESHOLD + 10];
+        for (int i = 0; i < content.length; ++i) {
+            content[i] = (byte) i;
+        }
+
+        Files.write(file, content);
+
+        ByteBuffer large = ConfigFiles.read(file);
+        Assert.assertEquals(large.remaining(), content.length);
+        Assert.assertEquals(readAll(ConfigFiles.newInputStream(large)), content);
+    }
+
+    @Test
+    public void testReadCopy() throws Exception {
+        byte[] content = new byte[(int) ConfigFiles.MAPPING_THRESHOLD + 10];
+        Arrays.fill(content, (byte) 'a');
+        Files.write(file, content);
+
+        ByteBuffer copy = ConfigFiles.readCopy(file);
+        Assert.assertFalse(copy.isDirect());
+
+        // Truncating the file in place leaves the copy as it was
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(10);
+        }
+
+        Assert.assertEquals(readAll(ConfigFiles.newInputStream(copy)), content);
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        boolean isPosix = Files.getFileStore(file).supportsFileAttributeView("posix");
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+
+        if (isPosix) {
+            Files.setPosixFilePermissions(file, permissions);
+        }
+
+        ConfigFiles.write(file, new ConfigFiles.ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write("<root>".getBytes(StandardCharsets.UTF_8));
+                out.write("</root>".getBytes(StandardCharsets.UTF_8));
+            }
+        }, 4);
+
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "<root></root>");
+
+        if (isPosix) {
+            Assert.assertEquals(Files.getPosixFilePermissions(file), permissions);
+        }
+
+        ConfigFiles.write(file, ByteBuffer.wrap("<other/>".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "<other/>");
+    }
+
+    @Test
+    public void testWriteIfChanged() throws Exception {
+        FileTime modifiedTime = FileTime.fromMillis(1000000000000L);
+        Files.setLastModifiedTime(file, modifiedTime);
+        byte[] fileHash = ConfigFiles.hash(ConfigFiles.read(file));
+
+        ConfigFiles.ContentWriter sameContent = new ConfigFiles.ContentWriter() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                out.write("<root".getBytes(StandardCharsets.UTF_8));
+                out.write("/>".getBytes(StandardCharsets.UTF_8));
+            }
+        };
+
+        Assert.assertEquals(ConfigFiles.writeIfChanged(file, sameContent, 2, fileHash), fileHash);
+        Assert.assertEquals(ConfigFiles.writeIfChanged(file, ByteBuffer.wrap("<root/>".getBytes(
+                StandardCharsets.UTF_8)), fileHash), fileHash);
+        Assert.assertEquals(Files.getLastModifiedTime(file), modifiedTime);
+
+        // The temporary file of the skipped write is removed
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            int fileCount = 0;
+
+            for (Path path : files) {
+                ++fileCount;
+            }
+
+            Assert.assertEquals(fileCount, 1);
+        }
+
+        byte[] newHash = ConfigFiles.writeIfChanged(file, ByteBuffer.wrap("<other/>".getBytes(
+                StandardCharsets.UTF_8)), fileHash);
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "<other/>");
+        Assert.assertEquals(newHash, ConfigFiles.hash(ConfigFiles.read(file)));
+
+        Assert.assertEquals(ConfigFiles.writeIfChanged(file, sameContent, 2, newHash), fileHash);
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "<root/>");
+
+        // Without a known hash the file is always written
+        ConfigFiles.writeIfChanged(file, sameContent, 2, null);
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "<root/>");
+    }
+
+    @Test
+    public void testFailedWriteLeavesFileUnchanged() throws Exception {
+        ConfigException exception = null;
+
+        try {
+            ConfigFiles.write(file, new ConfigFiles.ContentWriter() {
+                @Override
+                public void write(OutputStream out) throws IOException, ConfigException {
+                    out.write("<partial".getBytes(StandardCharsets.UTF_8));
+                    throw new ConfigException("Serialization failed");
+                }
+            }, ConfigFiles.DEFAULT_BUFFER_SIZE);
+        }
+        catch (ConfigException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), "<root/>");
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            int count = 0;
+            for (Path ignored : files) {
+                ++count;
+            }
+            Assert.assertEquals(count, 1);
+        }
+    }
+}
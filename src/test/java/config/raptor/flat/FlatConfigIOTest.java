@@ -0,0 +1,151 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+public class FlatConfigIOTest {
+    private File updatedConfFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        updatedConfFile = new File(System.getProperty("user.dir") + File.separator + "updated-api-manager.conf");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        updatedConfFile.delete();
+    }
+
+    private void copy(String resource) throws Exception {
+        File confFile = new File(Thread.currentThread().getContextClassLoader().getResource(resource).getFile());
+        Files.copy(confFile.toPath(), updatedConfFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private String readUpdated() throws Exception {
+        return new String(Files.readAllBytes(updatedConfFile.toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testSaveProperties() throws Exception {
+        copy("api-manager.properties");
+        String original = readUpdated();
+
+        FlatConfigIO configIO = new FlatConfigIO(updatedConfFile.getAbsolutePath(), FlatConfigIO.Format.PROPERTIES);
+        FlatConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertEquals(configOperator.getConfig("apim.auth.username"), "${admin.username}");
+        Assert.assertEquals(configOperator.getConfig("apim.gateway.environments"), "Production and Sandbox, Staging");
+
+        configOperator.updateConfig("apim.auth.password", "s\u00e9cret");
+        configOperator.removeConfig("apim.gateway.type");
+        configOperator.addConfig("apim.gateway.port", "8280");
+        configIO.save();
+
+        // Comments, blank lines and the other entries are written as they were
+        Assert.assertEquals(readUpdated(), original.replace("apim.auth.password = ${admin.password}",
+                "apim.auth.password = s\u00e9cret").replace("apim.gateway.type=Synapse\n", "") +
+                "apim.gateway.port=8280\n");
+
+        FlatConfigOperator savedOperator = new FlatConfigIO(updatedConfFile.getAbsolutePath(),
+                FlatConfigIO.Format.PROPERTIES).getConfigOperator();
+        Assert.assertEquals(savedOperator.getConfig("apim.auth.password"), "s\u00e9cret");
+        Assert.assertFalse(savedOperator.isConfigExists("apim.gateway.type"));
+
+        // Later saves change only what changed after the last one
+        configOperator.updateConfig("apim.gateway.keyCache", "false");
+        configIO.save();
+        Assert.assertTrue(readUpdated().contains("apim.gateway.keyCache=false\napim.gateway.port=8280\n"));
+    }
+
+    @Test
+    public void testSaveYaml() throws Exception {
+        copy("api-manager.yaml");
+        String original = new String(Files.readAllBytes(updatedConfFile.toPath()), StandardCharsets.UTF_8);
+
+        FlatConfigIO configIO = new FlatConfigIO(updatedConfFile.getAbsolutePath(), FlatConfigIO.Format.YAML);
+        FlatConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertEquals(configOperator.getConfig("authUsername"), "${admin.username}");
+
+        configOperator.updateConfig("gatewayType", "Custom: gateway");
+        configOperator.updateConfig("authUsername", "caf\u00e9");
+        configOperator.addConfig("analyticsEnabled", "false");
+        configIO.save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(updatedConfFile.toPath()), StandardCharsets.UTF_8),
+                original.replace("gatewayType: Synapse   #", "gatewayType: \"Custom: gateway\"   #").
+                        replace("authUsername: '${admin.username}'", "authUsername: caf\u00e9") +
+                        "analyticsEnabled: false\n");
+    }
+
+    @Test
+    public void testSaveSkipsUnchangedFile() throws Exception {
+        copy("api-manager.properties");
+
+        FlatConfigIO configIO = new FlatConfigIO(updatedConfFile.getAbsolutePath(), FlatConfigIO.Format.PROPERTIES);
+        FileTime modifiedTime = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(updatedConfFile.toPath(), modifiedTime);
+
+        Assert.assertFalse(configIO.saveIfChanged());
+
+        configIO.getConfigOperator().updateConfig("apim.gateway.type", "Other");
+        configIO.getConfigOperator().updateConfig("apim.gateway.type", "Synapse");
+        Assert.assertFalse(configIO.saveIfChanged());
+        Assert.assertEquals(Files.getLastModifiedTime(updatedConfFile.toPath()), modifiedTime);
+
+        configIO.getConfigOperator().updateConfig("apim.gateway.type", "Other");
+        Assert.assertTrue(configIO.saveIfChanged());
+        Assert.assertFalse(configIO.saveIfChanged());
+    }
+
+    @Test
+    public void testByteOrderMark() throws Exception {
+        Files.write(updatedConfFile.toPath(), "\uFEFFa: 1\n".getBytes(StandardCharsets.UTF_8));
+
+        FlatConfigIO configIO = new FlatConfigIO(updatedConfFile.getAbsolutePath(), FlatConfigIO.Format.YAML);
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("a"), "1");
+
+        configIO.getConfigOperator().updateConfig("a", "2");
+        configIO.save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(updatedConfFile.toPath()), StandardCharsets.UTF_8),
+                "\uFEFFa: 2\n");
+    }
+
+    @Test(expectedExceptions = ConfigException.class)
+    public void testInvalidEncoding() throws Exception {
+        Files.write(updatedConfFile.toPath(), new byte[]{'a', ':', ' ', (byte) 0xC3, '\n'});
+        new FlatConfigIO(updatedConfFile.getAbsolutePath(), FlatConfigIO.Format.YAML);
+    }
+
+    @Test(expectedExceptions = ConfigException.class)
+    public void testUnsupportedYaml() throws Exception {
+        Files.write(updatedConfFile.toPath(), "a:\n  b: 1\n".getBytes(StandardCharsets.UTF_8));
+        new FlatConfigIO(updatedConfFile.getAbsolutePath(), FlatConfigIO.Format.YAML);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class FlatConfigOperatorTest {
+    private static final String PROPERTIES = "# settings\r\n" +
+            "a = 1\r\n" +
+            "b=2\r\n" +
+            "\r\n" +
+            "! section\r\n" +
+            "c : 3\r\n";
+
+    private static FlatConfigOperator properties(String text) throws ConfigException {
+        return new FlatConfigOperator(new PropertiesSyntax(), text);
+    }
+
+    private static String content(FlatConfigOperator configOperator) {
+        return configOperator.getContent(StandardCharsets.ISO_8859_1.newEncoder());
+    }
+
+    @Test
+    public void testUnchangedContent() throws Exception {
+        FlatConfigOperator configOperator = properties(PROPERTIES);
+
+        Assert.assertSame(content(configOperator), content(configOperator));
+        Assert.assertEquals(content(configOperator), PROPERTIES);
+
+        // Setting a value it already has is not a change
+        Assert.assertTrue(configOperator.updateConfig("a", "1"));
+        Assert.assertFalse(configOperator.isModified());
+    }
+
+    @Test
+    public void testUpdateRewritesOnlyTheValue() throws Exception {
+        FlatConfigOperator configOperator = properties(PROPERTIES);
+
+        Assert.assertTrue(configOperator.updateConfig("a", "10"));
+        Assert.assertTrue(configOperator.updateConfig("c", " 30"));
+        Assert.assertFalse(configOperator.updateConfig("d", "4"));
+        Assert.assertTrue(configOperator.isModified());
+
+        Assert.assertEquals(content(configOperator), PROPERTIES.replace("a = 1", "a = 10").
+                replace("c : 3", "c : \\ 30"));
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        FlatConfigOperator configOperator = properties(PROPERTIES);
+
+        Assert.assertTrue(configOperator.addConfig("d", "4"));
+        Assert.assertTrue(configOperator.addConfig("e f", "5"));
+        Assert.assertFalse(configOperator.addConfig("a", "0"));
+        Assert.assertEquals(configOperator.getConfig("d"), "4");
+        Assert.assertEquals(configOperator.size(), 5);
+
+        // Added entries use the separator and line ends of the file
+        Assert.assertEquals(content(configOperator), PROPERTIES + "d : 4\r\ne\\ f : 5\r\n");
+
+        // A file without a line end at its end gets one before the added entries
+        configOperator = properties("a=1");
+        configOperator.addConfig("b", "2");
+        Assert.assertEquals(configOperator.getContent(null), "a=1" + System.lineSeparator() + "b=2" +
+                System.lineSeparator());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        FlatConfigOperator configOperator = properties(PROPERTIES);
+
+        Assert.assertTrue(configOperator.removeConfig("b"));
+        Assert.assertFalse(configOperator.removeConfig("b"));
+        Assert.assertFalse(configOperator.isConfigExists("b"));
+        Assert.assertEquals(configOperator.getKeys().toString(), "[a, c]");
+        Assert.assertEquals(content(configOperator), PROPERTIES.replace("b=2\r\n", ""));
+
+        // Removed keys can be added again, at the end
+        Assert.assertTrue(configOperator.addConfig("b", "20"));
+        Assert.assertEquals(configOperator.getKeys().toString(), "[a, c, b]");
+        Assert.assertTrue(configOperator.removeConfig("b"));
+        Assert.assertEquals(content(configOperator), PROPERTIES.replace("b=2\r\n", ""));
+    }
+
+    @Test
+    public void testDuplicateKeys() throws Exception {
+        FlatConfigOperator configOperator = properties("a=1\nb=2\na=3\n");
+
+        Assert.assertEquals(configOperator.getConfig("a"), "3");
+        Assert.assertEquals(configOperator.getKeys().toString(), "[b, a]");
+
+        configOperator.updateConfig("a", "4");
+        Assert.assertEquals(content(configOperator), "a=1\nb=2\na=4\n");
+
+        configOperator.removeConfig("a");
+        Assert.assertEquals(content(configOperator), "b=2\n");
+    }
+
+    @Test
+    public void testMultiLineValue() throws Exception {
+        FlatConfigOperator configOperator = properties("list = a, \\\n    b\nnext = 1\n");
+
+        Assert.assertEquals(configOperator.getConfig("list"), "a, b");
+        configOperator.updateConfig("list", "c");
+        Assert.assertEquals(content(configOperator), "list = c\nnext = 1\n");
+
+        configOperator = properties("list = a, \\\n    b\nnext = 1\n");
+        configOperator.removeConfig("list");
+        Assert.assertEquals(content(configOperator), "next = 1\n");
+    }
+
+    @Test
+    public void testLoadDropsChanges() throws Exception {
+        FlatConfigOperator configOperator = properties(PROPERTIES);
+        configOperator.updateConfig("a", "10");
+        configOperator.addConfig("d", "4");
+
+        configOperator.load(PROPERTIES);
+
+        Assert.assertFalse(configOperator.isModified());
+        Assert.assertEquals(configOperator.getConfig("a"), "1");
+        Assert.assertFalse(configOperator.isConfigExists("d"));
+        Assert.assertEquals(content(configOperator), PROPERTIES);
+    }
+
+    @Test
+    public void testIndexMatchesMap() throws Exception {
+        // Random adds and removes over few keys exercise probing, growing and moving entries back on removal
+        FlatConfigOperator configOperator = properties("");
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20000; ++i) {
+            String key = "key" + random.nextInt(300);
+
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(configOperator.removeConfig(key), expected.remove(key) != null);
+            }
+            else if (expected.containsKey(key)) {
+                Assert.assertTrue(configOperator.updateConfig(key, "v" + i));
+                expected.put(key, "v" + i);
+            }
+            else {
+                Assert.assertTrue(configOperator.addConfig(key, "v" + i));
+                expected.put(key, "v" + i);
+            }
+        }
+
+        Assert.assertEquals(configOperator.size(), expected.size());
+
+        List<String> keys = new ArrayList<>(configOperator.getKeys());
+        Assert.assertEquals(keys.size(), expected.size());
+
+        for (String key : keys) {
+            Assert.assertEquals(configOperator.getConfig(key), expected.get(key));
+        }
+
+        // The saved text reads back to the same entries
+        FlatConfigOperator reloaded = properties(content(configOperator));
+        Assert.assertEquals(reloaded.getKeys(), keys);
+    }
+
+    @Test(expectedExceptions = ConfigException.class)
+    public void testInvalidKey() throws Exception {
+        new FlatConfigOperator(new YamlSyntax(), "a: 1\n").addConfig("b: c", "2");
+    }
+}
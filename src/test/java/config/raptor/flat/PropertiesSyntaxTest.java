@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+public class PropertiesSyntaxTest {
+    private static final String PROPERTIES = "# comment\n" +
+            "  ! another comment \\\n" +
+            "plain=value\n" +
+            "spaced   =   value with spaces  \n" +
+            "colon:value\n" +
+            "whitespace value\n" +
+            "escaped\\ key\\=x = \\ leading\\tand\\u00e9\\\\\n" +
+            "continued = one, \\\r\n" +
+            "            two, \\\n" +
+            "    three\n" +
+            "empty=\n" +
+            "keyOnly\n" +
+            "\t\f\n" +
+            "last = no line end";
+
+    @Test
+    public void testReadAsPropertiesDoes() throws Exception {
+        Properties properties = new Properties();
+        properties.load(new StringReader(PROPERTIES));
+
+        FlatConfigOperator configOperator = new FlatConfigOperator(new PropertiesSyntax(), PROPERTIES);
+
+        Assert.assertEquals(configOperator.size(), properties.size());
+
+        for (String key : properties.stringPropertyNames()) {
+            Assert.assertEquals(configOperator.getConfig(key), properties.getProperty(key), key);
+        }
+
+        Assert.assertEquals(configOperator.getKeys().get(0), "plain");
+        Assert.assertEquals(configOperator.getConfig("continued"), "one, two, three");
+    }
+
+    @Test
+    public void testContinuedKeysReadAsPropertiesDoes() throws Exception {
+        String[] texts = {"c\\\n  d=4", "a \\\n = b", "e\\\r\n\tf \\\n  : g", "\\\n  h=5", "i=\\\n  j",
+                "k\\\n"};
+
+        for (String text : texts) {
+            Properties properties = new Properties();
+            properties.load(new StringReader(text));
+
+            FlatConfigOperator configOperator = new FlatConfigOperator(new PropertiesSyntax(), text);
+            Assert.assertEquals(configOperator.size(), properties.size(), text);
+
+            for (String key : properties.stringPropertyNames()) {
+                Assert.assertEquals(configOperator.getConfig(key), properties.getProperty(key), text);
+            }
+        }
+    }
+
+    @Test
+    public void testWrittenAsPropertiesReads() throws Exception {
+        PropertiesSyntax syntax = new PropertiesSyntax();
+        String[] texts = {"plain", " leading and trailing ", "a=b:c#d!e", "tab\tnew\nline\\", "#!", "caf\u00e9 \u20ac"};
+
+        for (String text : texts) {
+            String line = syntax.formatKey(text, StandardCharsets.ISO_8859_1.newEncoder()) + "=" +
+                          syntax.formatValue(text, StandardCharsets.ISO_8859_1.newEncoder());
+
+            Assert.assertTrue(StandardCharsets.ISO_8859_1.newEncoder().canEncode(line), line);
+
+            Properties properties = new Properties();
+            properties.load(new StringReader(line));
+            Assert.assertEquals(properties.getProperty(text), text, line);
+        }
+
+        // Characters the charset can encode are written as they are
+        Assert.assertEquals(syntax.formatValue("caf\u00e9 \u20ac", StandardCharsets.UTF_8.newEncoder()),
+                "caf\u00e9 \u20ac");
+    }
+
+    @Test(expectedExceptions = ConfigException.class, expectedExceptionsMessageRegExp = ".*line 2")
+    public void testMalformedEscape() throws Exception {
+        new FlatConfigOperator(new PropertiesSyntax(), "a=b\nc=\\u12x4\n");
+    }
+}
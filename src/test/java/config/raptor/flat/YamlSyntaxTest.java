@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.flat;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class YamlSyntaxTest {
+    private static final String YAML = "# comment\n" +
+            "---\n" +
+            "plain: value with spaces   # and a comment\n" +
+            "url: http://host:8080/path#anchor\n" +
+            "double: \"quoted \\\"value\\\"\\n\\u00e9\"  # comment\n" +
+            "single: 'it''s # not a comment'\n" +
+            "empty:\n" +
+            "number: 8080\n" +
+            "key with spaces: v\n" +
+            "...\n";
+
+    @Test
+    public void testRead() throws Exception {
+        FlatConfigOperator configOperator = new FlatConfigOperator(new YamlSyntax(), YAML);
+
+        Assert.assertEquals(configOperator.getKeys().toString(),
+                "[plain, url, double, single, empty, number, key with spaces]");
+        Assert.assertEquals(configOperator.getConfig("plain"), "value with spaces");
+        Assert.assertEquals(configOperator.getConfig("url"), "http://host:8080/path#anchor");
+        Assert.assertEquals(configOperator.getConfig("double"), "quoted \"value\"\n\u00e9");
+        Assert.assertEquals(configOperator.getConfig("single"), "it's # not a comment");
+        Assert.assertEquals(configOperator.getConfig("empty"), "");
+        Assert.assertEquals(configOperator.getConfig("number"), "8080");
+        Assert.assertEquals(configOperator.getConfig("key with spaces"), "v");
+    }
+
+    @Test
+    public void testWrittenValuesReadBack() throws Exception {
+        YamlSyntax syntax = new YamlSyntax();
+        String[] values = {"plain", "", " padded ", "a: b", "a #b", "#x", "- item", "'q'", "\"q\"", "tab\tnew\nline",
+                "back\\slash", "ends with:", "caf\u00e9 \u20ac"};
+
+        for (String value : values) {
+            String line = "key: " + syntax.formatValue(value, StandardCharsets.ISO_8859_1.newEncoder()) + "\n";
+            Assert.assertTrue(StandardCharsets.ISO_8859_1.newEncoder().canEncode(line), line);
+
+            FlatConfigOperator configOperator = new FlatConfigOperator(syntax, line);
+            Assert.assertEquals(configOperator.getConfig("key"), value, line);
+        }
+
+        Assert.assertEquals(syntax.formatValue("plain value", null), "plain value");
+        Assert.assertEquals(syntax.formatValue("true", null), "true");
+    }
+
+    @Test
+    public void testUnsupportedLines() {
+        String[] unsupported = {"parent:\n  child: v\n", "- item\n", "text: |\n  block\n", "no separator\n",
+                "key: \"not closed\n", "key: 'a' b\n", "[flow]: v\n"};
+
+        for (String yaml : unsupported) {
+            try {
+                new FlatConfigOperator(new YamlSyntax(), yaml);
+                Assert.fail("Expected '" + yaml + "' to be rejected");
+            } catch (ConfigException e) {
+                Assert.assertTrue(e.getMessage().contains("line") || e.getMessage().contains("Line"),
+                        e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testValidKeys() {
+        YamlSyntax syntax = new YamlSyntax();
+
+        Assert.assertTrue(syntax.isValidKey("server.port"));
+        Assert.assertTrue(syntax.isValidKey("a:b"));
+        Assert.assertFalse(syntax.isValidKey("a: b"));
+        Assert.assertFalse(syntax.isValidKey("-a"));
+        Assert.assertFalse(syntax.isValidKey(" a"));
+        Assert.assertFalse(syntax.isValidKey("a #b"));
+        Assert.assertFalse(syntax.isValidKey(""));
+    }
+}
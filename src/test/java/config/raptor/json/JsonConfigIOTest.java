@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+public class JsonConfigIOTest {
+    private static final String API_MANAGER_CONF = "api-manager.json";
+    private static final String UPDATED_API_MANAGER_CONF = "updated-api-manager.json";
+    private File apiManagerConfFile;
+    private File updatedApiManagerConfFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        updatedApiManagerConfFile = new File(System.getProperty("user.dir") + File.separator + UPDATED_API_MANAGER_CONF);
+        Files.copy(apiManagerConfFile.toPath(), updatedApiManagerConfFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        updatedApiManagerConfFile.delete();
+    }
+
+    private String readUpdated() throws Exception {
+        return new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private void writeUpdated(String content) throws Exception {
+        Files.write(updatedApiManagerConfFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        JsonConfigOperator configOperator = new JsonConfigIO(apiManagerConfFile.getAbsolutePath()).
+                getConfigOperator();
+
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.APIGateway.Environments[0].Name"),
+                "Production and Sandbox");
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.APIGateway.TokenCacheExpiry"), 900);
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.APIGateway.ThrottleRatio"), 0.75);
+    }
+
+    @Test
+    public void testSave() throws Exception {
+        JsonConfigIO configIO = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        String original = readUpdated();
+
+        configIO.getConfigOperator().updateConfig("$.APIManager.AuthManager.Password", "secret");
+        configIO.save();
+
+        // Everything else is written as it was, in the same order and with the same indentation
+        Assert.assertEquals(readUpdated(), original.replace(
+                "\"Username\": \"${admin.username}\",\n            \"Password\": \"${admin.password}\"",
+                "\"Username\": \"${admin.username}\",\n            \"Password\": \"secret\""));
+
+        JsonConfigOperator savedOperator = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath()).
+                getConfigOperator();
+        Assert.assertEquals(savedOperator.getConfig("$.APIManager.AuthManager.Password"), "secret");
+        Assert.assertEquals(savedOperator.getConfig("$.APIManager.APIGateway.Environments[0].Password"),
+                "${admin.password}");
+    }
+
+    @Test
+    public void testSaveSkipsUnchangedFile() throws Exception {
+        JsonConfigIO configIO = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        FileTime modifiedTime = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(updatedApiManagerConfFile.toPath(), modifiedTime);
+
+        Assert.assertFalse(configIO.saveIfChanged());
+
+        // Changing a value back leaves the content as it was
+        configIO.getConfigOperator().updateConfig("$.APIManager.GatewayType", "Other");
+        configIO.getConfigOperator().updateConfig("$.APIManager.GatewayType", "Synapse");
+        Assert.assertFalse(configIO.saveIfChanged());
+        Assert.assertEquals(Files.getLastModifiedTime(updatedApiManagerConfFile.toPath()), modifiedTime);
+
+        configIO.getConfigOperator().updateConfig("$.APIManager.GatewayType", "Other");
+        Assert.assertTrue(configIO.saveIfChanged());
+        Assert.assertFalse(configIO.saveIfChanged());
+    }
+
+    @Test
+    public void testSaveCompactFile() throws Exception {
+        writeUpdated("\uFEFF{\"a\":[1,{\"b\":\"\u00e9\\\"\"}],\"c\":{}}");
+
+        JsonConfigIO configIO = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("$.a[1].b"), "\u00e9\"");
+
+        configIO.getConfigOperator().addConfigMember("$.c", "d", true);
+        configIO.save();
+
+        // Written on one line again, keeping the byte order mark
+        Assert.assertEquals(readUpdated(), "\ufeff{\"a\":[1,{\"b\":\"\u00e9\\\"\"}],\"c\":{\"d\":true}}");
+
+        writeUpdated("{\"a\": 1, \"b\": [2, 3]}\n");
+
+        configIO = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        configIO.getConfigOperator().updateConfig("$.a", 4);
+        configIO.save();
+
+        Assert.assertEquals(readUpdated(), "{\"a\":4,\"b\":[2,3]}\n");
+    }
+
+    @Test
+    public void testSaveKeepsByteOrderMark() throws Exception {
+        String original = readUpdated();
+        writeUpdated("\ufeff" + original);
+
+        JsonConfigIO configIO = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        configIO.getConfigOperator().updateConfig("$.APIManager.GatewayType", "Other");
+        configIO.save();
+
+        Assert.assertEquals(readUpdated(), "\ufeff" + original.replace("\"GatewayType\": \"Synapse\"",
+                                                                       "\"GatewayType\": \"Other\""));
+    }
+
+    @Test
+    public void testSaveKeepsValuesAsWritten() throws Exception {
+        String content = "[\n  1.10,\n  1E3,\n  -0,\n  12345678901234567890,\n  0.75,\n  -2147483649,\n" +
+                "  \"</script> \\\\ \\u0001\",\n  \"x\"\n]\n";
+        writeUpdated(content);
+
+        JsonConfigIO configIO = new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        JsonConfigOperator configOperator = configIO.getConfigOperator();
+        Assert.assertEquals(((Number) configOperator.getConfig("$[0]")).doubleValue(), 1.1);
+        Assert.assertEquals(((Number) configOperator.getConfig("$[1]")).intValue(), 1000);
+        Assert.assertEquals(configOperator.getConfig("$[3]"), new BigInteger("12345678901234567890"));
+        Assert.assertEquals(configOperator.getConfig("$[4]"), 0.75);
+        Assert.assertEquals(configOperator.getConfig("$[5]"), -2147483649L);
+        Assert.assertEquals(configOperator.getConfig("$[6]"), "</script> \\ \u0001");
+
+        configOperator.updateConfig("$[7]", "y");
+        configIO.save();
+
+        Assert.assertEquals(readUpdated(), content.replace("\"x\"", "\"y\""));
+    }
+
+    @Test
+    public void testInvalidFiles() throws Exception {
+        String[] invalidContents = {"", "{\"a\": 1,}", "{\"a\": 1} x", "{a: 1}", "{\"a\": 'b'}",
+                "{\"a\": 1, \"a\": 2}", "[1 2]", "{\"a\" 1}", "[01]", "[1.]", "[-]", "[1e]", "[+1]", "[.5]",
+                "[tru]", "[1,]"};
+
+        for (String invalidContent : invalidContents) {
+            writeUpdated(invalidContent);
+
+            try {
+                new JsonConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+                Assert.fail("Expected '" + invalidContent + "' to be rejected");
+            } catch (ConfigException e) {
+                Assert.assertEquals(e.getMessage(), "JSON parsing error");
+            }
+        }
+    }
+}
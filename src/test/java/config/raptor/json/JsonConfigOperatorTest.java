@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonConfigOperatorTest {
+    private static final String CONFIG = "{\"APIManager\": {" +
+            "\"AuthManager\": {\"Username\": \"admin\", \"Password\": \"admin\"}," +
+            "\"Environments\": [" +
+            "{\"type\": \"hybrid\", \"Password\": \"p1\"}," +
+            "{\"type\": \"sandbox\", \"Password\": \"p2\", \"Ports\": [8280, 8243]}]," +
+            "\"Analytics\": {\"Enabled\": false, \"Port\": 7612, \"Ratio\": 0.5, \"Publisher\": null}}}";
+    private JsonConfigOperator configOperator;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        configOperator = new JsonConfigOperator(JsonReader.read(new StringReader(CONFIG)));
+    }
+
+    @Test
+    public void testGetConfig() throws Exception {
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.AuthManager.Username"), "admin");
+        Assert.assertEquals(configOperator.getConfig("$['APIManager']['Environments'][1].type"), "sandbox");
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[1].Ports[1]"), 8243);
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Analytics.Enabled"), false);
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Analytics.Ratio"), 0.5);
+        Assert.assertSame(configOperator.getConfig("$.APIManager.Analytics.Publisher"), JSONObject.NULL);
+        Assert.assertNull(configOperator.getConfig("$.APIManager.Environments[2]"));
+        Assert.assertNull(configOperator.getConfig("$.APIManager.AuthManager[0]"));
+
+        Assert.assertTrue(configOperator.getConfig("$") instanceof Map);
+        Assert.assertEquals(((Map<?, ?>) configOperator.getConfig("$.APIManager.AuthManager")).keySet().toString(),
+                "[Username, Password]");
+    }
+
+    @Test
+    public void testIsConfigExists() throws Exception {
+        Assert.assertTrue(configOperator.isConfigExists("$.APIManager.Analytics.Publisher"));
+        Assert.assertFalse(configOperator.isConfigExists("$.APIManager.Analytics.Missing"));
+    }
+
+    @Test
+    public void testGetAllConfigs() throws Exception {
+        Assert.assertEquals(configOperator.getAllConfigs("$..Password"), Arrays.<Object>asList("admin", "p1", "p2"));
+        Assert.assertEquals(configOperator.getAllConfigs("$.APIManager.Environments[*].type"),
+                Arrays.<Object>asList("hybrid", "sandbox"));
+        Assert.assertEquals(configOperator.getAllConfigs("$.APIManager.AuthManager.*"),
+                Arrays.<Object>asList("admin", "admin"));
+
+        // Values reached along several routes are returned once
+        Assert.assertEquals(configOperator.getAllConfigs("$..Environments..Ports").size(), 1);
+    }
+
+    @Test
+    public void testUpdateConfig() throws Exception {
+        Assert.assertTrue(configOperator.updateConfig("$.APIManager.AuthManager.Password", "secret"));
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.AuthManager.Password"), "secret");
+        Assert.assertTrue(configOperator.isModified());
+
+        Assert.assertTrue(configOperator.updateConfig("$.APIManager.Environments[1].Ports",
+                new JSONArray("[1, 2, {\"a\": null}]")));
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[1].Ports[2].a"), JSONObject.NULL);
+
+        Assert.assertFalse(configOperator.updateConfig("$.APIManager.Missing.Password", "secret"));
+    }
+
+    @Test
+    public void testUpdateCopiesValues() throws Exception {
+        List<Object> ports = new ArrayList<Object>(Arrays.asList(1, 2));
+
+        Assert.assertEquals(configOperator.updateAllConfigs("$..Ports", ports), 1);
+        Assert.assertEquals(configOperator.updateAllConfigs("$.APIManager.Environments[*].Ports", ports), 1);
+        ports.add(3);
+
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[1].Ports"), Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void testUpdateAllConfigs() throws Exception {
+        Assert.assertEquals(configOperator.updateAllConfigs("$..Password", "secret"), 3);
+        Assert.assertEquals(configOperator.getAllConfigs("$..Password"),
+                Arrays.<Object>asList("secret", "secret", "secret"));
+    }
+
+    @Test
+    public void testUpdateRoot() throws Exception {
+        Assert.assertTrue(configOperator.updateConfig("$", Collections.singletonMap("a", 1)));
+        Assert.assertEquals(configOperator.getConfig("$.a"), 1);
+    }
+
+    @Test(expectedExceptions = ConfigException.class)
+    public void testUpdateUnsupportedValue() throws Exception {
+        configOperator.updateConfig("$.APIManager.AuthManager.Password", new Object());
+    }
+
+    @Test(expectedExceptions = ConfigException.class)
+    public void testUpdateNaN() throws Exception {
+        configOperator.updateConfig("$.APIManager.Analytics.Ratio", Double.NaN);
+    }
+
+    @Test
+    public void testAddMember() throws Exception {
+        Assert.assertTrue(configOperator.addConfigMember("$.APIManager.AuthManager", "Timeout", 30));
+        Assert.assertEquals(((Map<?, ?>) configOperator.getConfig("$.APIManager.AuthManager")).keySet().toString(),
+                "[Username, Password, Timeout]");
+
+        Assert.assertFalse(configOperator.addConfigMember("$.APIManager.AuthManager", "Timeout", 60));
+        Assert.assertFalse(configOperator.addConfigMember("$.APIManager.Environments", "Timeout", 60));
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.AuthManager.Timeout"), 30);
+    }
+
+    @Test
+    public void testAddElement() throws Exception {
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("type", "production");
+
+        Assert.assertTrue(configOperator.addConfig("$.APIManager.Environments", environment,
+                JsonConfigOperator.Position.AT));
+        Assert.assertTrue(configOperator.addConfig("$.APIManager.Environments[0]", "first",
+                JsonConfigOperator.Position.BEFORE));
+        Assert.assertTrue(configOperator.addConfig("$.APIManager.Environments[1]", "second",
+                JsonConfigOperator.Position.AFTER));
+
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[0]"), "first");
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[2]"), "second");
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[4].type"), "production");
+
+        // Elements go into arrays only
+        Assert.assertFalse(configOperator.addConfig("$.APIManager.AuthManager", "x", JsonConfigOperator.Position.AT));
+        Assert.assertFalse(configOperator.addConfig("$.APIManager.AuthManager", "x",
+                JsonConfigOperator.Position.AFTER));
+    }
+
+    @Test
+    public void testRemoveConfig() throws Exception {
+        Assert.assertTrue(configOperator.removeConfig("$.APIManager.Environments[0]"));
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments[0].type"), "sandbox");
+
+        Assert.assertTrue(configOperator.removeConfig("$.APIManager.AuthManager.Password"));
+        Assert.assertFalse(configOperator.isConfigExists("$.APIManager.AuthManager.Password"));
+
+        Assert.assertFalse(configOperator.removeConfig("$.APIManager.AuthManager.Password"));
+        Assert.assertFalse(configOperator.removeConfig("$"));
+    }
+
+    @Test
+    public void testRemoveAllConfigs() throws Exception {
+        Assert.assertEquals(configOperator.removeAllConfigs("$.APIManager.Environments[*]"), 2);
+        Assert.assertEquals(configOperator.getConfig("$.APIManager.Environments"), Collections.emptyList());
+
+        Assert.assertEquals(configOperator.removeAllConfigs("$..Password"), 1);
+        Assert.assertEquals(configOperator.removeAllConfigs("$..Password"), 0);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.json;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class JsonPathTest {
+    @Test
+    public void testParse() throws Exception {
+        List<JsonPath.Step> steps = JsonPath.parse("$.APIManager['Auth.Manager'][2].*..Password[*]").getSteps();
+
+        Assert.assertEquals(steps.size(), 6);
+        Assert.assertEquals(steps.get(0).getName(), "APIManager");
+        Assert.assertEquals(steps.get(1).getName(), "Auth.Manager");
+        Assert.assertEquals(steps.get(2).getIndex(), 2);
+        Assert.assertNull(steps.get(2).getName());
+        Assert.assertTrue(steps.get(3).isWildcard());
+        Assert.assertFalse(steps.get(3).isDescendant());
+        Assert.assertEquals(steps.get(4).getName(), "Password");
+        Assert.assertTrue(steps.get(4).isDescendant());
+        Assert.assertTrue(steps.get(5).isWildcard());
+        Assert.assertFalse(steps.get(5).isDescendant());
+    }
+
+    @Test
+    public void testParseDescendantBrackets() throws Exception {
+        List<JsonPath.Step> steps = JsonPath.parse("$..[0][\"it's\"]").getSteps();
+
+        Assert.assertEquals(steps.size(), 2);
+        Assert.assertEquals(steps.get(0).getIndex(), 0);
+        Assert.assertTrue(steps.get(0).isDescendant());
+        Assert.assertEquals(steps.get(1).getName(), "it's");
+        Assert.assertFalse(steps.get(1).isDescendant());
+    }
+
+    @Test
+    public void testParseRoot() throws Exception {
+        Assert.assertTrue(JsonPath.parse("$").getSteps().isEmpty());
+    }
+
+    @Test
+    public void testInvalidPaths() {
+        String[] invalidPaths = {"APIManager", "$.", "$.a[", "$.a[x]", "$.a[-1]", "$.a['b]", "$a", "$.[0]"};
+
+        for (String invalidPath : invalidPaths) {
+            try {
+                JsonPath.parse(invalidPath);
+                Assert.fail("Expected '" + invalidPath + "' to be rejected");
+            } catch (ConfigException e) {
+                Assert.assertTrue(e.getMessage().contains(invalidPath), e.getMessage());
+            }
+        }
+    }
+}
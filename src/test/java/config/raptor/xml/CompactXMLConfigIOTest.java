@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class CompactXMLConfigIOTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private static final String PASSWORD_PATH = "//APIGateway/Environments/Environment/Password";
+    private File confFile;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        confFile = File.createTempFile("compact-io-api-manager", ".xml");
+        Files.copy(apiManagerConfFile.toPath(), confFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        confFile.delete();
+    }
+
+    @Test
+    public void testSaveUnchangedKeepsContent() throws Exception {
+        byte[] original = Files.readAllBytes(confFile.toPath());
+
+        new CompactXMLConfigIO(confFile.getAbsolutePath()).save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(confFile.toPath()), StandardCharsets.UTF_8),
+                new String(original, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSaveMarkupKinds() throws Exception {
+        String content = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+                "<!DOCTYPE r>\n" +
+                "<!-- top -->\n" +
+                "<r xmlns:p=\"urn:p\" a=\"1&amp;2\">\n" +
+                "  <p:x>t <![CDATA[<c>]]></p:x><?pi data?>\n" +
+                "  <y/>\n" +
+                "</r>\n";
+        Files.write(confFile.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+
+        CompactXMLConfigIO configIO = new CompactXMLConfigIO(confFile.getAbsolutePath());
+        configIO.getConfigOperator().updateConfig("/r/y",
+                configIO.getConfigCreator().createConfig("<y>\u00e9\u20ac</y>"));
+        configIO.save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(confFile.toPath()), StandardCharsets.ISO_8859_1),
+                content.replace("<y/>", "<y>\u00e9&#8364;</y>"));
+    }
+
+    @Test
+    public void testSaveWritesEmptyElementTags() throws Exception {
+        Files.write(confFile.toPath(), "<r><a></a><b> </b></r>".getBytes(StandardCharsets.UTF_8));
+
+        new CompactXMLConfigIO(confFile.getAbsolutePath()).save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(confFile.toPath()), StandardCharsets.UTF_8),
+                "<r><a/><b> </b></r>\n");
+    }
+
+    @Test
+    public void testCreatorHasOwnDocument() throws Exception {
+        CompactXMLConfigIO configIO = new CompactXMLConfigIO(confFile.getAbsolutePath());
+        CompactXMLConfigIO otherConfigIO = new CompactXMLConfigIO(confFile.getAbsolutePath());
+
+        Document createdOwner = configIO.getConfigCreator().createConfig("<a/>").getOwnerDocument();
+        Assert.assertNotSame(createdOwner, XMLParserPool.getScratchDocument());
+        Assert.assertNotSame(createdOwner, otherConfigIO.getConfigCreator().createConfig("<a/>").getOwnerDocument());
+    }
+
+    @Test
+    public void testChangesPersist() throws Exception {
+        CompactXMLConfigIO configIO = new CompactXMLConfigIO(confFile.getAbsolutePath());
+        XMLConfigCreator configCreator = configIO.getConfigCreator();
+
+        configIO.getConfigOperator().updateConfig(PASSWORD_PATH,
+                configCreator.createConfig("<Password>secret</Password>"));
+        configIO.getConfigOperator().addConfig("/APIManager", configCreator.createConfig("<Added>value</Added>"),
+                XMLConfigOperator.Position.AT);
+        configIO.save();
+
+        XMLConfigOperator reloaded = new XMLConfigIO(confFile.getAbsolutePath()).getConfigOperator();
+        Assert.assertEquals(reloaded.getConfig(PASSWORD_PATH).getTextContent(), "secret");
+        Assert.assertEquals(reloaded.getConfig("/APIManager/Added").getTextContent(), "value");
+    }
+}
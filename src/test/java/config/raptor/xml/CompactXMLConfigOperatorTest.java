@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+public class CompactXMLConfigOperatorTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private static final String PASSWORD_PATH = "//APIGateway/Environments/Environment/Password";
+    private File confFile;
+    private XMLConfigIO domConfigIO;
+    private CompactXMLConfigIO configIO;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        confFile = File.createTempFile("compact-api-manager", ".xml");
+        Files.copy(apiManagerConfFile.toPath(), confFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        domConfigIO = new XMLConfigIO(confFile.getAbsolutePath());
+        configIO = new CompactXMLConfigIO(confFile.getAbsolutePath());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        confFile.delete();
+    }
+
+    @Test
+    public void testGetConfigMatchesDOM() throws Exception {
+        CompactXMLConfigOperator configOperator = configIO.getConfigOperator();
+        XMLConfigOperator domOperator = domConfigIO.getConfigOperator();
+
+        for (String path : Arrays.asList(PASSWORD_PATH, "/APIManager/AuthManager", "//Environments/Environment",
+                "//AuthManager/Username")) {
+            Node config = configOperator.getConfig(path);
+            Node domConfig = domOperator.getConfig(path);
+
+            Assert.assertEquals(config.getNodeName(), domConfig.getNodeName());
+            Assert.assertEquals(config.getTextContent(), domConfig.getTextContent());
+            Assert.assertEquals(config.getAttributes().getLength(), domConfig.getAttributes().getLength());
+        }
+
+        Assert.assertEquals(configOperator.getConfig("//Environments/Environment").getAttributes().
+                getNamedItem("type").getNodeValue(), "hybrid");
+        Assert.assertTrue(configOperator.isConfigExists("//Environments/Environment"));
+        Assert.assertFalse(configOperator.isConfigExists("//AuthManager/UsernameS"));
+        Assert.assertFalse(configOperator.isConfigExists("/AuthManager"));
+        Assert.assertNull(configOperator.getConfig("//AuthManager/UsernameS"));
+    }
+
+    @Test
+    public void testReturnedNodeIsCopy() throws Exception {
+        CompactXMLConfigOperator configOperator = configIO.getConfigOperator();
+        String password = configOperator.getConfig(PASSWORD_PATH).getTextContent();
+
+        configOperator.getConfig(PASSWORD_PATH).setTextContent("changed");
+
+        Assert.assertEquals(configOperator.getConfig(PASSWORD_PATH).getTextContent(), password);
+    }
+
+    @Test
+    public void testUpdateConfig() throws Exception {
+        CompactXMLConfigOperator configOperator = configIO.getConfigOperator();
+        XMLConfigCreator configCreator = configIO.getConfigCreator();
+
+        Assert.assertTrue(configOperator.updateConfig(PASSWORD_PATH,
+                configCreator.createConfig("<Password encrypted=\"true\">secret</Password>")));
+
+        Node updated = configOperator.getConfig(PASSWORD_PATH);
+        Assert.assertEquals(updated.getTextContent(), "secret");
+        Assert.assertEquals(updated.getAttributes().getNamedItem("encrypted").getNodeValue(), "true");
+
+        Assert.assertFalse(configOperator.updateConfig("//AuthManager/UsernameS",
+                configCreator.createConfig("<UsernameS>x</UsernameS>")));
+    }
+
+    @Test
+    public void testAddConfig() throws Exception {
+        CompactXMLConfigOperator configOperator = configIO.getConfigOperator();
+        XMLConfigCreator configCreator = configIO.getConfigCreator();
+
+        Assert.assertTrue(configOperator.addConfig("/APIManager/AuthManager/Username",
+                configCreator.createConfig("<Before>b</Before>"), XMLConfigOperator.Position.BEFORE));
+        Assert.assertTrue(configOperator.addConfig("/APIManager/AuthManager",
+                configCreator.createConfig("<At><Inner a=\"1\">i</Inner></At>"), XMLConfigOperator.Position.AT));
+        Assert.assertTrue(configOperator.addConfigs("/APIManager/AuthManager/Username",
+                Arrays.asList(configCreator.createConfig("<After1/>"), configCreator.createConfig("<After2/>")),
+                XMLConfigOperator.Position.AFTER));
+
+        Node authManager = configOperator.getConfig("/APIManager/AuthManager");
+        StringBuilder names = new StringBuilder();
+
+        for (Node child = authManager.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                names.append(child.getNodeName()).append(' ');
+            }
+        }
+
+        Assert.assertTrue(names.toString().contains(" Before Username After1 After2 "), names.toString());
+        Assert.assertTrue(names.toString().endsWith("At "), names.toString());
+        Assert.assertEquals(configOperator.getConfig("/APIManager/AuthManager/At/Inner").getAttributes().
+                getNamedItem("a").getNodeValue(), "1");
+
+        Assert.assertFalse(configOperator.addConfig("/APIManager", configCreator.createConfig("<Sibling/>"),
+                XMLConfigOperator.Position.AFTER));
+        Assert.assertFalse(configOperator.addConfig("//Missing", configCreator.createConfig("<Sibling/>"),
+                XMLConfigOperator.Position.AT));
+    }
+
+    @Test
+    public void testRemoveConfig() throws Exception {
+        CompactXMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertTrue(configOperator.removeConfig("/APIManager/AuthManager/Username"));
+        Assert.assertFalse(configOperator.isConfigExists("/APIManager/AuthManager/Username"));
+        Assert.assertTrue(configOperator.isConfigExists("/APIManager/AuthManager/Password"));
+        Assert.assertFalse(configOperator.removeConfig("/APIManager/AuthManager/Username"));
+    }
+
+    @Test
+    public void testUnsupportedPath() throws Exception {
+        try {
+            configIO.getConfigOperator().getConfig("//Environment[@type='hybrid']");
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertTrue(e.getMessage().contains("not supported by the compact document model"));
+        }
+    }
+}
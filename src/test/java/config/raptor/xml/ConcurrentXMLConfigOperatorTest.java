@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ConcurrentXMLConfigOperatorTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private static final String PASSWORD_PATH = "//APIGateway/Environments/Environment/Password";
+    private File confFile;
+    private XMLConfigIO configIO;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        confFile = File.createTempFile("concurrent-api-manager", ".xml");
+        Files.copy(apiManagerConfFile.toPath(), confFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        configIO = new XMLConfigIO(confFile.getAbsolutePath());
+        configIO.setConcurrentAccessEnabled(true);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        confFile.delete();
+    }
+
+    @Test
+    public void testGetConfigReturnsCopy() throws Exception {
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        Assert.assertTrue(configOperator instanceof ConcurrentXMLConfigOperator);
+
+        Node password = configOperator.getConfig(PASSWORD_PATH);
+        Assert.assertNull(password.getParentNode());
+        password.setTextContent("changed");
+
+        Assert.assertEquals(configOperator.getConfig(PASSWORD_PATH).getTextContent(), "${admin.password}");
+    }
+
+    @Test
+    public void testGetAllConfigsReturnsCopies() throws Exception {
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        List<Node> passwords = configOperator.getAllConfigs("//Password");
+        Assert.assertFalse(passwords.isEmpty());
+
+        for (Node password : passwords) {
+            Assert.assertNull(password.getParentNode());
+            password.setTextContent("changed");
+        }
+
+        Assert.assertEquals(configOperator.getConfig(PASSWORD_PATH).getTextContent(), "${admin.password}");
+    }
+
+    @Test
+    public void testParallelReadsAndWrites() throws Exception {
+        final XMLConfigOperator configOperator = configIO.getConfigOperator();
+        configOperator.setPathIndexEnabled(true);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 7; ++i) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int found = 0;
+
+                        for (int j = 0; j < 500; ++j) {
+                            String password = configOperator.getConfig(PASSWORD_PATH).getTextContent();
+                            Assert.assertTrue(password.equals("${admin.password}") || password.startsWith("secret"));
+
+                            if (configOperator.isConfigExists("//AuthManager/Timeout")) {
+                                ++found;
+                            }
+                        }
+
+                        return found;
+                    }
+                }));
+            }
+
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    XMLConfigCreator configCreator = configIO.getConfigCreator();
+
+                    for (int j = 0; j < 200; ++j) {
+                        Node password = configCreator.createConfig("<Password>secret" + j + "</Password>");
+                        Assert.assertTrue(configOperator.updateConfig(PASSWORD_PATH, password));
+                        Assert.assertTrue(configOperator.addConfig("//AuthManager",
+                                configCreator.createConfig("<Timeout>" + j + "</Timeout>"),
+                                XMLConfigOperator.Position.AT));
+                        Assert.assertTrue(configOperator.removeConfig("//AuthManager/Timeout"));
+
+                        if (j % 50 == 0) {
+                            configIO.save();
+                        }
+                    }
+
+                    return 0;
+                }
+            }));
+
+            for (Future<Integer> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals(configOperator.getConfig(PASSWORD_PATH).getTextContent(), "secret199");
+        Assert.assertFalse(configOperator.isConfigExists("//AuthManager/Timeout"));
+
+        configIO.save();
+        Assert.assertEquals(new XMLConfigIO(confFile.getAbsolutePath()).getConfigOperator().
+                getConfig(PASSWORD_PATH).getTextContent(), "secret199");
+    }
+
+    @Test
+    public void testDisableConcurrentAccess() throws Exception {
+        configIO.getConfigOperator().setPathIndexEnabled(true);
+        configIO.setConcurrentAccessEnabled(false);
+
+        Assert.assertFalse(configIO.isConcurrentAccessEnabled());
+        Assert.assertFalse(configIO.getConfigOperator() instanceof ConcurrentXMLConfigOperator);
+        Assert.assertTrue(configIO.getConfigOperator().isPathIndexEnabled());
+    }
+}
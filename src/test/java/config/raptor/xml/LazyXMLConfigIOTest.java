@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+public class LazyXMLConfigIOTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private File confFile;
+    private String original;
+
+    private static String replaceFirst(String text, String target, String replacement) {
+        int index = text.indexOf(target);
+
+        return text.substring(0, index) + replacement + text.substring(index + target.length());
+    }
+
+    private String readConf() throws Exception {
+        return new String(Files.readAllBytes(confFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        confFile = File.createTempFile("lazy-api-manager", ".xml");
+        Files.copy(apiManagerConfFile.toPath(), confFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        original = readConf();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        confFile.delete();
+    }
+
+    @Test
+    public void testSaveUnchanged() throws Exception {
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+
+        Assert.assertTrue(configIO.getUnloadedSectionCount() > 10);
+
+        FileTime modifiedTime = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(confFile.toPath(), modifiedTime);
+
+        configIO.save();
+        Assert.assertEquals(Files.getLastModifiedTime(confFile.toPath()), modifiedTime);
+
+        // Changing a value back leaves the content as it was
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        XMLConfigCreator configCreator = configIO.getConfigCreator();
+        configOperator.updateConfig("/APIManager/AuthManager/Username",
+                configCreator.createConfig("<Username>other</Username>"));
+        configOperator.updateConfig("/APIManager/AuthManager/Username",
+                configCreator.createConfig("<Username>${admin.username}</Username>"));
+        Assert.assertFalse(configIO.saveIfChanged());
+        Assert.assertEquals(Files.getLastModifiedTime(confFile.toPath()), modifiedTime);
+
+        Assert.assertEquals(readConf(), original);
+
+        configOperator.updateConfig("/APIManager/AuthManager/Username",
+                configCreator.createConfig("<Username>other</Username>"));
+        Assert.assertTrue(configIO.saveIfChanged());
+        Assert.assertFalse(configIO.saveIfChanged());
+    }
+
+    @Test
+    public void testChildPathLoadsOnlyItsSection() throws Exception {
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        int sectionCount = configIO.getUnloadedSectionCount();
+
+        Assert.assertEquals(configOperator.getConfig("/APIManager/AuthManager/Username").getTextContent(),
+                "${admin.username}");
+        Assert.assertEquals(configIO.getUnloadedSectionCount(), sectionCount - 1);
+
+        Assert.assertFalse(configOperator.isConfigExists("/APIManager/Missing/Username"));
+        Assert.assertFalse(configOperator.isConfigExists("/Missing/AuthManager"));
+        Assert.assertEquals(configIO.getUnloadedSectionCount(), sectionCount - 1);
+    }
+
+    @Test
+    public void testDescendantPathLoadsSectionsNamingIt() throws Exception {
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+        XMLConfigOperator domOperator = new XMLConfigIO(confFile.getAbsolutePath()).getConfigOperator();
+        int sectionCount = configIO.getUnloadedSectionCount();
+        String path = "//APIGateway/Environments/Environment/Password";
+
+        Assert.assertEquals(configIO.getConfigOperator().getConfig(path).getTextContent(),
+                domOperator.getConfig(path).getTextContent());
+        Assert.assertTrue(configIO.getUnloadedSectionCount() > 0);
+        Assert.assertTrue(configIO.getUnloadedSectionCount() < sectionCount);
+    }
+
+    @Test
+    public void testOtherPathsLoadEverything() throws Exception {
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+
+        Assert.assertTrue(configIO.getConfigOperator().isConfigExists("//Environment[@type='hybrid']"));
+        Assert.assertTrue(configIO.getUnloadedSectionCount() > 0);
+
+        Assert.assertTrue(configIO.getConfigOperator().isConfigExists("//*[@type='hybrid']"));
+        Assert.assertEquals(configIO.getUnloadedSectionCount(), 0);
+
+        configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+        String rootText = configIO.getConfigOperator().getConfig("/APIManager").getTextContent();
+
+        Assert.assertEquals(configIO.getUnloadedSectionCount(), 0);
+        Assert.assertEquals(rootText,
+                new XMLConfigIO(confFile.getAbsolutePath()).getConfigOperator().getConfig("/APIManager").
+                        getTextContent());
+    }
+
+    @Test
+    public void testUpdateRewritesOnlyItsSection() throws Exception {
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+
+        Assert.assertTrue(configIO.getConfigOperator().updateConfig("/APIManager/AuthManager/Username",
+                configIO.getConfigCreator().createConfig("<Username>a&lt;b</Username>")));
+        // Reaching a section without changing it keeps its text as it was read
+        configIO.getConfigOperator().getConfig("/APIManager/APIGateway/Environments");
+        configIO.save();
+
+        Assert.assertEquals(readConf(), replaceFirst(original, "<Username>${admin.username}</Username>",
+                "<Username>a&lt;b</Username>"));
+    }
+
+    @Test
+    public void testStructureChanges() throws Exception {
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        XMLConfigCreator configCreator = configIO.getConfigCreator();
+
+        Assert.assertTrue(configOperator.addConfig("/APIManager", configCreator.createConfig("<Added>v</Added>"),
+                XMLConfigOperator.Position.AT));
+        Assert.assertTrue(configOperator.removeConfig("/APIManager/GatewayType"));
+        Assert.assertTrue(configOperator.applyBatch(Collections.singletonList(XMLConfigOperation.add(
+                "/APIManager/AuthManager/Username", configCreator.createConfig("<Domain>d</Domain>"),
+                XMLConfigOperator.Position.AFTER))).isCommitted());
+        configIO.save();
+
+        String saved = readConf();
+        Assert.assertFalse(saved.contains("<GatewayType>"));
+        Assert.assertTrue(saved.contains("<Added>v</Added>"));
+        Assert.assertTrue(saved.contains("<Username>${admin.username}</Username><Domain>d</Domain>"));
+
+        int storeStart = original.indexOf("<APIStore>");
+        Assert.assertTrue(saved.contains(original.substring(storeStart,
+                original.indexOf("</APIStore>") + "</APIStore>".length())));
+
+        XMLConfigOperator reloaded = new XMLConfigIO(confFile.getAbsolutePath()).getConfigOperator();
+        Assert.assertEquals(reloaded.getConfig("/APIManager/Added").getTextContent(), "v");
+        Assert.assertEquals(reloaded.getConfig("/APIManager/AuthManager/Domain").getTextContent(), "d");
+    }
+
+    @Test
+    public void testSectionsResolveDocumentDeclarations() throws Exception {
+        String content = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+                "<!DOCTYPE r [ <!ENTITY e \"ent\"> ]>\n" +
+                "<r xmlns:p=\"urn:p\">\n" +
+                "  <a>&e; \u00e9</a>\n" +
+                "  <b><p:x>x</p:x><y/></b>\n" +
+                "</r>\n";
+        Files.write(confFile.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertEquals(configOperator.getConfig("/r/a").getTextContent(), "ent \u00e9");
+        Assert.assertEquals(configOperator.getConfig("/r/b").getFirstChild().getNamespaceURI(), "urn:p");
+
+        configOperator.updateConfig("/r/b/y", configIO.getConfigCreator().createConfig("<y>\u20ac</y>"));
+        configIO.save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(confFile.toPath()), StandardCharsets.ISO_8859_1),
+                content.replace("<y/>", "<y>&#8364;</y>"));
+    }
+
+    @Test
+    public void testSaveUtf16() throws Exception {
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n" +
+                "<r>\n" +
+                "  <a>\u00e9</a>\n" +
+                "  <b>\u4e2d</b>\n" +
+                "</r>\n";
+        Files.write(confFile.toPath(), content.getBytes(StandardCharsets.UTF_16));
+
+        LazyXMLConfigIO configIO = new LazyXMLConfigIO(confFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertEquals(configOperator.getConfig("/r/b").getTextContent(), "\u4e2d");
+
+        configOperator.updateConfig("/r/a", configIO.getConfigCreator().createConfig("<a>\u20ac</a>"));
+        configIO.save();
+
+        Assert.assertEquals(new String(Files.readAllBytes(confFile.toPath()), StandardCharsets.UTF_16),
+                content.replace("\u00e9", "\u20ac"));
+    }
+}
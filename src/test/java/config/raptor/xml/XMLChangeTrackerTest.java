@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class XMLChangeTrackerTest {
+    private static final String CONF = "<?xml version=\"1.0\"?>\n" +
+            "<!DOCTYPE root [ <!ELEMENT root ANY> <!ATTLIST root note CDATA \"a > b\"> ]>\n" +
+            "<root>\n" +
+            "  <!-- <commented>out</commented> -->\n" +
+            "  <a x=\"1 > 0\" y='q'>one</a>\n" +
+            "  <b/>\n" +
+            "  <c><![CDATA[<not-an-element/>]]><d>two</d></c>\n" +
+            "</root>\n";
+
+    private Document parse(String text, Charset charset) throws Exception {
+        return XMLParserPool.getDocumentBuilder().parse(new ByteArrayInputStream(text.getBytes(charset)));
+    }
+
+    @Test
+    public void testScanElements() {
+        List<int[]> elements = XMLChangeTracker.scanElements(CONF);
+
+        Assert.assertEquals(elements.size(), 5);
+        Assert.assertEquals(CONF.substring(elements.get(1)[0], elements.get(1)[1]), "<a x=\"1 > 0\" y='q'>one</a>");
+        Assert.assertEquals(CONF.substring(elements.get(2)[0], elements.get(2)[1]), "<b/>");
+        Assert.assertEquals(CONF.substring(elements.get(4)[2], elements.get(4)[3]), "d");
+        Assert.assertTrue(CONF.substring(elements.get(0)[0], elements.get(0)[1]).endsWith("</c>\n</root>"));
+
+        List<int[]> sections = XMLChangeTracker.scanElements(CONF, 1);
+        Assert.assertEquals(sections.size(), 4);
+        Assert.assertEquals(CONF.substring(sections.get(3)[0], sections.get(3)[4]), "<c>");
+
+        Assert.assertNull(XMLChangeTracker.scanElements("<root><a></root"));
+        Assert.assertNull(XMLChangeTracker.scanElements("<root><!-- open"));
+    }
+
+    @Test
+    public void testMapRegionsMismatch() throws Exception {
+        Document doc = parse(CONF, StandardCharsets.UTF_8);
+
+        Map<Node, int[]> regions = XMLChangeTracker.mapRegions(doc, CONF);
+        Assert.assertNotNull(regions);
+        Assert.assertEquals(regions.size(), 5);
+
+        Assert.assertNull(XMLChangeTracker.mapRegions(doc, CONF.replace("<b/>", "<e/>")));
+        Assert.assertNull(XMLChangeTracker.mapRegions(doc, CONF.replace("<b/>", "<b/><b/>")));
+    }
+
+    @Test
+    public void testIncrementalContent() throws Exception {
+        Charset latin1 = StandardCharsets.ISO_8859_1;
+        Document doc = parse(CONF, latin1);
+        XMLChangeTracker tracker = new XMLChangeTracker(doc, ByteBuffer.wrap(CONF.getBytes(latin1)), latin1);
+
+        Assert.assertEquals(tracker.getIncrementalContent(), ByteBuffer.wrap(CONF.getBytes(latin1)));
+
+        Element a = (Element) doc.getElementsByTagName("a").item(0);
+        tracker.nodeUpdating(a);
+        a.setTextContent("caf\u00e9 \u20ac & \"more\"");
+        a.setAttribute("x", "\"2\"");
+
+        Element c = (Element) doc.getElementsByTagName("c").item(0);
+        Element d = (Element) doc.getElementsByTagName("d").item(0);
+        tracker.nodeUpdating(d);
+        d.setTextContent("three");
+        tracker.nodeUpdating(c);
+        c.setTextContent("four");
+
+        String expected = CONF.replace("<a x=\"1 > 0\" y='q'>one</a>",
+                                       "<a x=\"&#34;2&#34;\" y=\"q\">caf\u00e9 &#8364; &amp; \"more\"</a>").
+                               replace("<c><![CDATA[<not-an-element/>]]><d>two</d></c>", "<c>four</c>");
+        Assert.assertEquals(latin1.decode(tracker.getIncrementalContent()).toString(), expected);
+
+        tracker.structureChanged();
+        Assert.assertNull(tracker.getIncrementalContent());
+    }
+}
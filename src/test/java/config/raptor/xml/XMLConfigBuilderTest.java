@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+public class XMLConfigBuilderTest {
+    private Document doc;
+    private XMLConfigCreator configCreator;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        doc.appendChild(doc.createElement("Environments"));
+        configCreator = new XMLConfigCreator(doc);
+    }
+
+    @Test
+    public void testBuildMatchesParsedConfig() throws Exception {
+        Element built = configCreator.buildConfig("Environment")
+                .attribute("type", "hybrid")
+                .comment(" gateway ")
+                .child("Name", "Production & Sandbox")
+                .element("Credentials")
+                    .child("Username", "admin")
+                    .element("Password").cdata("a<b").end()
+                .end()
+                .child("Empty", null)
+                .text("tail")
+                .build();
+
+        Node parsed = configCreator.createConfig("<Environment type=\"hybrid\"><!-- gateway -->" +
+                "<Name>Production &amp; Sandbox</Name><Credentials><Username>admin</Username>" +
+                "<Password><![CDATA[a<b]]></Password></Credentials><Empty/>tail</Environment>");
+
+        Assert.assertSame(built.getOwnerDocument(), doc);
+        Assert.assertNull(built.getParentNode());
+        Assert.assertTrue(built.isEqualNode(parsed));
+    }
+
+    @Test
+    public void testBuiltConfigCanBeAdded() throws Exception {
+        XMLConfigOperator configOperator = new XMLConfigOperator(doc);
+        Element built = configCreator.buildConfig("Environment").child("Name", "Production").build();
+
+        Assert.assertTrue(configOperator.addConfig("/Environments", built, XMLConfigOperator.Position.AT));
+        Assert.assertEquals(configOperator.getConfig("/Environments/Environment/Name").getTextContent(),
+                "Production");
+    }
+
+    @Test
+    public void testInvalidNames() throws Exception {
+        try {
+            configCreator.buildConfig("1Environment");
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "Invalid element name '1Environment'");
+        }
+
+        XMLConfigBuilder builder = configCreator.buildConfig("Environment");
+
+        try {
+            builder.child("bad name", "text");
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "Invalid element name 'bad name'");
+        }
+
+        try {
+            builder.attribute("<type>", "hybrid");
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "Invalid attribute name '<type>'");
+        }
+    }
+
+    @Test
+    public void testEndWithoutOpenElement() throws Exception {
+        XMLConfigBuilder builder = configCreator.buildConfig("Environment").element("Name").end();
+
+        try {
+            builder.end();
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "No element started by element() is open");
+        }
+    }
+}
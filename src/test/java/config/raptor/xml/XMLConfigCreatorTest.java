@@ -28,6 +28,10 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class XMLConfigCreatorTest {
     private static final String API_MANAGER_CONF = "api-manager.xml";
@@ -118,6 +122,122 @@ public class XMLConfigCreatorTest {
         }
     }
 
+    @Test
+    public void testCreateConfigReturnsCopies() throws Exception {
+        XMLConfigCreator configCreator = new XMLConfigCreator(apiManagerConfDoc);
+        Assert.assertFalse(configCreator.isFragmentCacheEnabled());
+
+        configCreator.setFragmentCacheEnabled(true);
+        Assert.assertTrue(configCreator.isFragmentCacheEnabled());
+
+        Node first = configCreator.createConfig("<Password type=\"plain\">secret</Password>");
+        first.setTextContent("changed");
+        ((Element) first).setAttribute("type", "changed");
+
+        Node second = configCreator.createConfig("<Password type=\"plain\">secret</Password>");
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(second.getTextContent(), "secret");
+        Assert.assertEquals(((Element) second).getAttribute("type"), "plain");
+        Assert.assertSame(second.getOwnerDocument(), apiManagerConfDoc);
+        Assert.assertNull(second.getParentNode());
+
+        configCreator.setFragmentCacheEnabled(false);
+        Assert.assertFalse(configCreator.isFragmentCacheEnabled());
+        Assert.assertEquals(configCreator.createConfig("<Password>secret</Password>").getTextContent(), "secret");
+    }
+
+    @Test
+    public void testCreateConfigsFromContent() throws Exception {
+        XMLConfigCreator configCreator = new XMLConfigCreator(apiManagerConfDoc);
+        List<String> xmlStrings = Arrays.asList("<Resource path=\"/a\">one &amp; two</Resource>",
+                "<Resource><![CDATA[<raw>]]><!-- note --><Name>b</Name></Resource>",
+                "<p:Resource xmlns:p=\"urn:p\" p:id=\"3\"/>");
+
+        StringBuilder content = new StringBuilder();
+        for (String xmlString : xmlStrings) {
+            content.append(xmlString).append("\n  ");
+        }
+
+        DocumentFragment fromContent = configCreator.createConfigs(new StringReader(content.toString()));
+        DocumentFragment fromStrings = configCreator.createConfigs(xmlStrings.iterator());
+
+        for (DocumentFragment fragment : Arrays.asList(fromContent, fromStrings)) {
+            Assert.assertSame(fragment.getOwnerDocument(), apiManagerConfDoc);
+            Assert.assertEquals(fragment.getChildNodes().getLength(), xmlStrings.size());
+
+            Node child = fragment.getFirstChild();
+            for (String xmlString : xmlStrings) {
+                Assert.assertTrue(child.isEqualNode(configCreator.createConfig(xmlString)), xmlString);
+                child = child.getNextSibling();
+            }
+        }
+    }
+
+    @Test
+    public void testAddCreatedConfigs() throws Exception {
+        XMLConfigCreator configCreator = new XMLConfigCreator(apiManagerConfDoc);
+        XMLConfigOperator configOperator = new XMLConfigOperator(apiManagerConfDoc);
+        List<String> xmlStrings = new ArrayList<>();
+
+        for (int i = 0; i < 1000; ++i) {
+            xmlStrings.add("<Resource><Name>resource" + i + "</Name></Resource>");
+        }
+
+        Assert.assertTrue(configOperator.addConfig("//APIGateway/Environments",
+                configCreator.createConfigs(xmlStrings.iterator()), XMLConfigOperator.Position.AT));
+
+        List<Node> added = configOperator.getAllConfigs("//APIGateway/Environments/Resource/Name");
+        Assert.assertEquals(added.size(), 1000);
+        Assert.assertEquals(added.get(999).getTextContent(), "resource999");
+    }
+
+    @Test(dataProvider = "invalidXML")
+    public void testCreateConfigsWithInvalidXMLString(String xmlInput) {
+        XMLConfigCreator configCreator = new XMLConfigCreator(apiManagerConfDoc);
+
+        try {
+            configCreator.createConfigs(Arrays.asList("<valid/>", xmlInput).iterator());
+            Assert.fail("Expected ConfigException");
+        }
+        catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "XML parsing error when parsing xml string '" + xmlInput + "'");
+        }
+    }
+
+    @Test
+    public void testCreateConfigsReadsEachStringOnItsOwn() throws Exception {
+        XMLConfigCreator configCreator = new XMLConfigCreator(apiManagerConfDoc);
+
+        DocumentFragment fragment = configCreator.createConfigs(Arrays.asList("<a/>",
+                "<?xml version=\"1.0\"?><!-- b --><b/>", " <c/> ").iterator());
+
+        Assert.assertEquals(fragment.getChildNodes().getLength(), 3);
+        Assert.assertEquals(fragment.getChildNodes().item(1).getNodeName(), "b");
+
+        try {
+            configCreator.createConfigs(Arrays.asList("<a/>", "<split>", "</split>").iterator());
+            Assert.fail("Expected ConfigException");
+        }
+        catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "XML parsing error when parsing xml string '<split>'");
+        }
+    }
+
+    @Test
+    public void testCreateConfigsWithInvalidContent() {
+        XMLConfigCreator configCreator = new XMLConfigCreator(apiManagerConfDoc);
+
+        for (String content : Arrays.asList("<open>", "<a/></config-raptor-fragments><b/>", "<?xml version=\"1.0\"?><a/>")) {
+            try {
+                configCreator.createConfigs(new StringReader(content));
+                Assert.fail("Expected ConfigException for " + content);
+            }
+            catch (ConfigException e) {
+                Assert.assertEquals(e.getMessage(), "XML parsing error when parsing xml content");
+            }
+        }
+    }
+
     @DataProvider(name = "invalidXML")
     public Object[][] invalidXML() {
         Object[][] xmlInputs = new Object[5][1];
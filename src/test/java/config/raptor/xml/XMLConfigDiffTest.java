@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.StringReader;
+import java.util.List;
+
+public class XMLConfigDiffTest {
+    private static final String ENVIRONMENTS = "<Environments>" +
+            "<Environment type=\"hybrid\"><Name>Production</Name><Port>8280</Port></Environment>" +
+            "<Environment type=\"sandbox\"><Name>Sandbox</Name><Port>8281</Port></Environment>" +
+            "</Environments>";
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+
+        return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static String serialize(Document doc) {
+        StringBuilder content = new StringBuilder();
+        XMLUtil.serialize(doc.getDocumentElement(), content, null);
+
+        return content.toString();
+    }
+
+    // Applies the diff to the base document and checks that it then equals the target
+    private static List<XMLConfigOperation> assertPatches(String base, String target) throws Exception {
+        Document baseDoc = parse(base);
+        Document targetDoc = parse(target);
+        List<XMLConfigOperation> operations = XMLConfigDiff.diff(baseDoc, targetDoc);
+
+        XMLBatchResult result = new XMLConfigOperator(baseDoc).applyBatch(operations);
+        Assert.assertTrue(result.isCommitted(), result.toString());
+        Assert.assertEquals(serialize(baseDoc), serialize(targetDoc));
+        Assert.assertTrue(XMLConfigDiff.diff(baseDoc, targetDoc).isEmpty());
+
+        return operations;
+    }
+
+    @Test
+    public void testEqualConfigs() throws Exception {
+        Assert.assertTrue(XMLConfigDiff.diff(parse(ENVIRONMENTS), parse(ENVIRONMENTS)).isEmpty());
+
+        // Layout and comments are not compared
+        String formatted = ENVIRONMENTS.replace("<Environment ", "\n    <!-- An environment -->\n    <Environment ");
+        Assert.assertTrue(XMLConfigDiff.diff(parse(ENVIRONMENTS), parse(formatted)).isEmpty());
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        List<XMLConfigOperation> operations = assertPatches(ENVIRONMENTS,
+                ENVIRONMENTS.replace("<Port>8281</Port>", "<Port secure=\"true\">8243</Port>"));
+
+        Assert.assertEquals(operations.size(), 1);
+        Assert.assertEquals(operations.get(0).getType(), XMLConfigOperation.Type.UPDATE);
+        Assert.assertEquals(operations.get(0).getPathString(),
+                "/Environments/Environment[@type='sandbox']/Port");
+        Assert.assertEquals(((Element) operations.get(0).getConfig()).getAttribute("secure"), "true");
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        String added = "<Environment type=\"staging\"><Name>Staging</Name><Port>8282</Port></Environment>";
+
+        List<XMLConfigOperation> operations = assertPatches(ENVIRONMENTS,
+                ENVIRONMENTS.replace("<Environment type=\"sandbox\">", added + "<Environment type=\"sandbox\">"));
+
+        // Elements keyed by an attribute are matched by it, so the other environments are left alone
+        Assert.assertEquals(operations.size(), 1);
+        Assert.assertEquals(operations.get(0).getType(), XMLConfigOperation.Type.ADD);
+        Assert.assertEquals(operations.get(0).getPathString(), "/Environments/Environment[@type='hybrid']");
+        Assert.assertEquals(operations.get(0).getPosition(), XMLConfigOperator.Position.AFTER);
+
+        // Several elements in a row are added in order
+        assertPatches(ENVIRONMENTS, ENVIRONMENTS.replace("<Environments>", "<Environments>" + added +
+                added.replace("staging", "test")));
+        assertPatches(ENVIRONMENTS, ENVIRONMENTS.replace("</Environments>", added +
+                added.replace("staging", "test") + "</Environments>"));
+        assertPatches("<Environments/>", ENVIRONMENTS);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        List<XMLConfigOperation> operations = assertPatches(ENVIRONMENTS, ENVIRONMENTS.replace(
+                "<Environment type=\"hybrid\"><Name>Production</Name><Port>8280</Port></Environment>", ""));
+
+        Assert.assertEquals(operations.size(), 1);
+        Assert.assertEquals(operations.get(0).getType(), XMLConfigOperation.Type.REMOVE);
+        Assert.assertEquals(operations.get(0).getPathString(), "/Environments/Environment[@type='hybrid']");
+
+        assertPatches(ENVIRONMENTS, ENVIRONMENTS.replace("<Port>8280</Port>", ""));
+    }
+
+    @Test
+    public void testPositionalMatching() throws Exception {
+        String servers = "<Servers><Server>a</Server><Server>b</Server><Server>c</Server></Servers>";
+
+        List<XMLConfigOperation> operations = assertPatches(servers, servers.replace(">b<", ">x<"));
+        Assert.assertEquals(operations.size(), 1);
+        Assert.assertEquals(operations.get(0).getPathString(), "/Servers/Server[2]");
+
+        assertPatches(servers, "<Servers><Server>a</Server></Servers>");
+        assertPatches(servers, servers.replace("</Servers>", "<Server>d</Server></Servers>"));
+    }
+
+    @Test
+    public void testReorder() throws Exception {
+        String reordered = "<Environments>" +
+                "<Environment type=\"sandbox\"><Name>Sandbox</Name><Port>8281</Port></Environment>" +
+                "<Environment type=\"hybrid\"><Name>Production</Name><Port>8280</Port></Environment>" +
+                "</Environments>";
+
+        List<XMLConfigOperation> operations = assertPatches(ENVIRONMENTS, reordered);
+
+        // One of the two stays and the other moves round it
+        Assert.assertEquals(operations.size(), 2);
+        assertPatches("<a><b/><c/><d/><e/></a>", "<a><e/><c/><b/><d/></a>");
+    }
+
+    @Test
+    public void testReplace() throws Exception {
+        // A value that became a container and a container whose attributes changed are replaced
+        assertPatches("<a><b>1</b><c/></a>", "<a><b><x>1</x></b><c/></a>");
+        assertPatches("<a><b><x>1</x></b></a>", "<a><b>1</b></a>");
+
+        List<XMLConfigOperation> operations = assertPatches(ENVIRONMENTS,
+                ENVIRONMENTS.replace("<Environment type=\"sandbox\">",
+                                     "<Environment type=\"sandbox\" api-console=\"false\">"));
+
+        Assert.assertEquals(operations.size(), 2);
+        Assert.assertEquals(operations.get(0).getType(), XMLConfigOperation.Type.REMOVE);
+        Assert.assertEquals(operations.get(1).getType(), XMLConfigOperation.Type.ADD);
+    }
+
+    @Test
+    public void testNamespaces() throws Exception {
+        String base = "<a xmlns:p=\"urn:p\"><p:b>1</p:b><b>2</b><p:c><p:d>3</p:d><p:d>4</p:d></p:c></a>";
+        String target = "<a xmlns:p=\"urn:p\"><p:b>5</p:b><b>2</b><p:c><p:d>3</p:d><p:d>6</p:d></p:c></a>";
+
+        List<XMLConfigOperation> operations = assertPatches(base, target);
+
+        Assert.assertEquals(operations.size(), 2);
+        Assert.assertEquals(operations.get(0).getPathString(),
+                "/a/*[local-name()='b' and namespace-uri()='urn:p']");
+        Assert.assertEquals(operations.get(1).getPathString(),
+                "/a/*[local-name()='c' and namespace-uri()='urn:p']/*[local-name()='d' and namespace-uri()='urn:p'][2]");
+    }
+
+    @Test
+    public void testReplayOnNewerConfig() throws Exception {
+        // Local changes made to a shipped config are made again to the next version of it
+        String shipped = ENVIRONMENTS;
+        String edited = ENVIRONMENTS.replace("<Port>8280</Port>", "<Port>9280</Port>");
+        String newer = ENVIRONMENTS.replace("<Environments>", "<Environments>" +
+                "<Environment type=\"production\"><Name>Live</Name><Port>80</Port></Environment>");
+
+        List<XMLConfigOperation> operations = XMLConfigDiff.diff(parse(shipped), parse(edited));
+        Document newerDoc = parse(newer);
+
+        Assert.assertTrue(new XMLConfigOperator(newerDoc).applyBatch(operations).isCommitted());
+        Assert.assertEquals(serialize(newerDoc), newer.replace("<Port>8280</Port>", "<Port>9280</Port>"));
+    }
+
+    @Test
+    public void testDiffConfigFiles() throws Exception {
+        String apiManagerConfPath = new File(Thread.currentThread().getContextClassLoader().
+                getResource("api-manager.xml").getFile()).getAbsolutePath();
+
+        XMLConfigIO base = new XMLConfigIO(apiManagerConfPath);
+        XMLConfigIO target = new XMLConfigIO(apiManagerConfPath);
+        target.setConcurrentAccessEnabled(true);
+
+        Assert.assertTrue(XMLConfigDiff.diff(base, target).isEmpty());
+
+        target.getConfigOperator().updateAllConfigValues("/APIManager/AuthManager/Password", "secret");
+        target.getConfigOperator().removeConfig("//Environments/Environment");
+
+        List<XMLConfigOperation> operations = XMLConfigDiff.diff(base, target);
+        Assert.assertEquals(operations.size(), 2);
+        Assert.assertTrue(base.getConfigOperator().applyBatch(operations).isCommitted());
+        Assert.assertTrue(XMLConfigDiff.diff(base, target).isEmpty());
+    }
+
+    @Test(expectedExceptions = ConfigException.class)
+    public void testDifferentRoots() throws Exception {
+        XMLConfigDiff.diff(parse("<a><b/></a>"), parse("<c><b/></c>"));
+    }
+
+    @Test
+    public void testRootAttributesChanged() throws Exception {
+        try {
+            XMLConfigDiff.diff(parse("<a v=\"1\"><b/></a>"), parse("<a v=\"2\"><b/></a>"));
+            Assert.fail("Root attribute change was accepted");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "Attributes and text of root element 'a' cannot be changed with " +
+                                                "config operations, only its child elements can");
+        }
+    }
+}
@@ -16,15 +16,21 @@
 
 package config.raptor.xml;
 
+import config.raptor.ConfigException;
 import org.testng.Assert;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
+import org.w3c.dom.Node;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 
 public class XMLConfigIOTest {
     private static final String API_MANAGER_CONF = "api-manager.xml";
@@ -32,6 +38,12 @@ public class XMLConfigIOTest {
     private String apiManagerConfPath;
     private File updatedApiManagerConfFile;
 
+    private static String replaceFirst(String text, String target, String replacement) {
+        int index = text.indexOf(target);
+
+        return text.substring(0, index) + replacement + text.substring(index + target.length());
+    }
+
     @BeforeMethod
     public void setUp() throws Exception {
         File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
@@ -70,6 +82,234 @@ public class XMLConfigIOTest {
 
         Assert.assertNotNull(configIO.getConfigOperator());
     }
+
+    @Test
+    public void testSaveRewritesOnlyUpdatedElements() throws Exception {
+        String original = new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8);
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Node password = configIO.getConfigCreator().createConfig("<Password secret=\"true\">a&lt;b</Password>");
+        Assert.assertTrue(configOperator.updateConfig("//AuthManager/Password", password));
+        configIO.save();
+
+        String expected = replaceFirst(original, "<Password>${admin.password}</Password>",
+                                       "<Password secret=\"true\">a&lt;b</Password>");
+        Assert.assertNotEquals(expected, original);
+        Assert.assertEquals(new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8),
+                            expected);
+
+        // Saving again continues from what was written
+        Node username = configIO.getConfigCreator().createConfig("<Username>admin</Username>");
+        Assert.assertTrue(configOperator.updateConfig("//AuthManager/Username", username));
+        configIO.save();
+
+        expected = replaceFirst(expected, "<Username>${admin.username}</Username>", "<Username>admin</Username>");
+        Assert.assertEquals(new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8),
+                            expected);
+
+        XMLConfigOperator savedOperator = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath()).
+                                                                                            getConfigOperator();
+        Assert.assertEquals(savedOperator.getConfig("//AuthManager/Password").getTextContent(), "a<b");
+        Assert.assertEquals(savedOperator.getConfig("//AuthManager/Username").getTextContent(), "admin");
+    }
+
+    @Test
+    public void testSaveAfterFileTruncatedInPlace() throws Exception {
+        // Large enough for the file to be mapped into memory when read
+        StringBuilder padding = new StringBuilder("\n<!--");
+        for (int i = 0; i < 512 * 1024; ++i) {
+            padding.append('x');
+        }
+        padding.append("-->\n");
+
+        String original = new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8);
+        original = original + padding;
+        Files.write(updatedApiManagerConfFile.toPath(), original.getBytes(StandardCharsets.UTF_8));
+
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+
+        // Another process truncates the file without replacing it
+        try (FileChannel channel = FileChannel.open(updatedApiManagerConfFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(10);
+        }
+
+        Assert.assertTrue(configIO.getConfigOperator().updateConfig("//AuthManager/Password",
+                configIO.getConfigCreator().createConfig("<Password>changed</Password>")));
+        configIO.save();
+
+        String expected = replaceFirst(original, "<Password>${admin.password}</Password>",
+                                       "<Password>changed</Password>");
+        Assert.assertEquals(new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8),
+                            expected);
+    }
+
+    @Test
+    public void testSaveBulkChanges() throws Exception {
+        String original = new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8);
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertEquals(configOperator.setAllConfigAttributes("//AuthManager/Username", "role", "admin"), 1);
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Password", "changed"), 1);
+        configIO.save();
+
+        String expected = replaceFirst(original, "<Username>${admin.username}</Username>",
+                                       "<Username role=\"admin\">${admin.username}</Username>");
+        expected = replaceFirst(expected, "<Password>${admin.password}</Password>", "<Password>changed</Password>");
+        Assert.assertEquals(new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8),
+                            expected);
+    }
+
+    @Test
+    public void testSaveSkipsUnchangedFile() throws Exception {
+        FileTime modifiedTime = FileTime.fromMillis(1000000000000L);
+        Files.setLastModifiedTime(updatedApiManagerConfFile.toPath(), modifiedTime);
+        byte[] original = Files.readAllBytes(updatedApiManagerConfFile.toPath());
+
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        XMLConfigCreator configCreator = configIO.getConfigCreator();
+
+        Assert.assertFalse(configIO.saveIfChanged());
+
+        // Setting what is already there is not a change
+        Assert.assertTrue(configOperator.updateConfig("//AuthManager/Password",
+                configCreator.createConfig("<Password>${admin.password}</Password>")));
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Username", "${admin.username}"), 1);
+        Assert.assertFalse(configOperator.isModified());
+        Assert.assertFalse(configIO.saveIfChanged());
+
+        // A change that was undone is found by comparing the content
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Password", "changed"), 1);
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Password", "${admin.password}"), 1);
+        Assert.assertTrue(configOperator.isModified());
+        Assert.assertFalse(configIO.saveIfChanged());
+        Assert.assertFalse(configOperator.isModified());
+
+        Assert.assertEquals(Files.getLastModifiedTime(updatedApiManagerConfFile.toPath()), modifiedTime);
+        Assert.assertEquals(Files.readAllBytes(updatedApiManagerConfFile.toPath()), original);
+
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Password", "changed"), 1);
+        Assert.assertTrue(configIO.saveIfChanged());
+        Assert.assertFalse(configIO.saveIfChanged());
+
+        // The file holds something else than was saved, so the document is written again
+        Files.write(updatedApiManagerConfFile.toPath(), original);
+        Assert.assertTrue(configIO.saveIfChanged());
+        Assert.assertEquals(new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath()).getConfigOperator().
+                getConfig("//AuthManager/Password").getTextContent(), "changed");
+    }
+
+    @Test
+    public void testSaveSkipsUnchangedSerializedFile() throws Exception {
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        configIO.setIncrementalSaveEnabled(false);
+
+        Assert.assertFalse(configIO.saveIfChanged());
+
+        Assert.assertTrue(configOperator.removeConfig("//AuthManager/Username"));
+        Assert.assertTrue(configIO.saveIfChanged());
+
+        FileTime modifiedTime = FileTime.fromMillis(1000000000000L);
+        Files.setLastModifiedTime(updatedApiManagerConfFile.toPath(), modifiedTime);
+
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Password", "changed"), 1);
+        Assert.assertEquals(configOperator.updateAllConfigValues("//AuthManager/Password", "${admin.password}"), 1);
+        Assert.assertFalse(configIO.saveIfChanged());
+        Assert.assertEquals(Files.getLastModifiedTime(updatedApiManagerConfFile.toPath()), modifiedTime);
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        String original = new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8);
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+        configOperator.setPathIndexEnabled(true);
+
+        Assert.assertFalse(configIO.reload());
+
+        Files.write(updatedApiManagerConfFile.toPath(), replaceFirst(original, "<Password>${admin.password}</Password>",
+                "<Password>reloaded</Password>").getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertTrue(configIO.reload());
+        Assert.assertSame(configIO.getConfigOperator(), configOperator);
+        Assert.assertEquals(configOperator.getConfig("//AuthManager/Password").getTextContent(), "reloaded");
+        Assert.assertFalse(configIO.reload());
+
+        // Saved content is known, so it is not loaded again
+        Assert.assertTrue(configOperator.updateConfig("//AuthManager/Username",
+                configIO.getConfigCreator().createConfig("<Username>admin</Username>")));
+        configIO.save();
+        Assert.assertFalse(configIO.reload());
+
+        Assert.assertTrue(configOperator.removeConfig("//AuthManager/Username"));
+        configIO.save();
+        Assert.assertFalse(configIO.reload());
+
+        String saved = new String(Files.readAllBytes(updatedApiManagerConfFile.toPath()), StandardCharsets.UTF_8);
+        Files.write(updatedApiManagerConfFile.toPath(), replaceFirst(saved, "<Password>reloaded</Password>",
+                "<Password>again</Password>").getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertTrue(configIO.reload());
+        Assert.assertEquals(configOperator.getConfig("//AuthManager/Password").getTextContent(), "again");
+        Assert.assertFalse(configOperator.isConfigExists("//AuthManager/Username"));
+    }
+
+    @Test
+    public void testReloadInvalidFile() throws Exception {
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        configIO.setConcurrentAccessEnabled(true);
+        Files.write(updatedApiManagerConfFile.toPath(), "<APIManager>".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            configIO.reload();
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "XML parsing error when reloading file " +
+                                                                    updatedApiManagerConfFile.getAbsolutePath());
+        }
+
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("//AuthManager/Password").getTextContent(),
+                            "${admin.password}");
+    }
+
+    @Test
+    public void testSaveAfterStructuralChange() throws Exception {
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Node password = configIO.getConfigCreator().createConfig("<Password>changed</Password>");
+        Assert.assertTrue(configOperator.updateConfig("//AuthManager/Password", password));
+        Assert.assertTrue(configOperator.removeConfig("//AuthManager/Username"));
+        configIO.save();
+
+        XMLConfigOperator savedOperator = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath()).
+                                                                                            getConfigOperator();
+        Assert.assertEquals(savedOperator.getConfig("//AuthManager/Password").getTextContent(), "changed");
+        Assert.assertFalse(savedOperator.isConfigExists("//AuthManager/Username"));
+    }
+
+    @Test
+    public void testIncrementalSaveDisabled() throws Exception {
+        byte[] original = Files.readAllBytes(updatedApiManagerConfFile.toPath());
+        XMLConfigIO configIO = new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath());
+
+        configIO.save();
+        Assert.assertEquals(Files.readAllBytes(updatedApiManagerConfFile.toPath()), original);
+
+        configIO.setIncrementalSaveEnabled(false);
+        Assert.assertFalse(configIO.isIncrementalSaveEnabled());
+
+        Node password = configIO.getConfigCreator().createConfig("<Password>changed</Password>");
+        Assert.assertTrue(configIO.getConfigOperator().updateConfig("//AuthManager/Password", password));
+        configIO.save();
+
+        Assert.assertNotEquals(Files.readAllBytes(updatedApiManagerConfFile.toPath()), original);
+        Assert.assertEquals(new XMLConfigIO(updatedApiManagerConfFile.getAbsolutePath()).getConfigOperator().
+                getConfig("//AuthManager/Password").getTextContent(), "changed");
+    }
 /*
     @Test
     public void testSave() throws Exception {
@@ -20,6 +20,7 @@ import config.raptor.ConfigException;
 import org.testng.Assert;
 import org.testng.annotations.*;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -29,7 +30,10 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.*;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -184,6 +188,44 @@ public class XMLConfigOperatorTest {
         Assert.assertNull(config);
     }
 
+    @Test
+    public void testGetConfigWithPredicates() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        Node config = apiManagerConf.getConfig("//Environments/Environment[@type='hybrid']/Name");
+        Assert.assertNotNull(config);
+        Assert.assertEquals(config.getTextContent(), "Production and Sandbox");
+
+        config = apiManagerConf.getConfig("//Name[1]");
+        Assert.assertEquals(config, getNode(apiManagerConfDoc, "//Name[1]"));
+
+        config = apiManagerConf.getConfig("//APIUsageTracking//Name[2]");
+        Assert.assertEquals(config, getNode(apiManagerConfDoc, "//APIUsageTracking//Name[2]"));
+
+        Assert.assertFalse(apiManagerConf.isConfigExists("//Environment[@type='production']"));
+        Assert.assertFalse(apiManagerConf.isConfigExists("//Environments/Environment[2]"));
+    }
+
+    @Test
+    public void testGetAllConfigs() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        List<Node> configs = apiManagerConf.getAllConfigs("//APIUsageTracking//Name");
+        NodeList expected = (NodeList) XPathFactory.newInstance().newXPath().
+                evaluate("//APIUsageTracking//Name", apiManagerConfDoc, XPathConstants.NODESET);
+
+        Assert.assertTrue(configs.size() > 1);
+        Assert.assertEquals(configs.size(), expected.getLength());
+        for (int i = 0; i < configs.size(); ++i) {
+            Assert.assertSame(configs.get(i), expected.item(i));
+        }
+
+        Assert.assertTrue(apiManagerConf.getAllConfigs("//SecurityContextHeaders").isEmpty());
+        Assert.assertEquals(apiManagerConf.getAllConfigs("//Environment/comment()").size(),
+                ((Number) XPathFactory.newInstance().newXPath().evaluate("count(//Environment/comment())",
+                        apiManagerConfDoc, XPathConstants.NUMBER)).intValue());
+    }
+
     @Test
     public void testGetConfigInvalidXPath() throws Exception {
         XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
@@ -216,6 +258,86 @@ public class XMLConfigOperatorTest {
         Assert.assertEquals(config.getTextContent(), expectedConfig.getTextContent());
     }
 
+    @Test
+    public void testUpdateAllConfigs() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+        Node newName = createConfig(apiManagerConfDoc, "Name", "stream");
+        int nameCount = apiManagerConf.getAllConfigs("//APIUsageTracking//Name").size();
+
+        Assert.assertEquals(apiManagerConf.updateAllConfigs("//APIUsageTracking//Name", newName), nameCount);
+
+        for (Node config : apiManagerConf.getAllConfigs("//APIUsageTracking//Name")) {
+            Assert.assertEquals(config.getTextContent(), "stream");
+        }
+
+        Assert.assertEquals(apiManagerConf.updateAllConfigs("//SecurityContextHeaders", newName), 0);
+
+        // The inner match is replaced by the new text of the outer one
+        Assert.assertEquals(apiManagerConf.updateAllConfigs("//APIUsageTracking | //APIUsageTracking//Name",
+                createConfig(apiManagerConfDoc, "APIUsageTracking", "off")), 1);
+        Assert.assertEquals(apiManagerConf.getConfig("//APIUsageTracking").getTextContent(), "off");
+    }
+
+    @Test
+    public void testUpdateAllConfigValues() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+        int passwordCount = apiManagerConf.getAllConfigs("//Password").size();
+
+        Assert.assertEquals(apiManagerConf.updateAllConfigValues("//Password", "secret"), passwordCount);
+
+        for (Node config : apiManagerConf.getAllConfigs("//Password")) {
+            Assert.assertEquals(config.getTextContent(), "secret");
+        }
+
+        // Attributes are kept, and matches inside an updated element are gone with its old content
+        Assert.assertEquals(apiManagerConf.updateAllConfigValues("//Environment | //Environment/Name", "env"), 1);
+        Assert.assertEquals(apiManagerConf.getConfig("//Environment").getTextContent(), "env");
+        Assert.assertEquals(((Element) apiManagerConf.getConfig("//Environment")).getAttribute("type"), "hybrid");
+        Assert.assertEquals(apiManagerConf.updateAllConfigValues("//SecurityContextHeaders", "x"), 0);
+    }
+
+    @Test
+    public void testSetAllConfigAttributes() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+        apiManagerConf.setPathIndexEnabled(true);
+        int passwordCount = apiManagerConf.getAllConfigs("//Password").size();
+
+        Assert.assertEquals(apiManagerConf.setAllConfigAttributes("//Password", "encrypted", "true"), passwordCount);
+        Assert.assertEquals(apiManagerConf.getAllConfigs("//Password[@encrypted='true']").size(), passwordCount);
+        Assert.assertEquals(apiManagerConf.getConfig("//Environment/Password").getTextContent(), "${admin.password}");
+
+        Assert.assertEquals(apiManagerConf.setAllConfigAttributes("//Environment", "type", "production"), 1);
+        Assert.assertTrue(apiManagerConf.isConfigExists("//Environment[@type='production']/Name"));
+
+        Assert.assertEquals(apiManagerConf.setAllConfigAttributes("//Password", "encrypted", null), passwordCount);
+        Assert.assertEquals(apiManagerConf.setAllConfigAttributes("//Password", "encrypted", null), 0);
+        Assert.assertFalse(apiManagerConf.isConfigExists("//Password[@encrypted='true']"));
+
+        ConfigException exception = null;
+        try {
+            apiManagerConf.setAllConfigAttributes("//Password", "not valid", "x");
+        }
+        catch (ConfigException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(exception.getMessage(), "Invalid attribute name 'not valid'");
+    }
+
+    @Test
+    public void testRemoveAllConfigs() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+        int nameCount = apiManagerConf.getAllConfigs("//APIUsageTracking//Name").size();
+
+        Assert.assertEquals(apiManagerConf.removeAllConfigs("//APIUsageTracking//Name"), nameCount);
+        Assert.assertFalse(apiManagerConf.isConfigExists("//APIUsageTracking//Name"));
+        Assert.assertEquals(apiManagerConf.removeAllConfigs("//APIUsageTracking//Name"), 0);
+
+        Assert.assertEquals(apiManagerConf.removeAllConfigs("//APIGateway | //APIGateway//Password"), 1);
+        Assert.assertFalse(apiManagerConf.isConfigExists("//APIGateway"));
+    }
+
     @Test
     public void testUpdateNonExistingConfig() throws Exception {
         XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
@@ -557,4 +679,189 @@ public class XMLConfigOperatorTest {
 
         Assert.assertTrue(root.getNodeName().equals("APIManager"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAddConfigsBefore() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        Node parentNode = getNode(apiManagerConfDoc, "//AuthManager");
+        int childPosition = getPositionOfChild(parentNode, "Username");
+        int origSize = parentNode.getChildNodes().getLength();
+
+        Assert.assertTrue(apiManagerConf.addConfigs("//AuthManager/Username",
+                Arrays.asList(createConfig(apiManagerConfDoc, "First", "1"),
+                        createConfig(apiManagerConfDoc, "Second", "2")), XMLConfigOperator.Position.BEFORE));
+
+        NodeList children = parentNode.getChildNodes();
+        Assert.assertEquals(children.getLength(), origSize + 2);
+        Assert.assertEquals(children.item(childPosition).getNodeName(), "First");
+        Assert.assertEquals(children.item(childPosition + 1).getNodeName(), "Second");
+        Assert.assertEquals(children.item(childPosition + 2).getNodeName(), "Username");
+    }
+
+    @Test
+    public void testAddConfigsAfter() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        Node parentNode = getNode(apiManagerConfDoc, "//AuthManager");
+        int childPosition = getPositionOfChild(parentNode, "Username");
+
+        Assert.assertTrue(apiManagerConf.addConfigs("//AuthManager/Username",
+                Arrays.asList(createConfig(apiManagerConfDoc, "First", "1"),
+                        createConfig(apiManagerConfDoc, "Second", "2")), XMLConfigOperator.Position.AFTER));
+
+        NodeList children = parentNode.getChildNodes();
+        Assert.assertEquals(children.item(childPosition).getNodeName(), "Username");
+        Assert.assertEquals(children.item(childPosition + 1).getNodeName(), "First");
+        Assert.assertEquals(children.item(childPosition + 2).getNodeName(), "Second");
+    }
+
+    @Test
+    public void testAddConfigsAt() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        Node parentNode = getNode(apiManagerConfDoc, "//AuthManager");
+
+        Assert.assertTrue(apiManagerConf.addConfigs("//AuthManager",
+                Arrays.asList(createConfig(apiManagerConfDoc, "First", "1"),
+                        createConfig(apiManagerConfDoc, "Second", "2")), XMLConfigOperator.Position.AT));
+
+        Assert.assertEquals(parentNode.getLastChild().getNodeName(), "Second");
+        Assert.assertEquals(parentNode.getLastChild().getPreviousSibling().getNodeName(), "First");
+    }
+
+    @Test
+    public void testAddNoConfigs() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        Assert.assertFalse(apiManagerConf.addConfigs("//AuthManager", Collections.<Node>emptyList(),
+                XMLConfigOperator.Position.AT));
+        Assert.assertFalse(apiManagerConf.addConfigs("/", Arrays.asList(createConfig(apiManagerConfDoc, "First", "1")),
+                XMLConfigOperator.Position.AT));
+    }
+
+    @Test
+    public void testApplyBatch() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+        Document otherDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+
+        XMLBatchResult result = apiManagerConf.applyBatch(Arrays.asList(
+                XMLConfigOperation.update("//APIGateway/Environments/Environment/Username",
+                        createConfig(apiManagerConfDoc, "Username", "admin")),
+                XMLConfigOperation.update("//APIGateway/Environments/Environment/Password",
+                        createConfig(otherDoc, "Password", "secret")),
+                XMLConfigOperation.add("//APIGateway/Environments/Environment",
+                        createConfig(otherDoc, "Timeout", "60"), XMLConfigOperator.Position.AT),
+                XMLConfigOperation.remove("//AuthManager/Username")));
+
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertEquals(result.getFailedIndex(), -1);
+        Assert.assertEquals(result.getStatuses(), Collections.nCopies(4, XMLBatchResult.Status.APPLIED));
+
+        Assert.assertEquals(apiManagerConf.getConfig("//Environment/Username").getTextContent(), "admin");
+        Assert.assertEquals(apiManagerConf.getConfig("//Environment/Password").getTextContent(), "secret");
+        Assert.assertEquals(apiManagerConf.getConfig("//Environment/Timeout").getOwnerDocument(), apiManagerConfDoc);
+        Assert.assertNull(apiManagerConf.getConfig("//AuthManager/Username"));
+    }
+
+    @Test
+    public void testApplyBatchRollback() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+        apiManagerConf.setPathIndexEnabled(true);
+        Node original = apiManagerConfDoc.getDocumentElement().cloneNode(true);
+
+        Element environment = apiManagerConfDoc.createElement("Environment");
+        environment.setAttribute("type", "sandbox");
+
+        XMLBatchResult result = apiManagerConf.applyBatch(Arrays.asList(
+                XMLConfigOperation.update("//Environments/Environment", environment),
+                XMLConfigOperation.add("//AuthManager/Username", createConfig(apiManagerConfDoc, "Realm", "carbon"),
+                        XMLConfigOperator.Position.BEFORE),
+                XMLConfigOperation.add("//AuthManager", getNode(apiManagerConfDoc, "//APIKeyValidator"),
+                        XMLConfigOperator.Position.AT),
+                XMLConfigOperation.remove("//AuthManager/Password"),
+                XMLConfigOperation.remove("//AuthManager/UsernameS"),
+                XMLConfigOperation.remove("//AuthManager/Username")));
+
+        Assert.assertFalse(result.isCommitted());
+        Assert.assertEquals(result.getFailedIndex(), 4);
+        Assert.assertEquals(result.getStatuses(), Arrays.asList(XMLBatchResult.Status.ROLLED_BACK,
+                XMLBatchResult.Status.ROLLED_BACK, XMLBatchResult.Status.ROLLED_BACK,
+                XMLBatchResult.Status.ROLLED_BACK, XMLBatchResult.Status.NOT_FOUND, XMLBatchResult.Status.SKIPPED));
+
+        Assert.assertTrue(original.isEqualNode(apiManagerConfDoc.getDocumentElement()));
+        Assert.assertNull(apiManagerConf.getConfig("//AuthManager/Realm"));
+        Assert.assertNotNull(apiManagerConf.getConfig("//Environments/Environment/Password"));
+        Assert.assertNotNull(apiManagerConf.getConfig("/APIManager/APIKeyValidator"));
+        Assert.assertNull(apiManagerConf.getConfig("//AuthManager/APIKeyValidator"));
+    }
+
+    @Test
+    public void testApplyBatchRollbackRestoresFragment() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        DocumentFragment fragment = apiManagerConfDoc.createDocumentFragment();
+        fragment.appendChild(createConfig(apiManagerConfDoc, "Realm", "carbon"));
+        fragment.appendChild(createConfig(apiManagerConfDoc, "Timeout", "60"));
+
+        List<XMLConfigOperation> operations = Arrays.asList(
+                XMLConfigOperation.add("//AuthManager", fragment, XMLConfigOperator.Position.AT),
+                XMLConfigOperation.remove("//AuthManager/UsernameS"));
+
+        Assert.assertFalse(apiManagerConf.applyBatch(operations).isCommitted());
+        Assert.assertNull(apiManagerConf.getConfig("//AuthManager/Realm"));
+        Assert.assertEquals(fragment.getChildNodes().getLength(), 2);
+        Assert.assertEquals(fragment.getFirstChild().getNodeName(), "Realm");
+
+        // The same operation can be applied again
+        Assert.assertTrue(apiManagerConf.applyBatch(operations.subList(0, 1)).isCommitted());
+        Assert.assertEquals(apiManagerConf.getConfig("//AuthManager/Timeout").getTextContent(), "60");
+    }
+
+    @Test
+    public void testApplyBatchRemovedTarget() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        XMLBatchResult result = apiManagerConf.applyBatch(Arrays.asList(
+                XMLConfigOperation.remove("//AuthManager"),
+                XMLConfigOperation.remove("//AuthManager/Username"),
+                XMLConfigOperation.add("/", createConfig(apiManagerConfDoc, "Realm", "carbon"),
+                        XMLConfigOperator.Position.AT)));
+
+        Assert.assertEquals(result.getStatus(1), XMLBatchResult.Status.NOT_FOUND);
+        Assert.assertNotNull(apiManagerConf.getConfig("//AuthManager/Username"));
+
+        result = apiManagerConf.applyBatch(Arrays.asList(XMLConfigOperation.add("/",
+                createConfig(apiManagerConfDoc, "Realm", "carbon"), XMLConfigOperator.Position.AT)));
+
+        Assert.assertEquals(result.getStatus(0), XMLBatchResult.Status.REJECTED);
+    }
+
+    @Test
+    public void testApplyBatchInvalidXPath() throws Exception {
+        XMLConfigOperator apiManagerConf = new XMLConfigOperator(apiManagerConfDoc);
+
+        ConfigException exception = null;
+        try {
+            apiManagerConf.applyBatch(Arrays.asList(XMLConfigOperation.remove("//AuthManager/Username"),
+                    XMLConfigOperation.remove("\\")));
+        }
+        catch (ConfigException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+        Assert.assertEquals("XPath expression '\\' evaluation error", exception.getMessage());
+        Assert.assertNotNull(apiManagerConf.getConfig("//AuthManager/Username"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUpdateOperationRequiresNode() throws Exception {
+        XMLConfigOperation.update("//AuthManager/Username", null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddOperationRequiresConfig() throws Exception {
+        XMLConfigOperation.add("//AuthManager", null, XMLConfigOperator.Position.AT);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+public class XMLConfigSnapshotTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private static final String PASSWORD_PATH = "//APIGateway/Environments/Environment/Password";
+    private File confFile;
+    private XMLConfigIO configIO;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        confFile = File.createTempFile("snapshot-api-manager", ".xml");
+        Files.copy(apiManagerConfFile.toPath(), confFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        configIO = new XMLConfigIO(confFile.getAbsolutePath());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        confFile.delete();
+    }
+
+    @Test
+    public void testQueriesMatchOperator() throws Exception {
+        Assert.assertNull(configIO.getSnapshot());
+        configIO.setSnapshotEnabled(true);
+
+        XMLConfigSnapshot snapshot = configIO.getSnapshot();
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertEquals(snapshot.getValue(PASSWORD_PATH), configOperator.getConfig(PASSWORD_PATH).getTextContent());
+        Assert.assertEquals(snapshot.getValue("/APIManager/AuthManager/Username"), "${admin.username}");
+        Assert.assertTrue(snapshot.isConfigExists("//Environments/Environment"));
+        Assert.assertFalse(snapshot.isConfigExists("//AuthManager/UsernameS"));
+        Assert.assertFalse(snapshot.isConfigExists("/AuthManager"));
+        Assert.assertNull(snapshot.getValue("//AuthManager/UsernameS"));
+
+        Assert.assertEquals(snapshot.getAttribute("//Environments/Environment", "type"), "hybrid");
+        Assert.assertNull(snapshot.getAttribute("//Environments/Environment", "missing"));
+        Assert.assertEquals(snapshot.getAttributes("//Environments/Environment").keySet(),
+                new LinkedHashSet<>(Arrays.asList("type", "api-console")));
+        Assert.assertEquals(snapshot.getValues("//AuthManager/Username"), Arrays.asList("${admin.username}"));
+        Assert.assertEquals(snapshot.getValues("//Username").size(), ((Number) XPathFactory.newInstance().newXPath().
+                evaluate("count(//Username)", configOperator.getConfig("/APIManager").getOwnerDocument(),
+                        XPathConstants.NUMBER)).intValue());
+    }
+
+    @Test
+    public void testPublishing() throws Exception {
+        configIO.setSnapshotEnabled(true);
+        XMLConfigSnapshot initial = configIO.getSnapshot();
+        XMLConfigOperator configOperator = configIO.getConfigOperator();
+
+        Assert.assertTrue(configOperator.updateConfig(PASSWORD_PATH,
+                configIO.getConfigCreator().createConfig("<Password>first</Password>")));
+        Assert.assertSame(configIO.getSnapshot(), initial);
+        Assert.assertEquals(initial.getValue(PASSWORD_PATH), "${admin.password}");
+
+        XMLConfigSnapshot published = configIO.publishSnapshot();
+        Assert.assertSame(configIO.getSnapshot(), published);
+        Assert.assertEquals(published.getValue(PASSWORD_PATH), "first");
+        Assert.assertEquals(initial.getValue(PASSWORD_PATH), "${admin.password}");
+
+        XMLBatchResult result = configOperator.applyBatch(Arrays.asList(
+                XMLConfigOperation.remove("//AuthManager/Username")));
+        Assert.assertTrue(result.isCommitted());
+        Assert.assertFalse(configIO.getSnapshot().isConfigExists("//AuthManager/Username"));
+
+        Assert.assertTrue(configOperator.updateConfig(PASSWORD_PATH,
+                configIO.getConfigCreator().createConfig("<Password>second</Password>")));
+        configIO.save();
+        Assert.assertEquals(configIO.getSnapshot().getValue(PASSWORD_PATH), "second");
+    }
+
+    @Test
+    public void testUnsupportedPath() throws Exception {
+        configIO.setSnapshotEnabled(true);
+
+        ConfigException exception = null;
+        try {
+            configIO.getSnapshot().getValue("//Environment[@type='hybrid']");
+        }
+        catch (ConfigException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(exception.getMessage(),
+                "XPath expression '//Environment[@type='hybrid']' is not supported by snapshots");
+
+        configIO.setSnapshotEnabled(false);
+        Assert.assertNull(configIO.getSnapshot());
+    }
+}
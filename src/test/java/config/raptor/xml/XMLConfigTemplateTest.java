@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class XMLConfigTemplateTest {
+    private static final String ENVIRONMENT_TEMPLATE = "<Environment type=\"{{type}}\" api-console=\"true\">" +
+            "<Name>{{name}}</Name><Description>{{name}} at {{ url }}</Description>" +
+            "<ServerURL>${carbon.url}</ServerURL></Environment>";
+    private XMLConfigCreator configCreator;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        configCreator = new XMLConfigCreator(doc);
+    }
+
+    private static Map<String, String> values(String... namesAndValues) {
+        Map<String, String> values = new HashMap<>();
+
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            values.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+
+        return values;
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        XMLConfigTemplate template = configCreator.createTemplate(ENVIRONMENT_TEMPLATE);
+        Assert.assertEquals(template.getPlaceholderNames(), Arrays.asList("type", "name", "url"));
+
+        Element first = (Element) template.create(values("type", "hybrid", "name", "Production", "url", "a<b&c"));
+        Element second = (Element) template.create(values("type", "sandbox", "name", "Sandbox", "url", "x"));
+
+        Assert.assertEquals(first.getAttribute("type"), "hybrid");
+        Assert.assertEquals(first.getAttribute("api-console"), "true");
+        Assert.assertEquals(first.getElementsByTagName("Name").item(0).getTextContent(), "Production");
+        Assert.assertEquals(first.getElementsByTagName("Description").item(0).getTextContent(),
+                "Production at a<b&c");
+        Assert.assertEquals(first.getElementsByTagName("ServerURL").item(0).getTextContent(), "${carbon.url}");
+
+        Assert.assertEquals(second.getAttribute("type"), "sandbox");
+        Assert.assertEquals(second.getElementsByTagName("Name").item(0).getTextContent(), "Sandbox");
+        Assert.assertNotSame(first, second);
+    }
+
+    @Test
+    public void testCreatedNodesCanBeAdded() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        doc.appendChild(doc.createElement("Environments"));
+
+        XMLConfigOperator configOperator = new XMLConfigOperator(doc);
+        XMLConfigTemplate template = new XMLConfigCreator(doc).createTemplate("<Environment><Name>{{name}}</Name>" +
+                "</Environment>");
+
+        for (String name : Arrays.asList("one", "two", "three")) {
+            Assert.assertTrue(configOperator.addConfig("/Environments", template.create(values("name", name)),
+                    XMLConfigOperator.Position.AT));
+        }
+
+        Assert.assertEquals(configOperator.getConfig("/Environments/Environment[3]/Name").getTextContent(), "three");
+    }
+
+    @Test
+    public void testMissingValue() throws Exception {
+        XMLConfigTemplate template = configCreator.createTemplate(ENVIRONMENT_TEMPLATE);
+
+        try {
+            template.create(values("type", "hybrid", "name", "Production"));
+            Assert.fail("Expected ConfigException");
+        } catch (ConfigException e) {
+            Assert.assertEquals(e.getMessage(), "No value given for template placeholder 'url'");
+        }
+    }
+
+    @Test
+    public void testTemplateWithoutPlaceholders() throws Exception {
+        XMLConfigTemplate template = configCreator.createTemplate("<Name>{{not closed</Name>");
+        Node config = template.create(values());
+
+        Assert.assertTrue(template.getPlaceholderNames().isEmpty());
+        Assert.assertEquals(config.getTextContent(), "{{not closed");
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class XMLConfigWatcherTest {
+    private static final String CONFIG = "<Server><Name>%s</Name></Server>";
+    private Path directory;
+    private Path configFile;
+    private BlockingQueue<Object> reloads;
+    private XMLConfigWatcher watcher;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("config-raptor-watcher-");
+        configFile = directory.resolve("server.xml");
+        Files.write(configFile, String.format(CONFIG, "first").getBytes(StandardCharsets.UTF_8));
+
+        reloads = new LinkedBlockingQueue<>();
+        watcher = new XMLConfigWatcher(50, new XMLConfigWatcher.Listener() {
+            @Override
+            public void reloaded(XMLConfigIO configIO) {
+                reloads.add(configIO);
+            }
+
+            @Override
+            public void reloadFailed(XMLConfigIO configIO, ConfigException e) {
+                reloads.add(e);
+            }
+        });
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        watcher.close();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReloadOnChange() throws Exception {
+        XMLConfigIO configIO = new XMLConfigIO(configFile.toString());
+        configIO.setConcurrentAccessEnabled(true);
+        watcher.watch(configIO);
+
+        Files.write(configFile, String.format(CONFIG, "second").getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertSame(reloads.poll(10, TimeUnit.SECONDS), configIO);
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("/Server/Name").getTextContent(), "second");
+
+        // A file that cannot be parsed leaves the config as it was
+        Files.write(configFile, "<Server>".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertTrue(reloads.poll(10, TimeUnit.SECONDS) instanceof ConfigException);
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("/Server/Name").getTextContent(), "second");
+    }
+
+    @Test
+    public void testKeepsWatchingAfterFailures() throws Exception {
+        final AtomicBoolean isFailing = new AtomicBoolean(true);
+        XMLConfigIO configIO = new XMLConfigIO(configFile.toString()) {
+            @Override
+            public synchronized boolean reload() throws ConfigException {
+                if (isFailing.getAndSet(false)) {
+                    throw new IllegalStateException("reload");
+                }
+
+                return super.reload();
+            }
+        };
+        configIO.setConcurrentAccessEnabled(true);
+        watcher.close();
+
+        watcher = new XMLConfigWatcher(50, new XMLConfigWatcher.Listener() {
+            @Override
+            public void reloaded(XMLConfigIO configIO) {
+                reloads.add(configIO);
+                throw new IllegalStateException("listener");
+            }
+
+            @Override
+            public void reloadFailed(XMLConfigIO configIO, ConfigException e) {
+                reloads.add(e);
+            }
+        });
+        watcher.watch(configIO);
+
+        Files.write(configFile, String.format(CONFIG, "second").getBytes(StandardCharsets.UTF_8));
+
+        Object failure = reloads.poll(10, TimeUnit.SECONDS);
+        Assert.assertTrue(failure instanceof ConfigException);
+        Assert.assertTrue(((ConfigException) failure).getCause() instanceof IllegalStateException);
+
+        Files.write(configFile, String.format(CONFIG, "third").getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertSame(reloads.poll(10, TimeUnit.SECONDS), configIO);
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("/Server/Name").getTextContent(), "third");
+
+        // The listener failed on the last reload, yet the watcher is still running
+        Files.write(configFile, String.format(CONFIG, "fourth").getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertSame(reloads.poll(10, TimeUnit.SECONDS), configIO);
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("/Server/Name").getTextContent(), "fourth");
+    }
+
+    @Test
+    public void testSaveDoesNotReload() throws Exception {
+        XMLConfigIO configIO = new XMLConfigIO(configFile.toString());
+        configIO.setConcurrentAccessEnabled(true);
+        watcher.watch(configIO);
+
+        configIO.getConfigOperator().updateAllConfigValues("/Server/Name", "saved");
+        configIO.save();
+
+        Assert.assertNull(reloads.poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("/Server/Name").getTextContent(), "saved");
+    }
+
+    @Test
+    public void testUnwatch() throws Exception {
+        XMLConfigIO configIO = new XMLConfigIO(configFile.toString());
+        configIO.setConcurrentAccessEnabled(true);
+        watcher.watch(configIO);
+        watcher.unwatch(configIO);
+
+        Files.write(configFile, String.format(CONFIG, "second").getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertNull(reloads.poll(500, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(configIO.getConfigOperator().getConfig("/Server/Name").getTextContent(), "first");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testWatchRequiresConcurrentAccess() throws Exception {
+        watcher.watch(new XMLConfigIO(configFile.toString()));
+    }
+}
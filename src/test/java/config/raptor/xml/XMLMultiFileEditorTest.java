@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class XMLMultiFileEditorTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private static final int CONF_COUNT = 6;
+    private Path confDir;
+    private Path brokenConf;
+
+    private List<XMLConfigOperation> createOperations() throws Exception {
+        Document doc = XMLParserPool.getDocumentBuilder().newDocument();
+        Element password = doc.createElement("Password");
+        password.setTextContent("secret");
+
+        return Arrays.asList(XMLConfigOperation.update("//APIGateway/Environments/Environment/Password", password),
+                XMLConfigOperation.remove("//AuthManager/Username"));
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        confDir = Files.createTempDirectory("multi-file-conf");
+        Files.createDirectory(confDir.resolve("nested"));
+
+        for (int i = 0; i < CONF_COUNT; ++i) {
+            Path target = i % 2 == 0 ? confDir.resolve("conf" + i + ".xml") : confDir.resolve("nested/conf" + i + ".xml");
+            Files.copy(apiManagerConfFile.toPath(), target);
+        }
+
+        brokenConf = confDir.resolve("broken.xml");
+        Files.write(brokenConf, "<APIManager>".getBytes(StandardCharsets.UTF_8));
+        Files.write(confDir.resolve("notes.txt"), "not a config".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        Files.walkFileTree(confDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void testApplyToDirectory() throws Exception {
+        XMLMultiFileEditor editor = new XMLMultiFileEditor(3, 64 * 1024);
+        final AtomicInteger progressCount = new AtomicInteger();
+
+        editor.setProgressListener(new XMLMultiFileEditor.ProgressListener() {
+            @Override
+            public void fileProcessed(Path file, ConfigException error, int processedCount, int fileCount) {
+                Assert.assertEquals(fileCount, CONF_COUNT + 1);
+                progressCount.incrementAndGet();
+            }
+        });
+
+        XMLMultiFileResult result = editor.apply(confDir, "**.xml",
+                XMLMultiFileEditor.forOperations(createOperations()));
+
+        Assert.assertEquals(progressCount.get(), CONF_COUNT + 1);
+        Assert.assertEquals(result.getFileCount(), CONF_COUNT + 1);
+        Assert.assertEquals(result.getSuccessCount(), CONF_COUNT);
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertEquals(result.getFailures().keySet().iterator().next(), brokenConf);
+
+        ConfigException exception = null;
+        try {
+            result.throwIfFailed();
+        }
+        catch (ConfigException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(exception.getSuppressed().length, 1);
+
+        for (int i = 0; i < CONF_COUNT; ++i) {
+            Path conf = i % 2 == 0 ? confDir.resolve("conf" + i + ".xml") : confDir.resolve("nested/conf" + i + ".xml");
+            XMLConfigOperator operator = new XMLConfigIO(conf.toString()).getConfigOperator();
+
+            Assert.assertEquals(operator.getConfig("//Environment/Password").getTextContent(), "secret");
+            Assert.assertNull(operator.getConfig("//AuthManager/Username"));
+        }
+    }
+
+    @Test
+    public void testRolledBackFileUnchanged() throws Exception {
+        Path conf = confDir.resolve("conf0.xml");
+        byte[] original = Files.readAllBytes(conf);
+
+        List<XMLConfigOperation> operations = Arrays.asList(XMLConfigOperation.remove("//AuthManager/Username"),
+                XMLConfigOperation.remove("//AuthManager/UsernameS"));
+
+        XMLMultiFileResult result = new XMLMultiFileEditor(1, 1024).apply(confDir, "conf0.xml",
+                XMLMultiFileEditor.forOperations(operations));
+
+        Assert.assertEquals(result.getFileCount(), 1);
+        Assert.assertFalse(result.isSuccessful());
+        Assert.assertEquals(Files.readAllBytes(conf), original);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class XMLParserPoolTest {
+
+    @Test
+    public void testDocumentBuilderReusedPerThread() throws Exception {
+        DocumentBuilder docBuilder = XMLParserPool.getDocumentBuilder();
+
+        Assert.assertSame(XMLParserPool.getDocumentBuilder(), docBuilder);
+        Assert.assertTrue(docBuilder.isNamespaceAware());
+
+        final AtomicReference<DocumentBuilder> otherBuilder = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    otherBuilder.set(XMLParserPool.getDocumentBuilder());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        Assert.assertNotNull(otherBuilder.get());
+        Assert.assertNotSame(otherBuilder.get(), docBuilder);
+    }
+
+    @Test
+    public void testTransformerReset() throws Exception {
+        Transformer transformer = XMLParserPool.getTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+
+        transformer = XMLParserPool.getTransformer();
+        Assert.assertNotEquals(transformer.getOutputProperties().getProperty(OutputKeys.INDENT), "yes");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.List;
+
+public class XMLPathEvaluatorTest {
+    private static final String NESTED_CONF =
+            "<a><b k=\"1\"><c>1</c><b k=\"2\"><c k=\"1\">2</c><d><c>3</c></d></b><c k=\"1\">4</c></b><c>5</c>" +
+            "<b k=\"1\"><c>6</c></b></a>";
+    // The first c of //b/c is below the inner b, before the c of the outer b that is matched first
+    private static final String NESTED_FIRST_CONF = "<a><b><b k=\"1\"><d/><c>1</c></b><c k=\"1\">2</c></b></a>";
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    @Test(dataProvider = "paths")
+    public void testEvaluateSameAsXPath(String pathString) throws Exception {
+        Document doc = parse(NESTED_CONF);
+        XMLPathEvaluator evaluator = new XMLPathEvaluator(doc);
+
+        // Evaluate twice so that the second evaluation comes from remembered prefixes
+        for (int round = 0; round < 2; ++round) {
+            assertSameAsXPath(evaluator.evaluate(XMLPath.parseWithPredicates(pathString)), doc, pathString);
+        }
+    }
+
+    @Test(dataProvider = "paths")
+    public void testSelectSameAsXPath(String pathString) throws Exception {
+        Document doc = parse(NESTED_CONF);
+
+        assertSameAsXPath(XMLPathEvaluator.select(doc, XMLPath.parseWithPredicates(pathString)), doc, pathString);
+    }
+
+    @Test(dataProvider = "paths")
+    public void testSelectFirstSameAsXPath(String pathString) throws Exception {
+        for (String conf : new String[] {NESTED_CONF, NESTED_FIRST_CONF}) {
+            Document doc = parse(conf);
+            Node expected = (Node) XPathFactory.newInstance().newXPath().compile(pathString).
+                    evaluate(doc, XPathConstants.NODE);
+
+            Assert.assertSame(XMLPathEvaluator.selectFirst(doc, XMLPath.parseWithPredicates(pathString)), expected,
+                    pathString);
+        }
+    }
+
+    private static void assertSameAsXPath(List<Node> nodes, Document doc, String pathString) throws Exception {
+        NodeList expected = (NodeList) XPathFactory.newInstance().newXPath().compile(pathString).
+                evaluate(doc, XPathConstants.NODESET);
+
+        Assert.assertEquals(nodes.size(), expected.getLength(), pathString);
+
+        for (int i = 0; i < expected.getLength(); ++i) {
+            Assert.assertSame(nodes.get(i), expected.item(i), pathString);
+        }
+    }
+
+    @DataProvider(name = "paths")
+    public Object[][] paths() {
+        return new Object[][] {
+                {"//c"}, {"//b/c"}, {"//b//c"}, {"/a/b/c"}, {"a/b"}, {"//b"}, {"/a//d/c"}, {"//x"}, {"/b"},
+                {"//b[2]"}, {"//c[1]"}, {"//b[@k='1']"}, {"//b[@k='1']/c[2]"}, {"/a/b[2]/c"}, {"//c[@k='1'][2]"},
+                {"//c[2][@k='1']"}, {"//b[ 1 ]//c"}, {"//b[@k = \"2\"]/c"}, {"//c[9]"}, {"//b//c[1]"}
+        };
+    }
+}
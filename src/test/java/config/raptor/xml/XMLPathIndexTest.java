@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.File;
+import java.util.List;
+
+public class XMLPathIndexTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private Document apiManagerConfDoc;
+
+    private NodeList evaluate(String pathString) throws Exception {
+        return (NodeList) XPathFactory.newInstance().newXPath().compile(pathString).
+                evaluate(apiManagerConfDoc, XPathConstants.NODESET);
+    }
+
+    private void assertSameAsXPath(XMLPathIndex index, String pathString) throws Exception {
+        List<Node> indexed = index.lookup(XMLPath.parse(pathString));
+        NodeList expected = evaluate(pathString);
+
+        Assert.assertEquals(indexed.size(), expected.getLength(), pathString);
+
+        for (int i = 0; i < expected.getLength(); ++i) {
+            Assert.assertSame(indexed.get(i), expected.item(i), pathString);
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        File apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        apiManagerConfDoc = builder.parse(apiManagerConfFile.getAbsolutePath());
+    }
+
+    @Test(dataProvider = "paths")
+    public void testLookup(String pathString) throws Exception {
+        assertSameAsXPath(new XMLPathIndex(apiManagerConfDoc), pathString);
+    }
+
+    @DataProvider(name = "paths")
+    public Object[][] paths() {
+        return new Object[][] {
+                {"//APIGateway/Environments/Environment/Password"}, {"//Password"}, {"//Username"},
+                {"/APIManager/AuthManager/Username"}, {"APIManager/AuthManager"}, {"/APIManager//Password"},
+                {"//APIGateway//Password"}, {"/AuthManager"}, {"//AuthManager/UsernameS"}, {"/APIManager"}
+        };
+    }
+
+    @Test
+    public void testLookupAfterChanges() throws Exception {
+        XMLConfigOperator operator = new XMLConfigOperator(apiManagerConfDoc);
+        operator.setPathIndexEnabled(true);
+
+        Element newConfig = apiManagerConfDoc.createElement("Password");
+        newConfig.appendChild(apiManagerConfDoc.createElement("Username"));
+        Assert.assertTrue(operator.addConfig("//AuthManager/Username", newConfig, XMLConfigOperator.Position.BEFORE));
+        Assert.assertTrue(operator.addConfig("//AuthManager", apiManagerConfDoc.createElement("Password"),
+                XMLConfigOperator.Position.AT));
+        Assert.assertTrue(operator.addConfig("//Environments/Environment", apiManagerConfDoc.createElement("Password"),
+                XMLConfigOperator.Position.AFTER));
+        Assert.assertTrue(operator.removeConfig("//APIGateway/Environments/Environment/Password"));
+        Assert.assertTrue(operator.updateConfig("/APIManager/AuthManager/Password", apiManagerConfDoc.createElement("Password")));
+
+        Assert.assertFalse(operator.isConfigExists("/APIManager/AuthManager/Password/Username"));
+
+        for (Object[] path : paths()) {
+            Assert.assertSame(operator.getConfig((String) path[0]), evaluate((String) path[0]).item(0));
+        }
+
+        Assert.assertSame(operator.getConfig("//Password/Username"), evaluate("//Password/Username").item(0));
+        Assert.assertSame(operator.getConfig("//Environment/Password"), evaluate("//Environment/Password").item(0));
+    }
+}
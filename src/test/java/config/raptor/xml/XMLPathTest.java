@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+public class XMLPathTest {
+
+    @Test
+    public void testParseDescendantPath() {
+        XMLPath path = XMLPath.parse("//APIGateway/Environments//Password");
+        Assert.assertNotNull(path);
+
+        List<XMLPath.Step> steps = path.getSteps();
+        Assert.assertEquals(steps.size(), 3);
+        Assert.assertEquals(steps.get(0).getName(), "APIGateway");
+        Assert.assertTrue(steps.get(0).isDescendant());
+        Assert.assertEquals(steps.get(1).getName(), "Environments");
+        Assert.assertFalse(steps.get(1).isDescendant());
+        Assert.assertEquals(steps.get(2).getName(), "Password");
+        Assert.assertTrue(steps.get(2).isDescendant());
+    }
+
+    @Test
+    public void testParseChildPath() {
+        XMLPath path = XMLPath.parse("/APIManager/AuthManager/ServerURL");
+        Assert.assertNotNull(path);
+        Assert.assertFalse(path.hasDescendantSteps());
+        Assert.assertEquals(path.getLastStep().getName(), "ServerURL");
+
+        path = XMLPath.parse("APIManager/Auth-Manager_2.x");
+        Assert.assertNotNull(path);
+        Assert.assertEquals(path.getLastStep().getName(), "Auth-Manager_2.x");
+    }
+
+    @Test
+    public void testParsePredicates() {
+        XMLPath path = XMLPath.parseWithPredicates("//Environments/Environment[@type='hybrid'][2]/Password");
+        Assert.assertNotNull(path);
+        Assert.assertTrue(path.hasPredicates());
+
+        List<XMLPath.Step> steps = path.getSteps();
+        Assert.assertEquals(steps.get(1).getName(), "Environment");
+        Assert.assertEquals(steps.get(1).getPredicateCount(), 2);
+        Assert.assertEquals(steps.get(1).toString(), "Environment[@type='hybrid'][2]");
+        Assert.assertEquals(steps.get(2).getPredicateCount(), 0);
+
+        Assert.assertFalse(XMLPath.parseWithPredicates("/APIManager/AuthManager").hasPredicates());
+        Assert.assertNull(XMLPath.parse("//Environment[1]"));
+    }
+
+    @Test(dataProvider = "unsupportedPaths")
+    public void testParseUnsupportedPath(String pathString) {
+        Assert.assertNull(XMLPath.parse(pathString));
+    }
+
+    @Test(dataProvider = "unsupportedPredicates")
+    public void testParseUnsupportedPredicate(String pathString) {
+        Assert.assertNull(XMLPath.parseWithPredicates(pathString));
+    }
+
+    @DataProvider(name = "unsupportedPredicates")
+    public Object[][] unsupportedPredicates() {
+        return new Object[][] {
+                {"//Environment[0]"}, {"//Environment[last()]"}, {"//Environment[@type]"}, {"//Environment[1"},
+                {"//Environment[@type='hybrid]"}, {"//Environment[@xmlns='urn:x']"}, {"//Environment[1]/"},
+                {"//Environment[12345678901]"}, {"//Environment[@type!='hybrid']"}, {"//Environment[-1]"}
+        };
+    }
+
+    @DataProvider(name = "unsupportedPaths")
+    public Object[][] unsupportedPaths() {
+        return new Object[][] {
+                {""}, {"/"}, {"//"}, {"\\\\"}, {"/APIManager/"}, {"///APIManager"}, {"//Environment[1]"},
+                {"//APIConsumerAuthentication/comment()"}, {"//Environment/@type"}, {"//*"}, {"../AuthManager"},
+                {"//ns:AuthManager"}, {"//1AuthManager"}
+        };
+    }
+}
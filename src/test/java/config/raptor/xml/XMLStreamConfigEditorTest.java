@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import config.raptor.ConfigException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+public class XMLStreamConfigEditorTest {
+    private static final String API_MANAGER_CONF = "api-manager.xml";
+    private File apiManagerConfFile;
+    private File streamedConfFile;
+
+    private List<XMLConfigOperation> createOperations(XMLConfigCreator configCreator) throws ConfigException {
+        return Arrays.asList(
+                XMLConfigOperation.update("//AuthManager/Username", configCreator.createConfig("<Username>admin</Username>")),
+                XMLConfigOperation.add("//AuthManager", configCreator.createConfig("<Timeout>60</Timeout>"),
+                        XMLConfigOperator.Position.AT),
+                XMLConfigOperation.add("//AuthManager/Password", configCreator.createConfig("<Realm>carbon</Realm>"),
+                        XMLConfigOperator.Position.BEFORE),
+                XMLConfigOperation.add("//Environments/Environment", configCreator.createConfig(
+                        "<Environment type=\"sandbox\"><Name>Sandbox</Name></Environment>"),
+                        XMLConfigOperator.Position.AFTER),
+                XMLConfigOperation.remove("//APIGateway/Environments/Environment/Password"),
+                XMLConfigOperation.remove("//AuthManager/UsernameS"));
+    }
+
+    private void assertSameChildren(Node expected, Node actual) {
+        Node expectedChild = expected.getFirstChild();
+        Node actualChild = actual.getFirstChild();
+
+        while (expectedChild != null && actualChild != null) {
+            if (expectedChild.getNodeType() == Node.ELEMENT_NODE || expectedChild.getNodeType() == Node.COMMENT_NODE) {
+                Assert.assertEquals(actualChild.getNodeName(), expectedChild.getNodeName());
+                Assert.assertEquals(actualChild.getTextContent().trim(), expectedChild.getTextContent().trim());
+            }
+
+            expectedChild = expectedChild.getNextSibling();
+            actualChild = actualChild.getNextSibling();
+        }
+
+        Assert.assertNull(expectedChild);
+        Assert.assertNull(actualChild);
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        apiManagerConfFile = new File(Thread.currentThread().getContextClassLoader().
+                getResource(API_MANAGER_CONF).getFile());
+
+        streamedConfFile = File.createTempFile("streamed-api-manager", ".xml");
+        Files.copy(apiManagerConfFile.toPath(), streamedConfFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        streamedConfFile.delete();
+    }
+
+    @Test
+    public void testApplySameAsOperator() throws Exception {
+        XMLStreamConfigEditor editor = new XMLStreamConfigEditor(streamedConfFile.getAbsolutePath());
+        List<Boolean> results = editor.apply(createOperations(editor.getConfigCreator()));
+
+        Assert.assertEquals(results, Arrays.asList(true, true, true, true, true, false));
+
+        XMLConfigIO expectedConfigIO = new XMLConfigIO(apiManagerConfFile.getAbsolutePath());
+        XMLConfigOperator expectedOperator = expectedConfigIO.getConfigOperator();
+
+        for (XMLConfigOperation operation : createOperations(expectedConfigIO.getConfigCreator())) {
+            if (operation.getType() == XMLConfigOperation.Type.UPDATE) {
+                expectedOperator.updateConfig(operation.getPathString(), operation.getConfig());
+            }
+            else if (operation.getType() == XMLConfigOperation.Type.ADD) {
+                expectedOperator.addConfig(operation.getPathString(), operation.getConfig(), operation.getPosition());
+            }
+            else {
+                expectedOperator.removeConfig(operation.getPathString());
+            }
+        }
+
+        XMLConfigOperator streamedOperator = new XMLConfigIO(streamedConfFile.getAbsolutePath()).getConfigOperator();
+
+        assertSameChildren(expectedOperator.getConfig("//AuthManager"), streamedOperator.getConfig("//AuthManager"));
+        assertSameChildren(expectedOperator.getConfig("//Environments"), streamedOperator.getConfig("//Environments"));
+        Assert.assertEquals(streamedOperator.getConfig("//AuthManager/Username").getTextContent(), "admin");
+        Assert.assertEquals(streamedOperator.getConfig("//Environments/Environment[2]").getAttributes().
+                getNamedItem("type").getNodeValue(), "sandbox");
+    }
+
+    @Test
+    public void testRootElementUnchanged() throws Exception {
+        XMLStreamConfigEditor editor = new XMLStreamConfigEditor(streamedConfFile.getAbsolutePath());
+        Node config = editor.getConfigCreator().createConfig("<Loner/>");
+
+        List<Boolean> results = editor.apply(Arrays.asList(XMLConfigOperation.remove("/APIManager"),
+                XMLConfigOperation.add("/APIManager", config, XMLConfigOperator.Position.BEFORE),
+                XMLConfigOperation.add("/APIManager", config, XMLConfigOperator.Position.AFTER)));
+
+        Assert.assertEquals(results, Arrays.asList(false, false, false));
+        Assert.assertNotNull(new XMLConfigIO(streamedConfFile.getAbsolutePath()).getConfigOperator().
+                getConfig("/APIManager/AuthManager"));
+    }
+
+    @Test
+    public void testUnsupportedPath() throws Exception {
+        XMLStreamConfigEditor editor = new XMLStreamConfigEditor(streamedConfFile.getAbsolutePath());
+        byte[] original = Files.readAllBytes(streamedConfFile.toPath());
+
+        ConfigException exception = null;
+        try {
+            editor.apply(Arrays.asList(XMLConfigOperation.remove("//Environment[@type='hybrid']")));
+        }
+        catch (ConfigException e) {
+            exception = e;
+        }
+
+        Assert.assertNotNull(exception);
+        Assert.assertEquals(exception.getMessage(),
+                "XPath expression '//Environment[@type='hybrid']' is not supported in streaming mode");
+        Assert.assertEquals(Files.readAllBytes(streamedConfFile.toPath()), original);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Uvindra Dias Jayasinha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package config.raptor.xml;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+public class XPathExpressionCacheTest {
+
+    @Test
+    public void testCacheHit() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(4);
+
+        XPathExpression expr = cache.getExpression("//AuthManager/Username");
+        Assert.assertSame(cache.getExpression("//AuthManager/Username"), expr);
+
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(cache.getHitCount(), 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(2);
+
+        cache.getExpression("//A");
+        cache.getExpression("//B");
+        cache.getExpression("//A");
+        cache.getExpression("//C"); // Evicts //B
+
+        cache.getExpression("//A");
+        Assert.assertEquals(cache.getHitCount(), 2);
+
+        cache.getExpression("//B");
+        Assert.assertEquals(cache.getMissCount(), 4);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(2);
+
+        cache.getExpression("//A");
+        cache.clear();
+
+        Assert.assertEquals(cache.getMissCount(), 0);
+        Assert.assertEquals(cache.getHitCount(), 0);
+
+        cache.getExpression("//A");
+        Assert.assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test(expectedExceptions = XPathExpressionException.class)
+    public void testInvalidExpressionNotCached() throws Exception {
+        new XPathExpressionCache(2).getExpression("\\");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new XPathExpressionCache(0);
+    }
+}